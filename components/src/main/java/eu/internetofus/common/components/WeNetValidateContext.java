@@ -353,8 +353,8 @@ public class WeNetValidateContext implements ValidateContext<WeNetValidateContex
   public Future<Void> validateDefinedProfileIdsField(final String name, final Iterable<String> ids,
       final Future<Void> future) {
 
-    return this.validateDefinedIdsField(name, ids, WeNetUserProfile.class,
-        WeNetProfileManager.createProxy(this.vertx)::isProfileDefined, future);
+    return this.validateDefinedIdsFieldInBatch(name, ids, WeNetUserProfile.class,
+        WeNetProfileManager.createProxy(this.vertx)::areProfilesDefined, future);
   }
 
   /**
@@ -369,8 +369,8 @@ public class WeNetValidateContext implements ValidateContext<WeNetValidateContex
   public Future<Void> validateDefinedTaskTypeIdsField(final String name, final Iterable<String> ids,
       final Future<Void> future) {
 
-    return this.validateDefinedIdsField(name, ids, TaskType.class,
-        WeNetTaskManager.createProxy(this.vertx)::isTaskTypeDefined, future);
+    return this.validateDefinedIdsFieldInBatch(name, ids, TaskType.class,
+        WeNetTaskManager.createProxy(this.vertx)::areTaskTypesDefined, future);
   }
 
   /**
@@ -441,6 +441,87 @@ public class WeNetValidateContext implements ValidateContext<WeNetValidateContex
 
   }
 
+  /**
+   * Check if a field contains defined models, checking all the models that are
+   * not cached in a single search.
+   *
+   * @param name   of the field to validate.
+   * @param ids    identifiers of the models.
+   * @param type   of model to search.
+   * @param search function to obtain which of the models exist.
+   * @param future to compose if the models are defined or not.
+   *
+   * @return the future with the validation result.
+   *
+   * @see #validateDefinedIdsField(String, Iterable, Class, Function, Future)
+   */
+  public Future<Void> validateDefinedIdsFieldInBatch(final String name, final Iterable<String> ids,
+      final Class<?> type, final Function<List<String>, Future<List<String>>> search, final Future<Void> future) {
+
+    final var pending = new ArrayList<String>();
+    final var alreadyDefined = new HashMap<String, Integer>();
+    final var iter = ids.iterator();
+    for (var i = 0; iter.hasNext(); i++) {
+
+      final var id = iter.next();
+      if (id == null) {
+
+        iter.remove();
+
+      } else if (alreadyDefined.containsKey(id)) {
+
+        final var index = alreadyDefined.get(id);
+        return this.failFieldElement(name, i, "The '" + id + "' is already defined at '" + index + "'.");
+
+      } else {
+
+        alreadyDefined.put(id, i);
+        if (!this.idsCache.contains(this.generateKey(id, type))) {
+
+          pending.add(id);
+        }
+      }
+    }
+
+    if (pending.isEmpty()) {
+
+      return future;
+
+    } else {
+
+      final Future<Void> checked = search.apply(pending).transform(found -> {
+
+        if (found.failed()) {
+
+          return this.failFieldElement(name, alreadyDefined.get(pending.get(0)), found.cause());
+
+        } else {
+
+          final var defined = new HashSet<String>();
+          if (found.result() != null) {
+
+            defined.addAll(found.result());
+          }
+          for (final var id : pending) {
+
+            if (defined.contains(id)) {
+
+              this.idsCache.add(this.generateKey(id, type));
+
+            } else {
+
+              return this.failFieldElement(name, alreadyDefined.get(id),
+                  "The '" + id + "' is not associated to any model.");
+            }
+          }
+          return Future.succeededFuture();
+        }
+      });
+      return CompositeFuture.all(future, checked).map(any -> null);
+    }
+
+  }
+
   /**
    * Validate that a field is not a defined profile.
    *
@@ -669,7 +750,7 @@ public class WeNetValidateContext implements ValidateContext<WeNetValidateContex
           .retrieveSocialNetworkRelationshipsPage(appId, sourceId, targetId, typeName, null, null, null, 0, 0)
           .transform(page -> {
 
-            if (page.failed() || page.result().total == 0) {
+            if (page.failed() || page.result().total == null || page.result().total == 0) {
 
               return this.failField(name, "The '" + type + "' is not defined on the app '" + appId
                   + "' by the source user '" + sourceId + "' with the target user '" + targetId + "'.");
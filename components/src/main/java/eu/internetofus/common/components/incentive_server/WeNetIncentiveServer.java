@@ -21,6 +21,7 @@
 package eu.internetofus.common.components.incentive_server;
 
 import eu.internetofus.common.components.WeNetComponent;
+import eu.internetofus.common.vertx.TraceContext;
 import io.vertx.codegen.annotations.GenIgnore;
 import io.vertx.codegen.annotations.ProxyGen;
 import io.vertx.core.AsyncResult;
@@ -30,7 +31,6 @@ import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
-import io.vertx.serviceproxy.ServiceBinder;
 import javax.validation.constraints.NotNull;
 
 /**
@@ -67,7 +67,7 @@ public interface WeNetIncentiveServer extends WeNetComponent {
    */
   static void register(final Vertx vertx, final WebClient client, final JsonObject conf) {
 
-    new ServiceBinder(vertx).setAddress(WeNetIncentiveServer.ADDRESS).register(WeNetIncentiveServer.class,
+    TraceContext.binder(vertx).setAddress(WeNetIncentiveServer.ADDRESS).register(WeNetIncentiveServer.class,
         new WeNetIncentiveServerClient(client, conf));
 
   }
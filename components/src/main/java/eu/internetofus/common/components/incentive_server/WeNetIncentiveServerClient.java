@@ -55,7 +55,7 @@ public class WeNetIncentiveServerClient extends ComponentClient implements WeNet
    */
   public WeNetIncentiveServerClient(final WebClient client, final JsonObject conf) {
 
-    super(client, conf.getString(INCENTIVE_SERVER_CONF_KEY, DEFAULT_INCENTIVE_SERVER_API_URL));
+    super(client, conf, INCENTIVE_SERVER_CONF_KEY, DEFAULT_INCENTIVE_SERVER_API_URL);
 
   }
 
@@ -42,10 +42,11 @@ public class InteractionsPage extends ReflectionModel implements Model {
   public int offset;
 
   /**
-   * The number total of interactions that satisfies the search.
+   * The number total of interactions that satisfies the search, or {@code null} if
+   * the total has not been requested.
    */
-  @Schema(description = "The number total of interactions that satisfies the search.", example = "100")
-  public long total;
+  @Schema(description = "The number total of interactions that satisfies the search. It is not defined if the total has not been requested.", example = "100", nullable = true)
+  public Long total;
 
   /**
    * The found interactions.
@@ -53,4 +54,18 @@ public class InteractionsPage extends ReflectionModel implements Model {
   @ArraySchema(schema = @Schema(implementation = Interaction.class), arraySchema = @Schema(description = "The set of interactions found"))
   public List<Interaction> interactions;
 
+  /**
+   * The token to obtain the next page of interactions, or {@code null} if there
+   * are no more interactions.
+   */
+  @Schema(description = "The token to obtain the next page of interactions. It is not defined if there are no more interactions.", nullable = true)
+  public String next;
+
+  /**
+   * This is {@code true} if the total is estimated instead of counted, or
+   * {@code null} if the total is exact.
+   */
+  @Schema(description = "This is true if the total is estimated instead of counted. It is not defined if the total is exact.", nullable = true)
+  public Boolean estimatedTotal;
+
 }
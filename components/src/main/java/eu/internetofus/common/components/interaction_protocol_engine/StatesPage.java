@@ -40,10 +40,11 @@ public class StatesPage extends ReflectionModel implements Model {
   public int offset;
 
   /**
-   * The number total of task that satisfies the search.
+   * The number total of task that satisfies the search, or {@code null} if
+   * the total has not been requested.
    */
-  @Schema(description = "The number total of states that satisfies the search.", example = "100")
-  public long total;
+  @Schema(description = "The number total of states that satisfies the search. It is not defined if the total has not been requested.", example = "100", nullable = true)
+  public Long total;
 
   /**
    * The found profiles.
@@ -51,4 +52,18 @@ public class StatesPage extends ReflectionModel implements Model {
   @ArraySchema(schema = @Schema(implementation = State.class), arraySchema = @Schema(description = "The set of states found"))
   public List<State> states;
 
+  /**
+   * The token to obtain the next page of states, or {@code null} if there are no
+   * more states.
+   */
+  @Schema(description = "The token to obtain the next page of states. It is not defined if there are no more states.", nullable = true)
+  public String next;
+
+  /**
+   * This is {@code true} if the total is estimated instead of counted, or
+   * {@code null} if the total is exact.
+   */
+  @Schema(description = "This is true if the total is estimated instead of counted. It is not defined if the total is exact.", nullable = true)
+  public Boolean estimatedTotal;
+
 }
@@ -25,6 +25,7 @@ import eu.internetofus.common.components.models.Incentive;
 import eu.internetofus.common.components.models.Task;
 import eu.internetofus.common.components.models.TaskTransaction;
 import eu.internetofus.common.model.Model;
+import eu.internetofus.common.vertx.TraceContext;
 import io.vertx.codegen.annotations.GenIgnore;
 import io.vertx.codegen.annotations.ProxyGen;
 import io.vertx.core.AsyncResult;
@@ -34,7 +35,6 @@ import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
-import io.vertx.serviceproxy.ServiceBinder;
 import javax.validation.constraints.NotNull;
 
 /**
@@ -71,7 +71,7 @@ public interface WeNetInteractionProtocolEngine extends WeNetComponent {
    */
   static void register(final Vertx vertx, final WebClient client, final JsonObject conf) {
 
-    new ServiceBinder(vertx).setAddress(WeNetInteractionProtocolEngine.ADDRESS)
+    TraceContext.binder(vertx).setAddress(WeNetInteractionProtocolEngine.ADDRESS)
         .register(WeNetInteractionProtocolEngine.class, new WeNetInteractionProtocolEngineClient(client, conf));
 
   }
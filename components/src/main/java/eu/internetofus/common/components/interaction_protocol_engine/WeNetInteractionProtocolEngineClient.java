@@ -22,6 +22,7 @@ package eu.internetofus.common.components.interaction_protocol_engine;
 
 import eu.internetofus.common.vertx.ComponentClient;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
@@ -57,7 +58,7 @@ public class WeNetInteractionProtocolEngineClient extends ComponentClient implem
    */
   public WeNetInteractionProtocolEngineClient(final WebClient client, final JsonObject conf) {
 
-    super(client, conf.getString(INTERACTION_PROTOCOL_ENGINE_CONF_KEY, DEFAULT_INTERACTION_PROTOCOL_ENGINE_API_URL));
+    super(client, conf, INTERACTION_PROTOCOL_ENGINE_CONF_KEY, DEFAULT_INTERACTION_PROTOCOL_ENGINE_API_URL);
 
   }
 
@@ -163,15 +164,27 @@ public class WeNetInteractionProtocolEngineClient extends ComponentClient implem
 
     final var params = this.createQueryParamsFor(appId, communityId, taskTypeId, taskId, senderId, receiverId,
         hasTransaction, transactionLabel, transactionFrom, transactionTo, hasMessage, messageLabel, messageFrom,
-        messageTo);
-    if (order != null) {
+        messageTo, order, offset, limit);
+    this.getJsonObject(params, "/interactions").onComplete(handler);
 
-      params.put("order", order);
-    }
-    params.put("offset", String.valueOf(offset));
-    params.put("limit", String.valueOf(limit));
+  }
 
-    this.getJsonObject(params, "/interactions").onComplete(handler);
+  /**
+   * Obtain the page decoding the response directly into the model.
+   *
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<InteractionsPage> getInteractionsPage(final String appId, final String communityId,
+      final String taskTypeId, final String taskId, final String senderId, final String receiverId,
+      final Boolean hasTransaction, final String transactionLabel, final Long transactionFrom, final Long transactionTo,
+      final Boolean hasMessage, final String messageLabel, final Long messageFrom, final Long messageTo,
+      final String order, final int offset, final int limit) {
+
+    final var params = this.createQueryParamsFor(appId, communityId, taskTypeId, taskId, senderId, receiverId,
+        hasTransaction, transactionLabel, transactionFrom, transactionTo, hasMessage, messageLabel, messageFrom,
+        messageTo, order, offset, limit);
+    return this.getModel(InteractionsPage.class, params, "/interactions");
 
   }
 
@@ -278,6 +291,65 @@ public class WeNetInteractionProtocolEngineClient extends ComponentClient implem
     return params;
   }
 
+  /**
+   * Create the query parameters of a page.
+   *
+   * @param appId            identifier of the application where the interaction
+   *                         is done.
+   * @param communityId      identifier of the community where the interaction is
+   *                         done.
+   * @param taskTypeId       identifier of the task type where the interaction is
+   *                         done.
+   * @param taskId           identifier of the task where the interaction is done.
+   * @param senderId         identifier of the user that has started the
+   *                         interaction.
+   * @param receiverId       identifier of the user that has end the interaction.
+   * @param hasTransaction   this is {@code true} if the interaction requires a
+   *                         transaction, {@code false} if no transaction has to
+   *                         be defined or {@code null} if does not matter.
+   * @param transactionLabel the label of the transaction that has started the
+   *                         interaction.
+   * @param transactionFrom  the minimum time stamp, inclusive, where the
+   *                         interaction has to be started, or {@code null} to
+   *                         start at midnight, January 1, 1970 UTC.
+   * @param transactionTo    the maximum time stamp, inclusive, where the
+   *                         interaction has to be started or {@code null} to be
+   *                         the current time.
+   * @param hasMessage       this is {@code true} if the interaction requires a
+   *                         message, {@code false} if no message has to be
+   *                         defined or {@code null} if does not matter.
+   * @param messageLabel     the label of the message that has end the
+   *                         interaction.
+   * @param messageFrom      the minimum time stamp, inclusive, where the
+   *                         interaction has end, or {@code null} to start at
+   *                         midnight, January 1, 1970 UTC.
+   * @param messageTo        the maximum time stamp, inclusive, where the
+   *                         interaction has end or {@code null} to be the current
+   *                         time.
+   * @param order            to return the found interactions.
+   * @param offset           index of the first interaction to return.
+   * @param limit            number maximum of interactions to return.
+   *
+   * @return the query parameters.
+   */
+  private Map<String, String> createQueryParamsFor(final String appId, final String communityId,
+      final String taskTypeId, final String taskId, final String senderId, final String receiverId,
+      final Boolean hasTransaction, final String transactionLabel, final Long transactionFrom, final Long transactionTo,
+      final Boolean hasMessage, final String messageLabel, final Long messageFrom, final Long messageTo,
+      final String order, final int offset, final int limit) {
+
+    final var params = this.createQueryParamsFor(appId, communityId, taskTypeId, taskId, senderId, receiverId,
+        hasTransaction, transactionLabel, transactionFrom, transactionTo, hasMessage, messageLabel, messageFrom,
+        messageTo);
+    if (order != null) {
+
+      params.put("order", order);
+    }
+    params.put("offset", String.valueOf(offset));
+    params.put("limit", String.valueOf(limit));
+    return params;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -22,6 +22,7 @@ package eu.internetofus.common.components.personal_context_builder;
 
 import eu.internetofus.common.components.WeNetComponent;
 import eu.internetofus.common.model.Model;
+import eu.internetofus.common.vertx.TraceContext;
 import io.vertx.codegen.annotations.GenIgnore;
 import io.vertx.codegen.annotations.ProxyGen;
 import io.vertx.core.AsyncResult;
@@ -32,7 +33,6 @@ import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
-import io.vertx.serviceproxy.ServiceBinder;
 import java.util.List;
 import javax.validation.constraints.NotNull;
 
@@ -70,8 +70,8 @@ public interface WeNetPersonalContextBuilder extends WeNetComponent {
    */
   static void register(final Vertx vertx, final WebClient client, final JsonObject conf) {
 
-    new ServiceBinder(vertx).setAddress(WeNetPersonalContextBuilder.ADDRESS).register(WeNetPersonalContextBuilder.class,
-        new WeNetPersonalContextBuilderClient(client, conf));
+    TraceContext.binder(vertx).setAddress(WeNetPersonalContextBuilder.ADDRESS)
+        .register(WeNetPersonalContextBuilder.class, new WeNetPersonalContextBuilderClient(client, conf));
 
   }
 
@@ -57,7 +57,7 @@ public class WeNetPersonalContextBuilderClient extends ComponentClient implement
    */
   public WeNetPersonalContextBuilderClient(final WebClient client, final JsonObject conf) {
 
-    super(client, conf.getString(PERSONAL_CONTEXT_BUILDER_CONF_KEY, DEFAULT_PERSONAL_CONTEXT_BUILDER_API_URL));
+    super(client, conf, PERSONAL_CONTEXT_BUILDER_CONF_KEY, DEFAULT_PERSONAL_CONTEXT_BUILDER_API_URL);
 
   }
 
@@ -54,7 +54,7 @@ public class WeNetProfileDiversityManagerClient extends ComponentClient implemen
    */
   public WeNetProfileDiversityManagerClient(final WebClient client, final JsonObject conf) {
 
-    super(client, conf.getString(PROFILE_DIVERSITY_MANAGER_CONF_KEY, DEFAULT_PROFILE_DIVERSITY_MANAGER_API_URL));
+    super(client, conf, PROFILE_DIVERSITY_MANAGER_CONF_KEY, DEFAULT_PROFILE_DIVERSITY_MANAGER_API_URL);
 
   }
 
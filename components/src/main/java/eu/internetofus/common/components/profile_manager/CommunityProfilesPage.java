@@ -42,10 +42,11 @@ public class CommunityProfilesPage extends ReflectionModel implements Model {
   public int offset;
 
   /**
-   * The number total of communities that satisfies the search.
+   * The number total of communities that satisfies the search, or {@code null} if
+   * the total has not been requested.
    */
-  @Schema(description = "The number total of communities that satisfies the search.", example = "100")
-  public long total;
+  @Schema(description = "The number total of communities that satisfies the search. It is not defined if the total has not been requested.", example = "100", nullable = true)
+  public Long total;
 
   /**
    * The found communities.
@@ -53,4 +54,18 @@ public class CommunityProfilesPage extends ReflectionModel implements Model {
   @ArraySchema(schema = @Schema(ref = "https://raw.githubusercontent.com/InternetOfUs/components-documentation/MODELS_2.4.0/sources/wenet-models-openapi.yaml#/components/schemas/CommunityProfile"), arraySchema = @Schema(description = "The set of communities found"))
   public List<CommunityProfile> communities;
 
+  /**
+   * The token to obtain the next page of communities, or {@code null} if there
+   * are no more communities.
+   */
+  @Schema(description = "The token to obtain the next page of communities. It is not defined if there are no more communities.", nullable = true)
+  public String next;
+
+  /**
+   * This is {@code true} if the total is estimated instead of counted, or
+   * {@code null} if the total is exact.
+   */
+  @Schema(description = "This is true if the total is estimated instead of counted. It is not defined if the total is exact.", nullable = true)
+  public Boolean estimatedTotal;
+
 }
@@ -41,10 +41,11 @@ public class HistoricWeNetUserProfilesPage extends ReflectionModel implements Mo
   public int offset;
 
   /**
-   * The number total of profiles that satisfies the search.
+   * The number total of profiles that satisfies the search, or {@code null} if
+   * the total has not been requested.
    */
-  @Schema(description = "The number total of profiles that satisfies the search.", example = "100")
-  public long total;
+  @Schema(description = "The number total of profiles that satisfies the search. It is not defined if the total has not been requested.", example = "100", nullable = true)
+  public Long total;
 
   /**
    * The found profiles.
@@ -52,4 +53,18 @@ public class HistoricWeNetUserProfilesPage extends ReflectionModel implements Mo
   @ArraySchema(schema = @Schema(implementation = HistoricWeNetUserProfile.class), arraySchema = @Schema(description = "The set of profiles found"))
   public List<HistoricWeNetUserProfile> profiles;
 
+  /**
+   * The token to obtain the next page of profiles, or {@code null} if there are
+   * no more profiles.
+   */
+  @Schema(description = "The token to obtain the next page of profiles. It is not defined if there are no more profiles.", nullable = true)
+  public String next;
+
+  /**
+   * This is {@code true} if the total is estimated instead of counted, or
+   * {@code null} if the total is exact.
+   */
+  @Schema(description = "This is true if the total is estimated instead of counted. It is not defined if the total is exact.", nullable = true)
+  public Boolean estimatedTotal;
+
 }
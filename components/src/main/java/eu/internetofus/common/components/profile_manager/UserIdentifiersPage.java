@@ -42,10 +42,11 @@ public class UserIdentifiersPage extends ReflectionModel implements Model {
   public int offset;
 
   /**
-   * The number total of profiles that satisfies the search.
+   * The number total of profiles that satisfies the search, or {@code null} if
+   * the total has not been requested.
    */
-  @Schema(description = "The number total of user identifiers that satisfies the search.", example = "100")
-  public long total;
+  @Schema(description = "The number total of user identifiers that satisfies the search. It is not defined if the total has not been requested.", example = "100", nullable = true)
+  public Long total;
 
   /**
    * The found profiles.
@@ -53,4 +54,18 @@ public class UserIdentifiersPage extends ReflectionModel implements Model {
   @ArraySchema(schema = @Schema(implementation = String.class), arraySchema = @Schema(description = "The found user identifiers"))
   public List<String> userIds;
 
+  /**
+   * The token to obtain the next page of user identifiers, or {@code null} if
+   * there are no more user identifiers.
+   */
+  @Schema(description = "The token to obtain the next page of user identifiers. It is not defined if there are no more user identifiers.", nullable = true)
+  public String next;
+
+  /**
+   * This is {@code true} if the total is estimated instead of counted, or
+   * {@code null} if the total is exact.
+   */
+  @Schema(description = "This is true if the total is estimated instead of counted. It is not defined if the total is exact.", nullable = true)
+  public Boolean estimatedTotal;
+
 }
@@ -25,6 +25,7 @@ import eu.internetofus.common.components.models.CommunityProfile;
 import eu.internetofus.common.components.models.SocialNetworkRelationship;
 import eu.internetofus.common.components.models.WeNetUserProfile;
 import eu.internetofus.common.model.Model;
+import eu.internetofus.common.vertx.TraceContext;
 import io.vertx.codegen.annotations.GenIgnore;
 import io.vertx.codegen.annotations.ProxyGen;
 import io.vertx.core.AsyncResult;
@@ -35,7 +36,7 @@ import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
-import io.vertx.serviceproxy.ServiceBinder;
+import java.util.ArrayList;
 import java.util.List;
 import javax.validation.constraints.NotNull;
 
@@ -73,8 +74,9 @@ public interface WeNetProfileManager extends WeNetComponent {
    */
   static void register(final Vertx vertx, final WebClient client, final JsonObject conf) {
 
-    new ServiceBinder(vertx).setAddress(WeNetProfileManager.ADDRESS).register(WeNetProfileManager.class,
-        new WeNetProfileManagerClient(client, conf));
+    final var manager = new WeNetProfileManagerClient(client, conf);
+    manager.invalidateOnChanges(vertx);
+    TraceContext.binder(vertx).setAddress(WeNetProfileManager.ADDRESS).register(WeNetProfileManager.class, manager);
 
   }
 
@@ -478,6 +480,61 @@ public interface WeNetProfileManager extends WeNetComponent {
    */
   void isProfileDefined(final String id, @NotNull Handler<AsyncResult<Boolean>> handler);
 
+  /**
+   * Check which profiles of a batch are defined.
+   *
+   * @param ids     identifiers of the profiles to check.
+   * @param handler to manage the identifiers of the profiles that are defined.
+   */
+  void areProfilesDefined(@NotNull JsonArray ids, @NotNull Handler<AsyncResult<JsonArray>> handler);
+
+  /**
+   * Check which profiles of a batch are defined. The batch is sent in a single
+   * message, and the client checks the profiles that are not cached with a
+   * limited number of concurrent requests, so it is preferred over checking the
+   * profiles one by one.
+   *
+   * @param ids identifiers of the profiles to check.
+   *
+   * @return the future identifiers of the profiles that are defined.
+   */
+  @GenIgnore
+  default Future<List<String>> areProfilesDefined(@NotNull final List<String> ids) {
+
+    final Promise<JsonArray> promise = Promise.promise();
+    this.areProfilesDefined(new JsonArray(new ArrayList<>(ids)), promise);
+    return Model.fromFutureJsonArray(promise.future(), String.class);
+
+  }
+
+  /**
+   * Return the profiles of a batch.
+   *
+   * @param ids     identifiers of the profiles to get.
+   * @param handler to the profiles that are defined.
+   */
+  void retrieveProfiles(@NotNull JsonArray ids, @NotNull Handler<AsyncResult<JsonArray>> handler);
+
+  /**
+   * Return the profiles of a batch. The batch is sent in a single message, and
+   * the client gets the profiles that are not cached with a limited number of
+   * concurrent requests, so it is preferred over getting the profiles one by
+   * one.
+   *
+   * @param ids identifiers of the profiles to get.
+   *
+   * @return the future profiles that are defined, in the order of the
+   *         identifiers.
+   */
+  @GenIgnore
+  default Future<List<WeNetUserProfile>> retrieveProfiles(@NotNull final List<String> ids) {
+
+    final Promise<JsonArray> promise = Promise.promise();
+    this.retrieveProfiles(new JsonArray(new ArrayList<>(ids)), promise);
+    return Model.fromFutureJsonArray(promise.future(), WeNetUserProfile.class);
+
+  }
+
   /**
    * Check if a community is defined.
    *
@@ -21,7 +21,9 @@
 package eu.internetofus.common.components.profile_manager;
 
 import eu.internetofus.common.vertx.ComponentClientWithCache;
+import eu.internetofus.common.vertx.ComponentPathTemplate;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -51,6 +53,22 @@ public class WeNetProfileManagerClient extends ComponentClientWithCache implemen
    */
   public static final String PROFILE_MANAGER_CONF_KEY = "profileManager";
 
+  /**
+   * The path to a profile.
+   */
+  protected static final ComponentPathTemplate PROFILE_PATH = ComponentPathTemplate.of("/profiles/{profileId}");
+
+  /**
+   * The path to a community.
+   */
+  protected static final ComponentPathTemplate COMMUNITY_PATH = ComponentPathTemplate.of("/communities/{communityId}");
+
+  /**
+   * The path to the historic of an user profile.
+   */
+  protected static final ComponentPathTemplate PROFILE_HISTORIC_PATH = ComponentPathTemplate
+      .of("/users/{userId}/historic");
+
   /**
    * Create a new service to interact with the WeNet profile manager.
    *
@@ -79,7 +97,7 @@ public class WeNetProfileManagerClient extends ComponentClientWithCache implemen
   @Override
   public void retrieveProfile(final String id, final Handler<AsyncResult<JsonObject>> handler) {
 
-    this.getJsonObject("/profiles", id).onComplete(handler);
+    this.getJsonObjectWithCache(PROFILE_PATH, id).onComplete(handler);
 
   }
 
@@ -89,7 +107,7 @@ public class WeNetProfileManagerClient extends ComponentClientWithCache implemen
   @Override
   public void deleteProfile(final String id, final Handler<AsyncResult<Void>> handler) {
 
-    this.delete("/profiles", id).onComplete(handler);
+    this.delete(PROFILE_PATH, id).onComplete(handler);
 
   }
 
@@ -109,7 +127,7 @@ public class WeNetProfileManagerClient extends ComponentClientWithCache implemen
   @Override
   public void retrieveCommunity(final String id, final Handler<AsyncResult<JsonObject>> handler) {
 
-    this.getJsonObject("/communities", id).onComplete(handler);
+    this.getJsonObjectWithCache(COMMUNITY_PATH, id).onComplete(handler);
 
   }
 
@@ -119,7 +137,7 @@ public class WeNetProfileManagerClient extends ComponentClientWithCache implemen
   @Override
   public void deleteCommunity(final String id, final Handler<AsyncResult<Void>> handler) {
 
-    this.delete("/communities/", id).onComplete(handler);
+    this.delete(COMMUNITY_PATH, id).onComplete(handler);
 
   }
 
@@ -169,7 +187,7 @@ public class WeNetProfileManagerClient extends ComponentClientWithCache implemen
   public void updateCommunity(@NotNull final String id, @NotNull final JsonObject community,
       @NotNull final Handler<AsyncResult<JsonObject>> handler) {
 
-    this.put(community, "/communities", id).onComplete(handler);
+    this.put(community, COMMUNITY_PATH, id).onComplete(handler);
 
   }
 
@@ -184,11 +202,11 @@ public class WeNetProfileManagerClient extends ComponentClientWithCache implemen
 
       final Map<String, String> queryParams = new HashMap<>();
       queryParams.put("storeProfileChangesInHistory", String.valueOf(storeProfileChangesInHistory));
-      this.put(profile, queryParams, "/profiles", id).onComplete(handler);
+      this.put(profile, queryParams, PROFILE_PATH, id).onComplete(handler);
 
     } else {
 
-      this.put(profile, "/profiles", id).onComplete(handler);
+      this.put(profile, PROFILE_PATH, id).onComplete(handler);
     }
 
   }
@@ -232,7 +250,25 @@ public class WeNetProfileManagerClient extends ComponentClientWithCache implemen
   @Override
   public void isProfileDefined(final String id, @NotNull final Handler<AsyncResult<Boolean>> handler) {
 
-    this.headWithCache("/profiles", id).onComplete(handler);
+    this.headWithCache(PROFILE_PATH, id).onComplete(handler);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void areProfilesDefined(@NotNull final JsonArray ids, @NotNull final Handler<AsyncResult<JsonArray>> handler) {
+
+    this.headBatchWithCache(PROFILE_PATH, ids).onComplete(handler);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void retrieveProfiles(@NotNull final JsonArray ids, @NotNull final Handler<AsyncResult<JsonArray>> handler) {
+
+    this.getJsonObjectBatchWithCache(PROFILE_PATH, ids).onComplete(handler);
   }
 
   /**
@@ -241,7 +277,7 @@ public class WeNetProfileManagerClient extends ComponentClientWithCache implemen
   @Override
   public void isCommunityDefined(final String id, @NotNull final Handler<AsyncResult<Boolean>> handler) {
 
-    this.headWithCache("/communities", id).onComplete(handler);
+    this.headWithCache(COMMUNITY_PATH, id).onComplete(handler);
   }
 
   /**
@@ -252,6 +288,52 @@ public class WeNetProfileManagerClient extends ComponentClientWithCache implemen
       final String type, final Double weightFrom, final Double weightTo, final String order, final int offset,
       final int limit, final Handler<AsyncResult<JsonObject>> handler) {
 
+    final var params = this.createSocialNetworkRelationshipsPageParams(appId, sourceId, targetId, type, weightFrom,
+        weightTo, order, offset, limit);
+    this.getJsonObject(params, "/relationships").onComplete(handler);
+
+  }
+
+  /**
+   * Obtain the page decoding the response directly into the model.
+   *
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<SocialNetworkRelationshipsPage> retrieveSocialNetworkRelationshipsPage(final String appId,
+      final String sourceId, final String targetId, final String type, final Double weightFrom, final Double weightTo,
+      final String order, final int offset, final int limit) {
+
+    final var params = this.createSocialNetworkRelationshipsPageParams(appId, sourceId, targetId, type, weightFrom,
+        weightTo, order, offset, limit);
+    return this.getModel(SocialNetworkRelationshipsPage.class, params, "/relationships");
+
+  }
+
+  /**
+   * Create the query parameters to obtain a page of relationships.
+   *
+   * @param appId      application identifier to match in the relationships to
+   *                   return.
+   * @param sourceId   user identifier to match the source of the relationships to
+   *                   return.
+   * @param targetId   user identifier to match the target of the relationships to
+   *                   return.
+   * @param type       to match in the relationships to return.
+   * @param weightFrom the minimum, inclusive, weight of the relationships to
+   *                   return.
+   * @param weightTo   the maximum, inclusive, weight of the relationships to
+   *                   return.
+   * @param order      in with the relationships has to be sort.
+   * @param offset     index of the first relationship to return.
+   * @param limit      number maximum of relationships to return.
+   *
+   * @return the query parameters.
+   */
+  private Map<String, String> createSocialNetworkRelationshipsPageParams(final String appId, final String sourceId,
+      final String targetId, final String type, final Double weightFrom, final Double weightTo, final String order,
+      final int offset, final int limit) {
+
     final var params = new LinkedHashMap<String, String>();
     if (appId != null) {
 
@@ -283,7 +365,7 @@ public class WeNetProfileManagerClient extends ComponentClientWithCache implemen
     }
     params.put("offset", String.valueOf(offset));
     params.put("limit", String.valueOf(limit));
-    this.getJsonObject(params, "/relationships").onComplete(handler);
+    return params;
 
   }
 
@@ -360,6 +442,41 @@ public class WeNetProfileManagerClient extends ComponentClientWithCache implemen
   public void getProfileHistoricPage(final String userId, final Long from, final Long to, final String order,
       final int offset, final int limit, @NotNull final Handler<AsyncResult<JsonObject>> handler) {
 
+    final var params = this.createProfileHistoricPageParams(from, to, order, offset, limit);
+    this.getJsonObject(params, PROFILE_HISTORIC_PATH, userId).onComplete(handler);
+
+  }
+
+  /**
+   * Obtain the page decoding the response directly into the model.
+   *
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<HistoricWeNetUserProfilesPage> getProfileHistoricPage(final String userId, final Long from,
+      final Long to, final String order, final int offset, final int limit) {
+
+    final var params = this.createProfileHistoricPageParams(from, to, order, offset, limit);
+    return this.getModel(HistoricWeNetUserProfilesPage.class, params, PROFILE_HISTORIC_PATH, userId);
+
+  }
+
+  /**
+   * Create the query parameters to obtain a page of the historic profiles.
+   *
+   * @param from   the minimum time stamp that define the range the profile is
+   *               active.
+   * @param to     the maximum time stamp that define the range the profile is
+   *               active.
+   * @param order  of the profiles to return.
+   * @param offset index of the first profile to return.
+   * @param limit  number maximum of profiles to return.
+   *
+   * @return the query parameters.
+   */
+  private Map<String, String> createProfileHistoricPageParams(final Long from, final Long to, final String order,
+      final int offset, final int limit) {
+
     final var params = new LinkedHashMap<String, String>();
     if (from != null) {
 
@@ -375,7 +492,7 @@ public class WeNetProfileManagerClient extends ComponentClientWithCache implemen
     }
     params.put("offset", String.valueOf(offset));
     params.put("limit", String.valueOf(limit));
-    this.getJsonObject(params, "/users", userId, "/historic").onComplete(handler);
+    return params;
 
   }
 
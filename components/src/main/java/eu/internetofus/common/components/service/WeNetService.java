@@ -22,6 +22,7 @@ package eu.internetofus.common.components.service;
 
 import eu.internetofus.common.components.WeNetComponent;
 import eu.internetofus.common.model.Model;
+import eu.internetofus.common.vertx.TraceContext;
 import io.vertx.codegen.annotations.GenIgnore;
 import io.vertx.codegen.annotations.ProxyGen;
 import io.vertx.core.AsyncResult;
@@ -32,7 +33,6 @@ import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
-import io.vertx.serviceproxy.ServiceBinder;
 import javax.validation.constraints.NotNull;
 
 /**
@@ -69,7 +69,7 @@ public interface WeNetService extends WeNetComponent {
    */
   static void register(final Vertx vertx, final WebClient client, final JsonObject conf) {
 
-    new ServiceBinder(vertx).setAddress(WeNetService.ADDRESS).register(WeNetService.class,
+    TraceContext.binder(vertx).setAddress(WeNetService.ADDRESS).register(WeNetService.class,
         new WeNetServiceClient(client, conf));
 
   }
@@ -21,6 +21,7 @@
 package eu.internetofus.common.components.service;
 
 import eu.internetofus.common.vertx.ComponentClientWithCache;
+import eu.internetofus.common.vertx.ComponentPathTemplate;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -49,6 +50,16 @@ public class WeNetServiceClient extends ComponentClientWithCache implements WeNe
    */
   public static final String SERVICE_CONF_KEY = "service";
 
+  /**
+   * The default seconds that a retrieved application is cached.
+   */
+  public static final long DEFAULT_APPS_CACHE_TIMEOUT = 300;
+
+  /**
+   * The path to an application.
+   */
+  protected static final ComponentPathTemplate APP_PATH = ComponentPathTemplate.of("/app/{appId}");
+
   /**
    * Create a new service to interact with the WeNet service.
    *
@@ -58,6 +69,7 @@ public class WeNetServiceClient extends ComponentClientWithCache implements WeNe
   public WeNetServiceClient(final WebClient client, final JsonObject conf) {
 
     super(client, conf, SERVICE_CONF_KEY, DEFAULT_SERVICE_API_URL);
+    this.defaultResponsePolicy("/app", DEFAULT_APPS_CACHE_TIMEOUT);
 
   }
 
@@ -67,7 +79,7 @@ public class WeNetServiceClient extends ComponentClientWithCache implements WeNe
   @Override
   public void retrieveApp(final String id, final Handler<AsyncResult<JsonObject>> handler) {
 
-    this.getJsonObject("/app", id).onComplete(handler);
+    this.getJsonObjectWithCache(APP_PATH, id).onComplete(handler);
 
   }
 
@@ -82,32 +94,16 @@ public class WeNetServiceClient extends ComponentClientWithCache implements WeNe
   }
 
   /**
+   * Check if the application is defined retrieving it, so the existence is
+   * cached with the retrieved application.
+   *
    * {@inheritDoc}
    */
   @Override
   public void isAppDefined(final String id, @NotNull final Handler<AsyncResult<Boolean>> handler) {
 
-    final var key = "isAppDefined:" + id;
-    final var value = this.cache.getIfPresent(key);
-    if (value != null) {
-
-      handler.handle(Future.succeededFuture(true));
-
-    } else {
-
-      this.retrieveApp(id, retrieve -> {
-
-        final var found = retrieve.result() != null;
-        if (found) {
-
-          this.cache.put(key, "");
-        }
-
-        handler.handle(Future.succeededFuture(found));
-
-      });
+    this.retrieveApp(id, retrieve -> handler.handle(Future.succeededFuture(retrieve.result() != null)));
 
-    }
   }
 
 }
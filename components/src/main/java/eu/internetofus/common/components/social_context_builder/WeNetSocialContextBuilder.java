@@ -23,6 +23,7 @@ package eu.internetofus.common.components.social_context_builder;
 import eu.internetofus.common.components.WeNetComponent;
 import eu.internetofus.common.components.models.WeNetUserProfile;
 import eu.internetofus.common.model.Model;
+import eu.internetofus.common.vertx.TraceContext;
 import io.vertx.codegen.annotations.GenIgnore;
 import io.vertx.codegen.annotations.ProxyGen;
 import io.vertx.core.AsyncResult;
@@ -33,7 +34,6 @@ import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
-import io.vertx.serviceproxy.ServiceBinder;
 import java.util.List;
 import javax.validation.constraints.NotNull;
 
@@ -80,7 +80,7 @@ public interface WeNetSocialContextBuilder extends WeNetComponent {
    */
   static void register(final Vertx vertx, final WebClient client, final JsonObject conf) {
 
-    new ServiceBinder(vertx).setAddress(WeNetSocialContextBuilder.ADDRESS).register(WeNetSocialContextBuilder.class,
+    TraceContext.binder(vertx).setAddress(WeNetSocialContextBuilder.ADDRESS).register(WeNetSocialContextBuilder.class,
         new WeNetSocialContextBuilderClient(client, conf));
 
   }
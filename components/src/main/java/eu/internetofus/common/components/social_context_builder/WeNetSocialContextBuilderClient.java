@@ -57,7 +57,7 @@ public class WeNetSocialContextBuilderClient extends ComponentClient implements
    */
   public WeNetSocialContextBuilderClient(final WebClient client, final JsonObject conf) {
 
-    super(client, conf.getString(SOCIAL_CONTEXT_BUILDER_CONF_KEY, DEFAULT_SOCIAL_CONTEXT_BUILDER_API_URL));
+    super(client, conf, SOCIAL_CONTEXT_BUILDER_CONF_KEY, DEFAULT_SOCIAL_CONTEXT_BUILDER_API_URL);
 
   }
 
@@ -109,11 +109,11 @@ public class WeNetSocialContextBuilderClient extends ComponentClient implements
 
     final var url = this.createAbsoluteUrlWith("/social/relations/initialize/", userId);
     final Promise<Void> promise = Promise.promise();
-    final var actionId = this.createActionId(HttpMethod.POST, url);
+    final var actionId = this.createTracedActionId(HttpMethod.POST, url, null);
     Logger.trace("{} with STARTED", actionId);
     try {
 
-      this.client.requestAbs(HttpMethod.POST, url).send()
+      this.createRequestFor(HttpMethod.POST, url, null).send()
           .onSuccess(this.createHandlerWithAnyBodyAndSuccessResponse(promise, actionId))
           .onFailure(this.createRequestFailureHandler(promise, actionId));
 
@@ -43,10 +43,11 @@ public class TasksPage extends ReflectionModel implements Model {
   public int offset;
 
   /**
-   * The number total of task that satisfies the search.
+   * The number total of task that satisfies the search, or {@code null} if
+   * the total has not been requested.
    */
-  @Schema(description = "The number total of tasks that satisfies the search.", example = "100")
-  public long total;
+  @Schema(description = "The number total of tasks that satisfies the search. It is not defined if the total has not been requested.", example = "100", nullable = true)
+  public Long total;
 
   /**
    * The found profiles.
@@ -54,4 +55,18 @@ public class TasksPage extends ReflectionModel implements Model {
   @ArraySchema(schema = @Schema(ref = "https://raw.githubusercontent.com/InternetOfUs/components-documentation/MODELS_2.4.0/sources/wenet-models-openapi.yaml#/components/schemas/Task"), arraySchema = @Schema(description = "The set of tasks found"))
   public List<Task> tasks;
 
+  /**
+   * The token to obtain the next page of tasks, or {@code null} if there are no
+   * more tasks.
+   */
+  @Schema(description = "The token to obtain the next page of tasks. It is not defined if there are no more tasks.", nullable = true)
+  public String next;
+
+  /**
+   * This is {@code true} if the total is estimated instead of counted, or
+   * {@code null} if the total is exact.
+   */
+  @Schema(description = "This is true if the total is estimated instead of counted. It is not defined if the total is exact.", nullable = true)
+  public Boolean estimatedTotal;
+
 }
@@ -26,6 +26,7 @@ import eu.internetofus.common.components.models.Task;
 import eu.internetofus.common.components.models.TaskTransaction;
 import eu.internetofus.common.components.models.TaskType;
 import eu.internetofus.common.model.Model;
+import eu.internetofus.common.vertx.TraceContext;
 import io.vertx.codegen.annotations.GenIgnore;
 import io.vertx.codegen.annotations.ProxyGen;
 import io.vertx.core.AsyncResult;
@@ -33,9 +34,11 @@ import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
-import io.vertx.serviceproxy.ServiceBinder;
+import java.util.ArrayList;
+import java.util.List;
 import javax.validation.constraints.NotNull;
 
 /**
@@ -72,8 +75,9 @@ public interface WeNetTaskManager extends WeNetComponent {
    */
   static void register(final Vertx vertx, final WebClient client, final JsonObject conf) {
 
-    new ServiceBinder(vertx).setAddress(WeNetTaskManager.ADDRESS).register(WeNetTaskManager.class,
-        new WeNetTaskManagerClient(client, conf));
+    final var manager = new WeNetTaskManagerClient(client, conf);
+    manager.invalidateOnChanges(vertx);
+    TraceContext.binder(vertx).setAddress(WeNetTaskManager.ADDRESS).register(WeNetTaskManager.class, manager);
 
   }
 
@@ -573,6 +577,33 @@ public interface WeNetTaskManager extends WeNetComponent {
    */
   void isTaskTypeDefined(final String id, @NotNull Handler<AsyncResult<Boolean>> handler);
 
+  /**
+   * Check which task types of a batch are defined.
+   *
+   * @param ids     identifiers of the task types to check.
+   * @param handler to manage the identifiers of the task types that are defined.
+   */
+  void areTaskTypesDefined(@NotNull JsonArray ids, @NotNull Handler<AsyncResult<JsonArray>> handler);
+
+  /**
+   * Check which task types of a batch are defined. The batch is sent in a single
+   * message, and the client checks the task types that are not cached with a
+   * limited number of concurrent requests, so it is preferred over checking the
+   * task types one by one.
+   *
+   * @param ids identifiers of the task types to check.
+   *
+   * @return the future identifiers of the task types that are defined.
+   */
+  @GenIgnore
+  default Future<List<String>> areTaskTypesDefined(@NotNull final List<String> ids) {
+
+    final Promise<JsonArray> promise = Promise.promise();
+    this.areTaskTypesDefined(new JsonArray(new ArrayList<>(ids)), promise);
+    return Model.fromFutureJsonArray(promise.future(), String.class);
+
+  }
+
   /**
    * Called when a profile has been deleted.
    *
@@ -21,8 +21,10 @@
 package eu.internetofus.common.components.task_manager;
 
 import eu.internetofus.common.vertx.ComponentClientWithCache;
+import eu.internetofus.common.vertx.ComponentPathTemplate;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
 import java.util.LinkedHashMap;
@@ -49,6 +51,33 @@ public class WeNetTaskManagerClient extends ComponentClientWithCache implements
    */
   public static final String TASK_MANAGER_CONF_KEY = "taskManager";
 
+  /**
+   * The default seconds that a retrieved task type is cached.
+   */
+  public static final long DEFAULT_TASK_TYPES_CACHE_TIMEOUT = 300;
+
+  /**
+   * The path to a task.
+   */
+  protected static final ComponentPathTemplate TASK_PATH = ComponentPathTemplate.of("/tasks/{taskId}");
+
+  /**
+   * The path to a task type.
+   */
+  protected static final ComponentPathTemplate TASK_TYPE_PATH = ComponentPathTemplate.of("/taskTypes/{taskTypeId}");
+
+  /**
+   * The path to the transactions of a task.
+   */
+  protected static final ComponentPathTemplate TASK_TRANSACTIONS_PATH = ComponentPathTemplate
+      .of("/tasks/{taskId}/transactions");
+
+  /**
+   * The path to the messages of a task transaction.
+   */
+  protected static final ComponentPathTemplate TASK_TRANSACTION_MESSAGES_PATH = ComponentPathTemplate
+      .of("/tasks/{taskId}/transactions/{taskTransactionId}/messages");
+
   /**
    * Create a new service to interact with the WeNet task manager.
    *
@@ -58,6 +87,7 @@ public class WeNetTaskManagerClient extends ComponentClientWithCache implements
   public WeNetTaskManagerClient(final WebClient client, final JsonObject conf) {
 
     super(client, conf, TASK_MANAGER_CONF_KEY, DEFAULT_TASK_MANAGER_API_URL);
+    this.defaultResponsePolicy("/taskTypes", DEFAULT_TASK_TYPES_CACHE_TIMEOUT);
 
   }
 
@@ -77,7 +107,7 @@ public class WeNetTaskManagerClient extends ComponentClientWithCache implements
   @Override
   public void retrieveTask(final String id, final Handler<AsyncResult<JsonObject>> handler) {
 
-    this.getJsonObject("/tasks", id).onComplete(handler);
+    this.getJsonObject(TASK_PATH, id).onComplete(handler);
 
   }
 
@@ -87,7 +117,7 @@ public class WeNetTaskManagerClient extends ComponentClientWithCache implements
   @Override
   public void deleteTask(final String id, final Handler<AsyncResult<Void>> handler) {
 
-    this.delete("/tasks", id).onComplete(handler);
+    this.delete(TASK_PATH, id).onComplete(handler);
 
   }
 
@@ -107,7 +137,7 @@ public class WeNetTaskManagerClient extends ComponentClientWithCache implements
   @Override
   public void retrieveTaskType(final String id, final Handler<AsyncResult<JsonObject>> handler) {
 
-    this.getJsonObject("/taskTypes", id).onComplete(handler);
+    this.getJsonObjectWithCache(TASK_TYPE_PATH, id).onComplete(handler);
 
   }
 
@@ -117,7 +147,7 @@ public class WeNetTaskManagerClient extends ComponentClientWithCache implements
   @Override
   public void deleteTaskType(final String id, final Handler<AsyncResult<Void>> handler) {
 
-    this.delete("/taskTypes", id).onComplete(handler);
+    this.delete(TASK_TYPE_PATH, id).onComplete(handler);
 
   }
 
@@ -127,7 +157,7 @@ public class WeNetTaskManagerClient extends ComponentClientWithCache implements
   @Override
   public void updateTask(final String id, final JsonObject task, final Handler<AsyncResult<JsonObject>> handler) {
 
-    this.put(task, "/tasks", id).onComplete(handler);
+    this.put(task, TASK_PATH, id).onComplete(handler);
   }
 
   /**
@@ -136,7 +166,7 @@ public class WeNetTaskManagerClient extends ComponentClientWithCache implements
   @Override
   public void mergeTask(final String id, final JsonObject task, final Handler<AsyncResult<JsonObject>> handler) {
 
-    this.patch(task, "/tasks", id).onComplete(handler);
+    this.patch(task, TASK_PATH, id).onComplete(handler);
 
   }
 
@@ -157,7 +187,7 @@ public class WeNetTaskManagerClient extends ComponentClientWithCache implements
   public void addTransactionIntoTask(@NotNull final String taskId, @NotNull final JsonObject taskTransaction,
       @NotNull final Handler<AsyncResult<JsonObject>> handler) {
 
-    this.post(taskTransaction, "/tasks", taskId, "/transactions").onComplete(handler);
+    this.post(taskTransaction, TASK_TRANSACTIONS_PATH, taskId).onComplete(handler);
 
   }
 
@@ -168,7 +198,7 @@ public class WeNetTaskManagerClient extends ComponentClientWithCache implements
   public void addMessageIntoTransaction(@NotNull final String taskId, @NotNull final String taskTransactionId,
       @NotNull final JsonObject message, @NotNull final Handler<AsyncResult<JsonObject>> handler) {
 
-    this.post(message, "/tasks", taskId, "/transactions", taskTransactionId, "/messages").onComplete(handler);
+    this.post(message, TASK_TRANSACTION_MESSAGES_PATH, taskId, taskTransactionId).onComplete(handler);
 
   }
 
@@ -179,7 +209,7 @@ public class WeNetTaskManagerClient extends ComponentClientWithCache implements
   public void updateTaskType(final String id, final JsonObject taskType,
       final Handler<AsyncResult<JsonObject>> handler) {
 
-    this.put(taskType, "/taskTypes", id).onComplete(handler);
+    this.put(taskType, TASK_TYPE_PATH, id).onComplete(handler);
   }
 
   /**
@@ -189,7 +219,7 @@ public class WeNetTaskManagerClient extends ComponentClientWithCache implements
   public void mergeTaskType(final String id, final JsonObject taskType,
       final Handler<AsyncResult<JsonObject>> handler) {
 
-    this.patch(taskType, "/taskTypes", id).onComplete(handler);
+    this.patch(taskType, TASK_TYPE_PATH, id).onComplete(handler);
 
   }
 
@@ -297,7 +327,7 @@ public class WeNetTaskManagerClient extends ComponentClientWithCache implements
   @Override
   public void isTaskDefined(final String id, @NotNull final Handler<AsyncResult<Boolean>> handler) {
 
-    this.headWithCache("/tasks", id).onComplete(handler);
+    this.headWithCache(TASK_PATH, id).onComplete(handler);
   }
 
   /**
@@ -306,7 +336,17 @@ public class WeNetTaskManagerClient extends ComponentClientWithCache implements
   @Override
   public void isTaskTypeDefined(final String id, @NotNull final Handler<AsyncResult<Boolean>> handler) {
 
-    this.headWithCache("/taskTypes", id).onComplete(handler);
+    this.headWithCache(TASK_TYPE_PATH, id).onComplete(handler);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void areTaskTypesDefined(@NotNull final JsonArray ids,
+      @NotNull final Handler<AsyncResult<JsonArray>> handler) {
+
+    this.headBatchWithCache(TASK_TYPE_PATH, ids).onComplete(handler);
   }
 
   /**
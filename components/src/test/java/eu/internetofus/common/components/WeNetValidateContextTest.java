@@ -26,7 +26,9 @@ import eu.internetofus.common.components.models.SocialNetworkRelationshipType;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
 import io.vertx.junit5.VertxTestContext;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -157,6 +159,67 @@ public class WeNetValidateContextTest {
 
   }
 
+  /**
+   * Check that validate the defined identifiers with a single search.
+   *
+   * @param vertx       event bus to use.
+   * @param testContext context to test.
+   *
+   * @see WeNetValidateContext#validateDefinedIdsFieldInBatch
+   */
+  @Test
+  public void shouldValidateDefinedIdsFieldInBatch(final Vertx vertx, final VertxTestContext testContext) {
+
+    final var id1 = UUID.randomUUID().toString();
+    final var id2 = UUID.randomUUID().toString();
+    final var ids = new ArrayList<>(Arrays.asList(id1, null, id2));
+    final var searches = new ArrayList<List<String>>();
+    final var cache = new WeNetValidateContext("codePrefix", vertx);
+    testContext.assertComplete(cache.validateDefinedIdsFieldInBatch("name", ids, String.class, search -> {
+
+      searches.add(new ArrayList<>(search));
+      return Future.succeededFuture(search);
+
+    }, Future.succeededFuture())).onSuccess(any -> testContext
+        .assertComplete(cache.validateDefinedIdsFieldInBatch("name", ids, String.class, null, Future.succeededFuture()))
+        .onSuccess(any2 -> testContext.verify(() -> {
+
+          assertThat(ids).containsExactly(id1, id2);
+          assertThat(searches).containsExactly(Arrays.asList(id1, id2));
+          testContext.completeNow();
+        })));
+
+  }
+
+  /**
+   * Check that fail validate the defined identifiers with a single search.
+   *
+   * @param vertx       event bus to use.
+   * @param testContext context to test.
+   *
+   * @see WeNetValidateContext#validateDefinedIdsFieldInBatch
+   */
+  @Test
+  public void shouldFailValidateDefinedIdsFieldInBatch(final Vertx vertx, final VertxTestContext testContext) {
+
+    final var id1 = UUID.randomUUID().toString();
+    final var id2 = UUID.randomUUID().toString();
+    final var cache = new WeNetValidateContext("codePrefix", vertx);
+    testContext.assertFailure(cache.validateDefinedIdsFieldInBatch("name", new ArrayList<>(Arrays.asList(id1, id2)),
+        String.class, search -> Future.succeededFuture(Arrays.asList(id1)), Future.succeededFuture()))
+        .onFailure(error -> testContext.verify(() -> {
+
+          assertThat(error.getMessage()).contains(id2);
+          testContext.assertFailure(cache.validateDefinedIdsFieldInBatch("name",
+              new ArrayList<>(Arrays.asList(id1, id1)), String.class, null, Future.succeededFuture()))
+              .onFailure(any -> testContext.assertFailure(
+                  cache.validateDefinedIdsFieldInBatch("name", new ArrayList<>(Arrays.asList(id2)), String.class,
+                      search -> Future.failedFuture("Error not found"), Future.succeededFuture()))
+                  .onFailure(any2 -> testContext.completeNow()));
+        }));
+
+  }
+
   /**
    * Check that validate not defined by id field.
    *
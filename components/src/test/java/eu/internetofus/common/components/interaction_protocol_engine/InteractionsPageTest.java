@@ -40,7 +40,7 @@ public class InteractionsPageTest extends ModelTestCase<InteractionsPage> {
 
     final var model = new InteractionsPage();
     model.offset = index;
-    model.total = 100 + index;
+    model.total = 100L + index;
     model.interactions = new ArrayList<>();
     model.interactions.add(new InteractionTest().createModelExample(index - 1));
     model.interactions.add(new InteractionTest().createModelExample(index));
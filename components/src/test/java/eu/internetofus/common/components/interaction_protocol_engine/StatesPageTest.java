@@ -40,7 +40,7 @@ public class StatesPageTest extends ModelTestCase<StatesPage> {
 
     final var model = new StatesPage();
     model.offset = index;
-    model.total = 100 + index;
+    model.total = 100L + index;
     model.states = new ArrayList<>();
     model.states.add(new StateTest().createModelExample(index));
     return model;
@@ -41,7 +41,7 @@ public class CommunityProfilesPageTest extends ModelTestCase<CommunityProfilesPa
 
     final var model = new CommunityProfilesPage();
     model.offset = index;
-    model.total = 3 + 10 * index;
+    model.total = 3L + 10 * index;
     model.communities = new ArrayList<>();
     for (var i = 0; i < 3; i++) {
 
@@ -40,7 +40,7 @@ public class HistoricWeNetUserProfilesPageTest extends ModelTestCase<HistoricWeN
 
     final var model = new HistoricWeNetUserProfilesPage();
     model.offset = index;
-    model.total = 100 + index;
+    model.total = 100L + index;
     model.profiles = new ArrayList<>();
     model.profiles.add(new HistoricWeNetUserProfileTest().createModelExample(index));
     return model;
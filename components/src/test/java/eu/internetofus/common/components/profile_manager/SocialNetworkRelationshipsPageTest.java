@@ -41,7 +41,7 @@ public class SocialNetworkRelationshipsPageTest extends ModelTestCase<SocialNetw
 
     final var model = new SocialNetworkRelationshipsPage();
     model.offset = index;
-    model.total = 3 + 10 * index;
+    model.total = 3L + 10 * index;
     model.relationships = new ArrayList<>();
     for (var i = 0; i < 3; i++) {
 
@@ -40,7 +40,7 @@ public class UserIdentifiersPageTest extends ModelTestCase<UserIdentifiersPage>
 
     final var model = new UserIdentifiersPage();
     model.offset = index;
-    model.total = 100 + index;
+    model.total = 100L + index;
     model.userIds = new ArrayList<>();
     model.userIds.add("id_" + (index - 1));
     model.userIds.add("id_" + index);
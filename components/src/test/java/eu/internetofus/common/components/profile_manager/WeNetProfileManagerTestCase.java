@@ -430,6 +430,57 @@ public abstract class WeNetProfileManagerTestCase extends WeNetComponentTestCase
         });
   }
 
+  /**
+   * Should check which profiles of a batch are defined.
+   *
+   * @param vertx       that contains the event bus to use.
+   * @param testContext context over the tests.
+   */
+  @Test
+  public void shouldCheckProfilesDefinedInBatch(final Vertx vertx, final VertxTestContext testContext) {
+
+    StoreServices.storeProfileExample(0, vertx, testContext).onSuccess(profile -> {
+
+      final var ids = List.of("undefined-profile-identifier", profile.id, profile.id);
+      testContext.assertComplete(this.createComponentProxy(vertx).areProfilesDefined(ids)).onSuccess(defined -> {
+
+        testContext.verify(() -> {
+
+          assertThat(defined).containsExactly(profile.id);
+        });
+        testContext.completeNow();
+
+      });
+    });
+
+  }
+
+  /**
+   * Should retrieve the profiles of a batch.
+   *
+   * @param vertx       that contains the event bus to use.
+   * @param testContext context over the tests.
+   */
+  @Test
+  public void shouldRetrieveProfilesInBatch(final Vertx vertx, final VertxTestContext testContext) {
+
+    StoreServices.storeProfileExample(0, vertx, testContext).onSuccess(profile -> {
+
+      final var ids = List.of(profile.id, "undefined-profile-identifier");
+      testContext.assertComplete(this.createComponentProxy(vertx).retrieveProfiles(ids)).onSuccess(profiles -> {
+
+        testContext.verify(() -> {
+
+          assertThat(profiles).hasSize(1);
+          assertThat(profiles.get(0).id).isEqualTo(profile.id);
+        });
+        testContext.completeNow();
+
+      });
+    });
+
+  }
+
   /**
    * Should defined community .
    *
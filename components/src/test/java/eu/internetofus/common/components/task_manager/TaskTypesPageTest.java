@@ -41,7 +41,7 @@ public class TaskTypesPageTest extends ModelTestCase<TaskTypesPage> {
 
     final var model = new TaskTypesPage();
     model.offset = index;
-    model.total = 100 + index;
+    model.total = 100L + index;
     model.taskTypes = new ArrayList<>();
     model.taskTypes.add(new TaskTypeTest().createModelExample(index));
     return model;
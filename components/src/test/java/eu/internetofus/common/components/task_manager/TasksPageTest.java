@@ -20,9 +20,15 @@
 
 package eu.internetofus.common.components.task_manager;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 import eu.internetofus.common.components.models.TaskTest;
+import eu.internetofus.common.model.Model;
 import eu.internetofus.common.model.ModelTestCase;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
 
 /**
  * Test the {@link TasksPage}.
@@ -41,10 +47,24 @@ public class TasksPageTest extends ModelTestCase<TasksPage> {
 
     final var model = new TasksPage();
     model.offset = index;
-    model.total = 100 + index;
+    model.total = 100L + index;
     model.tasks = new ArrayList<>();
     model.tasks.add(new TaskTest().createModelExample(index));
     return model;
   }
 
-}
\ No newline at end of file
+  /**
+   * Check that a page without total is decoded with an undefined total.
+   */
+  @Test
+  public void shouldDecodePageWithoutTotal() {
+
+    final var page = Model.fromJsonObject(
+        new JsonObject().put("offset", 0).put("tasks", new JsonArray()).put("next", "token"), TasksPage.class);
+    assertThat(page).isNotNull();
+    assertThat(page.total).isNull();
+    assertThat(page.next).isEqualTo("token");
+
+  }
+
+}
@@ -35,6 +35,7 @@ import eu.internetofus.common.components.models.TaskTypeTest;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.junit5.VertxTestContext;
+import java.util.List;
 import java.util.UUID;
 import org.junit.jupiter.api.Test;
 
@@ -640,4 +641,29 @@ public class WeNetTaskManagerTestCase extends WeNetComponentTestCase<WeNetTaskMa
         });
   }
 
+  /**
+   * Should check which task types of a batch are defined.
+   *
+   * @param vertx       that contains the event bus to use.
+   * @param testContext context over the tests.
+   */
+  @Test
+  public void shouldCheckTaskTypesDefinedInBatch(final Vertx vertx, final VertxTestContext testContext) {
+
+    StoreServices.storeTaskTypeExample(0, vertx, testContext).onSuccess(taskType -> {
+
+      final var ids = List.of("undefined-taskType-identifier", taskType.id);
+      testContext.assertComplete(this.createComponentProxy(vertx).areTaskTypesDefined(ids)).onSuccess(defined -> {
+
+        testContext.verify(() -> {
+
+          assertThat(defined).containsExactly(taskType.id);
+        });
+        testContext.completeNow();
+
+      });
+    });
+
+  }
+
 }
@@ -20,6 +20,9 @@
 package eu.internetofus.wenet_dummy.persistence;
 
 import eu.internetofus.common.model.Model;
+import eu.internetofus.common.vertx.MongoRepositoryStorage;
+import eu.internetofus.common.vertx.RepositoryStorage;
+import eu.internetofus.common.vertx.TraceContext;
 import eu.internetofus.wenet_dummy.service.Dummy;
 import io.vertx.codegen.annotations.GenIgnore;
 import io.vertx.codegen.annotations.ProxyGen;
@@ -30,7 +33,6 @@ import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.mongo.MongoClient;
-import io.vertx.serviceproxy.ServiceBinder;
 
 /**
  * The service to manage the {@link Dummy} on the database.
@@ -66,10 +68,27 @@ public interface DummiesRepository {
    *
    * @return the future that inform when the repository will be registered or not.
    */
+  @GenIgnore
   static Future<Void> register(final Vertx vertx, final MongoClient pool, final String version) {
 
-    final var repository = new DummiesRepositoryImpl(vertx, pool, version);
-    new ServiceBinder(vertx).setAddress(DummiesRepository.ADDRESS).register(DummiesRepository.class, repository);
+    return register(vertx, new MongoRepositoryStorage(pool), version);
+
+  }
+
+  /**
+   * Register this service.
+   *
+   * @param vertx   that contains the event bus to use.
+   * @param storage of the documents.
+   * @param version of the schemas.
+   *
+   * @return the future that inform when the repository will be registered or not.
+   */
+  @GenIgnore
+  static Future<Void> register(final Vertx vertx, final RepositoryStorage storage, final String version) {
+
+    final var repository = new DummiesRepositoryImpl(vertx, storage, version);
+    TraceContext.binder(vertx).setAddress(DummiesRepository.ADDRESS).register(DummiesRepository.class, repository);
     return repository.migrateDocumentsToCurrentVersions();
 
   }
@@ -20,6 +20,7 @@
 package eu.internetofus.wenet_dummy.persistence;
 
 import eu.internetofus.common.vertx.Repository;
+import eu.internetofus.common.vertx.RepositoryStorage;
 import eu.internetofus.wenet_dummy.service.Dummy;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
@@ -55,6 +56,19 @@ public class DummiesRepositoryImpl extends Repository implements DummiesReposito
 
   }
 
+  /**
+   * Create a new repository.
+   *
+   * @param vertx   event bus to use.
+   * @param storage of the documents.
+   * @param version of the schemas.
+   */
+  public DummiesRepositoryImpl(final Vertx vertx, final RepositoryStorage storage, final String version) {
+
+    super(vertx, storage, version);
+
+  }
+
   /**
    * Migrate the collections to the current version.
    *
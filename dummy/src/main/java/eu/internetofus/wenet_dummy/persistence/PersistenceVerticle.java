@@ -37,7 +37,7 @@ public class PersistenceVerticle extends AbstractPersistenceVerticle {
   @Override
   protected Future<Void> registerRepositoriesFor(final String schemaVersion) {
 
-    return DummiesRepository.register(this.vertx, this.pool, schemaVersion);
+    return DummiesRepository.register(this.vertx, this.storage, schemaVersion);
 
   }
 
@@ -21,6 +21,7 @@
 package eu.internetofus.wenet_dummy.service;
 
 import eu.internetofus.common.model.Model;
+import eu.internetofus.common.vertx.TraceContext;
 import eu.internetofus.wenet_dummy.api.dummies.Dummies;
 import io.vertx.codegen.annotations.GenIgnore;
 import io.vertx.codegen.annotations.ProxyGen;
@@ -31,7 +32,6 @@ import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
-import io.vertx.serviceproxy.ServiceBinder;
 import javax.validation.constraints.NotNull;
 
 /**
@@ -68,7 +68,7 @@ public interface WeNetDummy {
    */
   static void register(final Vertx vertx, final WebClient client, final JsonObject conf) {
 
-    new ServiceBinder(vertx).setAddress(WeNetDummy.ADDRESS).register(WeNetDummy.class,
+    TraceContext.binder(vertx).setAddress(WeNetDummy.ADDRESS).register(WeNetDummy.class,
         new WeNetDummiesClient(client, conf));
 
   }
@@ -20,6 +20,7 @@
 
 package eu.internetofus.common.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.media.Schema.AccessMode;
 
@@ -43,6 +44,15 @@ public class CreateUpdateTsDetails extends ReflectionModel implements Model {
   @Schema(description = "The time stamp representing the last update instant.", example = "1563898764", accessMode = AccessMode.READ_ONLY)
   public long _lastUpdateTs;
 
+  /**
+   * The number of times that the stored model has been updated. It is used to
+   * detect if the stored model has been modified after it was read, and it is
+   * not returned while it is {@code 0}.
+   */
+  @Schema(description = "The number of times that the model has been updated.", example = "3", accessMode = AccessMode.READ_ONLY)
+  @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+  public long _version;
+
   /**
    * Create a new model.
    */
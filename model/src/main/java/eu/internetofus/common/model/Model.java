@@ -84,7 +84,7 @@ public interface Model {
 
       try {
 
-        return Json.decodeValue(value.toBuffer(), type);
+        return ModelReaders.convertValue(value, type);
 
       } catch (final Throwable throwable) {
 
@@ -120,7 +120,7 @@ public interface Model {
 
         try {
 
-          final var value = Json.decodeValue(object.toBuffer(), type);
+          final var value = ModelReaders.convertValue(object, type);
           return Future.succeededFuture(value);
 
         } catch (final Throwable throwable) {
@@ -162,6 +162,10 @@ public interface Model {
 
               values.add((T) element);
 
+            } else if (element instanceof JsonObject) {
+
+              values.add(ModelReaders.convertValue((JsonObject) element, type));
+
             } else if (element instanceof ClusterSerializable) {
 
               final var buffer = Json.encodeToBuffer(element);
@@ -260,7 +264,7 @@ public interface Model {
 
     try {
 
-      return Json.decodeValue(buffer, type);
+      return ModelReaders.decodeValue(buffer, type);
 
     } catch (final Throwable throwable) {
 
@@ -0,0 +1,161 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.deser.DeserializationProblemHandler;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import io.netty.buffer.ByteBufInputStream;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.jackson.DatabindCodec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.validation.constraints.NotNull;
+
+/**
+ * The readers that decode the JSON of the models. The readers are created once
+ * for each type, and they decode the bytes of a {@link Buffer} directly into
+ * the model, without an intermediate {@link JsonObject}. The models that do not
+ * count their versions ignore the {@value #VERSION_FIELD} that the
+ * repositories store on all the documents.
+ *
+ * @see CreateUpdateTsDetails#_version
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public final class ModelReaders {
+
+  /**
+   * The name of the field with the version of a stored model.
+   */
+  public static final String VERSION_FIELD = "_version";
+
+  /**
+   * The handler that ignores the version of the models that do not define it.
+   */
+  private static final DeserializationProblemHandler IGNORE_VERSION = new DeserializationProblemHandler() {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean handleUnknownProperty(final DeserializationContext context, final JsonParser parser,
+        final JsonDeserializer<?> deserializer, final Object beanOrClass, final String propertyName)
+        throws IOException {
+
+      if (VERSION_FIELD.equals(propertyName)) {
+
+        parser.skipChildren();
+        return true;
+
+      } else {
+
+        return false;
+      }
+
+    }
+  };
+
+  /**
+   * The readers that have been created for each type.
+   */
+  private static final Map<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+  /**
+   * Utility class.
+   */
+  private ModelReaders() {
+
+  }
+
+  /**
+   * Return the reader of a type.
+   *
+   * @param type of the values to read.
+   *
+   * @return the reader for the type.
+   */
+  public static ObjectReader readerFor(@NotNull final Class<?> type) {
+
+    return READERS.computeIfAbsent(type, key -> DatabindCodec.mapper().readerFor(key).withHandler(IGNORE_VERSION));
+
+  }
+
+  /**
+   * Decode the value encoded on a buffer.
+   *
+   * @param buffer with the JSON encoding of the value.
+   * @param type   of the value to decode.
+   * @param <T>    type of the value.
+   *
+   * @return the decoded value, or {@code null} if the buffer is empty.
+   *
+   * @throws IOException if the buffer does not contain a value of the type.
+   */
+  public static <T> T decodeValue(final Buffer buffer, @NotNull final Class<T> type) throws IOException {
+
+    if (buffer == null || buffer.length() == 0) {
+
+      return null;
+    }
+
+    try (InputStream input = new ByteBufInputStream(buffer.getByteBuf())) {
+
+      return readerFor(type).readValue(input);
+    }
+
+  }
+
+  /**
+   * Convert an object to a value without encoding it.
+   *
+   * @param object to convert.
+   * @param type   of the value to obtain.
+   * @param <T>    type of the value.
+   *
+   * @return the value of the object.
+   *
+   * @throws IllegalArgumentException if the object cannot be converted to the
+   *                                  type.
+   */
+  public static <T> T convertValue(@NotNull final JsonObject object, @NotNull final Class<T> type) {
+
+    final var mapper = DatabindCodec.mapper();
+    try (var buffer = new TokenBuffer(mapper, false)) {
+
+      mapper.writeValue(buffer, object.getMap());
+      return readerFor(type).readValue(buffer.asParser());
+
+    } catch (final IOException cause) {
+
+      throw new IllegalArgumentException(cause.getMessage(), cause);
+    }
+
+  }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the {@link ModelReaders}.
+ *
+ * @see ModelReaders
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class ModelReadersTest {
+
+  /**
+   * Should reuse the reader of a type.
+   */
+  @Test
+  public void shouldReuseReader() {
+
+    assertThat(ModelReaders.readerFor(DummyModel.class)).isSameAs(ModelReaders.readerFor(DummyModel.class));
+
+  }
+
+  /**
+   * Should decode a model from a buffer.
+   *
+   * @throws IOException if cannot decode the model.
+   */
+  @Test
+  public void shouldDecodeValue() throws IOException {
+
+    assertThat(ModelReaders.decodeValue(new DummyModel(3).toBuffer(), DummyModel.class)).isEqualTo(new DummyModel(3));
+    assertThat(ModelReaders.decodeValue(null, DummyModel.class)).isNull();
+    assertThat(ModelReaders.decodeValue(Buffer.buffer(), DummyModel.class)).isNull();
+
+  }
+
+  /**
+   * Should not decode an invalid model.
+   */
+  @Test
+  public void shouldNotDecodeInvalidValue() {
+
+    final var buffer = new JsonObject().put("index", new JsonArray()).toBuffer();
+    assertThatThrownBy(() -> ModelReaders.decodeValue(buffer, DummyModel.class)).isInstanceOf(IOException.class);
+
+  }
+
+  /**
+   * Should ignore the version of the stored models that do not define it.
+   *
+   * @throws IOException if cannot decode the model.
+   */
+  @Test
+  public void shouldIgnoreVersionOfModelsWithoutIt() throws IOException {
+
+    final var object = new DummyModel(5).toJsonObject().put(ModelReaders.VERSION_FIELD, 3);
+    assertThat(ModelReaders.convertValue(object, DummyModel.class)).isEqualTo(new DummyModel(5));
+    assertThat(ModelReaders.decodeValue(object.toBuffer(), DummyModel.class)).isEqualTo(new DummyModel(5));
+    assertThatThrownBy(() -> ModelReaders.convertValue(object.put("undefined", 1), DummyModel.class))
+        .isInstanceOf(IllegalArgumentException.class);
+
+  }
+
+  /**
+   * Should convert an object to a model.
+   */
+  @Test
+  public void shouldConvertValue() {
+
+    assertThat(ModelReaders.convertValue(new DummyModel(4).toJsonObject(), DummyModel.class))
+        .isEqualTo(new DummyModel(4));
+
+  }
+
+}
@@ -34,6 +34,7 @@ import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.ext.web.handler.CorsHandler;
 import io.vertx.ext.web.openapi.RouterBuilder;
+import io.vertx.micrometer.PrometheusScrapingHandler;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.nio.file.FileSystems;
@@ -61,6 +62,15 @@ public abstract class AbstractAPIVerticle extends AbstractVerticle {
    */
   public static final String DEFAULT_OPENAPI_FILE_PATH = "var/openapi.yaml";
 
+  /**
+   * The configuration property that contains the path of the API where the
+   * metrics of Vert.x are exported on the Prometheus format. If it is not
+   * defined the metrics are not exported on the API, but they can be exported
+   * on a separated port with the embedded server of the Prometheus options of
+   * the {@code metricsOptions}.
+   */
+  public static final String METRICS_PATH_KEY = "metrics_path";
+
   /**
    * The server that manage the HTTP requests.
    */
@@ -97,6 +107,11 @@ public abstract class AbstractAPIVerticle extends AbstractVerticle {
           router.errorHandler(Status.INTERNAL_SERVER_ERROR.getStatusCode(), InternalServerErrorHandler.build());
 
           final var apiConf = this.config().getJsonObject("api", new JsonObject());
+          final var metricsPath = apiConf.getString(METRICS_PATH_KEY);
+          if (metricsPath != null && metricsPath.length() > 0) {
+
+            router.get(metricsPath).handler(PrometheusScrapingHandler.create());
+          }
           final var httpServerOptions = new HttpServerOptions(apiConf);
           this.server = this.getVertx().createHttpServer(httpServerOptions);
           this.server.requestHandler(router).listen(startServer -> {
@@ -43,6 +43,8 @@ public abstract class AbstractMainVerticle extends AbstractVerticle {
   @Override
   public void start(final Promise<Void> startPromise) throws Exception {
 
+    TraceSpan.configure(this.config().getJsonObject(TraceSpan.TRACING_KEY));
+    TraceContext.propagate(this.getVertx());
     final List<Class<? extends AbstractVerticle>> verticlesToDeploy = new ArrayList<>(Arrays.asList(this.getVerticleClassesToDeploy()));
 
     this.deployNextVerticle(verticlesToDeploy, startPromise);
@@ -23,8 +23,12 @@ package eu.internetofus.common.vertx;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.mongo.impl.config.MongoClientOptionsParser;
+import java.util.ArrayList;
+import java.util.List;
 import org.tinylog.Logger;
 
 /**
@@ -40,10 +44,84 @@ public abstract class AbstractPersistenceVerticle extends AbstractVerticle {
   public static final String PERSISTENCE_POOL_NAME = "WENET_MODULE_POOL";
 
   /**
-   * The pool of database connections.
+   * The name of the configuration property that is {@code false} if the
+   * indexes declared by the repositories must not be created.
+   */
+  public static final String PROVISION_INDEXES_KEY = "provision";
+
+  /**
+   * The name of the configuration property that is {@code false} if the
+   * representative queries declared by the repositories must not be explained.
+   */
+  public static final String EXPLAIN_QUERIES_KEY = "explain";
+
+  /**
+   * The name of the configuration property with the maximum milliseconds that
+   * the verticle waits for the indexes before starting.
+   */
+  public static final String INDEXES_TIMEOUT_KEY = "timeout";
+
+  /**
+   * The default milliseconds to wait for the indexes before starting. By default
+   * the verticle does not wait and the indexes are provisioned on the
+   * background.
+   */
+  public static final long DEFAULT_INDEXES_TIMEOUT = 0;
+
+  /**
+   * The name of the persistence configuration property that contains the names
+   * of the collections whose changes has to be published as invalidation events.
+   */
+  public static final String INVALIDATIONS_KEY = "invalidations";
+
+  /**
+   * The name of the persistence configuration property that contains the read
+   * preference of each collection.
+   */
+  public static final String READ_PREFERENCES_KEY = "readPreferences";
+
+  /**
+   * The name of the persistence configuration property with the storage where
+   * the repositories store the models.
+   */
+  public static final String BACKEND_KEY = "backend";
+
+  /**
+   * The value of the {@value #BACKEND_KEY} configuration property to store the
+   * models on memory instead of on MongoDB.
+   *
+   * @see MemoryRepositoryStorage
+   */
+  public static final String MEMORY_BACKEND = "memory";
+
+  /**
+   * The name of the persistence configuration property that contains the
+   * options of the collections split into time buckets.
+   */
+  public static final String TIME_BUCKETS_KEY = "timeBuckets";
+
+  /**
+   * The pool of database connections, or {@code null} if the documents are
+   * stored on memory.
    */
   protected MongoClient pool;
 
+  /**
+   * The storage of the documents of the repositories.
+   */
+  protected RepositoryStorage storage;
+
+  /**
+   * The publishers of the invalidation events of the collections.
+   */
+  protected final List<ModelInvalidationsPublisher> invalidations = new ArrayList<>();
+
+  /**
+   * The identifiers of the timers that remove the time buckets that are not
+   * retained.
+   */
+  protected final List<Long> retentionTimers = new ArrayList<>();
+
   /**
    * {@inheritDoc}
    */
@@ -52,7 +130,14 @@ public abstract class AbstractPersistenceVerticle extends AbstractVerticle {
 
     // Create the pool
     final var persitenceConf = this.config().getJsonObject("persistence", new JsonObject());
-    this.pool = MongoClient.createShared(this.getVertx(), persitenceConf, PERSISTENCE_POOL_NAME);
+    this.storage = this.createStorage(persitenceConf);
+    this.pool = MongoRepositoryStorage.poolOf(this.storage);
+    WriteBehindQueue.configure(this.getVertx(), this.storage, this.writeBehindOptions());
+    MigrationOptions.configure(this.getVertx(), this.migrationOptions());
+    ReadPools.shared(this.getVertx()).configure(
+        preference -> this.createStorage(persitenceConf, PERSISTENCE_POOL_NAME + "_" + preference.key(), preference),
+        persitenceConf.getJsonObject(READ_PREFERENCES_KEY));
+    CountCache.shared(this.getVertx(), new CountCacheOptions(persitenceConf.getJsonObject("countCache")));
 
     // Register the repositories
     final var schemaVersion = this.apiVersion();
@@ -68,13 +153,95 @@ public abstract class AbstractPersistenceVerticle extends AbstractVerticle {
       } else {
 
         Logger.trace("Registered repositories");
-        startPromise.complete();
+        this.publishInvalidations();
+        this.retainTimeBuckets();
+        this.waitIndexes(this.provisionIndexes()).onComplete(provisioned -> startPromise.complete());
       }
 
     });
 
   }
 
+  /**
+   * Create the storage with the shared pool of database connections.
+   *
+   * @param persistenceConf configuration of the persistence.
+   *
+   * @return the storage with the pool of connections to the database.
+   */
+  protected RepositoryStorage createStorage(final JsonObject persistenceConf) {
+
+    return this.createStorage(persistenceConf, PERSISTENCE_POOL_NAME, null);
+
+  }
+
+  /**
+   * Create the storage with a shared pool of database connections. If the
+   * {@value #BACKEND_KEY} is {@value #MEMORY_BACKEND} the collections are
+   * stored on memory, shared by all the storages of the Vert.x instance.
+   *
+   * @param persistenceConf configuration of the persistence.
+   * @param poolName        name of the shared pool.
+   * @param preference      to read from the database, or {@code null} to use the
+   *                        one defined on the configuration.
+   *
+   * @return the storage with the pool of connections to the database.
+   *
+   * @see #createStorage(JsonObject)
+   * @see ReadPools
+   * @see MemoryRepositoryStorage
+   */
+  protected RepositoryStorage createStorage(final JsonObject persistenceConf, final String poolName,
+      final ReadPreferenceOptions preference) {
+
+    final var vertx = this.getVertx();
+    if (MEMORY_BACKEND.equals(persistenceConf.getString(BACKEND_KEY))) {
+
+      return MemoryRepositoryStorage.createShared(vertx);
+    }
+
+    if (preference == null) {
+
+      return new MongoRepositoryStorage(this.createPool(persistenceConf, poolName));
+
+    } else {
+
+      return new MongoRepositoryStorage(this.createPool(preference.applyTo(persistenceConf), poolName));
+    }
+
+  }
+
+  /**
+   * Create a shared pool of connections to MongoDB. If the metrics of Vert.x
+   * are enabled, the commands and the connections pool of the driver are
+   * measured by the {@link PersistenceMetrics} of the Vert.x instance. In this
+   * case the settings of the driver are parsed from the configuration as the
+   * {@link MongoClient#createShared(io.vertx.core.Vertx, JsonObject, String)}
+   * does, because the listeners can only be added to the settings.
+   *
+   * @param persistenceConf configuration of the pool.
+   * @param poolName        name of the shared pool.
+   *
+   * @return the pool of connections to the database.
+   *
+   * @see PersistenceMetrics#instrument(com.mongodb.MongoClientSettings)
+   */
+  protected MongoClient createPool(final JsonObject persistenceConf, final String poolName) {
+
+    final var vertx = this.getVertx();
+    if (vertx.isMetricsEnabled()) {
+
+      final var parsed = new MongoClientOptionsParser(vertx, persistenceConf).settings();
+      final var settings = PersistenceMetrics.shared(vertx).instrument(parsed);
+      return MongoClient.createWithMongoSettings(vertx, persistenceConf, poolName, settings);
+
+    } else {
+
+      return MongoClient.createShared(vertx, persistenceConf, poolName);
+    }
+
+  }
+
   /**
    * Register the repository services that will be provided.
    *
@@ -84,6 +251,40 @@ public abstract class AbstractPersistenceVerticle extends AbstractVerticle {
    */
   protected abstract Future<Void> registerRepositoriesFor(String schemaVersion);
 
+  /**
+   * Store the documents that are waiting on the write-behind queues of the pool
+   * of this verticle and release the pools to read from the secondaries before
+   * stop.
+   *
+   * {@inheritDoc}
+   *
+   * @see WriteBehindQueue#closeAll(io.vertx.core.Vertx, RepositoryStorage)
+   * @see ReadPools#release()
+   */
+  @Override
+  public void stop(final Promise<Void> stopPromise) throws Exception {
+
+    Future<Void> closed = Future.succeededFuture();
+    if (this.storage != null) {
+
+      closed = WriteBehindQueue.closeAll(this.vertx, this.storage);
+    }
+    closed.eventually(any -> ReadPools.shared(this.vertx).release()).onComplete(released -> {
+
+      try {
+
+        this.stop();
+        stopPromise.complete();
+
+      } catch (final Throwable cause) {
+
+        stopPromise.fail(cause);
+      }
+
+    });
+
+  }
+
   /**
    * Close the connections pool.
    *
@@ -92,14 +293,193 @@ public abstract class AbstractPersistenceVerticle extends AbstractVerticle {
   @Override
   public void stop() throws Exception {
 
-    if (this.pool != null) {
+    for (final var publisher : this.invalidations) {
 
-      this.pool.close();
+      publisher.close();
+    }
+    this.invalidations.clear();
+    for (final var timerId : this.retentionTimers) {
+
+      this.vertx.cancelTimer(timerId);
+    }
+    this.retentionTimers.clear();
+    if (this.storage != null) {
+
+      this.storage.close();
+      this.storage = null;
       this.pool = null;
     }
 
   }
 
+  /**
+   * Create the indexes declared by the repositories and, if it is enabled,
+   * explain the representative queries to warn about the ones that scan the
+   * whole collection. This can be configured on the
+   * {@code persistence.indexes} configuration with the properties
+   * {@value #PROVISION_INDEXES_KEY} and {@value #EXPLAIN_QUERIES_KEY}.
+   *
+   * @return the future that will be completed when the indexes are created.
+   *
+   * @see IndexRegistry
+   */
+  protected Future<Void> provisionIndexes() {
+
+    final var conf = this.config().getJsonObject("persistence", new JsonObject()).getJsonObject("indexes",
+        new JsonObject());
+    final var registry = IndexRegistry.shared(this.getVertx());
+    Future<Void> future = Future.succeededFuture();
+    if (conf.getBoolean(PROVISION_INDEXES_KEY, true)) {
+
+      future = registry.provision(this.storage);
+    }
+    if (conf.getBoolean(EXPLAIN_QUERIES_KEY, true)) {
+
+      future = future.compose(any -> registry.explain(this.storage)).mapEmpty();
+    }
+    return future;
+
+  }
+
+  /**
+   * Wait for the indexes to be provisioned at most the milliseconds of the
+   * {@value #INDEXES_TIMEOUT_KEY} property of the {@code persistence.indexes}
+   * configuration. When the time expires the indexes continue being provisioned
+   * on the background, thus the verticle is not blocked while MongoDB builds
+   * them.
+   *
+   * @param provisioned future that will be completed when the indexes are
+   *                    provisioned.
+   *
+   * @return the future that will be completed when the indexes are provisioned
+   *         or the time to wait for them expires.
+   */
+  protected Future<Void> waitIndexes(final Future<Void> provisioned) {
+
+    provisioned.onFailure(cause -> Logger.warn(cause, "Cannot provision the indexes"));
+    final var timeout = this.config().getJsonObject("persistence", new JsonObject())
+        .getJsonObject("indexes", new JsonObject()).getLong(INDEXES_TIMEOUT_KEY, DEFAULT_INDEXES_TIMEOUT);
+    if (timeout <= 0) {
+
+      return Future.succeededFuture();
+
+    } else {
+
+      final Promise<Void> promise = Promise.promise();
+      final var vertx = this.getVertx();
+      final var timerId = vertx.setTimer(timeout, id -> {
+
+        if (promise.tryComplete()) {
+
+          Logger.warn("The indexes are not provisioned after {} ms, they continue on the background.", timeout);
+        }
+
+      });
+      provisioned.onComplete(done -> {
+
+        vertx.cancelTimer(timerId);
+        promise.tryComplete();
+
+      });
+      return promise.future();
+    }
+
+  }
+
+  /**
+   * Start to publish the invalidation events of the collections defined on the
+   * {@code persistence.invalidations} configuration. The publishers are closed
+   * when the verticle stops.
+   *
+   * @see ModelInvalidations
+   */
+  protected void publishInvalidations() {
+
+    final var collections = this.config().getJsonObject("persistence", new JsonObject())
+        .getJsonArray(INVALIDATIONS_KEY, new JsonArray());
+    for (final var collectionName : collections) {
+
+      if (collectionName instanceof String) {
+
+        this.invalidations.add(ModelInvalidations.publishChangesOf(this.vertx, this.storage, (String) collectionName));
+      }
+    }
+
+  }
+
+  /**
+   * Start to remove periodically the buckets that are not retained of the
+   * collections defined on the {@code persistence.timeBuckets} configuration.
+   * The timers are cancelled when the verticle stops.
+   *
+   * @see TimeBuckets#retain(io.vertx.core.Vertx, RepositoryStorage)
+   */
+  protected void retainTimeBuckets() {
+
+    final var conf = this.config().getJsonObject("persistence", new JsonObject()).getJsonObject(TIME_BUCKETS_KEY,
+        new JsonObject());
+    for (final var collectionName : conf.fieldNames()) {
+
+      final var timerId = new TimeBuckets(collectionName, this.timeBucketOptions(collectionName)).retain(this.vertx,
+          this.storage);
+      if (timerId >= 0) {
+
+        this.retentionTimers.add(timerId);
+      }
+    }
+
+  }
+
+  /**
+   * Return the options to migrate the collections defined on the
+   * {@code persistence.migration} configuration. They are configured for the
+   * repositories of the Vert.x instance when the verticle starts.
+   *
+   * @return the options to migrate the collections of the repositories.
+   *
+   * @see MigrationOptions#configure(io.vertx.core.Vertx, MigrationOptions)
+   */
+  protected MigrationOptions migrationOptions() {
+
+    final var conf = this.config().getJsonObject("persistence", new JsonObject()).getJsonObject("migration");
+    return new MigrationOptions(conf);
+
+  }
+
+  /**
+   * Return the options of the queues that store the documents in batches defined
+   * on the {@code persistence.writeBehind} configuration. They are configured
+   * for the pool of this verticle when it starts.
+   *
+   * @return the options of the write-behind queues of the repositories.
+   *
+   * @see WriteBehindQueue#configure(io.vertx.core.Vertx, RepositoryStorage, WriteBehindOptions)
+   */
+  protected WriteBehindOptions writeBehindOptions() {
+
+    final var conf = this.config().getJsonObject("persistence", new JsonObject()).getJsonObject("writeBehind");
+    return new WriteBehindOptions(conf);
+
+  }
+
+  /**
+   * Return the options of the buckets of a collection defined on the
+   * {@code persistence.timeBuckets.<collectionName>} configuration.
+   *
+   * @param collectionName name of the collection split into buckets.
+   *
+   * @return the options of the buckets of the collection.
+   *
+   * @see TimeBuckets
+   */
+  protected TimeBucketOptions timeBucketOptions(final String collectionName) {
+
+    final var conf = this.config().getJsonObject("persistence", new JsonObject())
+        .getJsonObject(TIME_BUCKETS_KEY, new JsonObject()).getJsonObject(collectionName);
+    return new TimeBucketOptions(conf);
+
+  }
+
   /**
    * Return the API version defined on the configuration.
    *
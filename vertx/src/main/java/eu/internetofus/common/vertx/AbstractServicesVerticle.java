@@ -97,7 +97,9 @@ public abstract class AbstractServicesVerticle extends AbstractVerticle {
   public static WebClientSession createWebClientSession(final Vertx vertx, final JsonObject config) {
 
     final var webClientConf = config.getJsonObject(WEB_CLIENT_CONF_KEY, new JsonObject());
-    final var options = new WebClientOptions(webClientConf);
+    final var clientOptions = new ComponentClientOptions(webClientConf);
+    final var options = clientOptions.applyTo(new WebClientOptions(webClientConf));
+    ComponentClientMetrics.shared(vertx).configure(clientOptions);
 
     final var client = WebClientSession.create(WebClient.create(vertx, options));
     final var apiKey = webClientConf.getString(WENET_COMPONENT_APIKEY_CONF_KEY, "UDEFINED");
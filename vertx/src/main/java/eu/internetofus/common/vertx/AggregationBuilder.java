@@ -21,6 +21,8 @@ package eu.internetofus.common.vertx;
 
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.Comparator;
 
 /**
  * This component is used to create an aggregation command pipeline.
@@ -29,6 +31,20 @@ import io.vertx.core.json.JsonObject;
  */
 public class AggregationBuilder {
 
+  /**
+   * The name of the facet with the total of documents that match.
+   *
+   * @see #facetPage(JsonArray)
+   */
+  public static final String FACET_TOTAL = "total";
+
+  /**
+   * The name of the facet with the documents of the page.
+   *
+   * @see #facetPage(JsonArray)
+   */
+  public static final String FACET_MODELS = "models";
+
   /**
    * The query that is creating.
    */
@@ -168,4 +184,161 @@ public class AggregationBuilder {
     return this;
   }
 
+  /**
+   * Add some stages to the pipeline.
+   *
+   * @param stages to add.
+   *
+   * @return this builder.
+   */
+  public AggregationBuilder append(final JsonArray stages) {
+
+    if (stages != null) {
+
+      this.pipeline.addAll(stages);
+    }
+
+    return this;
+  }
+
+  /**
+   * Create a projection that includes some paths. If a path is inside another
+   * one, only the outer one is included, thus the projection does not have path
+   * collisions.
+   *
+   * @param paths to the fields to include.
+   *
+   * @return the projection that includes the paths.
+   */
+  public static JsonObject projection(final Iterable<String> paths) {
+
+    final var fields = new JsonObject();
+    if (paths != null) {
+
+      final var sorted = new ArrayList<String>();
+      paths.forEach(sorted::add);
+      sorted.sort(Comparator.comparingInt(String::length));
+      for (final var path : sorted) {
+
+        var included = false;
+        for (final var field : fields.fieldNames()) {
+
+          if (path.equals(field) || path.startsWith(field + ".")) {
+
+            included = true;
+            break;
+          }
+        }
+        if (!included) {
+
+          fields.put(path, 1);
+        }
+      }
+    }
+    return fields;
+
+  }
+
+  /**
+   * Specify the fields of the documents to return. If a path is inside another
+   * one, only the outer one is returned.
+   *
+   * @param paths to the fields to return.
+   *
+   * @return this builder.
+   *
+   * @see #projection(Iterable)
+   */
+  public AggregationBuilder project(final Iterable<String> paths) {
+
+    final var fields = projection(paths);
+    if (!fields.isEmpty()) {
+
+      this.pipeline.add(new JsonObject().put("$project", fields));
+    }
+
+    return this;
+  }
+
+  /**
+   * Specify that only has to return the unwound element, its indexes and the
+   * fields used to order the documents.
+   *
+   * @param order       for the documents.
+   * @param elementPath the path to the unwound element.
+   *
+   * @return this builder.
+   *
+   * @see #unwindPath(String...)
+   */
+  public AggregationBuilder projectElement(final JsonObject order, final String... elementPath) {
+
+    return this.projectElement(order, null, elementPath);
+
+  }
+
+  /**
+   * Specify that only has to return some fields of the unwound element, its
+   * indexes and the fields used to order the documents.
+   *
+   * @param order       for the documents.
+   * @param fields      projection with the fields of the element to return, or
+   *                    {@code null} to return all the element.
+   * @param elementPath the path to the unwound element.
+   *
+   * @return this builder.
+   *
+   * @see #unwindPath(String...)
+   */
+  public AggregationBuilder projectElement(final JsonObject order, final JsonObject fields,
+      final String... elementPath) {
+
+    if (elementPath != null && elementPath.length > 0) {
+
+      final var paths = new ArrayList<String>();
+      final var element = String.join(".", elementPath);
+      if (fields == null || fields.isEmpty()) {
+
+        paths.add(element);
+
+      } else {
+
+        for (final var field : fields.fieldNames()) {
+
+          paths.add(element + "." + field);
+        }
+      }
+      for (final var name : elementPath) {
+
+        paths.add(name + "Index");
+      }
+      if (order != null) {
+
+        paths.addAll(order.fieldNames());
+      }
+      this.project(paths);
+    }
+
+    return this;
+  }
+
+  /**
+   * Calculate in the same stage the number total of documents and the documents
+   * of a page. The result is a document with the field {@link #FACET_TOTAL} with
+   * an array with the count, that is empty if no documents match, and the field
+   * {@link #FACET_MODELS} with the documents of the page.
+   *
+   * @param pagePipeline the stages to obtain the documents of the page.
+   *
+   * @return this builder.
+   */
+  public AggregationBuilder facetPage(final JsonArray pagePipeline) {
+
+    final var facet = new JsonObject()
+        .put(FACET_TOTAL, new JsonArray().add(new JsonObject().put("$count", FACET_TOTAL)))
+        .put(FACET_MODELS, pagePipeline == null ? new JsonArray() : pagePipeline);
+    this.pipeline.add(new JsonObject().put("$facet", facet));
+    return this;
+  }
+
 }
@@ -0,0 +1,85 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+package eu.internetofus.common.vertx;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * The options to apply when add or update a set of documents with bulk writes.
+ *
+ * @see Repository#bulkUpsertDocuments(String, java.util.List,
+ *      java.util.function.Function, BulkUpsertOptions)
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class BulkUpsertOptions {
+
+  /**
+   * The default number of documents to write on each bulk write.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  /**
+   * The name of the configuration property that contains the number of
+   * documents to write on each bulk write.
+   */
+  public static final String BATCH_SIZE_KEY = "batchSize";
+
+  /**
+   * The name of the configuration property that is {@code true} if the
+   * documents has to be written in order.
+   */
+  public static final String ORDERED_KEY = "ordered";
+
+  /**
+   * The number of documents to write on each bulk write.
+   */
+  public int batchSize = DEFAULT_BATCH_SIZE;
+
+  /**
+   * This is {@code true} if the documents has to be written in order, thus the
+   * write stops on the first document that fails. Otherwise all the documents
+   * are written and the failures are reported for each one.
+   */
+  public boolean ordered = false;
+
+  /**
+   * Create the default bulk upsert options.
+   */
+  public BulkUpsertOptions() {
+
+  }
+
+  /**
+   * Create the bulk upsert options defined on a configuration.
+   *
+   * @param conf configuration with the bulk upsert options.
+   */
+  public BulkUpsertOptions(final JsonObject conf) {
+
+    if (conf != null) {
+
+      this.batchSize = Math.max(1, conf.getInteger(BATCH_SIZE_KEY, DEFAULT_BATCH_SIZE));
+      this.ordered = conf.getBoolean(ORDERED_KEY, false);
+    }
+
+  }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+package eu.internetofus.common.vertx;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * The results of each document of a bulk upsert. Each result is a
+ * {@link JsonObject} with the {@link #INDEX} of the document on the upsert,
+ * the {@link #STATUS} of the write, the {@link #ID} of the added document and
+ * the {@link #ERROR} if the write has failed.
+ *
+ * @see Repository#bulkUpsertDocuments(String, java.util.List,
+ *      java.util.function.Function, BulkUpsertOptions)
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public interface BulkUpsertResults {
+
+  /**
+   * The name of the field with the index of the document on the upsert.
+   */
+  String INDEX = "index";
+
+  /**
+   * The name of the field with the status of the write.
+   */
+  String STATUS = "status";
+
+  /**
+   * The name of the field with the identifier of the added document.
+   */
+  String ID = "id";
+
+  /**
+   * The name of the field with the message of the error.
+   */
+  String ERROR = "error";
+
+  /**
+   * The status of a document that has been added.
+   */
+  String ADDED = "added";
+
+  /**
+   * The status of a document that has been updated.
+   */
+  String UPDATED = "updated";
+
+  /**
+   * The status of a document that can not be written.
+   */
+  String FAILED = "failed";
+
+  /**
+   * The status of a document that has not been written because a previous
+   * document of an ordered upsert has failed.
+   */
+  String NOT_EXECUTED = "notExecuted";
+
+  /**
+   * Create the result of a document that has been written.
+   *
+   * @param index of the document.
+   * @param id    of the added document, or {@code null} if it has been updated.
+   *
+   * @return the result of the document.
+   */
+  static JsonObject written(final int index, final String id) {
+
+    final var result = new JsonObject().put(INDEX, index);
+    if (id == null) {
+
+      result.put(STATUS, UPDATED);
+
+    } else {
+
+      result.put(STATUS, ADDED).put(ID, id);
+    }
+    return result;
+
+  }
+
+  /**
+   * Create the result of a document that can not be written.
+   *
+   * @param index of the document.
+   * @param error message of the error.
+   *
+   * @return the result of the document.
+   */
+  static JsonObject failed(final int index, final String error) {
+
+    return new JsonObject().put(INDEX, index).put(STATUS, FAILED).put(ERROR, error);
+
+  }
+
+  /**
+   * Create the result of a document that has not been written.
+   *
+   * @param index of the document.
+   *
+   * @return the result of the document.
+   */
+  static JsonObject notExecuted(final int index) {
+
+    return new JsonObject().put(INDEX, index).put(STATUS, NOT_EXECUTED);
+
+  }
+
+  /**
+   * Check if a result is of a document that has been written.
+   *
+   * @param result of the document.
+   *
+   * @return {@code true} if the document has been added or updated.
+   */
+  static boolean isWritten(final JsonObject result) {
+
+    final var status = result.getString(STATUS);
+    return ADDED.equals(status) || UPDATED.equals(status);
+
+  }
+
+}
@@ -0,0 +1,435 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import eu.internetofus.common.model.Model;
+import eu.internetofus.common.model.TimeManager;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.mongo.BulkOperation;
+import io.vertx.ext.mongo.BulkWriteOptions;
+import io.vertx.ext.mongo.FindOptions;
+import io.vertx.ext.mongo.UpdateOptions;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import org.tinylog.Logger;
+
+/**
+ * The component that walk over a collection with a cursor and update in
+ * batches the documents to the current schema version. The progress is stored
+ * as a checkpoint, thus if the migration is stopped it continues from the last
+ * migrated document. The progress is counted on the {@link PersistenceMetrics}
+ * and the whole migration is measured as the {@code migrate} operation.
+ *
+ * @param <T> type of the documents.
+ *
+ * @see Repository#migrateCollection(String, Class, String, MigrationOptions)
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+class CollectionMigration<T extends Model> {
+
+  /**
+   * The repository that is migrating.
+   */
+  private final Repository repository;
+
+  /**
+   * The name of the collection to migrate.
+   */
+  private final String collectionName;
+
+  /**
+   * The type of the documents on the collection.
+   */
+  private final Class<T> type;
+
+  /**
+   * The query to obtain the documents to migrate.
+   */
+  private final JsonObject query;
+
+  /**
+   * The options of the migration.
+   */
+  private final MigrationOptions options;
+
+  /**
+   * The identifier of the checkpoint of this migration.
+   */
+  private final String checkpointId;
+
+  /**
+   * The promise to inform when the migration has finished.
+   */
+  private final Promise<Void> promise = Promise.promise();
+
+  /**
+   * The batches that are updating, in the order that they are read.
+   */
+  private final ArrayDeque<Batch> pending = new ArrayDeque<>();
+
+  /**
+   * The operations of the batch that is filling.
+   */
+  private List<BulkOperation> operations;
+
+  /**
+   * The identifier of the last document added to the batch that is filling.
+   */
+  private Object lastId;
+
+  /**
+   * The stream with the documents to migrate.
+   */
+  private ReadStream<JsonObject> stream;
+
+  /**
+   * The future that will be completed when the last checkpoint is stored.
+   */
+  private Future<Void> checkpoint = Future.succeededFuture();
+
+  /**
+   * The number of bulk writes that are executing.
+   */
+  private int inFlight;
+
+  /**
+   * This is {@code true} if the migration continues from a checkpoint.
+   */
+  private boolean resumed;
+
+  /**
+   * This is {@code true} if all the documents has been read.
+   */
+  private boolean ended;
+
+  /**
+   * The number of migrated documents.
+   */
+  private long migrated;
+
+  /**
+   * The number of bulk writes that has been done.
+   */
+  private long batches;
+
+  /**
+   * The time when the migration has started.
+   */
+  private long startTime;
+
+  /**
+   * A set of documents that are updating at the same time.
+   */
+  private static class Batch {
+
+    /**
+     * The identifier of the last document on the batch.
+     */
+    Object lastId;
+
+    /**
+     * This is {@code true} if the batch has been updated.
+     */
+    boolean done;
+
+  }
+
+  /**
+   * Create a new migration.
+   *
+   * @param repository     that is migrating.
+   * @param collectionName name of the collection to migrate.
+   * @param type           of the documents on the collection.
+   * @param version        of the documents to migrate.
+   * @param options        for the migration.
+   */
+  CollectionMigration(final Repository repository, final String collectionName, final Class<T> type,
+      final String version, final MigrationOptions options) {
+
+    this.repository = repository;
+    this.collectionName = collectionName;
+    this.type = type;
+    this.query = repository.createQueryToReturnDocumentsWithAVersionLessThan(version);
+    this.options = options;
+    this.checkpointId = collectionName + ":" + version;
+    this.operations = new ArrayList<>(options.batchSize);
+
+  }
+
+  /**
+   * Start the migration.
+   *
+   * @return the future that will inform when all the documents has been
+   *         migrated.
+   */
+  Future<Void> start() {
+
+    this.startTime = System.currentTimeMillis();
+    this.loadCheckpoint().onComplete(load -> {
+
+      if (load.failed()) {
+
+        this.fail(load.cause());
+
+      } else {
+
+        var streamQuery = this.query;
+        final var checkpointLastId = load.result();
+        if (checkpointLastId != null) {
+
+          this.resumed = true;
+          Logger.info("Resume the migration of '{}' after the document '{}'.", this.collectionName, checkpointLastId);
+          streamQuery = new JsonObject().put("$and", new JsonArray().add(this.query)
+              .add(new JsonObject().put("_id", new JsonObject().put("$gt", checkpointLastId))));
+        }
+
+        final var findOptions = new FindOptions();
+        findOptions.setSort(new JsonObject().put("_id", 1));
+        findOptions.setFields(new JsonObject().put(Repository.SCHEMA_VERSION, false));
+        findOptions.setBatchSize(this.options.batchSize);
+        this.stream = this.repository.storage.findBatch(this.collectionName, streamQuery, findOptions);
+        this.stream.exceptionHandler(this::fail);
+        this.stream.endHandler(end -> {
+
+          this.ended = true;
+          this.flush();
+          this.checkFinished();
+
+        });
+        this.stream.handler(this::migrate);
+      }
+
+    });
+
+    return this.repository.startSample(this.collectionName, "migrate").stop(this.promise.future());
+
+  }
+
+  /**
+   * Called when a document to migrate has been read.
+   *
+   * @param document to migrate.
+   */
+  private void migrate(final JsonObject document) {
+
+    if (this.promise.future().isComplete()) {
+
+      return;
+    }
+
+    try {
+
+      final var id = document.remove("_id");
+      final var value = Repository.migrationValueOf(document, this.type);
+      final var model = value.toJsonObject();
+      for (final var key : document.fieldNames()) {
+
+        if (!model.containsKey(key)) {
+
+          model.putNull(key);
+        }
+      }
+      final var update = this.repository.createUpdateQueryFor(model);
+      this.operations.add(BulkOperation.createUpdate(new JsonObject().put("_id", id), update));
+      this.lastId = id;
+      if (this.operations.size() >= this.options.batchSize) {
+
+        this.flush();
+      }
+
+    } catch (final Throwable cause) {
+
+      Logger.error(cause, "Cannot migrate {}", () -> document.encodePrettily());
+      this.fail(cause);
+    }
+
+  }
+
+  /**
+   * Write the filled batch into the database.
+   */
+  private void flush() {
+
+    if (this.operations.isEmpty() || this.promise.future().isComplete()) {
+
+      return;
+    }
+
+    final var batchOperations = this.operations;
+    this.operations = new ArrayList<>(this.options.batchSize);
+    final var batch = new Batch();
+    batch.lastId = this.lastId;
+    this.pending.add(batch);
+    this.inFlight++;
+    if (this.inFlight >= this.options.concurrency) {
+
+      this.stream.pause();
+    }
+
+    this.repository.storage.bulkWrite(this.collectionName, batchOperations, new BulkWriteOptions().setOrdered(false))
+        .onComplete(write -> {
+
+          this.inFlight--;
+          if (write.failed()) {
+
+            Logger.error(write.cause(), "Cannot migrate a batch of {} documents on '{}'.", batchOperations.size(),
+                this.collectionName);
+            this.fail(write.cause());
+
+          } else {
+
+            batch.done = true;
+            this.migrated += batchOperations.size();
+            this.batches++;
+            this.repository.metrics.migrated(this.collectionName, batchOperations.size());
+            Logger.trace("Migrated {} documents of '{}' in {} batches ({} ms).", () -> this.migrated,
+                () -> this.collectionName, () -> this.batches, () -> System.currentTimeMillis() - this.startTime);
+            this.advanceCheckpoint();
+            if (!this.ended) {
+
+              this.stream.resume();
+            }
+            this.checkFinished();
+          }
+
+        });
+
+  }
+
+  /**
+   * Store as checkpoint the last document of the batches that has been updated
+   * without any previous batch pending.
+   */
+  private void advanceCheckpoint() {
+
+    Object checkpointLastId = null;
+    while (!this.pending.isEmpty() && this.pending.peek().done) {
+
+      checkpointLastId = this.pending.poll().lastId;
+    }
+
+    if (checkpointLastId != null && this.options.checkpointCollection != null) {
+
+      final var checkpointQuery = new JsonObject().put("_id", this.checkpointId);
+      final var checkpointUpdate = new JsonObject().put("$set",
+          new JsonObject().put("lastId", checkpointLastId).put("migrated", this.migrated)
+              .put("batches", this.batches).put("updateTs", TimeManager.now()));
+      this.checkpoint = this.checkpoint.compose(any -> this.repository.storage
+          .update(this.options.checkpointCollection, checkpointQuery, checkpointUpdate,
+              new UpdateOptions().setUpsert(true))
+          .map(updated -> null));
+    }
+  }
+
+  /**
+   * Obtain the identifier of the last migrated document.
+   *
+   * @return the future identifier of the last migrated document, or
+   *         {@code null} if not any migration has to be resumed.
+   */
+  private Future<Object> loadCheckpoint() {
+
+    if (this.options.checkpointCollection == null) {
+
+      return Future.succeededFuture();
+
+    } else {
+
+      return this.repository.storage
+          .findOne(this.options.checkpointCollection, new JsonObject().put("_id", this.checkpointId), null)
+          .map(found -> {
+
+            if (found == null) {
+
+              return null;
+
+            } else {
+
+              return found.getValue("lastId");
+            }
+
+          });
+    }
+
+  }
+
+  /**
+   * Check if the migration has finished.
+   */
+  private void checkFinished() {
+
+    if (this.ended && this.inFlight == 0 && !this.promise.future().isComplete()) {
+
+      this.checkpoint.compose(any -> {
+
+        if (this.options.checkpointCollection == null || !this.resumed && this.batches == 0) {
+
+          return Future.succeededFuture();
+
+        } else {
+
+          return this.repository.storage
+              .removeDocument(this.options.checkpointCollection, new JsonObject().put("_id", this.checkpointId))
+              .map(removed -> null);
+        }
+
+      }).onComplete(finished -> {
+
+        if (finished.failed()) {
+
+          this.fail(finished.cause());
+
+        } else {
+
+          if (this.migrated > 0) {
+
+            Logger.info("Migrated {} documents of '{}' in {} ms.", () -> this.migrated, () -> this.collectionName,
+                () -> System.currentTimeMillis() - this.startTime);
+          }
+          this.promise.tryComplete();
+        }
+
+      });
+    }
+
+  }
+
+  /**
+   * Called when the migration fails.
+   *
+   * @param cause of the failure.
+   */
+  private void fail(final Throwable cause) {
+
+    if (this.promise.tryFail(cause) && this.stream != null) {
+
+      this.stream.pause();
+    }
+
+  }
+
+}
@@ -22,12 +22,15 @@ package eu.internetofus.common.vertx;
 
 import eu.internetofus.common.model.ErrorMessage;
 import eu.internetofus.common.model.Model;
+import eu.internetofus.common.model.ModelReaders;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -36,9 +39,18 @@ import io.vertx.ext.web.client.HttpRequest;
 import io.vertx.ext.web.client.HttpResponse;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.serviceproxy.ServiceException;
-import java.nio.charset.Charset;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import javax.validation.constraints.NotNull;
@@ -52,6 +64,12 @@ import org.tinylog.Logger;
  */
 public class ComponentClient {
 
+  /**
+   * The default maximum number of requests of a batch that are in flight at the
+   * same time.
+   */
+  public static final int DEFAULT_BATCH_CONCURRENCY = 16;
+
   /**
    * The pool of web clients.
    */
@@ -62,6 +80,29 @@ public class ComponentClient {
    */
   protected String componentURL;
 
+  /**
+   * The idempotent requests that are in flight by the key that identify them.
+   */
+  protected final Map<String, Future<HttpResponse<Buffer>>> inFlightRequests = new ConcurrentHashMap<>();
+
+  /**
+   * This is {@code true} if the identical {@code GET} and {@code HEAD} requests
+   * that are in flight at the same time share the same response.
+   */
+  protected boolean coalesceRequests = true;
+
+  /**
+   * The state that isolates the client from the failures and the latency of the
+   * component.
+   */
+  protected ComponentClientResilience resilience;
+
+  /**
+   * The maximum number of requests of a batch that are in flight at the same
+   * time.
+   */
+  protected int batchConcurrency = DEFAULT_BATCH_CONCURRENCY;
+
   /**
    * Create a new service.
    *
@@ -72,6 +113,26 @@ public class ComponentClient {
 
     this.client = client;
     this.componentURL = componentURL;
+    this.resilience = new ComponentClientResilience(new ComponentClientResilienceOptions());
+
+  }
+
+  /**
+   * Create a new service.
+   *
+   * @param client     to interact with the other modules.
+   * @param conf       configuration of the components.
+   * @param key        on the configuration with the component URL.
+   * @param defaultUrl for the component if not defined on the configuration.
+   *
+   * @see ComponentClientResilienceOptions#forComponent(JsonObject, String)
+   */
+  public ComponentClient(final WebClient client, final JsonObject conf, final String key,
+      final String defaultUrl) {
+
+    this.client = client;
+    this.componentURL = conf.getString(key, defaultUrl);
+    this.resilience = new ComponentClientResilience(ComponentClientResilienceOptions.forComponent(conf, key));
 
   }
 
@@ -99,51 +160,34 @@ public class ComponentClient {
   }
 
   /**
-   * Create the absolute URL to a path of the component.
+   * Create the absolute URL to a path of the component. The characters of the
+   * paths that are not unreserved are encoded as the percent of their UTF-8
+   * bytes. If the first path is a {@link ComponentPathTemplate} the other paths
+   * are the values of its variables.
    *
    * @param paths to the component.
    *
    * @return the absolute URL to component path.
+   *
+   * @see ComponentPathTemplate#appendEncodedPath(StringBuilder, CharSequence)
    */
   protected String createAbsoluteUrlWith(final Object... paths) {
 
-    final var builder = new StringBuilder();
+    if (paths.length > 0 && paths[0] instanceof ComponentPathTemplate) {
+
+      return ((ComponentPathTemplate) paths[0]).expand(this.componentURL, paths, 1);
+    }
+
+    final var builder = new StringBuilder(this.componentURL == null ? 64 : this.componentURL.length() + 64);
     builder.append(this.componentURL);
     for (final Object path : paths) {
 
       final var pathSegment = String.valueOf(path);
-      final var max = pathSegment.length();
-      if (max > 0 && pathSegment.charAt(0) != '/' && builder.charAt(builder.length() - 1) != '/') {
+      if (pathSegment.length() > 0 && pathSegment.charAt(0) != '/' && builder.charAt(builder.length() - 1) != '/') {
 
         builder.append('/');
       }
-
-      for (var i = 0; i < max; i++) {
-
-        final var c = pathSegment.charAt(i);
-        if (Character.isLetterOrDigit(c) || c == '-' || c == '.' || c == '_' || c == '~') {
-
-          builder.append(c);
-
-        } else if (c == '/') {
-
-          if (builder.charAt(builder.length() - 1) != '/') {
-
-            builder.append(c);
-
-          } // else ignored
-
-        } else {
-
-          final var bytes = String.valueOf(c).getBytes(Charset.defaultCharset());
-          for (final byte b : bytes) {
-
-            builder.append('%');
-            builder.append(Integer.toHexString(b >> 4 & 0xf));
-            builder.append(Integer.toHexString(b & 0xf));
-          }
-        }
-      }
+      ComponentPathTemplate.appendEncodedPath(builder, pathSegment);
 
     }
 
@@ -461,6 +505,29 @@ public class ComponentClient {
 
   }
 
+  /**
+   * Create a request to the specified URL with the specified query parameters.
+   *
+   * @param method      the HTTP method.
+   * @param url         to request.
+   * @param queryParams parameters for the request.
+   * @param timeout     milliseconds that the request can take, or {@code 0} if
+   *                    it does not have deadline.
+   *
+   * @return the request to call.
+   */
+  protected HttpRequest<Buffer> createRequestFor(final HttpMethod method, @NotNull final String url,
+      final Map<String, String> queryParams, final long timeout) {
+
+    final var request = this.createRequestFor(method, url, queryParams);
+    if (timeout > 0) {
+
+      request.timeout(timeout);
+    }
+    return request;
+
+  }
+
   /**
    * Create a request to the specified URL with the specified query parameters.
    *
@@ -483,12 +550,360 @@ public class ComponentClient {
         request = request.addQueryParam(key, value);
       }
     }
+    final var trace = TraceContext.current();
+    if (trace != null) {
+
+      request.putHeader(TraceContext.TRACEPARENT_HEADER, trace.toTraceparent());
+    }
     return request;
 
   }
 
   /**
-   * Return the action identifier to the specified method and URL.
+   * Send a request without content. The identical {@code GET} and {@code HEAD}
+   * requests that are sent while another is in flight do not generate a new
+   * HTTP request, they receive the response of the one in flight. The response
+   * is shared, so each caller has to extract its own model from the body.
+   *
+   * @param method      the HTTP method.
+   * @param url         to request.
+   * @param queryParams parameters for the request, or {@code null} if it does
+   *                    not have parameters.
+   *
+   * @return the future response of the request.
+   */
+  protected Future<HttpResponse<Buffer>> send(final HttpMethod method, @NotNull final String url,
+      final Map<String, String> queryParams) {
+
+    if (!this.coalesceRequests || !HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method)) {
+
+      return this.sendRequest(method, url, queryParams);
+    }
+
+    final var key = this.createRequestKey(method, url, queryParams);
+    final Promise<HttpResponse<Buffer>> promise = Promise.promise();
+    final var flight = promise.future();
+    final var inFlight = this.inFlightRequests.putIfAbsent(key, flight);
+    ComponentClientMetrics.coalescedOnCurrentContext(url, inFlight != null);
+    if (inFlight != null) {
+
+      Logger.trace("{} shares the response of the request in flight", key);
+      return inFlight;
+    }
+
+    this.sendRequest(method, url, queryParams).onComplete(result -> {
+
+      this.inFlightRequests.remove(key, flight);
+      promise.handle(result);
+    });
+    return flight;
+
+  }
+
+  /**
+   * Send a HTTP request without content.
+   *
+   * @param method      the HTTP method.
+   * @param url         to request.
+   * @param queryParams parameters for the request, or {@code null} if it does
+   *                    not have parameters.
+   *
+   * @return the future response of the request.
+   */
+  protected Future<HttpResponse<Buffer>> sendRequest(final HttpMethod method, @NotNull final String url,
+      final Map<String, String> queryParams) {
+
+    return this.execute(method, url, timeout -> this.createRequestFor(method, url, queryParams, timeout).send());
+
+  }
+
+  /**
+   * Execute a request isolated from the failures and the latency of the
+   * component. The request is rejected if the circuit to the component is open
+   * or there are too many requests in flight, and it fails if it does not
+   * finish before its deadline. The slow {@code GET} and {@code HEAD} requests
+   * are hedged with a second request if it is enabled.
+   *
+   * @param method  the HTTP method.
+   * @param url     to request.
+   * @param attempt function that sends the request with a deadline, in
+   *                milliseconds or {@code 0} if it does not have.
+   *
+   * @return the future response of the request.
+   *
+   * @see ComponentClientResilience
+   */
+  protected Future<HttpResponse<Buffer>> execute(final HttpMethod method, @NotNull final String url,
+      @NotNull final Function<Long, Future<HttpResponse<Buffer>>> attempt) {
+
+    final var rejected = this.resilience.tryAcquire();
+    if (rejected != null) {
+
+      ComponentClientMetrics.rejectedOnCurrentContext(url,
+          rejected.getDebugInfo().getString(ComponentClientResilience.REASON));
+      return Future.failedFuture(rejected);
+    }
+
+    final var start = System.nanoTime();
+    final var timeout = this.resilience.timeout();
+    Future<HttpResponse<Buffer>> response;
+    final var hedgeDelay = HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method)
+        ? this.resilience.hedgeDelay()
+        : -1;
+    if (hedgeDelay > 0) {
+
+      response = this.hedge(method, url, attempt, timeout, hedgeDelay);
+
+    } else {
+
+      response = this.attempt(method, url, attempt, timeout);
+    }
+    return response.onComplete(done -> {
+
+      final var success = done.succeeded()
+          && Status.Family.familyOf(done.result().statusCode()) != Status.Family.SERVER_ERROR;
+      this.resilience.release(success, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), timeout);
+    });
+
+  }
+
+  /**
+   * Send a request and measure it.
+   *
+   * @param method  the HTTP method.
+   * @param url     to request.
+   * @param attempt function that sends the request with a deadline.
+   * @param timeout deadline of the request.
+   *
+   * @return the future response of the request.
+   */
+  protected Future<HttpResponse<Buffer>> attempt(final HttpMethod method, @NotNull final String url,
+      @NotNull final Function<Long, Future<HttpResponse<Buffer>>> attempt, final long timeout) {
+
+    final var span = TraceSpan.start("HTTP " + method.name(), TraceSpan.CLIENT).attribute("http.method", method.name())
+        .attribute("http.url", url);
+    final var sample = ComponentClientMetrics.startOnCurrentContext(method, url);
+    Future<HttpResponse<Buffer>> response;
+    final var previous = span.attach();
+    try {
+
+      response = attempt.apply(timeout);
+
+    } catch (final Throwable throwable) {
+
+      response = Future.failedFuture(throwable);
+
+    } finally {
+
+      TraceContext.attach(previous);
+    }
+    return ComponentClientMetrics.stop(sample, response).onComplete(done -> {
+
+      if (done.succeeded()) {
+
+        span.attribute("http.status_code", done.result().statusCode());
+      }
+      span.end(done.cause());
+    });
+
+  }
+
+  /**
+   * Send a request and, if it does not finish after a delay, send another one.
+   * The response is the first successful one, or the last failure if both
+   * fail. The second request is only sent if it fits on the bounded
+   * concurrency of the component.
+   *
+   * @param method  the HTTP method.
+   * @param url     to request.
+   * @param attempt function that sends the request with a deadline.
+   * @param timeout deadline of the requests.
+   * @param delay   milliseconds to wait before send the second request.
+   *
+   * @return the future response of the request.
+   */
+  protected Future<HttpResponse<Buffer>> hedge(final HttpMethod method, @NotNull final String url,
+      @NotNull final Function<Long, Future<HttpResponse<Buffer>>> attempt, final long timeout, final long delay) {
+
+    final var context = Vertx.currentContext();
+    if (context == null) {
+
+      return this.attempt(method, url, attempt, timeout);
+    }
+
+    final Promise<HttpResponse<Buffer>> promise = Promise.promise();
+    final var pending = new AtomicInteger(1);
+    final Handler<AsyncResult<HttpResponse<Buffer>>> handler = result -> {
+
+      if (result.succeeded()) {
+
+        promise.tryComplete(result.result());
+
+      } else if (pending.decrementAndGet() == 0) {
+
+        promise.tryFail(result.cause());
+      }
+    };
+    this.attempt(method, url, attempt, timeout).onComplete(handler);
+    final var vertx = context.owner();
+    final var timerId = vertx.setTimer(delay, id -> {
+
+      if (!promise.future().isComplete() && this.resilience.tryAcquireHedge()) {
+
+        pending.incrementAndGet();
+        ComponentClientMetrics.hedgedOnCurrentContext(url);
+        this.attempt(method, url, attempt, timeout).onComplete(done -> {
+
+          this.resilience.releaseHedge();
+          handler.handle(done);
+        });
+      }
+    });
+    return promise.future().onComplete(done -> vertx.cancelTimer(timerId));
+
+  }
+
+  /**
+   * Apply an operation to each distinct identifier of a batch. The operations
+   * are started in the order of the identifiers, keeping at most
+   * {@link #batchConcurrency} of them in flight, so a big batch does not flood
+   * the component nor the connections pool.
+   *
+   * @param ids       identifiers of the batch. The {@code null} and repeated
+   *                  identifiers are ignored.
+   * @param operation to apply to each identifier.
+   * @param <T>       type of the result of the operation.
+   *
+   * @return the future with the result of each identifier, in the order of the
+   *         identifiers, or the first failure of an operation.
+   */
+  protected <T> Future<Map<String, T>> batch(@NotNull final Iterable<String> ids,
+      @NotNull final Function<String, Future<T>> operation) {
+
+    final var distinct = new LinkedHashSet<String>();
+    for (final var id : ids) {
+
+      if (id != null) {
+
+        distinct.add(id);
+      }
+    }
+    final var keys = new ArrayList<>(distinct);
+    final Promise<Map<String, T>> promise = Promise.promise();
+    if (keys.isEmpty()) {
+
+      promise.complete(new LinkedHashMap<>());
+
+    } else {
+
+      final var results = new ArrayList<T>(Collections.nCopies(keys.size(), null));
+      final var pending = new AtomicInteger(keys.size());
+      final var next = new AtomicInteger();
+      final var workers = Math.min(keys.size(), Math.max(1, this.batchConcurrency));
+      for (var i = 0; i < workers; i++) {
+
+        this.batchNext(keys, operation, results, pending, next, promise);
+      }
+    }
+    return promise.future();
+
+  }
+
+  /**
+   * Start the operation over the next identifier of a batch, and when it
+   * finishes start the following one.
+   *
+   * @param keys      the distinct identifiers of the batch.
+   * @param operation to apply to each identifier.
+   * @param results   of the finished operations.
+   * @param pending   number of operations that have not finished.
+   * @param next      index of the next identifier to start.
+   * @param promise   to complete when all the operations have finished.
+   * @param <T>       type of the result of the operation.
+   */
+  private <T> void batchNext(final List<String> keys, final Function<String, Future<T>> operation,
+      final List<T> results, final AtomicInteger pending, final AtomicInteger next,
+      final Promise<Map<String, T>> promise) {
+
+    final var index = next.getAndIncrement();
+    if (index >= keys.size() || promise.future().isComplete()) {
+
+      return;
+    }
+
+    Future<T> result;
+    try {
+
+      result = operation.apply(keys.get(index));
+
+    } catch (final Throwable cause) {
+
+      result = Future.failedFuture(cause);
+    }
+    result.onComplete(done -> {
+
+      if (done.failed()) {
+
+        promise.tryFail(done.cause());
+
+      } else {
+
+        synchronized (results) {
+
+          results.set(index, done.result());
+        }
+        if (pending.decrementAndGet() == 0) {
+
+          final var map = new LinkedHashMap<String, T>();
+          synchronized (results) {
+
+            for (var i = 0; i < keys.size(); i++) {
+
+              map.put(keys.get(i), results.get(i));
+            }
+          }
+          promise.tryComplete(map);
+
+        } else {
+
+          this.batchNext(keys, operation, results, pending, next, promise);
+        }
+      }
+    });
+
+  }
+
+  /**
+   * Return the key that identify a request.
+   *
+   * @param method      the HTTP method.
+   * @param url         to request.
+   * @param queryParams parameters for the request, or {@code null} if it does
+   *                    not have parameters.
+   *
+   * @return the key of the request.
+   */
+  protected String createRequestKey(@NotNull final HttpMethod method, @NotNull final String url,
+      final Map<String, String> queryParams) {
+
+    final var key = new StringBuilder();
+    key.append(method.name()).append(' ').append(url);
+    if (queryParams != null && !queryParams.isEmpty()) {
+
+      key.append('?');
+      for (final var entry : new TreeMap<>(queryParams).entrySet()) {
+
+        key.append(entry.getKey()).append('=').append(entry.getValue()).append('&');
+      }
+    }
+    return key.toString();
+
+  }
+
+  /**
+   * Return the action identifier to the specified method and URL. If the
+   * request is done in a trace, the identifier is the one of the trace and the
+   * span that is running, thus the messages can be related to the trace.
    *
    * @param method the HTTP method.
    * @param url    to request.
@@ -497,7 +912,10 @@ public class ComponentClient {
    */
   protected String createActionId(@NotNull final HttpMethod method, @NotNull final String url) {
 
-    return "[" + UUID.randomUUID() + "] " + method + " " + url;
+    final var trace = TraceContext.current();
+    final var id = trace == null ? UUID.randomUUID().toString() : trace.traceId + "-" + trace.spanId;
+    return "[" + id + "] " + method + " " + url;
+
   }
 
   /**
@@ -516,6 +934,37 @@ public class ComponentClient {
 
   }
 
+  /**
+   * Return the action identifier to trace a request. The identifier is only
+   * created when the trace messages are logged, so the requests do not pay for
+   * it otherwise.
+   *
+   * @param method      the HTTP method.
+   * @param url         to request.
+   * @param queryParams parameters for the request, or {@code null} if it does
+   *                    not have parameters.
+   *
+   * @return the action identifier, or {@code null} if the trace messages are
+   *         not logged.
+   */
+  protected String createTracedActionId(@NotNull final HttpMethod method, @NotNull final String url,
+      final Map<String, String> queryParams) {
+
+    if (!Logger.isTraceEnabled()) {
+
+      return null;
+
+    } else if (queryParams == null || queryParams.isEmpty()) {
+
+      return this.createActionId(method, url);
+
+    } else {
+
+      return this.createActionId(method, url, queryParams);
+    }
+
+  }
+
   /**
    * Request and process the response.
    *
@@ -531,11 +980,11 @@ public class ComponentClient {
       @NotNull final Function<HttpResponse<Buffer>, T> extractor) {
 
     final Promise<T> promise = Promise.promise();
-    final var actionId = this.createActionId(method, url);
+    final var actionId = this.createTracedActionId(method, url, null);
     Logger.trace("{} STARTED", actionId);
     try {
 
-      this.client.requestAbs(method, url).send()
+      this.send(method, url, null)
           .onSuccess(this.createHandlerThatExtractBodyFromSuccessResponse(extractor, promise, actionId))
           .onFailure(this.createRequestFailureHandler(promise, actionId));
 
@@ -565,11 +1014,11 @@ public class ComponentClient {
       final Map<String, String> queryParams, @NotNull final Function<HttpResponse<Buffer>, T> extractor) {
 
     final Promise<T> promise = Promise.promise();
-    final var actionId = this.createActionId(method, url, queryParams);
+    final var actionId = this.createTracedActionId(method, url, queryParams);
     Logger.trace("{} STARTED", actionId);
     try {
 
-      this.createRequestFor(method, url, queryParams).send()
+      this.send(method, url, queryParams)
           .onSuccess(this.createHandlerThatExtractBodyFromSuccessResponse(extractor, promise, actionId))
           .onFailure(this.createRequestFailureHandler(promise, actionId));
 
@@ -601,11 +1050,11 @@ public class ComponentClient {
       @NotNull final Function<HttpResponse<Buffer>, T> extractor) {
 
     final Promise<T> promise = Promise.promise();
-    final var actionId = this.createActionId(method, url);
+    final var actionId = this.createTracedActionId(method, url, queryParams);
     Logger.trace("{} with {} STARTED", actionId, content);
     try {
 
-      this.createRequestFor(method, url, queryParams).sendJson(content)
+      this.execute(method, url, timeout -> this.createRequestFor(method, url, queryParams, timeout).sendJson(content))
           .onSuccess(this.createHandlerThatExtractBodyFromSuccessResponse(extractor, promise, actionId))
           .onFailure(this.createRequestFailureHandler(promise, actionId));
 
@@ -649,6 +1098,33 @@ public class ComponentClient {
     return response -> response.bodyAsJsonArray();
   }
 
+  /**
+   * Create the component to decode a model from the body of a response. The
+   * body is decoded directly into the model, without an intermediate
+   * {@link JsonObject}.
+   *
+   * @param type of the model to decode.
+   * @param <T>  type of the model.
+   *
+   * @return the extractor to obtain the model from the response.
+   *
+   * @see ModelReaders#decodeValue(Buffer, Class)
+   */
+  protected <T> Function<HttpResponse<Buffer>, T> createModelExtractor(@NotNull final Class<T> type) {
+
+    return response -> {
+
+      try {
+
+        return ModelReaders.decodeValue(response.body(), type);
+
+      } catch (final IOException cause) {
+
+        throw new DecodeException("Cannot decode the " + type.getSimpleName() + " of the response", cause);
+      }
+    };
+  }
+
   /**
    * Create the handler to manage when the request failed.
    *
@@ -805,6 +1281,36 @@ public class ComponentClient {
 
   }
 
+  /**
+   * Get a model with some parameters. The body of the response is decoded
+   * directly into the model.
+   *
+   * @param type        of the model to get.
+   * @param queryParams the query parameters, or {@code null} if it does not
+   *                    have parameters.
+   * @param paths       to the resource to get.
+   * @param <T>         type of the model.
+   *
+   * @return the future received model.
+   */
+  protected <T> Future<T> getModel(@NotNull final Class<T> type, final Map<String, String> queryParams,
+      final Object... paths) {
+
+    return this.request(HttpMethod.GET, this.createAbsoluteUrlWith(paths), queryParams,
+        this.createModelExtractor(type)).compose(model -> {
+
+          if (model == null) {
+
+            return Future.failedFuture("No " + type.getSimpleName() + " on the response");
+
+          } else {
+
+            return Future.succeededFuture(model);
+          }
+        });
+
+  }
+
   /**
    * Delete a resource.
    *
@@ -855,11 +1361,11 @@ public class ComponentClient {
   protected Future<Boolean> headWithAbsolute(final String url) {
 
     final Promise<Boolean> promise = Promise.promise();
-    final var actionId = this.createActionId(HttpMethod.HEAD, url);
-    Logger.trace("{} with {} STARTED", actionId);
+    final var actionId = this.createTracedActionId(HttpMethod.HEAD, url, null);
+    Logger.trace("{} STARTED", actionId);
     try {
 
-      this.client.requestAbs(HttpMethod.HEAD, url).send().onSuccess(response -> {
+      this.send(HttpMethod.HEAD, url, null).onSuccess(response -> {
 
         final var code = response.statusCode();
         final var success = Status.Family.familyOf(code) == Status.Family.SUCCESSFUL;
@@ -0,0 +1,587 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.client.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.validation.constraints.NotNull;
+
+/**
+ * The metrics of the requests that the {@link ComponentClient} of a Vert.x
+ * instance do to the other components. It measures the latency and the errors
+ * by destination and method, the requests in flight to each destination and
+ * the requests that have to wait for a connection, because there are more
+ * requests in flight than the capacity of the pool of the destination. The
+ * capacity depends on the HTTP version negotiated with the destination, that is
+ * HTTP/1.1 until a response is received over HTTP/2. The metrics are
+ * registered on the Micrometer registry of the Vert.x instance, with the
+ * {@link PersistenceMetrics}.
+ *
+ * @see ComponentClientOptions#capacity(HttpVersion)
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class ComponentClientMetrics implements Shareable {
+
+  /**
+   * The name of the shared map where the metrics are stored.
+   */
+  public static final String SHARED_MAP_NAME = "eu.internetofus.common.vertx.ComponentClientMetrics";
+
+  /**
+   * The result of a lookup that has found a fresh value on a cache.
+   */
+  public static final String CACHE_HIT = "hit";
+
+  /**
+   * The result of a lookup that has found a value on a cache that is not fresh,
+   * but that can be used while it is refreshed.
+   */
+  public static final String CACHE_STALE = "stale";
+
+  /**
+   * The result of a lookup that has not found a value on a cache.
+   */
+  public static final String CACHE_MISS = "miss";
+
+  /**
+   * The name of the tag with the destination of the requests.
+   */
+  public static final String DESTINATION_TAG = "destination";
+
+  /**
+   * The metrics of the requests to a destination.
+   */
+  protected class Destination {
+
+    /**
+     * The destination of the requests.
+     */
+    protected final String name;
+
+    /**
+     * The number of requests that are in flight.
+     */
+    protected final AtomicLong inFlight = new AtomicLong();
+
+    /**
+     * The number of requests that have had to wait for a connection.
+     */
+    protected final Counter waits;
+
+    /**
+     * The HTTP version of the last response of the destination.
+     */
+    protected volatile HttpVersion version = HttpVersion.HTTP_1_1;
+
+    /**
+     * Create the metrics of a destination.
+     *
+     * @param name of the destination.
+     */
+    protected Destination(final String name) {
+
+      this.name = name;
+      final var registry = ComponentClientMetrics.this.registry;
+      Gauge.builder("wenet.component.requests.in.flight", this.inFlight, AtomicLong::get)
+          .description("Requests to a component that are in flight.").tag(DESTINATION_TAG, name).register(registry);
+      Gauge.builder("wenet.component.pool.wait.queue.size", this, Destination::waiting)
+          .description("Requests waiting for a connection to a component.").tag(DESTINATION_TAG, name)
+          .register(registry);
+      Gauge.builder("wenet.component.pool.capacity", this, Destination::capacity)
+          .description("Concurrent requests to a component before waiting for a connection.")
+          .tag(DESTINATION_TAG, name).register(registry);
+      this.waits = Counter.builder("wenet.component.pool.waits")
+          .description("Requests that have waited for a connection.").tag(DESTINATION_TAG, name).register(registry);
+    }
+
+    /**
+     * Return the maximum number of concurrent requests before they have to wait
+     * for a connection, with the HTTP version negotiated with the destination.
+     *
+     * @return the capacity of the pool of the destination.
+     */
+    protected int capacity() {
+
+      return ComponentClientMetrics.this.options.capacity(this.version);
+    }
+
+    /**
+     * Return the number of requests that are waiting for a connection.
+     *
+     * @return the requests in flight that exceed the capacity of the pool.
+     */
+    protected long waiting() {
+
+      return Math.max(0, this.inFlight.get() - this.capacity());
+    }
+
+    /**
+     * Count an event of the destination.
+     *
+     * @param counterName name of the counter of the event.
+     * @param description of the counter.
+     * @param tags        of the event, besides the destination.
+     */
+    protected void count(final String counterName, final String description, final String... tags) {
+
+      Counter.builder(counterName).description(description).tag(DESTINATION_TAG, this.name).tags(tags)
+          .register(ComponentClientMetrics.this.registry).increment();
+    }
+
+  }
+
+  /**
+   * A measure of the latency of a request that has started.
+   */
+  public class Sample {
+
+    /**
+     * The metrics of the destination of the request.
+     */
+    protected final Destination destination;
+
+    /**
+     * The name of the method of the request.
+     */
+    protected final String method;
+
+    /**
+     * The nanoseconds when the request has started.
+     */
+    protected final long start = System.nanoTime();
+
+    /**
+     * Create a sample.
+     *
+     * @param destination metrics of the destination of the request.
+     * @param method      name of the method of the request.
+     */
+    protected Sample(final Destination destination, final String method) {
+
+      this.destination = destination;
+      this.method = method;
+      final var inFlight = destination.inFlight.incrementAndGet();
+      if (inFlight > destination.capacity()) {
+
+        destination.waits.increment();
+      }
+    }
+
+    /**
+     * Record the latency of the request when it finishes, and the HTTP version
+     * of its response.
+     *
+     * @param result future result of the request.
+     *
+     * @param <T>    type of the result.
+     *
+     * @return the result of the request.
+     */
+    public <T> Future<T> stop(final Future<T> result) {
+
+      return result.onComplete(done -> {
+
+        this.destination.inFlight.decrementAndGet();
+        if (done.result() instanceof HttpResponse) {
+
+          this.destination.version = ((HttpResponse<?>) done.result()).version();
+        }
+        Timer.builder("wenet.component.request").description("Latency of the requests to the other components.")
+            .tags(DESTINATION_TAG, this.destination.name, "method", this.method, PersistenceMetrics.OUTCOME_TAG,
+                done.succeeded() ? PersistenceMetrics.SUCCESS_OUTCOME : PersistenceMetrics.ERROR_OUTCOME)
+            .serviceLevelObjectives(PersistenceMetrics.LATENCY_BUCKETS).register(ComponentClientMetrics.this.registry)
+            .record(System.nanoTime() - this.start, TimeUnit.NANOSECONDS);
+      });
+    }
+
+  }
+
+  /**
+   * The metrics of the requests by destination.
+   */
+  protected final Map<String, Destination> destinations = new ConcurrentHashMap<>();
+
+  /**
+   * The registry where the metrics are registered.
+   */
+  protected final MeterRegistry registry;
+
+  /**
+   * The options of the clients, that define the capacity of the pools.
+   */
+  protected volatile ComponentClientOptions options = new ComponentClientOptions();
+
+  /**
+   * This is {@code true} if the requests are measured.
+   */
+  protected volatile boolean enabled = true;
+
+  /**
+   * Create the metrics.
+   *
+   * @param registry where the metrics are registered.
+   */
+  public ComponentClientMetrics(@NotNull final MeterRegistry registry) {
+
+    this.registry = registry;
+
+  }
+
+  /**
+   * Obtain the metrics that are shared by all the clients of a Vert.x instance.
+   *
+   * @param vertx instance to get the metrics.
+   *
+   * @return the metrics of the instance.
+   */
+  public static ComponentClientMetrics shared(@NotNull final Vertx vertx) {
+
+    return vertx.sharedData().<String, ComponentClientMetrics>getLocalMap(SHARED_MAP_NAME)
+        .computeIfAbsent(SHARED_MAP_NAME, key -> new ComponentClientMetrics(PersistenceMetrics.registryOf(vertx)));
+
+  }
+
+  /**
+   * Start to measure a request done on the context of a Vert.x instance.
+   *
+   * @param method of the request.
+   * @param url    absolute URL of the request.
+   *
+   * @return the sample to stop when the request finishes, or {@code null} if
+   *         the request is not measured.
+   */
+  public static Sample startOnCurrentContext(final HttpMethod method, final String url) {
+
+    final var context = Vertx.currentContext();
+    if (context == null) {
+
+      return null;
+
+    } else {
+
+      return shared(context.owner()).start(method, url);
+    }
+
+  }
+
+  /**
+   * Record the latency of a request if it is measured.
+   *
+   * @param sample of the request, or {@code null} if it is not measured.
+   * @param result future result of the request.
+   *
+   * @param <T>    type of the result.
+   *
+   * @return the result of the request.
+   */
+  public static <T> Future<T> stop(final Sample sample, final Future<T> result) {
+
+    if (sample == null) {
+
+      return result;
+
+    } else {
+
+      return sample.stop(result);
+    }
+
+  }
+
+  /**
+   * Count an idempotent request done on the context of a Vert.x instance that
+   * can share the response of an identical request in flight.
+   *
+   * @param url absolute URL of the request.
+   * @param hit {@code true} if the request shares the response of a request in
+   *            flight.
+   */
+  public static void coalescedOnCurrentContext(final String url, final boolean hit) {
+
+    final var context = Vertx.currentContext();
+    if (context != null) {
+
+      shared(context.owner()).coalesced(url, hit);
+    }
+
+  }
+
+  /**
+   * Count a lookup on a cache of a client done on the context of a Vert.x
+   * instance.
+   *
+   * @param url    of the component of the client.
+   * @param cache  name of the cache.
+   * @param path   of the component where the cached values are obtained.
+   * @param result of the lookup.
+   *
+   * @see #CACHE_HIT
+   * @see #CACHE_STALE
+   * @see #CACHE_MISS
+   */
+  public static void cacheLookupOnCurrentContext(final String url, final String cache, final String path,
+      final String result) {
+
+    final var context = Vertx.currentContext();
+    if (context != null) {
+
+      shared(context.owner()).cacheLookup(url, cache, path, result);
+    }
+
+  }
+
+  /**
+   * Count a cached value of a client that is refreshed on the context of a
+   * Vert.x instance.
+   *
+   * @param url   of the component of the client.
+   * @param cache name of the cache.
+   * @param path  of the component where the cached values are obtained.
+   */
+  public static void cacheRefreshOnCurrentContext(final String url, final String cache, final String path) {
+
+    final var context = Vertx.currentContext();
+    if (context != null) {
+
+      shared(context.owner()).cacheRefresh(url, cache, path);
+    }
+
+  }
+
+  /**
+   * Count a request rejected on the context of a Vert.x instance.
+   *
+   * @param url    absolute URL of the request.
+   * @param reason why the request is rejected.
+   *
+   * @see ComponentClientResilience#tryAcquire()
+   */
+  public static void rejectedOnCurrentContext(final String url, final String reason) {
+
+    final var context = Vertx.currentContext();
+    if (context != null) {
+
+      shared(context.owner()).rejected(url, reason);
+    }
+
+  }
+
+  /**
+   * Count a request hedged on the context of a Vert.x instance.
+   *
+   * @param url absolute URL of the request.
+   */
+  public static void hedgedOnCurrentContext(final String url) {
+
+    final var context = Vertx.currentContext();
+    if (context != null) {
+
+      shared(context.owner()).hedged(url);
+    }
+
+  }
+
+  /**
+   * Configure the metrics with the options of the clients.
+   *
+   * @param options of the clients.
+   */
+  public void configure(@NotNull final ComponentClientOptions options) {
+
+    this.options = options;
+    this.enabled = options.metrics;
+
+  }
+
+  /**
+   * Start to measure a request.
+   *
+   * @param method of the request.
+   * @param url    absolute URL of the request.
+   *
+   * @return the sample to stop when the request finishes, or {@code null} if
+   *         the requests are not measured.
+   */
+  public Sample start(@NotNull final HttpMethod method, final String url) {
+
+    if (!this.enabled) {
+
+      return null;
+
+    } else {
+
+      return new Sample(this.destinationMetrics(url), method.name());
+    }
+
+  }
+
+  /**
+   * Count an idempotent request that can share the response of an identical
+   * request in flight.
+   *
+   * @param url absolute URL of the request.
+   * @param hit {@code true} if the request shares the response of a request in
+   *            flight.
+   */
+  public void coalesced(final String url, final boolean hit) {
+
+    if (this.enabled) {
+
+      if (hit) {
+
+        this.destinationMetrics(url).count("wenet.component.coalesce.hits",
+            "Requests that shared the response of one in flight.");
+
+      } else {
+
+        this.destinationMetrics(url).count("wenet.component.coalesce.misses",
+            "Idempotent requests sent without one in flight.");
+      }
+    }
+
+  }
+
+  /**
+   * Count a rejected request.
+   *
+   * @param url    absolute URL of the request.
+   * @param reason why the request is rejected.
+   */
+  public void rejected(final String url, final String reason) {
+
+    if (this.enabled) {
+
+      this.destinationMetrics(url).count("wenet.component.rejections", "Requests rejected to isolate a component.",
+          "reason", String.valueOf(reason));
+    }
+
+  }
+
+  /**
+   * Count a request that is hedged with a second request.
+   *
+   * @param url absolute URL of the request.
+   */
+  public void hedged(final String url) {
+
+    if (this.enabled) {
+
+      this.destinationMetrics(url).count("wenet.component.hedges", "Slow requests hedged with a second request.");
+    }
+
+  }
+
+  /**
+   * Return the metrics of the destination of an URL.
+   *
+   * @param url absolute URL of the requests.
+   *
+   * @return the metrics of the destination of the URL.
+   */
+  protected Destination destinationMetrics(final String url) {
+
+    return this.destinations.computeIfAbsent(destinationOf(url), Destination::new);
+
+  }
+
+  /**
+   * Count a lookup on a cache of a client.
+   *
+   * @param url    of the component of the client.
+   * @param cache  name of the cache.
+   * @param path   of the component where the cached values are obtained.
+   * @param result of the lookup.
+   */
+  public void cacheLookup(final String url, @NotNull final String cache, @NotNull final String path,
+      @NotNull final String result) {
+
+    if (this.enabled) {
+
+      this.destinationMetrics(url).count("wenet.component.cache.lookups", "Lookups on the caches of the clients.",
+          "cache", cache, "path", path, "result", result);
+    }
+
+  }
+
+  /**
+   * Count a cached value of a client that is refreshed.
+   *
+   * @param url   of the component of the client.
+   * @param cache name of the cache.
+   * @param path  of the component where the cached values are obtained.
+   */
+  public void cacheRefresh(final String url, @NotNull final String cache, @NotNull final String path) {
+
+    if (this.enabled) {
+
+      this.destinationMetrics(url).count("wenet.component.cache.refreshes", "Cached values refreshed by the clients.",
+          "cache", cache, "path", path);
+    }
+
+  }
+
+  /**
+   * Return the destination of an URL, that is the scheme, the host and the port.
+   *
+   * @param url to get the destination.
+   *
+   * @return the destination of the URL.
+   */
+  public static String destinationOf(final String url) {
+
+    if (url == null) {
+
+      return "";
+    }
+    var start = url.indexOf("://");
+    if (start < 0) {
+
+      start = 0;
+
+    } else {
+
+      start += 3;
+    }
+    for (var i = start; i < url.length(); i++) {
+
+      final var c = url.charAt(i);
+      if (c == '/' || c == '?' || c == '#') {
+
+        return url.substring(0, i);
+      }
+    }
+    return url;
+
+  }
+
+}
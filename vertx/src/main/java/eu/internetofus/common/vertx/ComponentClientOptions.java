@@ -0,0 +1,315 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClientOptions;
+import javax.validation.constraints.NotNull;
+
+/**
+ * The options of the connections that the {@link ComponentClient} use to
+ * interact with the other components. The properties have the same name that
+ * on the {@link WebClientOptions}, but when they are not defined on the
+ * {@code webClient} configuration the defaults are tuned for the traffic
+ * between components, that is a lot of small requests to a few destinations.
+ * Thus, by default the requests are sent over HTTP/1.1 reusing the idle
+ * connections, that are closed before the proxies and servers close them. If
+ * the protocol version is HTTP/2 the requests are multiplexed when the
+ * destination supports it, upgraded from a clear text HTTP/1.1 connection or
+ * negotiated with ALPN on TLS, and otherwise they fall back to HTTP/1.1. The
+ * sizes of the pools are applied to each destination, and the number of
+ * requests that wait for a connection is bounded. The values defined on the
+ * {@code webClient} configuration are never replaced by these defaults.
+ *
+ * @see AbstractServicesVerticle#createWebClientSession(io.vertx.core.Vertx,
+ *      JsonObject)
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class ComponentClientOptions {
+
+  /**
+   * The name of the configuration property that contains the HTTP version to
+   * use.
+   */
+  public static final String PROTOCOL_VERSION_KEY = "protocolVersion";
+
+  /**
+   * The default HTTP version to use.
+   */
+  public static final HttpVersion DEFAULT_PROTOCOL_VERSION = HttpVersion.HTTP_1_1;
+
+  /**
+   * The name of the configuration property that is {@code false} if the clear
+   * text connections have to use HTTP/2 without upgrade them from HTTP/1.1. It
+   * can only be used when all the destinations support HTTP/2.
+   */
+  public static final String HTTP2_CLEAR_TEXT_UPGRADE_KEY = "http2ClearTextUpgrade";
+
+  /**
+   * The name of the configuration property that contains the maximum number of
+   * HTTP/1.1 connections to each destination.
+   */
+  public static final String MAX_POOL_SIZE_KEY = "maxPoolSize";
+
+  /**
+   * The default maximum number of HTTP/1.1 connections to each destination.
+   */
+  public static final int DEFAULT_MAX_POOL_SIZE = 32;
+
+  /**
+   * The name of the configuration property that contains the maximum number of
+   * HTTP/2 connections to each destination.
+   */
+  public static final String HTTP2_MAX_POOL_SIZE_KEY = "http2MaxPoolSize";
+
+  /**
+   * The default maximum number of HTTP/2 connections to each destination.
+   */
+  public static final int DEFAULT_HTTP2_MAX_POOL_SIZE = 2;
+
+  /**
+   * The name of the configuration property that contains the maximum number of
+   * concurrent requests on each HTTP/2 connection.
+   */
+  public static final String HTTP2_MULTIPLEXING_LIMIT_KEY = "http2MultiplexingLimit";
+
+  /**
+   * The default maximum number of concurrent requests on each HTTP/2
+   * connection.
+   */
+  public static final int DEFAULT_HTTP2_MULTIPLEXING_LIMIT = 100;
+
+  /**
+   * The name of the configuration property that is {@code false} if the
+   * connections must not be reused.
+   */
+  public static final String KEEP_ALIVE_KEY = "keepAlive";
+
+  /**
+   * The name of the configuration property that is {@code true} if the ALPN has
+   * to be used to negotiate the protocol on TLS.
+   */
+  public static final String USE_ALPN_KEY = "useAlpn";
+
+  /**
+   * The name of the configuration property that contains the seconds that an
+   * idle HTTP/1.1 connection is kept alive.
+   */
+  public static final String KEEP_ALIVE_TIMEOUT_KEY = "keepAliveTimeout";
+
+  /**
+   * The name of the configuration property that contains the seconds that an
+   * idle HTTP/2 connection is kept alive.
+   */
+  public static final String HTTP2_KEEP_ALIVE_TIMEOUT_KEY = "http2KeepAliveTimeout";
+
+  /**
+   * The default seconds that an idle connection is kept alive. It is lower than
+   * the 60 seconds that the load balancers and proxies usually wait before
+   * closing an idle connection, thus the requests are not sent over connections
+   * that the other side is closing.
+   */
+  public static final int DEFAULT_KEEP_ALIVE_TIMEOUT = 50;
+
+  /**
+   * The name of the configuration property that contains the maximum number of
+   * requests that can wait for a connection to a destination.
+   */
+  public static final String MAX_WAIT_QUEUE_SIZE_KEY = "maxWaitQueueSize";
+
+  /**
+   * The default maximum number of requests that can wait for a connection to a
+   * destination. The requests that exceed it fail instead of waiting without
+   * limit as on the {@link WebClientOptions}.
+   */
+  public static final int DEFAULT_MAX_WAIT_QUEUE_SIZE = 1024;
+
+  /**
+   * The name of the configuration property that is {@code false} if the
+   * requests must not be measured.
+   */
+  public static final String METRICS_KEY = "metrics";
+
+  /**
+   * The HTTP version to use.
+   */
+  public HttpVersion protocolVersion = DEFAULT_PROTOCOL_VERSION;
+
+  /**
+   * This is {@code true} if the clear text HTTP/2 connections are upgraded from
+   * HTTP/1.1.
+   */
+  public boolean http2ClearTextUpgrade = true;
+
+  /**
+   * The maximum number of HTTP/1.1 connections to each destination.
+   */
+  public int maxPoolSize = DEFAULT_MAX_POOL_SIZE;
+
+  /**
+   * The maximum number of HTTP/2 connections to each destination.
+   */
+  public int http2MaxPoolSize = DEFAULT_HTTP2_MAX_POOL_SIZE;
+
+  /**
+   * The maximum number of concurrent requests on each HTTP/2 connection.
+   */
+  public int http2MultiplexingLimit = DEFAULT_HTTP2_MULTIPLEXING_LIMIT;
+
+  /**
+   * This is {@code true} if the connections are reused.
+   */
+  public boolean keepAlive = true;
+
+  /**
+   * This is {@code true} if the ALPN is used on TLS, {@code false} if it is not
+   * used, or {@code null} if it is used only when the requests are sent over
+   * HTTP/2.
+   */
+  public Boolean useAlpn;
+
+  /**
+   * The seconds that an idle HTTP/1.1 connection is kept alive.
+   */
+  public int keepAliveTimeout = DEFAULT_KEEP_ALIVE_TIMEOUT;
+
+  /**
+   * The seconds that an idle HTTP/2 connection is kept alive.
+   */
+  public int http2KeepAliveTimeout = DEFAULT_KEEP_ALIVE_TIMEOUT;
+
+  /**
+   * The maximum number of requests that can wait for a connection to a
+   * destination.
+   */
+  public int maxWaitQueueSize = DEFAULT_MAX_WAIT_QUEUE_SIZE;
+
+  /**
+   * This is {@code true} if the requests are measured.
+   */
+  public boolean metrics = true;
+
+  /**
+   * Create the default options.
+   */
+  public ComponentClientOptions() {
+
+  }
+
+  /**
+   * Create the options defined on a configuration.
+   *
+   * @param conf the {@code webClient} configuration.
+   */
+  public ComponentClientOptions(final JsonObject conf) {
+
+    if (conf != null) {
+
+      try {
+
+        this.protocolVersion = HttpVersion
+            .valueOf(conf.getString(PROTOCOL_VERSION_KEY, DEFAULT_PROTOCOL_VERSION.name()));
+
+      } catch (final IllegalArgumentException | NullPointerException ignored) {
+
+        this.protocolVersion = DEFAULT_PROTOCOL_VERSION;
+      }
+      this.http2ClearTextUpgrade = conf.getBoolean(HTTP2_CLEAR_TEXT_UPGRADE_KEY, true);
+      this.maxPoolSize = Math.max(1, conf.getInteger(MAX_POOL_SIZE_KEY, DEFAULT_MAX_POOL_SIZE));
+      this.http2MaxPoolSize = Math.max(1, conf.getInteger(HTTP2_MAX_POOL_SIZE_KEY, DEFAULT_HTTP2_MAX_POOL_SIZE));
+      this.http2MultiplexingLimit = conf.getInteger(HTTP2_MULTIPLEXING_LIMIT_KEY, DEFAULT_HTTP2_MULTIPLEXING_LIMIT);
+      this.keepAliveTimeout = Math.max(0, conf.getInteger(KEEP_ALIVE_TIMEOUT_KEY, DEFAULT_KEEP_ALIVE_TIMEOUT));
+      this.http2KeepAliveTimeout = Math.max(0,
+          conf.getInteger(HTTP2_KEEP_ALIVE_TIMEOUT_KEY, DEFAULT_KEEP_ALIVE_TIMEOUT));
+      this.keepAlive = conf.getBoolean(KEEP_ALIVE_KEY, this.keepAliveTimeout > 0);
+      this.useAlpn = conf.getBoolean(USE_ALPN_KEY);
+      this.maxWaitQueueSize = conf.getInteger(MAX_WAIT_QUEUE_SIZE_KEY, DEFAULT_MAX_WAIT_QUEUE_SIZE);
+      this.metrics = conf.getBoolean(METRICS_KEY, true);
+    }
+
+  }
+
+  /**
+   * Check if the requests are sent over HTTP/2.
+   *
+   * @return {@code true} if the HTTP/2 is used when the destination supports it.
+   */
+  public boolean isHttp2() {
+
+    return this.protocolVersion == HttpVersion.HTTP_2;
+
+  }
+
+  /**
+   * Return the maximum number of concurrent requests to a destination before
+   * they have to wait for a connection.
+   *
+   * @param version of HTTP negotiated with the destination.
+   *
+   * @return the number of connections of a pool, multiplied by the requests of
+   *         each one if they are multiplexed over HTTP/2.
+   */
+  public int capacity(final HttpVersion version) {
+
+    if (version == HttpVersion.HTTP_2 && this.isHttp2() && this.http2MultiplexingLimit > 0) {
+
+      return this.http2MaxPoolSize * this.http2MultiplexingLimit;
+
+    } else {
+
+      return this.maxPoolSize;
+    }
+
+  }
+
+  /**
+   * Set these options into the options of a web client.
+   *
+   * @param options to modify.
+   *
+   * @return the modified options.
+   */
+  public WebClientOptions applyTo(@NotNull final WebClientOptions options) {
+
+    options.setProtocolVersion(this.protocolVersion);
+    options.setHttp2ClearTextUpgrade(this.http2ClearTextUpgrade);
+    if (this.useAlpn != null) {
+
+      options.setUseAlpn(this.useAlpn);
+
+    } else if (this.isHttp2() && options.isSsl()) {
+
+      options.setUseAlpn(true);
+    }
+    options.setMaxPoolSize(this.maxPoolSize);
+    options.setHttp2MaxPoolSize(this.http2MaxPoolSize);
+    options.setHttp2MultiplexingLimit(this.http2MultiplexingLimit);
+    options.setKeepAlive(this.keepAlive);
+    options.setKeepAliveTimeout(this.keepAliveTimeout);
+    options.setHttp2KeepAliveTimeout(this.http2KeepAliveTimeout);
+    options.setMaxWaitQueueSize(this.maxWaitQueueSize);
+    return options;
+
+  }
+
+}
@@ -0,0 +1,453 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ServiceException;
+import java.util.concurrent.TimeUnit;
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.core.Response.Status;
+
+/**
+ * The state that isolates a {@link ComponentClient} from the failures and the
+ * latency of its component. It bounds the concurrent requests, opens a circuit
+ * when the requests fail consecutively, probes the component when the circuit
+ * is half-open, and observes the latency of the requests to adapt their
+ * deadlines and to know when hedge them. The latencies of the last requests
+ * are counted on a histogram, exact below {@value #EXACT_LATENCIES}
+ * milliseconds and with {@value #SUB_BUCKETS} buckets by power of two above,
+ * so a percentile is obtained without sorting them.
+ *
+ * @see ComponentClientResilienceOptions
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class ComponentClientResilience {
+
+  /**
+   * The number of latencies that are observed.
+   */
+  public static final int LATENCY_WINDOW = 256;
+
+  /**
+   * The milliseconds below which the latencies are counted exactly.
+   */
+  public static final int EXACT_LATENCIES = 64;
+
+  /**
+   * The number of buckets of the histogram for each power of two above the
+   * exact latencies.
+   */
+  public static final int SUB_BUCKETS = 16;
+
+  /**
+   * The number of bits of the index of the buckets of a power of two.
+   */
+  private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+  /**
+   * The power of two of the first latency that is not counted exactly.
+   */
+  private static final int FIRST_POWER = Integer.numberOfTrailingZeros(EXACT_LATENCIES);
+
+  /**
+   * The number of buckets of the histogram.
+   */
+  private static final int BUCKETS = EXACT_LATENCIES + (Long.SIZE - 1 - FIRST_POWER) * SUB_BUCKETS;
+
+  /**
+   * The field of the debug information of the rejections with the reason why
+   * the request is rejected.
+   */
+  public static final String REASON = "reason";
+
+  /**
+   * The states of the circuit.
+   */
+  public enum CircuitState {
+
+    /**
+     * The requests are sent.
+     */
+    CLOSED,
+
+    /**
+     * The requests are rejected.
+     */
+    OPEN,
+
+    /**
+     * Only the requests that probe the component are sent.
+     */
+    HALF_OPEN;
+
+  }
+
+  /**
+   * The options of the resilience.
+   */
+  protected final ComponentClientResilienceOptions options;
+
+  /**
+   * The state of the circuit.
+   */
+  protected CircuitState state = CircuitState.CLOSED;
+
+  /**
+   * The number of requests that have failed consecutively.
+   */
+  protected int consecutiveFailures;
+
+  /**
+   * The nanoseconds when the circuit has been opened.
+   */
+  protected long openedAt;
+
+  /**
+   * The number of requests that are probing the half-open circuit.
+   */
+  protected int probes;
+
+  /**
+   * The number of requests in flight.
+   */
+  protected int inFlight;
+
+  /**
+   * The last observed latencies, in milliseconds.
+   */
+  protected final long[] latencies = new long[LATENCY_WINDOW];
+
+  /**
+   * The number of the last observed latencies on each bucket.
+   */
+  protected final int[] histogram = new int[BUCKETS];
+
+  /**
+   * The number of observed latencies.
+   */
+  protected long samples;
+
+  /**
+   * Create the resilience of a client.
+   *
+   * @param options of the resilience.
+   */
+  public ComponentClientResilience(@NotNull final ComponentClientResilienceOptions options) {
+
+    this.options = options;
+
+  }
+
+  /**
+   * Create the exception of a rejected request.
+   *
+   * @param reason  why the request is rejected.
+   * @param message of the exception.
+   *
+   * @return the exception with the reason on the {@link #REASON} of its debug
+   *         information.
+   */
+  protected static ServiceException rejection(final String reason, final String message) {
+
+    return new ServiceException(Status.SERVICE_UNAVAILABLE.getStatusCode(), message,
+        new JsonObject().put(REASON, reason));
+
+  }
+
+  /**
+   * Try to start a request.
+   *
+   * @return {@code null} if the request can be sent, or the reason why it is
+   *         rejected.
+   */
+  public synchronized ServiceException tryAcquire() {
+
+    if (this.options.maxConcurrency > 0 && this.inFlight >= this.options.maxConcurrency) {
+
+      return rejection("concurrency", "Too many concurrent requests to the component");
+    }
+
+    if (this.state == CircuitState.OPEN) {
+
+      if (System.nanoTime() - this.openedAt < TimeUnit.MILLISECONDS.toNanos(this.options.openTimeout)) {
+
+        return rejection("open", "The circuit to the component is open");
+      }
+      this.state = CircuitState.HALF_OPEN;
+      this.probes = 0;
+    }
+
+    if (this.state == CircuitState.HALF_OPEN) {
+
+      if (this.probes >= this.options.halfOpenProbes) {
+
+        return rejection("half_open", "The circuit to the component is being probed");
+      }
+      this.probes++;
+    }
+
+    this.inFlight++;
+    return null;
+
+  }
+
+  /**
+   * Try to start a hedged request. It only needs a free place of the bounded
+   * concurrency, because the circuit has been checked by the request that is
+   * hedged.
+   *
+   * @return {@code true} if the hedged request can be sent.
+   *
+   * @see #releaseHedge()
+   */
+  public synchronized boolean tryAcquireHedge() {
+
+    if (this.options.maxConcurrency > 0 && this.inFlight >= this.options.maxConcurrency) {
+
+      return false;
+    }
+    this.inFlight++;
+    return true;
+
+  }
+
+  /**
+   * Finish a hedged request that has been started.
+   *
+   * @see #tryAcquireHedge()
+   */
+  public synchronized void releaseHedge() {
+
+    this.inFlight = Math.max(0, this.inFlight - 1);
+
+  }
+
+  /**
+   * Finish a request that has been started.
+   *
+   * @param success {@code true} if the component has answered the request.
+   * @param millis  that the request has taken.
+   */
+  public void release(final boolean success, final long millis) {
+
+    this.release(success, millis, 0);
+
+  }
+
+  /**
+   * Finish a request that has been started. The latency of the failed requests
+   * is not observed, except when they have failed because of their deadline,
+   * thus the latency of a slow component is not hidden by its timeouts.
+   *
+   * @param success {@code true} if the component has answered the request.
+   * @param millis  that the request has taken.
+   * @param timeout the deadline of the request, or {@code 0} if it does not
+   *                have.
+   */
+  public synchronized void release(final boolean success, final long millis, final long timeout) {
+
+    this.inFlight = Math.max(0, this.inFlight - 1);
+    if (success) {
+
+      this.observe(millis);
+      this.consecutiveFailures = 0;
+      if (this.state == CircuitState.HALF_OPEN) {
+
+        this.state = CircuitState.CLOSED;
+      }
+
+    } else {
+
+      if (timeout > 0 && millis >= timeout) {
+
+        this.observe(Math.max(millis, timeout));
+      }
+      this.consecutiveFailures++;
+      if (this.state == CircuitState.HALF_OPEN || this.options.failureThreshold > 0
+          && this.consecutiveFailures >= this.options.failureThreshold) {
+
+        this.state = CircuitState.OPEN;
+        this.openedAt = System.nanoTime();
+      }
+    }
+
+  }
+
+  /**
+   * Return the state of the circuit.
+   *
+   * @return the state of the circuit.
+   */
+  public synchronized CircuitState getState() {
+
+    return this.state;
+
+  }
+
+  /**
+   * Return the bucket of the histogram where a latency is counted.
+   *
+   * @param millis the latency.
+   *
+   * @return the index of the bucket of the latency.
+   */
+  protected static int bucketOf(final long millis) {
+
+    if (millis < EXACT_LATENCIES) {
+
+      return (int) Math.max(0, millis);
+    }
+    final var power = Long.SIZE - 1 - Long.numberOfLeadingZeros(millis);
+    final var subBucket = (int) (millis >>> power - SUB_BUCKET_BITS) & SUB_BUCKETS - 1;
+    return EXACT_LATENCIES + (power - FIRST_POWER) * SUB_BUCKETS + subBucket;
+
+  }
+
+  /**
+   * Return the maximum latency that is counted on a bucket of the histogram.
+   *
+   * @param bucket index of the bucket.
+   *
+   * @return the maximum latency of the bucket.
+   */
+  protected static long maxLatencyOf(final int bucket) {
+
+    if (bucket < EXACT_LATENCIES) {
+
+      return bucket;
+    }
+    final var power = FIRST_POWER + (bucket - EXACT_LATENCIES) / SUB_BUCKETS;
+    final var subBucket = (bucket - EXACT_LATENCIES) % SUB_BUCKETS;
+    final var shift = power - SUB_BUCKET_BITS;
+    final var next = (long) (SUB_BUCKETS + subBucket + 1) << shift;
+    return next <= 0 ? Long.MAX_VALUE : next - 1;
+
+  }
+
+  /**
+   * Observe the latency of a request. The latency replaces the oldest one of the
+   * window.
+   *
+   * @param millis that the request has taken.
+   */
+  protected void observe(final long millis) {
+
+    final var index = (int) (this.samples % LATENCY_WINDOW);
+    if (this.samples >= LATENCY_WINDOW) {
+
+      this.histogram[bucketOf(this.latencies[index])]--;
+    }
+    this.latencies[index] = millis;
+    this.histogram[bucketOf(millis)]++;
+    this.samples++;
+
+  }
+
+  /**
+   * Return a percentile of the observed latencies. It is exact below
+   * {@value #EXACT_LATENCIES} milliseconds, and above it is the maximum latency
+   * of the bucket that contains the percentile.
+   *
+   * @param percentile to obtain, between {@code 0} and {@code 1}.
+   *
+   * @return the percentile of the latencies, or {@code -1} if there are not
+   *         enough observed latencies.
+   */
+  public synchronized long latencyPercentile(final double percentile) {
+
+    if (this.samples < this.options.minSamples) {
+
+      return -1;
+    }
+
+    final var size = (int) Math.min(this.samples, LATENCY_WINDOW);
+    final var rank = Math.max(1, Math.min(size, (int) Math.ceil(percentile * size)));
+    var count = 0;
+    for (var bucket = 0; bucket < BUCKETS; bucket++) {
+
+      count += this.histogram[bucket];
+      if (count >= rank) {
+
+        return maxLatencyOf(bucket);
+      }
+    }
+    return maxLatencyOf(BUCKETS - 1);
+
+  }
+
+  /**
+   * Return the deadline of a request.
+   *
+   * @return the milliseconds that a request can take, or {@code 0} if it does
+   *         not have deadline.
+   */
+  public long timeout() {
+
+    if (this.options.adaptiveTimeoutFactor > 0) {
+
+      final var p99 = this.latencyPercentile(0.99);
+      if (p99 >= 0) {
+
+        final var adaptive = Math.max(this.options.minTimeout,
+            (long) Math.ceil(p99 * this.options.adaptiveTimeoutFactor));
+        if (this.options.timeout > 0) {
+
+          return Math.min(this.options.timeout, adaptive);
+
+        } else {
+
+          return adaptive;
+        }
+      }
+    }
+    return this.options.timeout;
+
+  }
+
+  /**
+   * Return the milliseconds to wait before hedge a request.
+   *
+   * @return the milliseconds to wait for the response of a request before send
+   *         another one, or a negative value if the requests must not be
+   *         hedged.
+   */
+  public long hedgeDelay() {
+
+    if (!this.options.hedge) {
+
+      return -1;
+    }
+
+    final var percentile = this.latencyPercentile(this.options.hedgePercentile);
+    if (percentile < 0) {
+
+      return -1;
+
+    } else {
+
+      return Math.max(this.options.hedgeMinDelay, percentile);
+    }
+
+  }
+
+}
@@ -0,0 +1,284 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * The options to isolate a {@link ComponentClient} from the failures and the
+ * latency of its component. They are defined on the {@code resilience}
+ * property of the configuration of the components, and they can be redefined
+ * for a component on a property with the same name as the key of the
+ * component, for example {@code resilience.socialContextBuilder}. By default
+ * only the concurrency is bounded, the deadlines, the circuit and the hedging
+ * have to be enabled.
+ *
+ * @see ComponentClientResilience
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class ComponentClientResilienceOptions {
+
+  /**
+   * The name of the configuration property that contains the resilience
+   * options.
+   */
+  public static final String RESILIENCE_KEY = "resilience";
+
+  /**
+   * The default maximum milliseconds that a request can take. By default the
+   * requests do not have a deadline.
+   */
+  public static final long DEFAULT_TIMEOUT = 0;
+
+  /**
+   * The name of the configuration property that contains the maximum
+   * milliseconds that a request can take. If it is zero the requests do not
+   * have a deadline.
+   */
+  public static final String TIMEOUT_KEY = "timeout";
+
+  /**
+   * The name of the configuration property that contains the factor to apply
+   * to the 99th percentile of the latency to obtain the deadline of a request.
+   * If it is zero the deadline is always the {@link #timeout}.
+   */
+  public static final String ADAPTIVE_TIMEOUT_FACTOR_KEY = "adaptiveTimeoutFactor";
+
+  /**
+   * The default minimum milliseconds of an adaptive deadline.
+   */
+  public static final long DEFAULT_MIN_TIMEOUT = 1000;
+
+  /**
+   * The name of the configuration property that contains the minimum
+   * milliseconds of an adaptive deadline.
+   */
+  public static final String MIN_TIMEOUT_KEY = "minTimeout";
+
+  /**
+   * The default number of consecutive failures that open the circuit. By
+   * default the circuit is never opened.
+   */
+  public static final int DEFAULT_FAILURE_THRESHOLD = 0;
+
+  /**
+   * The name of the configuration property that contains the number of
+   * consecutive failures that open the circuit. If it is zero the circuit is
+   * never opened.
+   */
+  public static final String FAILURE_THRESHOLD_KEY = "failureThreshold";
+
+  /**
+   * The default milliseconds that the circuit is open before it is probed.
+   */
+  public static final long DEFAULT_OPEN_TIMEOUT = 10000;
+
+  /**
+   * The name of the configuration property that contains the milliseconds that
+   * the circuit is open before it is probed.
+   */
+  public static final String OPEN_TIMEOUT_KEY = "openTimeout";
+
+  /**
+   * The default number of concurrent requests that probe a half-open circuit.
+   */
+  public static final int DEFAULT_HALF_OPEN_PROBES = 1;
+
+  /**
+   * The name of the configuration property that contains the number of
+   * concurrent requests that probe a half-open circuit.
+   */
+  public static final String HALF_OPEN_PROBES_KEY = "halfOpenProbes";
+
+  /**
+   * The default maximum number of concurrent requests to the component.
+   */
+  public static final int DEFAULT_MAX_CONCURRENCY = 512;
+
+  /**
+   * The name of the configuration property that contains the maximum number of
+   * concurrent requests to the component. If it is zero the concurrency is not
+   * bounded.
+   */
+  public static final String MAX_CONCURRENCY_KEY = "maxConcurrency";
+
+  /**
+   * The name of the configuration property that is {@code true} if a second
+   * {@code GET} or {@code HEAD} is sent when the first one is slower than the
+   * {@link #hedgePercentile} of the latency.
+   */
+  public static final String HEDGE_KEY = "hedge";
+
+  /**
+   * The default percentile of the latency to wait before send a hedged request.
+   */
+  public static final double DEFAULT_HEDGE_PERCENTILE = 0.95;
+
+  /**
+   * The name of the configuration property that contains the percentile of the
+   * latency to wait before send a hedged request.
+   */
+  public static final String HEDGE_PERCENTILE_KEY = "hedgePercentile";
+
+  /**
+   * The default minimum milliseconds to wait before send a hedged request.
+   */
+  public static final long DEFAULT_HEDGE_MIN_DELAY = 20;
+
+  /**
+   * The name of the configuration property that contains the minimum
+   * milliseconds to wait before send a hedged request.
+   */
+  public static final String HEDGE_MIN_DELAY_KEY = "hedgeMinDelay";
+
+  /**
+   * The default number of latencies to observe before adapt the deadlines or
+   * hedge the requests.
+   */
+  public static final int DEFAULT_MIN_SAMPLES = 50;
+
+  /**
+   * The name of the configuration property that contains the number of
+   * latencies to observe before adapt the deadlines or hedge the requests.
+   */
+  public static final String MIN_SAMPLES_KEY = "minSamples";
+
+  /**
+   * The maximum milliseconds that a request can take.
+   */
+  public long timeout = DEFAULT_TIMEOUT;
+
+  /**
+   * The factor to apply to the 99th percentile of the latency to obtain the
+   * deadline of a request.
+   */
+  public double adaptiveTimeoutFactor = 0;
+
+  /**
+   * The minimum milliseconds of an adaptive deadline.
+   */
+  public long minTimeout = DEFAULT_MIN_TIMEOUT;
+
+  /**
+   * The number of consecutive failures that open the circuit.
+   */
+  public int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+
+  /**
+   * The milliseconds that the circuit is open before it is probed.
+   */
+  public long openTimeout = DEFAULT_OPEN_TIMEOUT;
+
+  /**
+   * The number of concurrent requests that probe a half-open circuit.
+   */
+  public int halfOpenProbes = DEFAULT_HALF_OPEN_PROBES;
+
+  /**
+   * The maximum number of concurrent requests to the component.
+   */
+  public int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+  /**
+   * This is {@code true} if the slow idempotent requests are hedged.
+   */
+  public boolean hedge = false;
+
+  /**
+   * The percentile of the latency to wait before send a hedged request.
+   */
+  public double hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+
+  /**
+   * The minimum milliseconds to wait before send a hedged request.
+   */
+  public long hedgeMinDelay = DEFAULT_HEDGE_MIN_DELAY;
+
+  /**
+   * The number of latencies to observe before adapt the deadlines or hedge the
+   * requests.
+   */
+  public int minSamples = DEFAULT_MIN_SAMPLES;
+
+  /**
+   * Create the default resilience options.
+   */
+  public ComponentClientResilienceOptions() {
+
+  }
+
+  /**
+   * Create the resilience options defined on a configuration.
+   *
+   * @param conf configuration with the resilience options.
+   */
+  public ComponentClientResilienceOptions(final JsonObject conf) {
+
+    if (conf != null) {
+
+      this.timeout = Math.max(0, conf.getLong(TIMEOUT_KEY, DEFAULT_TIMEOUT));
+      this.adaptiveTimeoutFactor = Math.max(0, conf.getDouble(ADAPTIVE_TIMEOUT_FACTOR_KEY, 0d));
+      this.minTimeout = Math.max(1, conf.getLong(MIN_TIMEOUT_KEY, DEFAULT_MIN_TIMEOUT));
+      this.failureThreshold = Math.max(0, conf.getInteger(FAILURE_THRESHOLD_KEY, DEFAULT_FAILURE_THRESHOLD));
+      this.openTimeout = Math.max(1, conf.getLong(OPEN_TIMEOUT_KEY, DEFAULT_OPEN_TIMEOUT));
+      this.halfOpenProbes = Math.max(1, conf.getInteger(HALF_OPEN_PROBES_KEY, DEFAULT_HALF_OPEN_PROBES));
+      this.maxConcurrency = Math.max(0, conf.getInteger(MAX_CONCURRENCY_KEY, DEFAULT_MAX_CONCURRENCY));
+      this.hedge = conf.getBoolean(HEDGE_KEY, false);
+      this.hedgePercentile = Math.min(1, Math.max(0, conf.getDouble(HEDGE_PERCENTILE_KEY, DEFAULT_HEDGE_PERCENTILE)));
+      this.hedgeMinDelay = Math.max(1, conf.getLong(HEDGE_MIN_DELAY_KEY, DEFAULT_HEDGE_MIN_DELAY));
+      this.minSamples = Math.max(1, conf.getInteger(MIN_SAMPLES_KEY, DEFAULT_MIN_SAMPLES));
+    }
+
+  }
+
+  /**
+   * Create the resilience options of a component.
+   *
+   * @param conf configuration of the components.
+   * @param key  of the component on the configuration.
+   *
+   * @return the options defined on the {@code resilience} property, redefined
+   *         by the ones of the component.
+   */
+  public static ComponentClientResilienceOptions forComponent(final JsonObject conf, final String key) {
+
+    if (conf == null) {
+
+      return new ComponentClientResilienceOptions();
+    }
+
+    final var resilienceConf = conf.getJsonObject(RESILIENCE_KEY, new JsonObject());
+    final var componentConf = resilienceConf.copy();
+    if (key != null) {
+
+      final var overrides = resilienceConf.getValue(key);
+      if (overrides instanceof JsonObject) {
+
+        componentConf.mergeIn((JsonObject) overrides);
+      }
+    }
+    return new ComponentClientResilienceOptions(componentConf);
+
+  }
+
+}
@@ -22,13 +22,39 @@ package eu.internetofus.common.vertx;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpResponse;
 import io.vertx.ext.web.client.WebClient;
+import io.vertx.serviceproxy.ServiceException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import javax.validation.constraints.NotNull;
+import javax.ws.rs.core.Response.Status;
+import org.tinylog.Logger;
 
 /**
- * A client that uses a cache to improve some requests
+ * A client that uses a cache to improve some requests. It caches the existence
+ * of the models obtained with a {@code HEAD}, even when they are not defined,
+ * and the models obtained with a {@code GET}. The models
+ * are fresh during the seconds defined on the policy of their path, or if it is
+ * not defined, on the {@code Cache-Control} of the response, unless the
+ * response is {@code no-cache} or {@code no-store}. When a model is
+ * not fresh and the response had an {@code ETag} it is revalidated with an
+ * {@code If-None-Match} request.
  *
  * @author UDT-IA, IIIA-CSIC
  */
@@ -45,6 +71,30 @@ public class ComponentClientWithCache extends ComponentClient {
    */
   public static final String CACHE_TIMEOUT_KEY = "timeout";
 
+  /**
+   * The name of the configuration property that contains the seconds the cache
+   * stores that a model is not defined.
+   */
+  public static final String CACHE_NEGATIVE_TIMEOUT_KEY = "negativeTimeout";
+
+  /**
+   * The default seconds the cache stores that a model is not defined.
+   */
+  public static final long DEFAULT_CACHE_NEGATIVE_TIMEOUT = 30;
+
+  /**
+   * The name of the configuration property that contains the seconds, after the
+   * cached existence of a model is not fresh, that it is returned while it is
+   * refreshed.
+   */
+  public static final String CACHE_STALE_TIMEOUT_KEY = "staleTimeout";
+
+  /**
+   * The default seconds that a cached existence is returned while it is
+   * refreshed.
+   */
+  public static final long DEFAULT_CACHE_STALE_TIMEOUT = 60;
+
   /**
    * The default number of cache entries.
    */
@@ -56,11 +106,229 @@ public class ComponentClientWithCache extends ComponentClient {
    */
   public static final String CACHE_SIZE_KEY = "size";
 
+  /**
+   * The name of the configuration property that contains the maximum bytes of
+   * the bodies of the cached responses.
+   */
+  public static final String CACHE_RESPONSE_SIZE_KEY = "responseSize";
+
+  /**
+   * The default maximum bytes of the bodies of the cached responses.
+   */
+  public static final long DEFAULT_CACHE_RESPONSE_SIZE = 32 * 1024 * 1024;
+
+  /**
+   * The name of the configuration property that contains the seconds a cached
+   * response is fresh when its path does not have a policy and the response
+   * does not define a maximum age.
+   */
+  public static final String CACHE_RESPONSE_TIMEOUT_KEY = "responseTimeout";
+
+  /**
+   * The default seconds a response is fresh when its path does not have a
+   * policy and the response does not define a maximum age.
+   */
+  public static final long DEFAULT_CACHE_RESPONSE_TIMEOUT = 0;
+
+  /**
+   * The name of the configuration property that contains the seconds a cached
+   * response is kept, after it is used for the last time, to revalidate it.
+   */
+  public static final String CACHE_RESPONSE_RETENTION_KEY = "responseRetention";
+
+  /**
+   * The default seconds a cached response is kept to revalidate it.
+   */
+  public static final long DEFAULT_CACHE_RESPONSE_RETENTION = 3600;
+
+  /**
+   * The name of the configuration property that contains the seconds the
+   * responses are fresh by path of the component.
+   */
+  public static final String CACHE_POLICIES_KEY = "policies";
+
+  /**
+   * The name of the configuration property that contains, by the key of the
+   * component, the paths of the models stored on each collection whose
+   * invalidation events remove the cached models. For example
+   * {@code "invalidations":{"taskManager":{"tasks":"/tasks"}}}.
+   *
+   * @see #invalidateOnChanges(Vertx)
+   */
+  public static final String CACHE_INVALIDATIONS_KEY = "invalidations";
+
+  /**
+   * A model that is cached from a response.
+   */
+  protected static class CachedResponse {
+
+    /**
+     * The cached model.
+     */
+    protected final JsonObject content;
+
+    /**
+     * The entity tag of the response, or {@code null} if it is not defined.
+     */
+    protected final String etag;
+
+    /**
+     * The nanoseconds when the response is not fresh.
+     */
+    protected final long expiresAt;
+
+    /**
+     * The bytes of the body of the response.
+     */
+    protected final int weight;
+
+    /**
+     * Create a cached response.
+     *
+     * @param content cached model.
+     * @param etag    entity tag of the response.
+     * @param seconds that the response is fresh.
+     * @param weight  bytes of the body of the response.
+     */
+    protected CachedResponse(final JsonObject content, final String etag, final long seconds, final int weight) {
+
+      this.content = content;
+      this.etag = etag;
+      this.expiresAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+      this.weight = weight;
+    }
+
+    /**
+     * Check if the response is fresh.
+     *
+     * @return {@code true} if the response can be used without revalidate it.
+     */
+    protected boolean isFresh() {
+
+      return System.nanoTime() - this.expiresAt < 0;
+    }
+
+  }
+
+  /**
+   * The existence of a model that is cached from a {@code HEAD} response.
+   */
+  protected static class CachedExistence {
+
+    /**
+     * This is {@code true} if the model is defined.
+     */
+    protected final boolean found;
+
+    /**
+     * The nanoseconds when the existence is not fresh.
+     */
+    protected final long expiresAt;
+
+    /**
+     * The nanoseconds when the existence can not be returned while it is
+     * refreshed.
+     */
+    protected final long staleAt;
+
+    /**
+     * This is {@code true} if the existence is being refreshed.
+     */
+    protected final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    /**
+     * Create a cached existence.
+     *
+     * @param found        {@code true} if the model is defined.
+     * @param seconds      that the existence is fresh.
+     * @param staleSeconds that the existence is returned while it is refreshed
+     *                     after it is not fresh.
+     */
+    protected CachedExistence(final boolean found, final long seconds, final long staleSeconds) {
+
+      this.found = found;
+      this.expiresAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+      this.staleAt = this.expiresAt + TimeUnit.SECONDS.toNanos(staleSeconds);
+    }
+
+    /**
+     * Check if the existence is fresh.
+     *
+     * @return {@code true} if the existence can be used without refresh it.
+     */
+    protected boolean isFresh() {
+
+      return System.nanoTime() - this.expiresAt < 0;
+    }
+
+    /**
+     * Check if the existence can be returned while it is refreshed.
+     *
+     * @return {@code true} if the existence can be used while it is refreshed.
+     */
+    protected boolean isUsable() {
+
+      return System.nanoTime() - this.staleAt < 0;
+    }
+
+  }
+
   /**
    * The cache of the requests. The key is the request and the value is the
    * response.
    */
-  protected Cache<String, String> cache;
+  protected Cache<String, CachedExistence> cache;
+
+  /**
+   * The seconds that the cache stores that a model is defined.
+   */
+  protected long timeout;
+
+  /**
+   * The seconds that the cache stores that a model is not defined.
+   */
+  protected long negativeTimeout;
+
+  /**
+   * The seconds that a cached existence is returned while it is refreshed after
+   * it is not fresh.
+   */
+  protected long staleTimeout;
+
+  /**
+   * The cache of the models obtained with a {@code GET}. The key is the URL and
+   * the value is the cached response.
+   */
+  protected Cache<String, CachedResponse> responses;
+
+  /**
+   * The seconds that the responses are fresh by the absolute URL prefix, sorted
+   * from the longest to the shortest.
+   */
+  protected Map<String, Long> policies = new TreeMap<>((a, b) -> {
+
+    final var cmp = Integer.compare(b.length(), a.length());
+    if (cmp == 0) {
+
+      return a.compareTo(b);
+
+    } else {
+
+      return cmp;
+    }
+  });
+
+  /**
+   * The seconds that a response is fresh when its path does not have a policy
+   * and the response does not define a maximum age.
+   */
+  protected long responseTimeout;
+
+  /**
+   * The paths of the models on the component by the name of the collection
+   * where they are stored.
+   */
+  protected JsonObject invalidations;
 
   /**
    * Create a new component.
@@ -73,17 +341,366 @@ public class ComponentClientWithCache extends ComponentClient {
   public ComponentClientWithCache(final WebClient client, final JsonObject conf, final String key,
       final String defaultUrl) {
 
-    super(client, conf.getString(key, defaultUrl));
+    super(client, conf, key, defaultUrl);
 
     final var cacheConf = conf.getJsonObject("cache", new JsonObject());
-    final var timeout = cacheConf.getLong(CACHE_TIMEOUT_KEY, DEFAULT_CACHE_TIMEOUT);
+    this.timeout = cacheConf.getLong(CACHE_TIMEOUT_KEY, DEFAULT_CACHE_TIMEOUT);
+    this.negativeTimeout = cacheConf.getLong(CACHE_NEGATIVE_TIMEOUT_KEY, DEFAULT_CACHE_NEGATIVE_TIMEOUT);
+    this.staleTimeout = Math.max(0, cacheConf.getLong(CACHE_STALE_TIMEOUT_KEY, DEFAULT_CACHE_STALE_TIMEOUT));
     final var size = cacheConf.getLong(CACHE_SIZE_KEY, DEFAULT_CACHE_SIZE);
-    this.cache = CacheBuilder.newBuilder().expireAfterWrite(Duration.ofSeconds(timeout)).maximumSize(size).build();
+    final var existenceRetention = Math.max(this.timeout, this.negativeTimeout) + this.staleTimeout;
+    this.cache = CacheBuilder.newBuilder().expireAfterWrite(Duration.ofSeconds(Math.max(1, existenceRetention)))
+        .maximumSize(size).build();
+
+    final var responseSize = cacheConf.getLong(CACHE_RESPONSE_SIZE_KEY, DEFAULT_CACHE_RESPONSE_SIZE);
+    final var retention = cacheConf.getLong(CACHE_RESPONSE_RETENTION_KEY, DEFAULT_CACHE_RESPONSE_RETENTION);
+    this.responses = CacheBuilder.newBuilder().expireAfterAccess(Duration.ofSeconds(retention))
+        .maximumWeight(responseSize).<String, CachedResponse>weigher((k, v) -> k.length() + v.weight)
+        .build();
+    this.responseTimeout = cacheConf.getLong(CACHE_RESPONSE_TIMEOUT_KEY, DEFAULT_CACHE_RESPONSE_TIMEOUT);
+    this.invalidations = cacheConf.getJsonObject(CACHE_INVALIDATIONS_KEY, new JsonObject()).getJsonObject(key,
+        new JsonObject());
+    final var policiesConf = cacheConf.getJsonObject(CACHE_POLICIES_KEY, new JsonObject());
+    for (final var path : policiesConf.fieldNames()) {
+
+      final var seconds = policiesConf.getValue(path);
+      if (seconds instanceof Number) {
+
+        this.policies.put(this.createAbsoluteUrlWith(path), ((Number) seconds).longValue());
+      }
+    }
+
+  }
+
+  /**
+   * Define the seconds that the responses of a path are fresh if it is not
+   * defined on the configuration.
+   *
+   * @param path    of the component.
+   * @param seconds that the responses are fresh.
+   */
+  protected void defaultResponsePolicy(@NotNull final String path, final long seconds) {
+
+    this.policies.putIfAbsent(this.createAbsoluteUrlWith(path), seconds);
+
+  }
+
+  /**
+   * Return the seconds that the responses of an URL are fresh by policy.
+   *
+   * @param url of the response.
+   *
+   * @return the seconds defined on the policy of the longest prefix of the URL,
+   *         or {@code null} if the URL does not have a policy.
+   */
+  protected Long policyFor(@NotNull final String url) {
+
+    for (final var policy : this.policies.entrySet()) {
+
+      final var prefix = policy.getKey();
+      if (url.startsWith(prefix) && (url.length() == prefix.length() || url.charAt(prefix.length()) == '/'
+          || prefix.charAt(prefix.length() - 1) == '/')) {
+
+        return policy.getValue();
+      }
+    }
+
+    return null;
+
+  }
+
+  /**
+   * Return the seconds that a response is fresh. The {@code no-store} and
+   * {@code no-cache} directives of the response are always followed, so a
+   * policy can not make fresh a response that the component wants to be
+   * revalidated.
+   *
+   * @param url      of the response.
+   * @param response to check.
+   *
+   * @return the seconds that the response is fresh, or a negative value if it
+   *         can not be cached.
+   */
+  protected long freshnessOf(@NotNull final String url, @NotNull final HttpResponse<Buffer> response) {
+
+    long maxAge = -1;
+    var noCache = false;
+    final var cacheControl = response.getHeader(HttpHeaders.CACHE_CONTROL.toString());
+    if (cacheControl != null) {
+
+      for (final var directive : cacheControl.split(",")) {
+
+        final var value = directive.trim().toLowerCase();
+        if (value.equals("no-store")) {
+
+          return -1;
+
+        } else if (value.equals("no-cache")) {
+
+          noCache = true;
+
+        } else if (value.startsWith("max-age=")) {
+
+          try {
+
+            maxAge = Long.parseLong(value.substring(8));
+
+          } catch (final NumberFormatException ignored) {
+            // Ignore the invalid maximum age
+          }
+        }
+      }
+    }
+
+    if (noCache) {
+
+      return 0;
+    }
+
+    final var policy = this.policyFor(url);
+    if (policy != null) {
+
+      return policy;
+
+    } else if (maxAge >= 0) {
+
+      return maxAge;
+
+    } else {
+
+      return this.responseTimeout;
+    }
+
+  }
+
+  /**
+   * Store the model of a response if it can be cached.
+   *
+   * @param url      of the response.
+   * @param response that contains the model.
+   * @param content  model of the response.
+   * @param weight   bytes of the body of the response.
+   */
+  protected void cacheResponse(@NotNull final String url, @NotNull final HttpResponse<Buffer> response,
+      @NotNull final JsonObject content, final int weight) {
+
+    final var seconds = this.freshnessOf(url, response);
+    final var etag = response.getHeader(HttpHeaders.ETAG.toString());
+    if (seconds > 0 || seconds == 0 && etag != null) {
+
+      this.responses.put(url, new CachedResponse(content, etag, seconds, weight));
+
+    } else {
+
+      this.responses.invalidate(url);
+    }
 
   }
 
   /**
-   * Check if the head is defined but first check if it is cached.
+   * Refresh a cached model that the component has revalidated. A
+   * {@code 304} response does not need to repeat the headers of the cached one,
+   * so the entity tag of the cached response is kept when it is not defined and
+   * the entry is only removed if the response forbids store it.
+   *
+   * @param url      of the response.
+   * @param response that revalidates the cached model.
+   * @param cached   response that has been revalidated.
+   */
+  protected void refreshResponse(@NotNull final String url, @NotNull final HttpResponse<Buffer> response,
+      @NotNull final CachedResponse cached) {
+
+    final var seconds = this.freshnessOf(url, response);
+    if (seconds < 0) {
+
+      this.responses.invalidate(url);
+
+    } else {
+
+      var etag = response.getHeader(HttpHeaders.ETAG.toString());
+      if (etag == null) {
+
+        etag = cached.etag;
+      }
+      this.responses.put(url, new CachedResponse(cached.content, etag, seconds, cached.weight));
+    }
+
+  }
+
+  /**
+   * Get a {@link JsonObject} but first check if it is cached. The returned model
+   * is a copy of the cached one, so it can be modified.
+   *
+   * @param paths to the resource to get.
+   *
+   * @return the future with the model of the resource.
+   */
+  protected Future<JsonObject> getJsonObjectWithCache(@NotNull final Object... paths) {
+
+    final var url = this.createAbsoluteUrlWith(paths);
+    final var cachedPath = cachedPathOf(paths);
+    final var cached = this.responses.getIfPresent(url);
+    if (cached != null && cached.isFresh()) {
+
+      ComponentClientMetrics.cacheLookupOnCurrentContext(this.componentURL, "get", cachedPath,
+          ComponentClientMetrics.CACHE_HIT);
+      return Future.succeededFuture(cached.content.copy());
+    }
+
+    ComponentClientMetrics.cacheLookupOnCurrentContext(this.componentURL, "get", cachedPath,
+        cached == null ? ComponentClientMetrics.CACHE_MISS : ComponentClientMetrics.CACHE_STALE);
+
+    final Promise<JsonObject> promise = Promise.promise();
+    final var actionId = this.createTracedActionId(HttpMethod.GET, url, null);
+    Logger.trace("{} STARTED", actionId);
+    try {
+
+      final Future<HttpResponse<Buffer>> request;
+      if (cached != null && cached.etag != null) {
+
+        request = this.sendRevalidation(url, cached.etag);
+
+      } else {
+
+        request = this.send(HttpMethod.GET, url, null);
+      }
+      final Function<HttpResponse<Buffer>, JsonObject> extractor = response -> {
+
+        final var body = response.body();
+        final var content = response.bodyAsJsonObject();
+        if (content != null) {
+
+          this.cacheResponse(url, response, content.copy(), body.length());
+        }
+        return content;
+      };
+      request.onSuccess(response -> {
+
+        if (cached != null && response.statusCode() == Status.NOT_MODIFIED.getStatusCode()) {
+
+          Logger.trace("{} NOT MODIFIED", actionId);
+          ComponentClientMetrics.cacheRefreshOnCurrentContext(this.componentURL, "get", cachedPath);
+          this.refreshResponse(url, response, cached);
+          promise.complete(cached.content.copy());
+
+        } else {
+
+          this.createHandlerThatExtractBodyFromSuccessResponse(extractor, promise, actionId).handle(response);
+        }
+
+      }).onFailure(this.createRequestFailureHandler(promise, actionId));
+
+    } catch (final Throwable throwable) {
+
+      promise.tryFail(throwable);
+    }
+
+    return promise.future();
+
+  }
+
+  /**
+   * Send a request to check if a cached model has been modified.
+   *
+   * @param url  of the model.
+   * @param etag entity tag of the cached model.
+   *
+   * @return the future response of the request.
+   */
+  protected Future<HttpResponse<Buffer>> sendRevalidation(@NotNull final String url, @NotNull final String etag) {
+
+    return this.execute(HttpMethod.GET, url, timeout -> this.createRequestFor(HttpMethod.GET, url, null, timeout)
+        .putHeader(HttpHeaders.IF_NONE_MATCH.toString(), etag).send());
+
+  }
+
+  /**
+   * Remove the cached values that can be modified by a request to an URL. They
+   * are the cached models and existences of the URL and of its parents, and
+   * the models that are cached as not defined below the URL, because the
+   * request may create them.
+   *
+   * @param url that is modified.
+   */
+  protected void invalidateCachedOf(@NotNull final String url) {
+
+    var path = url;
+    final var query = path.indexOf('?');
+    if (query > 0) {
+
+      path = path.substring(0, query);
+    }
+    final var created = "head:" + path + "/";
+    this.cache.asMap().entrySet().removeIf(entry -> !entry.getValue().found && entry.getKey().startsWith(created));
+    while (path.length() > this.componentURL.length()) {
+
+      this.responses.invalidate(path);
+      this.cache.invalidate("head:" + path);
+      final var last = path.lastIndexOf('/');
+      if (last < 0) {
+
+        break;
+      }
+      path = path.substring(0, last);
+    }
+
+  }
+
+  /**
+   * Remove the cached models that are modified by the request.
+   *
+   * {@inheritDoc}
+   */
+  @Override
+  protected <T> Future<T> request(final HttpMethod method, @NotNull final String url,
+      @NotNull final Function<HttpResponse<Buffer>, T> extractor) {
+
+    if (!HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method)) {
+
+      this.invalidateCachedOf(url);
+    }
+    return super.request(method, url, extractor);
+
+  }
+
+  /**
+   * Remove the cached models that are modified by the request.
+   *
+   * {@inheritDoc}
+   */
+  @Override
+  protected <T> Future<T> request(final HttpMethod method, @NotNull final String url,
+      final Map<String, String> queryParams, @NotNull final Function<HttpResponse<Buffer>, T> extractor) {
+
+    if (!HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method)) {
+
+      this.invalidateCachedOf(url);
+    }
+    return super.request(method, url, queryParams, extractor);
+
+  }
+
+  /**
+   * Remove the cached models that are modified by the request.
+   *
+   * {@inheritDoc}
+   */
+  @Override
+  protected <T> Future<T> request(final HttpMethod method, @NotNull final String url,
+      final Map<String, String> queryParams, final Buffer content,
+      @NotNull final Function<HttpResponse<Buffer>, T> extractor) {
+
+    this.invalidateCachedOf(url);
+    return super.request(method, url, queryParams, content, extractor);
+
+  }
+
+  /**
+   * Check if the head is defined but first check if it is cached. The models
+   * that are defined are cached during the {@link #timeout} and the ones that
+   * are not defined during the {@link #negativeTimeout}. When the cached value
+   * is not fresh, it is returned during the {@link #staleTimeout} while it is
+   * refreshed on the background.
    *
    * @param paths to the component to post.
    *
@@ -93,21 +710,289 @@ public class ComponentClientWithCache extends ComponentClient {
 
     final var url = this.createAbsoluteUrlWith(paths);
     final var key = "head:" + url;
-    final var value = this.cache.getIfPresent(key);
-    if (value != null) {
+    final var cachedPath = cachedPathOf(paths);
+    final var cached = this.cache.getIfPresent(key);
+    if (cached != null && cached.isFresh()) {
+
+      ComponentClientMetrics.cacheLookupOnCurrentContext(this.componentURL, "head", cachedPath,
+          ComponentClientMetrics.CACHE_HIT);
+      return Future.succeededFuture(cached.found);
+
+    } else if (cached != null && cached.isUsable()) {
+
+      ComponentClientMetrics.cacheLookupOnCurrentContext(this.componentURL, "head", cachedPath,
+          ComponentClientMetrics.CACHE_STALE);
+      if (cached.refreshing.compareAndSet(false, true)) {
+
+        ComponentClientMetrics.cacheRefreshOnCurrentContext(this.componentURL, "head", cachedPath);
+        this.headWithAbsolute(url).onComplete(refresh -> {
 
-      return Future.succeededFuture(true);
+          if (refresh.succeeded()) {
+
+            final var refreshed = this.createCachedExistence(refresh.result());
+            if (refreshed == null) {
+
+              this.cache.asMap().remove(key, cached);
+
+            } else {
+
+              this.cache.asMap().replace(key, cached, refreshed);
+            }
+
+          } else {
+
+            Logger.trace(refresh.cause(), "Cannot refresh the cached existence of {}", url);
+            cached.refreshing.set(false);
+          }
+        });
+      }
+      return Future.succeededFuture(cached.found);
 
     } else {
 
+      ComponentClientMetrics.cacheLookupOnCurrentContext(this.componentURL, "head", cachedPath,
+          ComponentClientMetrics.CACHE_MISS);
       return this.headWithAbsolute(url).map(found -> {
-        if (found) {
 
-          this.cache.put(key, "");
+        final var existence = this.createCachedExistence(found);
+        if (existence == null) {
+
+          this.cache.invalidate(key);
+
+        } else {
+
+          this.cache.put(key, existence);
         }
         return found;
       });
     }
   }
 
+  /**
+   * Create the value to cache the existence of a model.
+   *
+   * @param found {@code true} if the model is defined.
+   *
+   * @return the value to cache, or {@code null} if the existence must not be
+   *         cached.
+   */
+  protected CachedExistence createCachedExistence(final boolean found) {
+
+    final var seconds = found ? this.timeout : this.negativeTimeout;
+    if (seconds > 0) {
+
+      return new CachedExistence(found, seconds, this.staleTimeout);
+
+    } else {
+
+      return null;
+    }
+
+  }
+
+  /**
+   * Check which models of a batch are defined. The existence of each model is
+   * checked as {@link #headWithCache(Object...)} does, so the cached
+   * existences are reused and only the unknown models are requested.
+   *
+   * @param template path to a model, with the identifier as its only variable.
+   * @param ids      identifiers of the models to check.
+   *
+   * @return the future identifiers of the models that are defined.
+   *
+   * @see #batch(Iterable, Function)
+   */
+  protected Future<JsonArray> headBatchWithCache(@NotNull final ComponentPathTemplate template,
+      @NotNull final JsonArray ids) {
+
+    return this.batch(idsOf(ids), id -> this.headWithCache(template, id)).map(existences -> {
+
+      final var defined = new JsonArray();
+      for (final var entry : existences.entrySet()) {
+
+        if (Boolean.TRUE.equals(entry.getValue())) {
+
+          defined.add(entry.getKey());
+        }
+      }
+      return defined;
+    });
+
+  }
+
+  /**
+   * Get the models of a batch. Each model is obtained as
+   * {@link #getJsonObjectWithCache(Object...)} does, so the cached models are
+   * reused and only the unknown models are requested.
+   *
+   * @param template path to a model, with the identifier as its only variable.
+   * @param ids      identifiers of the models to get.
+   *
+   * @return the future models that are defined, in the order of the
+   *         identifiers.
+   *
+   * @see #batch(Iterable, Function)
+   */
+  protected Future<JsonArray> getJsonObjectBatchWithCache(@NotNull final ComponentPathTemplate template,
+      @NotNull final JsonArray ids) {
+
+    return this.batch(idsOf(ids), id -> this.getJsonObjectWithCache(template, id).recover(cause -> {
+
+      if (cause instanceof ServiceException
+          && ((ServiceException) cause).failureCode() == Status.NOT_FOUND.getStatusCode()) {
+
+        return Future.succeededFuture();
+
+      } else {
+
+        return Future.failedFuture(cause);
+      }
+
+    })).map(models -> {
+
+      final var found = new JsonArray();
+      for (final var model : models.values()) {
+
+        if (model != null) {
+
+          found.add(model);
+        }
+      }
+      return found;
+    });
+
+  }
+
+  /**
+   * Return the identifiers of an array.
+   *
+   * @param ids array with the identifiers.
+   *
+   * @return the string values of the array.
+   */
+  protected static List<String> idsOf(final JsonArray ids) {
+
+    final var values = new ArrayList<String>();
+    if (ids != null) {
+
+      for (final var id : ids) {
+
+        if (id instanceof String) {
+
+          values.add((String) id);
+        }
+      }
+    }
+    return values;
+
+  }
+
+  /**
+   * Return the path, without the identifier of the model, used to label the
+   * metrics of the cache.
+   *
+   * @param paths to the model.
+   *
+   * @return the path without the last segment, or the path of the template if
+   *         the first path is a {@link ComponentPathTemplate}.
+   */
+  protected static String cachedPathOf(final Object... paths) {
+
+    if (paths.length > 0 && paths[0] instanceof ComponentPathTemplate) {
+
+      return paths[0].toString();
+
+    } else if (paths.length < 2) {
+
+      return "/";
+
+    } else if (paths.length == 2) {
+
+      return String.valueOf(paths[0]);
+
+    } else {
+
+      final var builder = new StringBuilder();
+      for (var i = 0; i < paths.length - 1; i++) {
+
+        builder.append(paths[i]);
+      }
+      return builder.toString();
+    }
+
+  }
+
+  /**
+   * Remove the cached models of the collections defined on the
+   * {@value #CACHE_INVALIDATIONS_KEY} configuration of the component when they
+   * change. The events are only received from other processes if the Vert.x
+   * instances are clustered.
+   *
+   * @param vertx event bus where the invalidation events are published.
+   *
+   * @return the consumers of the invalidation events.
+   *
+   * @see #invalidateOnChangesOf(Vertx, String, Object...)
+   */
+  public List<MessageConsumer<JsonObject>> invalidateOnChanges(@NotNull final Vertx vertx) {
+
+    final var consumers = new ArrayList<MessageConsumer<JsonObject>>();
+    for (final var collectionName : this.invalidations.fieldNames()) {
+
+      final var path = this.invalidations.getValue(collectionName);
+      if (path instanceof String) {
+
+        consumers.add(this.invalidateOnChangesOf(vertx, collectionName, path));
+      }
+    }
+    return consumers;
+
+  }
+
+  /**
+   * Remove the cached existence of the models when they are added or removed
+   * from a collection, and the cached models when they are modified. The updates
+   * of the models do not change the cached existence because they do not change
+   * if the models exist.
+   *
+   * @param vertx          event bus where the invalidation events are published.
+   * @param collectionName name of the collection where the models are stored.
+   * @param paths          to the models on the component.
+   *
+   * @return the consumer of the invalidation events.
+   *
+   * @see ModelInvalidations
+   * @see #headWithCache(Object...)
+   */
+  public MessageConsumer<JsonObject> invalidateOnChangesOf(@NotNull final Vertx vertx,
+      @NotNull final String collectionName, @NotNull final Object... paths) {
+
+    final var url = this.createAbsoluteUrlWith(paths);
+    return ModelInvalidations.consume(vertx, collectionName, event -> {
+
+      final var id = event.getString(ModelInvalidations.ID);
+      if (id == null) {
+
+        this.responses.asMap().keySet().removeIf(key -> key.startsWith(url + "/"));
+        if (ModelInvalidations.changesExistence(event)) {
+
+          this.cache.asMap().keySet().removeIf(key -> key.startsWith("head:" + url + "/"));
+        }
+
+      } else {
+
+        final var segments = Arrays.copyOf(paths, paths.length + 1);
+        segments[paths.length] = id;
+        final var modelUrl = this.createAbsoluteUrlWith(segments);
+        this.responses.invalidate(modelUrl);
+        if (ModelInvalidations.changesExistence(event)) {
+
+          this.cache.invalidate("head:" + modelUrl);
+        }
+      }
+
+    });
+
+  }
+
 }
@@ -0,0 +1,351 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.validation.constraints.NotNull;
+
+/**
+ * A precompiled path to a resource of a component, like
+ * {@code /profiles/{profileId}/historic}. The literal parts of the path are
+ * normalized and encoded when it is compiled, so to expand it only the values
+ * of the variables are encoded. The {@code /} of the values are encoded too,
+ * thus a value is always a single segment of the path. It can be used as the first path of the
+ * {@link ComponentClient} methods, followed by the values of its variables.
+ *
+ * @see ComponentClient#createAbsoluteUrlWith(Object...)
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public final class ComponentPathTemplate {
+
+  /**
+   * The hexadecimal digits used to encode the bytes.
+   */
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  /**
+   * The templates that have been compiled.
+   */
+  private static final Map<String, ComponentPathTemplate> TEMPLATES = new ConcurrentHashMap<>();
+
+  /**
+   * The path that define the template.
+   */
+  private final String pattern;
+
+  /**
+   * The encoded literals that are before, between and after the variables.
+   */
+  private final String[] literals;
+
+  /**
+   * The number of characters of the literals.
+   */
+  private final int literalsLength;
+
+  /**
+   * Create a template.
+   *
+   * @param pattern  that define the template.
+   * @param literals the encoded literals of the template.
+   */
+  private ComponentPathTemplate(final String pattern, final String[] literals) {
+
+    this.pattern = pattern;
+    this.literals = literals;
+    var length = 0;
+    for (final var literal : literals) {
+
+      length += literal.length();
+    }
+    this.literalsLength = length;
+
+  }
+
+  /**
+   * Return the template of a path. The templates are compiled once and reused.
+   *
+   * @param pattern of the path, where the variables are names between braces.
+   *
+   * @return the template of the path.
+   *
+   * @throws IllegalArgumentException if a variable is not closed.
+   */
+  public static ComponentPathTemplate of(@NotNull final String pattern) {
+
+    return TEMPLATES.computeIfAbsent(pattern, ComponentPathTemplate::compile);
+
+  }
+
+  /**
+   * Compile a template.
+   *
+   * @param pattern of the path, where the variables are names between braces.
+   *
+   * @return the compiled template.
+   *
+   * @throws IllegalArgumentException if a variable is not closed.
+   */
+  public static ComponentPathTemplate compile(@NotNull final String pattern) {
+
+    final var literals = new ArrayList<String>();
+    final var literal = new StringBuilder();
+    var start = 0;
+    var open = pattern.indexOf('{');
+    while (open >= 0) {
+
+      final var close = pattern.indexOf('}', open);
+      if (close < 0) {
+
+        throw new IllegalArgumentException("The variable at " + open + " of '" + pattern + "' is not closed.");
+      }
+      appendEncodedPath(literal, pattern.substring(start, open));
+      literals.add(literal.toString());
+      literal.setLength(0);
+      start = close + 1;
+      open = pattern.indexOf('{', start);
+    }
+    appendEncodedPath(literal, pattern.substring(start));
+    literals.add(literal.toString());
+    return new ComponentPathTemplate(pattern, literals.toArray(new String[literals.size()]));
+
+  }
+
+  /**
+   * Return the number of variables of the template.
+   *
+   * @return the number of values that are required to expand the template.
+   */
+  public int variables() {
+
+    return this.literals.length - 1;
+
+  }
+
+  /**
+   * Expand the template.
+   *
+   * @param base   URL where the path is appended.
+   * @param values of the variables.
+   *
+   * @return the URL to the base with the expanded path.
+   *
+   * @throws IllegalArgumentException if the number of values does not match the
+   *                                  variables of the template.
+   */
+  public String expand(final String base, final Object... values) {
+
+    return this.expand(base, values, 0);
+
+  }
+
+  /**
+   * Expand the template with some of the values of an array.
+   *
+   * @param base   URL where the path is appended.
+   * @param values array with the values of the variables.
+   * @param offset index of the array where the values of the variables start.
+   *
+   * @return the URL to the base with the expanded path.
+   *
+   * @throws IllegalArgumentException if the number of values does not match the
+   *                                  variables of the template.
+   */
+  public String expand(final String base, @NotNull final Object[] values, final int offset) {
+
+    final var variables = this.variables();
+    if (values.length - offset != variables) {
+
+      throw new IllegalArgumentException(
+          "The path '" + this.pattern + "' requires " + variables + " values, but " + (values.length - offset)
+              + " are provided.");
+    }
+
+    var capacity = (base == null ? 4 : base.length()) + this.literalsLength;
+    for (var i = 0; i < variables; i++) {
+
+      final var value = values[offset + i];
+      capacity += value instanceof CharSequence ? ((CharSequence) value).length() : 16;
+    }
+    final var builder = new StringBuilder(capacity);
+    builder.append(base);
+    for (var i = 0; i < variables; i++) {
+
+      this.appendLiteral(builder, i);
+      appendEncoded(builder, String.valueOf(values[offset + i]), true);
+    }
+    this.appendLiteral(builder, variables);
+    return builder.toString();
+
+  }
+
+  /**
+   * Append a literal of the template.
+   *
+   * @param builder where append the literal.
+   * @param index   of the literal to append.
+   */
+  private void appendLiteral(final StringBuilder builder, final int index) {
+
+    final var literal = this.literals[index];
+    final var max = literal.length();
+    if (max > 0) {
+
+      final var endsWithSlash = builder.length() > 0 && builder.charAt(builder.length() - 1) == '/';
+      if (literal.charAt(0) == '/') {
+
+        builder.append(literal, endsWithSlash ? 1 : 0, max);
+
+      } else {
+
+        if (index == 0 && !endsWithSlash) {
+
+          builder.append('/');
+        }
+        builder.append(literal);
+      }
+    }
+
+  }
+
+  /**
+   * Append a path encoding the characters that are not unreserved on an URL.
+   * The characters are encoded as the percent of their UTF-8 bytes, and the
+   * consecutive {@code /} are appended only once.
+   *
+   * @param builder where append the path.
+   * @param path    to append.
+   */
+  public static void appendEncodedPath(@NotNull final StringBuilder builder, @NotNull final CharSequence path) {
+
+    appendEncoded(builder, path, false);
+
+  }
+
+  /**
+   * Append a path encoding the characters that are not unreserved on an URL.
+   *
+   * @param builder     where append the path.
+   * @param path        to append.
+   * @param encodeSlash is {@code true} if the {@code /} has to be encoded, or
+   *                    {@code false} if the consecutive {@code /} are appended
+   *                    only once.
+   */
+  private static void appendEncoded(final StringBuilder builder, final CharSequence path,
+      final boolean encodeSlash) {
+
+    final var max = path.length();
+    for (var i = 0; i < max; i++) {
+
+      final var c = path.charAt(i);
+      if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '.' || c == '_'
+          || c == '~') {
+
+        builder.append(c);
+
+      } else if (c == '/' && !encodeSlash) {
+
+        if (builder.length() == 0 || builder.charAt(builder.length() - 1) != '/') {
+
+          builder.append(c);
+
+        } // else ignored
+
+      } else {
+
+        int codePoint = c;
+        if (Character.isHighSurrogate(c) && i + 1 < max && Character.isLowSurrogate(path.charAt(i + 1))) {
+
+          i++;
+          codePoint = Character.toCodePoint(c, path.charAt(i));
+
+        } else if (Character.isSurrogate(c)) {
+
+          codePoint = '?';
+        }
+        appendEncodedCodePoint(builder, codePoint);
+      }
+    }
+
+  }
+
+  /**
+   * Append the percent encoding of the UTF-8 bytes of a character.
+   *
+   * @param builder   where append the encoded character.
+   * @param codePoint of the character to encode.
+   */
+  private static void appendEncodedCodePoint(final StringBuilder builder, final int codePoint) {
+
+    if (codePoint < 0x80) {
+
+      appendEncodedByte(builder, codePoint);
+
+    } else if (codePoint < 0x800) {
+
+      appendEncodedByte(builder, 0xc0 | codePoint >> 6);
+      appendEncodedByte(builder, 0x80 | codePoint & 0x3f);
+
+    } else if (codePoint < 0x10000) {
+
+      appendEncodedByte(builder, 0xe0 | codePoint >> 12);
+      appendEncodedByte(builder, 0x80 | codePoint >> 6 & 0x3f);
+      appendEncodedByte(builder, 0x80 | codePoint & 0x3f);
+
+    } else {
+
+      appendEncodedByte(builder, 0xf0 | codePoint >> 18);
+      appendEncodedByte(builder, 0x80 | codePoint >> 12 & 0x3f);
+      appendEncodedByte(builder, 0x80 | codePoint >> 6 & 0x3f);
+      appendEncodedByte(builder, 0x80 | codePoint & 0x3f);
+    }
+
+  }
+
+  /**
+   * Append the percent encoding of a byte.
+   *
+   * @param builder where append the encoded byte.
+   * @param value   of the byte to encode.
+   */
+  private static void appendEncodedByte(final StringBuilder builder, final int value) {
+
+    builder.append('%').append(HEX_DIGITS[value >> 4 & 0xf]).append(HEX_DIGITS[value & 0xf]);
+
+  }
+
+  /**
+   * Return the path that define the template.
+   *
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+
+    return this.pattern;
+
+  }
+
+}
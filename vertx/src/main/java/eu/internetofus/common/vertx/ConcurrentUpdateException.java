@@ -0,0 +1,52 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+/**
+ * This exception is reported when a model can not be updated because it has
+ * been modified after it was read.
+ *
+ * @see Repository#updateOneDocumentIfNotModified(String,
+ *      io.vertx.core.json.JsonObject, io.vertx.core.json.JsonObject,
+ *      io.vertx.core.json.JsonObject)
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class ConcurrentUpdateException extends RuntimeException {
+
+  /**
+   * Serialization identifier.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Create a new concurrent update exception.
+   *
+   * @param message a brief description of the error to be read by a human.
+   */
+  public ConcurrentUpdateException(final String message) {
+
+    super(message);
+
+  }
+
+}
@@ -0,0 +1,265 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.validation.constraints.NotNull;
+
+/**
+ * The cache with the number of documents that match the queries done by the
+ * repositories. The counts expire after a short time and all the counts of a
+ * collection are removed when a repository modifies it.
+ *
+ * @see Repository#count(String, JsonObject, io.vertx.ext.mongo.CollationOptions)
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class CountCache implements Shareable {
+
+  /**
+   * The name of the local map where the cache is shared.
+   */
+  public static final String SHARED_MAP_NAME = "eu.internetofus.common.vertx.CountCache";
+
+  /**
+   * The options of the cache.
+   */
+  protected final CountCacheOptions options;
+
+  /**
+   * The cached counts, or {@code null} if the counts are not cached.
+   */
+  protected final Cache<String, Long> cache;
+
+  /**
+   * The number of times that the counts of each collection has been
+   * invalidated. It is used to not cache the counts that has been started
+   * before a modification of the collection.
+   */
+  protected final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+  /**
+   * Create a new cache.
+   *
+   * @param options of the cache.
+   */
+  public CountCache(@NotNull final CountCacheOptions options) {
+
+    this.options = options;
+    if (options.ttl > 0) {
+
+      this.cache = CacheBuilder.newBuilder().expireAfterWrite(Duration.ofSeconds(options.ttl))
+          .maximumSize(options.size).build();
+
+    } else {
+
+      this.cache = null;
+    }
+
+  }
+
+  /**
+   * Obtain the cache that is shared by all the repositories of a Vert.x
+   * instance.
+   *
+   * @param vertx instance to get the cache.
+   *
+   * @return the cache of the instance.
+   */
+  public static CountCache shared(@NotNull final Vertx vertx) {
+
+    return shared(vertx, new CountCacheOptions());
+
+  }
+
+  /**
+   * Obtain the cache that is shared by all the repositories of a Vert.x
+   * instance. The options are only used if the cache is not created yet.
+   *
+   * @param vertx   instance to get the cache.
+   * @param options to create the cache.
+   *
+   * @return the cache of the instance.
+   */
+  public static CountCache shared(@NotNull final Vertx vertx, @NotNull final CountCacheOptions options) {
+
+    return vertx.sharedData().<String, CountCache>getLocalMap(SHARED_MAP_NAME).computeIfAbsent(SHARED_MAP_NAME,
+        key -> new CountCache(options));
+
+  }
+
+  /**
+   * Check if the total of a query can be estimated from the metadata of the
+   * collection.
+   *
+   * @param query     to check.
+   * @param collation to compare the strings, or {@code null} to use the default
+   *                  one.
+   *
+   * @return {@code true} if the query does not filter any document and the
+   *         estimation is enabled.
+   */
+  public boolean canEstimate(final JsonObject query, final Object collation) {
+
+    return this.options.estimate && (query == null || query.isEmpty()) && collation == null;
+
+  }
+
+  /**
+   * Obtain the cached count of a query or calculate it.
+   *
+   * @param collectionName name of the collection where the documents are
+   *                       counted.
+   * @param query          that identify the count.
+   * @param counter        function to calculate the count if it is not cached.
+   *
+   * @return the future count.
+   */
+  public Future<Long> count(final String collectionName, final Object query,
+      @NotNull final Supplier<Future<Long>> counter) {
+
+    if (this.cache == null) {
+
+      return counter.get();
+
+    } else {
+
+      final var key = keyFor(collectionName, query);
+      final var cached = this.cache.getIfPresent(key);
+      if (cached != null) {
+
+        return Future.succeededFuture(cached);
+
+      } else {
+
+        final var generation = this.generationOf(collectionName);
+        final var startGeneration = generation.get();
+        return counter.get().onSuccess(total -> {
+
+          if (total != null && generation.get() == startGeneration) {
+
+            this.cache.put(key, total);
+          }
+
+        });
+      }
+    }
+
+  }
+
+  /**
+   * Remove all the cached counts of a collection.
+   *
+   * @param collectionName name of the modified collection.
+   */
+  public void invalidate(final String collectionName) {
+
+    if (this.cache != null) {
+
+      this.generationOf(collectionName).incrementAndGet();
+      final var prefix = String.valueOf(collectionName) + '\n';
+      this.cache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+  }
+
+  /**
+   * Return the number of times that the counts of a collection has been
+   * invalidated.
+   *
+   * @param collectionName name of the collection.
+   *
+   * @return the invalidations of the collection.
+   */
+  protected AtomicLong generationOf(final String collectionName) {
+
+    return this.generations.computeIfAbsent(String.valueOf(collectionName), name -> new AtomicLong());
+
+  }
+
+  /**
+   * Return the key of a count on the cache.
+   *
+   * @param collectionName name of the collection where the documents are
+   *                       counted.
+   * @param query          that identify the count.
+   *
+   * @return the key of the count.
+   */
+  public static String keyFor(final String collectionName, final Object query) {
+
+    return String.valueOf(collectionName) + '\n' + normalize(query);
+
+  }
+
+  /**
+   * Return a value in a form that does not depend on the order of the fields
+   * of the objects.
+   *
+   * @param value to normalize.
+   *
+   * @return the normalized value.
+   */
+  public static String normalize(final Object value) {
+
+    if (value instanceof JsonObject) {
+
+      final var sorted = new TreeMap<String, String>();
+      for (final var entry : (JsonObject) value) {
+
+        sorted.put(entry.getKey(), normalize(entry.getValue()));
+      }
+      return sorted.toString();
+
+    } else if (value instanceof JsonArray) {
+
+      final var builder = new StringBuilder().append('[');
+      for (final var element : (JsonArray) value) {
+
+        builder.append(normalize(element)).append(',');
+      }
+      return builder.append(']').toString();
+
+    } else if (value instanceof CharSequence) {
+
+      return new JsonArray().add(value.toString()).encode();
+
+    } else {
+
+      return String.valueOf(value);
+    }
+
+  }
+
+}
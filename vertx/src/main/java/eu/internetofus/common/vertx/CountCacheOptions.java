@@ -0,0 +1,112 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * The options of the cache with the number of documents that match the queries
+ * of the repositories.
+ *
+ * @see CountCache
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class CountCacheOptions {
+
+  /**
+   * The default number of seconds that a count is cached.
+   */
+  public static final long DEFAULT_TTL = 5;
+
+  /**
+   * The name of the configuration property that contains the number of seconds
+   * that a count is cached.
+   */
+  public static final String TTL_KEY = "ttl";
+
+  /**
+   * The default maximum number of counts to cache.
+   */
+  public static final long DEFAULT_SIZE = 1000;
+
+  /**
+   * The name of the configuration property that contains the maximum number of
+   * counts to cache.
+   */
+  public static final String SIZE_KEY = "size";
+
+  /**
+   * The name of the configuration property that is {@code true} if the total of
+   * the queries without filter has to be estimated from the metadata of the
+   * collection.
+   */
+  public static final String ESTIMATE_KEY = "estimate";
+
+  /**
+   * The default value that is {@code true} if the total of the queries without
+   * filter has to be estimated. The totals are counted exactly by default.
+   */
+  public static final boolean DEFAULT_ESTIMATE = false;
+
+  /**
+   * The number of seconds that a count is cached. If it is zero or less the
+   * counts are not cached.
+   */
+  public long ttl = DEFAULT_TTL;
+
+  /**
+   * The maximum number of counts to cache.
+   */
+  public long size = DEFAULT_SIZE;
+
+  /**
+   * This is {@code true} if the total of the queries without filter has to be
+   * estimated from the metadata of the collection. If it is {@code false} all
+   * the totals are counted exactly.
+   */
+  public boolean estimate = DEFAULT_ESTIMATE;
+
+  /**
+   * Create the default count cache options.
+   */
+  public CountCacheOptions() {
+
+  }
+
+  /**
+   * Create the count cache options defined on a configuration.
+   *
+   * @param conf configuration with the count cache options.
+   */
+  public CountCacheOptions(final JsonObject conf) {
+
+    if (conf != null) {
+
+      this.ttl = conf.getLong(TTL_KEY, DEFAULT_TTL);
+      this.size = Math.max(1, conf.getLong(SIZE_KEY, DEFAULT_SIZE));
+      this.estimate = conf.getBoolean(ESTIMATE_KEY, DEFAULT_ESTIMATE);
+    }
+
+  }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+
+/**
+ * Function used to store only the changes of a model. If the stored model has
+ * been modified after the original one was read, the handler has to fail with
+ * a {@link ConcurrentUpdateException}.
+ *
+ * @param <T> type of model to update.
+ *
+ * @see ModelResources#mergeModelWithDelta(io.vertx.core.json.JsonObject,
+ *      ModelContext, java.util.function.BiConsumer, DeltaUpdater, ServiceContext)
+ * @see ModelResources#updateModelWithDelta(io.vertx.core.json.JsonObject,
+ *      ModelContext, java.util.function.BiConsumer, DeltaUpdater, ServiceContext)
+ * @see Repository#updateOneDocumentIfNotModified(String,
+ *      io.vertx.core.json.JsonObject, io.vertx.core.json.JsonObject,
+ *      io.vertx.core.json.JsonObject)
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+@FunctionalInterface
+public interface DeltaUpdater<T> {
+
+  /**
+   * Called when has to store the changes of a model.
+   *
+   * @param original the model that has been read.
+   * @param updated  the model with the new values.
+   * @param handler  to inform if the model has been updated.
+   */
+  void update(T original, T updated, Handler<AsyncResult<Void>> handler);
+
+}
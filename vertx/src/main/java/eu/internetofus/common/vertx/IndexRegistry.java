@@ -0,0 +1,285 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+package eu.internetofus.common.vertx;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.mongo.IndexModel;
+import io.vertx.ext.mongo.IndexOptions;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.validation.constraints.NotNull;
+import org.tinylog.Logger;
+
+/**
+ * The indexes that the repositories need on the collections to resolve their
+ * queries. The repositories declare the indexes for the fields that they query
+ * and sort on, and the persistence verticle creates them when it starts. The
+ * repositories can also declare some representative queries, thus the
+ * verticle can explain them and warn if any of them has to scan the whole
+ * collection.
+ *
+ * @see Repository#declareIndex(String, JsonObject, IndexOptions)
+ * @see Repository#declareQuery(String, JsonObject, JsonObject)
+ * @see AbstractPersistenceVerticle
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class IndexRegistry implements Shareable {
+
+  /**
+   * The name of the local map where the registry is shared.
+   */
+  public static final String SHARED_MAP_NAME = "eu.internetofus.common.vertx.IndexRegistry";
+
+  /**
+   * The name of the stage of the query plans that scan the whole collection.
+   */
+  public static final String COLLSCAN_STAGE = "COLLSCAN";
+
+  /**
+   * The indexes to create for each collection.
+   */
+  protected final Map<String, Map<JsonObject, IndexModel>> indexes = new LinkedHashMap<>();
+
+  /**
+   * The representative queries of each collection.
+   */
+  protected final List<JsonObject> queries = new ArrayList<>();
+
+  /**
+   * Obtain the registry that is shared by all the repositories of a Vert.x
+   * instance.
+   *
+   * @param vertx instance to get the registry.
+   *
+   * @return the registry of the instance.
+   */
+  public static IndexRegistry shared(@NotNull final Vertx vertx) {
+
+    return vertx.sharedData().<String, IndexRegistry>getLocalMap(SHARED_MAP_NAME).computeIfAbsent(SHARED_MAP_NAME,
+        key -> new IndexRegistry());
+
+  }
+
+  /**
+   * Declare an index that is needed on a collection. If an index with the same
+   * keys is already declared, the new options replace the previous ones.
+   *
+   * @param collectionName name of the collection.
+   * @param keys           of the index.
+   * @param options        of the index, or {@code null} to use the default
+   *                       ones.
+   *
+   * @return this registry.
+   */
+  public synchronized IndexRegistry index(@NotNull final String collectionName, @NotNull final JsonObject keys,
+      final IndexOptions options) {
+
+    this.indexes.computeIfAbsent(collectionName, key -> new LinkedHashMap<>()).put(keys,
+        new IndexModel(keys, options == null ? new IndexOptions() : options));
+    return this;
+
+  }
+
+  /**
+   * Declare a representative query over a collection.
+   *
+   * @param collectionName name of the collection.
+   * @param query          to match the documents.
+   * @param sort           of the documents, or {@code null} if they are not
+   *                       sorted.
+   *
+   * @return this registry.
+   */
+  public synchronized IndexRegistry query(@NotNull final String collectionName, @NotNull final JsonObject query,
+      final JsonObject sort) {
+
+    final var representative = new JsonObject().put("collection", collectionName).put("query", query);
+    if (sort != null && !sort.isEmpty()) {
+
+      representative.put("sort", sort);
+    }
+    if (!this.queries.contains(representative)) {
+
+      this.queries.add(representative);
+    }
+    return this;
+
+  }
+
+  /**
+   * Return the declared indexes of a collection.
+   *
+   * @param collectionName name of the collection.
+   *
+   * @return the indexes declared for the collection.
+   */
+  public synchronized List<IndexModel> indexesOf(@NotNull final String collectionName) {
+
+    final var collectionIndexes = this.indexes.get(collectionName);
+    if (collectionIndexes == null) {
+
+      return new ArrayList<>();
+
+    } else {
+
+      return new ArrayList<>(collectionIndexes.values());
+    }
+
+  }
+
+  /**
+   * Create the declared indexes. The indexes of each collection are created on
+   * a single command, and if it fails they are created one by one to report
+   * the ones that can not be created. The future never fails, because the
+   * repositories can work without the indexes.
+   *
+   * @param pool to the database.
+   *
+   * @return the future that will be completed when the indexes are created.
+   */
+  @SuppressWarnings("rawtypes")
+  public Future<Void> provision(@NotNull final RepositoryStorage pool) {
+
+    final List<Future> futures = new ArrayList<>();
+    final Map<String, List<IndexModel>> snapshot = new LinkedHashMap<>();
+    synchronized (this) {
+
+      for (final var entry : this.indexes.entrySet()) {
+
+        snapshot.put(entry.getKey(), new ArrayList<>(entry.getValue().values()));
+      }
+    }
+    for (final var entry : snapshot.entrySet()) {
+
+      final var collectionName = entry.getKey();
+      final var models = entry.getValue();
+      futures.add(pool.createIndexes(collectionName, models).recover(cause -> {
+
+        Logger.trace(cause, "Cannot create the indexes of '{}' at once.", () -> collectionName);
+        final List<Future> individual = new ArrayList<>();
+        for (final var model : models) {
+
+          individual.add(pool.createIndex(collectionName, model.getKey(), model.getOptions())
+              .onFailure(error -> Logger.warn(error, "Cannot create the index {} on '{}'.", () -> model.getKey(),
+                  () -> collectionName)));
+        }
+        return CompositeFuture.join(individual).<Void>mapEmpty().otherwiseEmpty();
+
+      }));
+    }
+    return CompositeFuture.join(futures).<Void>mapEmpty().otherwiseEmpty();
+
+  }
+
+  /**
+   * Explain the representative queries and warn about the ones that scan the
+   * whole collection. The future never fails, because the repositories can work
+   * without the indexes.
+   *
+   * @param pool to the database.
+   *
+   * @return the future report with the collection, the query, the sort and if
+   *         the query does a collection scan, of each representative query.
+   */
+  @SuppressWarnings("rawtypes")
+  public Future<JsonArray> explain(@NotNull final RepositoryStorage pool) {
+
+    final List<JsonObject> snapshot;
+    synchronized (this) {
+
+      snapshot = new ArrayList<>(this.queries);
+    }
+    final var report = new JsonArray();
+    final List<Future> futures = new ArrayList<>();
+    for (final var representative : snapshot) {
+
+      final var collectionName = representative.getString("collection");
+      final var query = representative.getJsonObject("query");
+      futures.add(pool.explain(collectionName, query, representative.getJsonObject("sort")).map(result -> {
+
+        final var plan = result.getJsonObject("queryPlanner", new JsonObject()).getValue("winningPlan");
+        final var collscan = containsStage(plan, COLLSCAN_STAGE);
+        if (collscan) {
+
+          Logger.warn("The query {} on '{}' does a collection scan.", () -> query.encode(), () -> collectionName);
+        }
+        report.add(representative.copy().put("collscan", collscan));
+        return null;
+
+      }).otherwise(cause -> {
+
+        Logger.trace(cause, "Cannot explain the query {} on '{}'.", () -> query, () -> collectionName);
+        return null;
+
+      }));
+    }
+    return CompositeFuture.join(futures).otherwiseEmpty().map(any -> report);
+
+  }
+
+  /**
+   * Check if a query plan contains a stage.
+   *
+   * @param plan  to check.
+   * @param stage to search.
+   *
+   * @return {@code true} if the plan contains the stage.
+   */
+  protected static boolean containsStage(final Object plan, final String stage) {
+
+    if (plan instanceof JsonObject) {
+
+      final var object = (JsonObject) plan;
+      if (stage.equals(object.getValue("stage"))) {
+
+        return true;
+      }
+      for (final var field : object.fieldNames()) {
+
+        if (containsStage(object.getValue(field), stage)) {
+
+          return true;
+        }
+      }
+
+    } else if (plan instanceof JsonArray) {
+
+      for (final var element : (JsonArray) plan) {
+
+        if (containsStage(element, stage)) {
+
+          return true;
+        }
+      }
+    }
+
+    return false;
+
+  }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+package eu.internetofus.common.vertx;
+
+import io.vertx.core.Handler;
+import io.vertx.core.streams.ReadStream;
+import java.util.function.Function;
+import javax.validation.constraints.NotNull;
+
+/**
+ * A {@link ReadStream} that converts the items emitted by another stream. The
+ * flow control is delegated to the source stream, thus the backpressure of the
+ * consumer is applied to the source.
+ *
+ * @param <T> type of the items of the source stream.
+ * @param <R> type of the converted items.
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class MappedReadStream<T, R> implements ReadStream<R> {
+
+  /**
+   * The stream with the items to convert.
+   */
+  protected ReadStream<T> source;
+
+  /**
+   * The function to convert the items.
+   */
+  protected Function<T, R> mapper;
+
+  /**
+   * The handler to inform of the errors.
+   */
+  protected Handler<Throwable> exceptionHandler;
+
+  /**
+   * Create a new stream.
+   *
+   * @param source stream with the items to convert.
+   * @param mapper function to convert the items.
+   */
+  public MappedReadStream(@NotNull final ReadStream<T> source, @NotNull final Function<T, R> mapper) {
+
+    this.source = source;
+    this.mapper = mapper;
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReadStream<R> exceptionHandler(final Handler<Throwable> handler) {
+
+    this.exceptionHandler = handler;
+    this.source.exceptionHandler(handler);
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * If the conversion of an item fails, the source is paused and the error is
+   * reported to the exception handler.
+   */
+  @Override
+  public ReadStream<R> handler(final Handler<R> handler) {
+
+    if (handler == null) {
+
+      this.source.handler(null);
+
+    } else {
+
+      this.source.handler(item -> {
+
+        R mapped;
+        try {
+
+          mapped = this.mapper.apply(item);
+
+        } catch (final Throwable cause) {
+
+          this.source.pause();
+          if (this.exceptionHandler != null) {
+
+            this.exceptionHandler.handle(cause);
+          }
+          return;
+        }
+        handler.handle(mapped);
+
+      });
+    }
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReadStream<R> pause() {
+
+    this.source.pause();
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReadStream<R> resume() {
+
+    this.source.resume();
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReadStream<R> fetch(final long amount) {
+
+    this.source.fetch(amount);
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReadStream<R> endHandler(final Handler<Void> endHandler) {
+
+    this.source.endHandler(endHandler);
+    return this;
+  }
+
+}
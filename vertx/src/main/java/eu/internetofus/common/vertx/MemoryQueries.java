@@ -0,0 +1,1544 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluate on memory the subset of the MongoDB queries, updates and
+ * aggregation stages that are generated by the {@link QueryBuilder}, the
+ * {@link AggregationBuilder} and the {@link Repository}. Any other operator
+ * fails with an {@link IllegalArgumentException}.
+ *
+ * @see MemoryRepositoryStorage
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public final class MemoryQueries {
+
+  /**
+   * The value of a path that is not defined on a document.
+   */
+  private static final Object MISSING = new Object();
+
+  /**
+   * Utility classes can not be instantiated.
+   */
+  private MemoryQueries() {
+
+  }
+
+  /**
+   * Check if a document matches a query.
+   *
+   * @param document        to check.
+   * @param query           to match, or {@code null} to match any document.
+   * @param caseInsensitive is {@code true} if the strings are compared ignoring
+   *                        the case, as a collation with strength 1 or 2.
+   *
+   * @return {@code true} if the document matches the query.
+   */
+  public static boolean matches(final JsonObject document, final JsonObject query, final boolean caseInsensitive) {
+
+    if (query == null) {
+
+      return true;
+    }
+
+    for (final var key : query.fieldNames()) {
+
+      final var condition = query.getValue(key);
+      switch (key) {
+      case "$and":
+        for (final var element : asArray(key, condition)) {
+
+          if (!matches(document, asObject(key, element), caseInsensitive)) {
+
+            return false;
+          }
+        }
+        break;
+      case "$or":
+        var any = false;
+        for (final var element : asArray(key, condition)) {
+
+          if (matches(document, asObject(key, element), caseInsensitive)) {
+
+            any = true;
+            break;
+          }
+        }
+        if (!any) {
+
+          return false;
+        }
+        break;
+      case "$nor":
+        for (final var element : asArray(key, condition)) {
+
+          if (matches(document, asObject(key, element), caseInsensitive)) {
+
+            return false;
+          }
+        }
+        break;
+      default:
+        if (key.startsWith("$")) {
+
+          throw new IllegalArgumentException("The query operator '" + key + "' is not supported on memory.");
+        }
+        if (!matchesField(valuesAt(document, key), condition, caseInsensitive)) {
+
+          return false;
+        }
+      }
+    }
+
+    return true;
+
+  }
+
+  /**
+   * Check if the values of a field match a condition.
+   *
+   * @param values          of the field.
+   * @param condition       to match.
+   * @param caseInsensitive is {@code true} if the strings are compared ignoring
+   *                        the case.
+   *
+   * @return {@code true} if the values match the condition.
+   */
+  private static boolean matchesField(final List<Object> values, final Object condition,
+      final boolean caseInsensitive) {
+
+    if (isOperators(condition)) {
+
+      return matchesOperators(values, (JsonObject) condition, caseInsensitive);
+
+    } else {
+
+      return anyEquals(values, condition, caseInsensitive);
+    }
+
+  }
+
+  /**
+   * Check if a condition is defined by operators.
+   *
+   * @param condition to check.
+   *
+   * @return {@code true} if the condition is an object whose fields are
+   *         operators.
+   */
+  private static boolean isOperators(final Object condition) {
+
+    if (condition instanceof JsonObject) {
+
+      final var names = ((JsonObject) condition).fieldNames();
+      return !names.isEmpty() && names.iterator().next().startsWith("$");
+
+    } else {
+
+      return false;
+    }
+
+  }
+
+  /**
+   * Check if the values of a field match all the operators of a condition.
+   *
+   * @param values          of the field.
+   * @param operators       to match.
+   * @param caseInsensitive is {@code true} if the strings are compared ignoring
+   *                        the case.
+   *
+   * @return {@code true} if the values match all the operators.
+   */
+  private static boolean matchesOperators(final List<Object> values, final JsonObject operators,
+      final boolean caseInsensitive) {
+
+    for (final var operator : operators.fieldNames()) {
+
+      final var argument = operators.getValue(operator);
+      final boolean matched;
+      switch (operator) {
+      case "$eq":
+        matched = anyEquals(values, argument, caseInsensitive);
+        break;
+      case "$ne":
+        matched = !anyEquals(values, argument, caseInsensitive);
+        break;
+      case "$gt":
+        matched = anyCompares(values, argument, caseInsensitive, order -> order > 0);
+        break;
+      case "$gte":
+        matched = anyCompares(values, argument, caseInsensitive, order -> order >= 0);
+        break;
+      case "$lt":
+        matched = anyCompares(values, argument, caseInsensitive, order -> order < 0);
+        break;
+      case "$lte":
+        matched = anyCompares(values, argument, caseInsensitive, order -> order <= 0);
+        break;
+      case "$in":
+        matched = anyIn(values, asArray(operator, argument), caseInsensitive);
+        break;
+      case "$nin":
+        matched = !anyIn(values, asArray(operator, argument), caseInsensitive);
+        break;
+      case "$exists":
+        matched = Boolean.TRUE.equals(argument) == values.stream().anyMatch(value -> value != MISSING);
+        break;
+      case "$regex":
+        matched = anyMatchesPattern(values, argument, operators.getString("$options"));
+        break;
+      case "$options":
+        matched = true;
+        break;
+      case "$not":
+        matched = !matchesField(values, argument, caseInsensitive);
+        break;
+      case "$elemMatch":
+        matched = anyElementMatches(values, asObject(operator, argument), caseInsensitive);
+        break;
+      case "$all":
+        matched = allMatch(values, asArray(operator, argument), caseInsensitive);
+        break;
+      case "$size":
+        matched = values.stream().anyMatch(
+            value -> value instanceof JsonArray && ((JsonArray) value).size() == ((Number) argument).intValue());
+        break;
+      case "$type":
+        matched = expand(values).stream().anyMatch(value -> typeOf(value).equals(argument)
+            || "number".equals(argument) && value instanceof Number);
+        break;
+      case "$mod":
+        final var mod = asArray(operator, argument);
+        matched = expand(values).stream().anyMatch(value -> value instanceof Number
+            && ((Number) value).longValue() % mod.getLong(0) == mod.getLong(1));
+        break;
+      default:
+        throw new IllegalArgumentException("The query operator '" + operator + "' is not supported on memory.");
+      }
+      if (!matched) {
+
+        return false;
+      }
+    }
+
+    return true;
+
+  }
+
+  /**
+   * Functional interface to check the result of a comparison.
+   */
+  @FunctionalInterface
+  private interface OrderCheck {
+
+    /**
+     * Check a comparison.
+     *
+     * @param order the result of the comparison.
+     *
+     * @return {@code true} if the order is the expected.
+     */
+    boolean test(int order);
+  }
+
+  /**
+   * Check if any value is equals to another.
+   *
+   * @param values          to check.
+   * @param expected        value.
+   * @param caseInsensitive is {@code true} if the strings are compared ignoring
+   *                        the case.
+   *
+   * @return {@code true} if any value or any element of an array value is equals
+   *         to the expected one.
+   */
+  private static boolean anyEquals(final List<Object> values, final Object expected, final boolean caseInsensitive) {
+
+    for (final var value : values) {
+
+      if (value == MISSING || value == null) {
+
+        if (expected == null) {
+
+          return true;
+        }
+
+      } else if (isEqual(value, expected, caseInsensitive)) {
+
+        return true;
+
+      } else if (value instanceof JsonArray) {
+
+        for (final var element : (JsonArray) value) {
+
+          if (isEqual(element, expected, caseInsensitive)) {
+
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+
+  }
+
+  /**
+   * Check if any value is one of the expected ones.
+   *
+   * @param values          to check.
+   * @param expected        values.
+   * @param caseInsensitive is {@code true} if the strings are compared ignoring
+   *                        the case.
+   *
+   * @return {@code true} if any value is equals to an expected one.
+   */
+  private static boolean anyIn(final List<Object> values, final JsonArray expected, final boolean caseInsensitive) {
+
+    for (final var element : expected) {
+
+      if (anyEquals(values, element, caseInsensitive)) {
+
+        return true;
+      }
+    }
+    return false;
+
+  }
+
+  /**
+   * Check if any value has the expected order respect another of the same type.
+   *
+   * @param values          to check.
+   * @param bound           to compare.
+   * @param caseInsensitive is {@code true} if the strings are compared ignoring
+   *                        the case.
+   * @param check           of the comparison result.
+   *
+   * @return {@code true} if any value satisfies the check.
+   */
+  private static boolean anyCompares(final List<Object> values, final Object bound, final boolean caseInsensitive,
+      final OrderCheck check) {
+
+    for (final var value : expand(values)) {
+
+      if (value != null && bound != null && typeRank(value) == typeRank(bound)
+          && check.test(compare(value, bound, caseInsensitive))) {
+
+        return true;
+      }
+    }
+    return false;
+
+  }
+
+  /**
+   * Check if any string value matches a regular expression.
+   *
+   * @param values  to check.
+   * @param regex   to match.
+   * @param options of the expression.
+   *
+   * @return {@code true} if any string value matches the expression.
+   */
+  private static boolean anyMatchesPattern(final List<Object> values, final Object regex, final String options) {
+
+    var flags = 0;
+    if (options != null) {
+
+      for (final var option : options.toCharArray()) {
+
+        switch (option) {
+        case 'i':
+          flags |= Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+          break;
+        case 'm':
+          flags |= Pattern.MULTILINE;
+          break;
+        case 's':
+          flags |= Pattern.DOTALL;
+          break;
+        case 'x':
+          flags |= Pattern.COMMENTS;
+          break;
+        default:
+          throw new IllegalArgumentException("The regex option '" + option + "' is not supported on memory.");
+        }
+      }
+    }
+    final var pattern = Pattern.compile(String.valueOf(regex), flags);
+    for (final var value : expand(values)) {
+
+      if (value instanceof String && pattern.matcher((String) value).find()) {
+
+        return true;
+      }
+    }
+    return false;
+
+  }
+
+  /**
+   * Check if any element of an array value matches a condition.
+   *
+   * @param values          to check.
+   * @param condition       to match by the elements.
+   * @param caseInsensitive is {@code true} if the strings are compared ignoring
+   *                        the case.
+   *
+   * @return {@code true} if an element of any array matches the condition.
+   */
+  private static boolean anyElementMatches(final List<Object> values, final JsonObject condition,
+      final boolean caseInsensitive) {
+
+    for (final var value : values) {
+
+      if (value instanceof JsonArray) {
+
+        for (final var element : (JsonArray) value) {
+
+          if (isOperators(condition)) {
+
+            if (matchesOperators(Collections.singletonList(element), condition, caseInsensitive)) {
+
+              return true;
+            }
+
+          } else if (element instanceof JsonObject && matches((JsonObject) element, condition, caseInsensitive)) {
+
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+
+  }
+
+  /**
+   * Check if the values contains all the expected ones.
+   *
+   * @param values          to check.
+   * @param expected        values or {@code $elemMatch} conditions.
+   * @param caseInsensitive is {@code true} if the strings are compared ignoring
+   *                        the case.
+   *
+   * @return {@code true} if all the expected values are found.
+   */
+  private static boolean allMatch(final List<Object> values, final JsonArray expected,
+      final boolean caseInsensitive) {
+
+    if (expected.isEmpty()) {
+
+      return false;
+    }
+    for (final var element : expected) {
+
+      if (isOperators(element)) {
+
+        if (!matchesOperators(values, (JsonObject) element, caseInsensitive)) {
+
+          return false;
+        }
+
+      } else if (!anyEquals(values, element, caseInsensitive)) {
+
+        return false;
+      }
+    }
+    return true;
+
+  }
+
+  /**
+   * Obtain the values of the values and the elements of the array values.
+   *
+   * @param values to expand.
+   *
+   * @return the defined values and the elements of the arrays.
+   */
+  private static List<Object> expand(final List<Object> values) {
+
+    final var expanded = new ArrayList<Object>();
+    for (final var value : values) {
+
+      if (value instanceof JsonArray) {
+
+        ((JsonArray) value).forEach(expanded::add);
+
+      } else if (value != MISSING) {
+
+        expanded.add(value);
+      }
+    }
+    return expanded;
+
+  }
+
+  /**
+   * Obtain the values of a path. If the path traverses an array, the values of
+   * the rest of the path for any element are returned.
+   *
+   * @param document where are the values.
+   * @param path     to the values.
+   *
+   * @return the values of the path, with a missing marker if the path is not
+   *         defined.
+   */
+  private static List<Object> valuesAt(final Object document, final String path) {
+
+    final var values = new ArrayList<Object>();
+    collectValues(document, path.split("\\."), 0, values);
+    if (values.isEmpty()) {
+
+      values.add(MISSING);
+    }
+    return values;
+
+  }
+
+  /**
+   * Collect the values of a path.
+   *
+   * @param current the value where continue the path.
+   * @param path    the fields of the path.
+   * @param index   of the current field on the path.
+   * @param values  where add the found values.
+   */
+  private static void collectValues(final Object current, final String[] path, final int index,
+      final List<Object> values) {
+
+    if (index == path.length) {
+
+      values.add(current);
+
+    } else if (current instanceof JsonObject) {
+
+      final var object = (JsonObject) current;
+      if (object.containsKey(path[index])) {
+
+        collectValues(object.getValue(path[index]), path, index + 1, values);
+      }
+
+    } else if (current instanceof JsonArray) {
+
+      final var array = (JsonArray) current;
+      final var position = parsePosition(path[index]);
+      if (position >= 0) {
+
+        if (position < array.size()) {
+
+          collectValues(array.getValue(position), path, index + 1, values);
+        }
+
+      } else {
+
+        for (final var element : array) {
+
+          if (element instanceof JsonObject) {
+
+            collectValues(element, path, index, values);
+          }
+        }
+      }
+    }
+
+  }
+
+  /**
+   * Obtain the position of an array defined on a field of a path.
+   *
+   * @param field of the path.
+   *
+   * @return the position, or {@code -1} if the field is not a position.
+   */
+  private static int parsePosition(final String field) {
+
+    if (field.isEmpty() || field.length() > 9) {
+
+      return -1;
+    }
+    for (final var c : field.toCharArray()) {
+
+      if (!Character.isDigit(c)) {
+
+        return -1;
+      }
+    }
+    return Integer.parseInt(field);
+
+  }
+
+  /**
+   * Obtain the value of a path without traverse the arrays.
+   *
+   * @param document where is the value.
+   * @param path     to the value.
+   *
+   * @return the value of the path, or {@code null} if it is not defined.
+   */
+  public static Object valueAt(final JsonObject document, final String path) {
+
+    Object current = document;
+    for (final var field : path.split("\\.")) {
+
+      if (current instanceof JsonObject) {
+
+        current = ((JsonObject) current).getValue(field);
+
+      } else if (current instanceof JsonArray && parsePosition(field) >= 0
+          && parsePosition(field) < ((JsonArray) current).size()) {
+
+        current = ((JsonArray) current).getValue(parsePosition(field));
+
+      } else {
+
+        return null;
+      }
+    }
+    return current;
+
+  }
+
+  /**
+   * Check if two values are equals.
+   *
+   * @param value           to compare.
+   * @param expected        value.
+   * @param caseInsensitive is {@code true} if the strings are compared ignoring
+   *                        the case.
+   *
+   * @return {@code true} if the values are equals.
+   */
+  private static boolean isEqual(final Object value, final Object expected, final boolean caseInsensitive) {
+
+    if (value == null || expected == null) {
+
+      return value == expected;
+
+    } else if (value instanceof Number && expected instanceof Number) {
+
+      return compare(value, expected, false) == 0;
+
+    } else if (caseInsensitive && value instanceof String && expected instanceof String) {
+
+      return ((String) value).equalsIgnoreCase((String) expected);
+
+    } else {
+
+      return value.equals(expected);
+    }
+
+  }
+
+  /**
+   * Return the name of the type of a value.
+   *
+   * @param value to get the type.
+   *
+   * @return the name of the BSON type of the value.
+   */
+  private static String typeOf(final Object value) {
+
+    if (value == null) {
+
+      return "null";
+
+    } else if (value instanceof String) {
+
+      return "string";
+
+    } else if (value instanceof Boolean) {
+
+      return "bool";
+
+    } else if (value instanceof JsonObject) {
+
+      return "object";
+
+    } else if (value instanceof JsonArray) {
+
+      return "array";
+
+    } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+
+      return "int";
+
+    } else if (value instanceof Long) {
+
+      return "long";
+
+    } else {
+
+      return "double";
+    }
+
+  }
+
+  /**
+   * Return the rank of the type of a value when compare with values of other
+   * types, as MongoDB does.
+   *
+   * @param value to get the rank.
+   *
+   * @return the rank of the value type.
+   */
+  private static int typeRank(final Object value) {
+
+    if (value == null || value == MISSING) {
+
+      return 0;
+
+    } else if (value instanceof Number) {
+
+      return 1;
+
+    } else if (value instanceof String) {
+
+      return 2;
+
+    } else if (value instanceof JsonObject) {
+
+      return 3;
+
+    } else if (value instanceof JsonArray) {
+
+      return 4;
+
+    } else {
+
+      return 5;
+    }
+
+  }
+
+  /**
+   * Compare two values.
+   *
+   * @param value           to compare.
+   * @param other           value to compare.
+   * @param caseInsensitive is {@code true} if the strings are compared ignoring
+   *                        the case.
+   *
+   * @return a negative value if the value is less than the other, zero if they
+   *         are equals and a positive value if it is greater.
+   */
+  public static int compare(final Object value, final Object other, final boolean caseInsensitive) {
+
+    final var rank = Integer.compare(typeRank(value), typeRank(other));
+    if (rank != 0) {
+
+      return rank;
+
+    } else if (value instanceof Number) {
+
+      final var a = (Number) value;
+      final var b = (Number) other;
+      if (isIntegral(a) && isIntegral(b)) {
+
+        return Long.compare(a.longValue(), b.longValue());
+
+      } else {
+
+        return Double.compare(a.doubleValue(), b.doubleValue());
+      }
+
+    } else if (value instanceof String) {
+
+      if (caseInsensitive) {
+
+        return String.CASE_INSENSITIVE_ORDER.compare((String) value, (String) other);
+
+      } else {
+
+        return ((String) value).compareTo((String) other);
+      }
+
+    } else if (value instanceof Boolean) {
+
+      return Boolean.compare((Boolean) value, (Boolean) other);
+
+    } else if (value == null || value == MISSING) {
+
+      return 0;
+
+    } else {
+
+      return value.toString().compareTo(other.toString());
+    }
+
+  }
+
+  /**
+   * Check if a number is integral.
+   *
+   * @param number to check.
+   *
+   * @return {@code true} if the number does not have decimals.
+   */
+  private static boolean isIntegral(final Number number) {
+
+    return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+
+  }
+
+  /**
+   * Create the comparator to sort some documents.
+   *
+   * @param order           of the documents, or {@code null} to not sort them.
+   * @param caseInsensitive is {@code true} if the strings are compared ignoring
+   *                        the case.
+   *
+   * @return the comparator for the order.
+   */
+  public static Comparator<JsonObject> comparator(final JsonObject order, final boolean caseInsensitive) {
+
+    return (a, b) -> {
+
+      if (order != null) {
+
+        for (final var field : order.fieldNames()) {
+
+          final var direction = order.getValue(field) instanceof Number
+              && ((Number) order.getValue(field)).intValue() < 0 ? -1 : 1;
+          final var result = compare(valueAt(a, field), valueAt(b, field), caseInsensitive);
+          if (result != 0) {
+
+            return direction * result;
+          }
+        }
+      }
+      return 0;
+
+    };
+
+  }
+
+  /**
+   * Return the fields of a document defined on a projection.
+   *
+   * @param document   to project.
+   * @param projection with the fields to include or exclude, or {@code null} to
+   *                   return all the document.
+   *
+   * @return the projected document.
+   */
+  public static JsonObject project(final JsonObject document, final JsonObject projection) {
+
+    if (projection == null || projection.isEmpty()) {
+
+      return document.copy();
+    }
+
+    var inclusion = false;
+    for (final var field : projection.fieldNames()) {
+
+      if (!"_id".equals(field) && isIncluded(projection.getValue(field))) {
+
+        inclusion = true;
+        break;
+      }
+    }
+
+    final JsonObject projected;
+    if (inclusion) {
+
+      projected = new JsonObject();
+      if (!projection.containsKey("_id") || isIncluded(projection.getValue("_id"))) {
+
+        if (document.containsKey("_id")) {
+
+          projected.put("_id", document.getValue("_id"));
+        }
+      }
+      for (final var field : projection.fieldNames()) {
+
+        final var value = projection.getValue(field);
+        if (value instanceof String && ((String) value).startsWith("$")) {
+
+          setPath(projected, field, copyOf(valueAt(document, ((String) value).substring(1))));
+
+        } else if (!"_id".equals(field) && isIncluded(value)) {
+
+          include(document, projected, field.split("\\."), 0);
+        }
+      }
+
+    } else {
+
+      projected = document.copy();
+      for (final var field : projection.fieldNames()) {
+
+        exclude(projected, field.split("\\."), 0);
+      }
+    }
+    return projected;
+
+  }
+
+  /**
+   * Check if a projection value includes a field.
+   *
+   * @param value of the projection.
+   *
+   * @return {@code true} if the field is included.
+   */
+  private static boolean isIncluded(final Object value) {
+
+    return Boolean.TRUE.equals(value) || value instanceof Number && ((Number) value).doubleValue() != 0;
+
+  }
+
+  /**
+   * Copy a path of a document into another.
+   *
+   * @param source where get the values.
+   * @param target where put the values.
+   * @param path   to copy.
+   * @param index  of the current field on the path.
+   */
+  private static void include(final JsonObject source, final JsonObject target, final String[] path,
+      final int index) {
+
+    final var field = path[index];
+    if (!source.containsKey(field)) {
+
+      return;
+    }
+    final var value = source.getValue(field);
+    if (index == path.length - 1) {
+
+      target.put(field, copyOf(value));
+
+    } else if (value instanceof JsonObject) {
+
+      var child = target.getValue(field);
+      if (!(child instanceof JsonObject)) {
+
+        child = new JsonObject();
+        target.put(field, child);
+      }
+      include((JsonObject) value, (JsonObject) child, path, index + 1);
+
+    } else if (value instanceof JsonArray) {
+
+      final var sourceArray = (JsonArray) value;
+      var child = target.getValue(field);
+      if (!(child instanceof JsonArray)) {
+
+        final var elements = new JsonArray();
+        for (final var element : sourceArray) {
+
+          if (element instanceof JsonObject) {
+
+            elements.add(new JsonObject());
+          }
+        }
+        child = elements;
+        target.put(field, child);
+      }
+      final var targetArray = (JsonArray) child;
+      var position = 0;
+      for (final var element : sourceArray) {
+
+        if (element instanceof JsonObject) {
+
+          include((JsonObject) element, targetArray.getJsonObject(position++), path, index + 1);
+        }
+      }
+    }
+
+  }
+
+  /**
+   * Remove a path from a document.
+   *
+   * @param document where remove the path.
+   * @param path     to remove.
+   * @param index    of the current field on the path.
+   */
+  private static void exclude(final JsonObject document, final String[] path, final int index) {
+
+    final var field = path[index];
+    if (index == path.length - 1) {
+
+      document.remove(field);
+
+    } else {
+
+      final var value = document.getValue(field);
+      if (value instanceof JsonObject) {
+
+        exclude((JsonObject) value, path, index + 1);
+
+      } else if (value instanceof JsonArray) {
+
+        for (final var element : (JsonArray) value) {
+
+          if (element instanceof JsonObject) {
+
+            exclude((JsonObject) element, path, index + 1);
+          }
+        }
+      }
+    }
+
+  }
+
+  /**
+   * Return a copy of a value.
+   *
+   * @param value to copy.
+   *
+   * @return the copy of the value.
+   */
+  private static Object copyOf(final Object value) {
+
+    if (value instanceof JsonObject) {
+
+      return ((JsonObject) value).copy();
+
+    } else if (value instanceof JsonArray) {
+
+      return ((JsonArray) value).copy();
+
+    } else {
+
+      return value;
+    }
+
+  }
+
+  /**
+   * Set the value of a path, creating the objects that are not defined.
+   *
+   * @param document where set the value.
+   * @param path     to the value.
+   * @param value    to set.
+   */
+  public static void setPath(final JsonObject document, final String path, final Object value) {
+
+    final var fields = path.split("\\.");
+    Object current = document;
+    for (var i = 0; i < fields.length - 1; i++) {
+
+      current = childOf(current, fields[i], true);
+      if (current == null) {
+
+        throw new IllegalArgumentException("Cannot set the path '" + path + "'.");
+      }
+    }
+    final var last = fields[fields.length - 1];
+    if (current instanceof JsonArray) {
+
+      final var array = (JsonArray) current;
+      final var position = parsePosition(last);
+      if (position < 0) {
+
+        throw new IllegalArgumentException("Cannot set the path '" + path + "'.");
+      }
+      while (array.size() <= position) {
+
+        array.addNull();
+      }
+      array.set(position, value);
+
+    } else {
+
+      ((JsonObject) current).put(last, value);
+    }
+
+  }
+
+  /**
+   * Remove the value of a path.
+   *
+   * @param document where remove the value.
+   * @param path     to the value.
+   */
+  public static void unsetPath(final JsonObject document, final String path) {
+
+    final var fields = path.split("\\.");
+    Object current = document;
+    for (var i = 0; i < fields.length - 1 && current != null; i++) {
+
+      current = childOf(current, fields[i], false);
+    }
+    final var last = fields[fields.length - 1];
+    if (current instanceof JsonObject) {
+
+      ((JsonObject) current).remove(last);
+
+    } else if (current instanceof JsonArray) {
+
+      final var position = parsePosition(last);
+      if (position >= 0 && position < ((JsonArray) current).size()) {
+
+        ((JsonArray) current).set(position, null);
+      }
+    }
+
+  }
+
+  /**
+   * Obtain the child of an object or an array.
+   *
+   * @param current the object or array.
+   * @param field   of the child.
+   * @param create  is {@code true} if the child object has to be created when it
+   *                is not defined.
+   *
+   * @return the child or {@code null} if it is not defined.
+   */
+  private static Object childOf(final Object current, final String field, final boolean create) {
+
+    if (current instanceof JsonObject) {
+
+      final var object = (JsonObject) current;
+      var child = object.getValue(field);
+      if (child == null && create) {
+
+        child = new JsonObject();
+        object.put(field, child);
+      }
+      return child instanceof JsonObject || child instanceof JsonArray ? child : null;
+
+    } else if (current instanceof JsonArray) {
+
+      final var array = (JsonArray) current;
+      final var position = parsePosition(field);
+      if (position >= 0 && position < array.size()) {
+
+        final var child = array.getValue(position);
+        return child instanceof JsonObject || child instanceof JsonArray ? child : null;
+      }
+    }
+    return null;
+
+  }
+
+  /**
+   * Check if an update replaces the document instead of modify some fields.
+   *
+   * @param update to check.
+   *
+   * @return {@code true} if the update does not have operators.
+   */
+  public static boolean isReplacement(final JsonObject update) {
+
+    return !isOperators(update);
+
+  }
+
+  /**
+   * Apply an update to a document.
+   *
+   * @param document to update.
+   * @param update   with the operators to apply, or the document that replaces
+   *                 the updated one.
+   * @param inserted is {@code true} if the document is inserted by an upsert.
+   *
+   * @return the updated document.
+   */
+  public static JsonObject update(final JsonObject document, final JsonObject update, final boolean inserted) {
+
+    if (isReplacement(update)) {
+
+      final var replaced = update.copy();
+      if (document.containsKey("_id")) {
+
+        replaced.put("_id", document.getValue("_id"));
+      }
+      return replaced;
+    }
+
+    final var updated = document.copy();
+    for (final var operator : update.fieldNames()) {
+
+      final var fields = asObject(operator, update.getValue(operator));
+      for (final var path : fields.fieldNames()) {
+
+        final var argument = fields.getValue(path);
+        switch (operator) {
+        case "$set":
+          setPath(updated, path, copyOf(argument));
+          break;
+        case "$setOnInsert":
+          if (inserted) {
+
+            setPath(updated, path, copyOf(argument));
+          }
+          break;
+        case "$unset":
+          unsetPath(updated, path);
+          break;
+        case "$inc":
+          final var current = valueAt(updated, path);
+          final var increment = (Number) argument;
+          if (current == null) {
+
+            setPath(updated, path, increment);
+
+          } else if (isIntegral((Number) current) && isIntegral(increment)) {
+
+            setPath(updated, path, ((Number) current).longValue() + increment.longValue());
+
+          } else {
+
+            setPath(updated, path, ((Number) current).doubleValue() + increment.doubleValue());
+          }
+          break;
+        case "$push":
+        case "$addToSet":
+          final var array = arrayAt(updated, path);
+          final var added = isOperators(argument) ? asArray("$each", ((JsonObject) argument).getValue("$each"))
+              : new JsonArray().add(argument);
+          for (final var element : added) {
+
+            if ("$push".equals(operator) || !array.contains(element)) {
+
+              array.add(copyOf(element));
+            }
+          }
+          break;
+        case "$pull":
+          final var pulled = arrayAt(updated, path);
+          final var iterator = pulled.iterator();
+          while (iterator.hasNext()) {
+
+            final var element = iterator.next();
+            final var condition = Collections.<Object>singletonList(element);
+            if (matchesField(condition, argument, false)
+                || argument instanceof JsonObject && element instanceof JsonObject && !isOperators(argument)
+                    && matches((JsonObject) element, (JsonObject) argument, false)) {
+
+              iterator.remove();
+            }
+          }
+          break;
+        default:
+          throw new IllegalArgumentException("The update operator '" + operator + "' is not supported on memory.");
+        }
+      }
+    }
+    return updated;
+
+  }
+
+  /**
+   * Obtain the array of a path, creating it if it is not defined.
+   *
+   * @param document where is the array.
+   * @param path     to the array.
+   *
+   * @return the array of the path.
+   */
+  private static JsonArray arrayAt(final JsonObject document, final String path) {
+
+    final var value = valueAt(document, path);
+    if (value instanceof JsonArray) {
+
+      return (JsonArray) value;
+
+    } else if (value == null) {
+
+      final var array = new JsonArray();
+      setPath(document, path, array);
+      return array;
+
+    } else {
+
+      throw new IllegalArgumentException("The value of '" + path + "' is not an array.");
+    }
+
+  }
+
+  /**
+   * Create the document to insert when an upsert does not match any document.
+   * The document has the fields of the query that are compared by equality.
+   *
+   * @param query of the upsert.
+   *
+   * @return the document to insert before apply the update.
+   */
+  public static JsonObject upsertDocumentFor(final JsonObject query) {
+
+    final var document = new JsonObject();
+    if (query != null) {
+
+      for (final var field : query.fieldNames()) {
+
+        final var condition = query.getValue(field);
+        if ("$and".equals(field)) {
+
+          for (final var element : asArray(field, condition)) {
+
+            document.mergeIn(upsertDocumentFor(asObject(field, element)), true);
+          }
+
+        } else if (!field.startsWith("$")) {
+
+          if (!isOperators(condition)) {
+
+            setPath(document, field, copyOf(condition));
+
+          } else if (((JsonObject) condition).containsKey("$eq")) {
+
+            setPath(document, field, copyOf(((JsonObject) condition).getValue("$eq")));
+          }
+        }
+      }
+    }
+    return document;
+
+  }
+
+  /**
+   * Apply an aggregation pipeline to some documents.
+   *
+   * @param documents       to aggregate.
+   * @param pipeline        with the stages to apply.
+   * @param caseInsensitive is {@code true} if the strings are compared ignoring
+   *                        the case.
+   *
+   * @return the aggregated documents.
+   */
+  public static List<JsonObject> aggregate(final List<JsonObject> documents, final JsonArray pipeline,
+      final boolean caseInsensitive) {
+
+    var current = documents;
+    if (pipeline != null) {
+
+      for (final var element : pipeline) {
+
+        final var stage = asObject("pipeline", element);
+        if (stage.size() != 1) {
+
+          throw new IllegalArgumentException("A pipeline stage has to have one field.");
+        }
+        final var name = stage.fieldNames().iterator().next();
+        final var argument = stage.getValue(name);
+        current = applyStage(current, name, argument, caseInsensitive);
+      }
+    }
+    return current;
+
+  }
+
+  /**
+   * Apply an aggregation stage to some documents.
+   *
+   * @param documents       to aggregate.
+   * @param name            of the stage.
+   * @param argument        of the stage.
+   * @param caseInsensitive is {@code true} if the strings are compared ignoring
+   *                        the case.
+   *
+   * @return the documents of the stage.
+   */
+  private static List<JsonObject> applyStage(final List<JsonObject> documents, final String name,
+      final Object argument, final boolean caseInsensitive) {
+
+    final var result = new ArrayList<JsonObject>();
+    switch (name) {
+    case "$match":
+      final var query = asObject(name, argument);
+      for (final var document : documents) {
+
+        if (matches(document, query, caseInsensitive)) {
+
+          result.add(document);
+        }
+      }
+      break;
+    case "$sort":
+      result.addAll(documents);
+      result.sort(comparator(asObject(name, argument), caseInsensitive));
+      break;
+    case "$skip":
+      final var skip = ((Number) argument).intValue();
+      if (skip < documents.size()) {
+
+        result.addAll(documents.subList(skip, documents.size()));
+      }
+      break;
+    case "$limit":
+      result.addAll(documents.subList(0, Math.min(((Number) argument).intValue(), documents.size())));
+      break;
+    case "$project":
+      for (final var document : documents) {
+
+        result.add(project(document, asObject(name, argument)));
+      }
+      break;
+    case "$unwind":
+      unwind(documents, argument, result);
+      break;
+    case "$count":
+      if (!documents.isEmpty()) {
+
+        result.add(new JsonObject().put(String.valueOf(argument), documents.size()));
+      }
+      break;
+    case "$facet":
+      final var facets = asObject(name, argument);
+      final var faceted = new JsonObject();
+      for (final var facet : facets.fieldNames()) {
+
+        final var facetResult = new JsonArray();
+        aggregate(documents, asArray(facet, facets.getValue(facet)), caseInsensitive).forEach(facetResult::add);
+        faceted.put(facet, facetResult);
+      }
+      result.add(faceted);
+      break;
+    default:
+      throw new IllegalArgumentException("The aggregation stage '" + name + "' is not supported on memory.");
+    }
+    return result;
+
+  }
+
+  /**
+   * Unwind the array of some documents.
+   *
+   * @param documents to unwind.
+   * @param argument  of the {@code $unwind} stage.
+   * @param result    where add the unwound documents.
+   */
+  private static void unwind(final List<JsonObject> documents, final Object argument,
+      final List<JsonObject> result) {
+
+    String path;
+    String indexField = null;
+    var preserve = false;
+    if (argument instanceof JsonObject) {
+
+      final var options = (JsonObject) argument;
+      path = options.getString("path");
+      indexField = options.getString("includeArrayIndex");
+      preserve = options.getBoolean("preserveNullAndEmptyArrays", false);
+
+    } else {
+
+      path = String.valueOf(argument);
+    }
+    if (path == null || !path.startsWith("$")) {
+
+      throw new IllegalArgumentException("The path to unwind has to start with '$'.");
+    }
+    path = path.substring(1);
+
+    for (final var document : documents) {
+
+      final var value = valueAt(document, path);
+      if (value instanceof JsonArray && !((JsonArray) value).isEmpty()) {
+
+        final var array = (JsonArray) value;
+        for (var i = 0; i < array.size(); i++) {
+
+          final var unwound = document.copy();
+          setPath(unwound, path, copyOf(array.getValue(i)));
+          if (indexField != null) {
+
+            unwound.put(indexField, (long) i);
+          }
+          result.add(unwound);
+        }
+
+      } else if (value != null && !(value instanceof JsonArray)) {
+
+        final var unwound = document.copy();
+        if (indexField != null) {
+
+          unwound.putNull(indexField);
+        }
+        result.add(unwound);
+
+      } else if (preserve) {
+
+        final var unwound = document.copy();
+        if (value instanceof JsonArray) {
+
+          unsetPath(unwound, path);
+        }
+        if (indexField != null) {
+
+          unwound.putNull(indexField);
+        }
+        result.add(unwound);
+      }
+    }
+
+  }
+
+  /**
+   * Obtain the array argument of an operator.
+   *
+   * @param operator that has the argument.
+   * @param argument to cast.
+   *
+   * @return the array argument.
+   */
+  private static JsonArray asArray(final String operator, final Object argument) {
+
+    if (argument instanceof JsonArray) {
+
+      return (JsonArray) argument;
+
+    } else {
+
+      throw new IllegalArgumentException("The argument of '" + operator + "' has to be an array.");
+    }
+
+  }
+
+  /**
+   * Obtain the object argument of an operator.
+   *
+   * @param operator that has the argument.
+   * @param argument to cast.
+   *
+   * @return the object argument.
+   */
+  private static JsonObject asObject(final String operator, final Object argument) {
+
+    if (argument instanceof JsonObject) {
+
+      return (JsonObject) argument;
+
+    } else {
+
+      throw new IllegalArgumentException("The argument of '" + operator + "' has to be an object.");
+    }
+
+  }
+
+}
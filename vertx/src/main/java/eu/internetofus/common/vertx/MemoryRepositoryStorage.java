@@ -0,0 +1,927 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import com.mongodb.client.model.CollationStrength;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.mongo.AggregateOptions;
+import io.vertx.ext.mongo.BulkOperation;
+import io.vertx.ext.mongo.BulkWriteOptions;
+import io.vertx.ext.mongo.CollationOptions;
+import io.vertx.ext.mongo.CountOptions;
+import io.vertx.ext.mongo.FindOptions;
+import io.vertx.ext.mongo.IndexModel;
+import io.vertx.ext.mongo.IndexOptions;
+import io.vertx.ext.mongo.MongoClientBulkWriteResult;
+import io.vertx.ext.mongo.MongoClientDeleteResult;
+import io.vertx.ext.mongo.MongoClientUpdateResult;
+import io.vertx.ext.mongo.UpdateOptions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import javax.validation.constraints.NotNull;
+import org.bson.types.ObjectId;
+
+/**
+ * The storage that stores the collections on memory. It evaluates the subset
+ * of the queries, updates and aggregation stages that are generated by the
+ * repositories, thus they can be used without a MongoDB server on the tests,
+ * the benchmarks or a single node deployment. The collections are lost when the
+ * Vert.x instance is closed.
+ *
+ * The operators that are not supported by the {@link MemoryQueries} fail with
+ * an {@link IllegalArgumentException}. The changes of the collections are not
+ * watched, thus the invalidation events are not published.
+ *
+ * @see AbstractPersistenceVerticle#BACKEND_KEY
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class MemoryRepositoryStorage implements RepositoryStorage {
+
+  /**
+   * The name of the local map where the collections are shared.
+   */
+  public static final String SHARED_MAP_NAME = "eu.internetofus.common.vertx.MemoryRepositoryStorage";
+
+  /**
+   * The Vert.x instance where the streams emit the documents.
+   */
+  protected final Vertx vertx;
+
+  /**
+   * The collections where the documents are stored.
+   */
+  protected final Store store;
+
+  /**
+   * Create a new storage.
+   *
+   * @param vertx instance where the streams emit the documents.
+   * @param store where the documents are stored.
+   */
+  protected MemoryRepositoryStorage(@NotNull final Vertx vertx, @NotNull final Store store) {
+
+    this.vertx = vertx;
+    this.store = store;
+
+  }
+
+  /**
+   * Create a storage whose collections are not shared with any other storage.
+   *
+   * @param vertx instance where the streams emit the documents.
+   *
+   * @return the storage of the collections on memory.
+   */
+  public static MemoryRepositoryStorage create(@NotNull final Vertx vertx) {
+
+    return new MemoryRepositoryStorage(vertx, new Store());
+
+  }
+
+  /**
+   * Create a storage that shares the collections with all the other shared
+   * storages of a Vert.x instance.
+   *
+   * @param vertx instance where the collections are shared.
+   *
+   * @return the storage of the collections on memory.
+   */
+  public static MemoryRepositoryStorage createShared(@NotNull final Vertx vertx) {
+
+    final var store = vertx.sharedData().<String, Store>getLocalMap(SHARED_MAP_NAME).computeIfAbsent(SHARED_MAP_NAME,
+        key -> new Store());
+    return new MemoryRepositoryStorage(vertx, store);
+
+  }
+
+  /**
+   * Execute an operation over the store.
+   *
+   * @param operation to execute.
+   * @param <T>       type of the result of the operation.
+   *
+   * @return the future result of the operation, or the failure if the operation
+   *         throws an exception.
+   */
+  protected <T> Future<T> execute(final Supplier<T> operation) {
+
+    try {
+
+      return Future.succeededFuture(operation.get());
+
+    } catch (final Throwable cause) {
+
+      return Future.failedFuture(cause);
+    }
+
+  }
+
+  /**
+   * Create the stream with the documents obtained from the store.
+   *
+   * @param documents supplier of the documents to emit.
+   *
+   * @return the stream with the documents, or with the failure if they can not
+   *         be obtained.
+   */
+  protected ReadStream<JsonObject> stream(final Supplier<List<JsonObject>> documents) {
+
+    final var context = this.vertx.getOrCreateContext();
+    try {
+
+      return new MemoryReadStream<>(context, documents.get(), null, false);
+
+    } catch (final Throwable cause) {
+
+      return new MemoryReadStream<>(context, Collections.emptyList(), cause, false);
+    }
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<String> insert(@NotNull final String collectionName, @NotNull final JsonObject document) {
+
+    return this.execute(() -> this.store.insert(collectionName, document));
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<JsonObject> findOne(@NotNull final String collectionName, @NotNull final JsonObject query,
+      final JsonObject fields) {
+
+    return this.execute(() -> {
+
+      final var found = this.store.find(collectionName, query, new FindOptions().setFields(fields).setLimit(1));
+      return found.isEmpty() ? null : found.get(0);
+
+    });
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<List<JsonObject>> find(@NotNull final String collectionName, @NotNull final JsonObject query,
+      @NotNull final FindOptions options) {
+
+    return this.execute(() -> this.store.find(collectionName, query, options));
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReadStream<JsonObject> findBatch(@NotNull final String collectionName, @NotNull final JsonObject query,
+      @NotNull final FindOptions options) {
+
+    return this.stream(() -> this.store.find(collectionName, query, options));
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<Long> count(@NotNull final String collectionName, @NotNull final JsonObject query,
+      final CountOptions options) {
+
+    final var collation = options == null ? null : options.getCollation();
+    return this.execute(() -> this.store.count(collectionName, query, collation));
+
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The collections on memory are counted exactly.
+   */
+  @Override
+  public Future<Long> estimatedCount(@NotNull final String collectionName) {
+
+    return this.execute(() -> this.store.count(collectionName, null, null));
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReadStream<JsonObject> aggregate(@NotNull final String collectionName, @NotNull final JsonArray pipeline,
+      final AggregateOptions options) {
+
+    final var collation = options == null ? null : options.getCollation();
+    return this.stream(() -> this.store.aggregate(collectionName, pipeline, collation));
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<MongoClientUpdateResult> update(@NotNull final String collectionName,
+      @NotNull final JsonObject query, @NotNull final JsonObject update, @NotNull final UpdateOptions options) {
+
+    return this.execute(() -> this.store.update(collectionName, query, update, options));
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<MongoClientDeleteResult> removeDocument(@NotNull final String collectionName,
+      @NotNull final JsonObject query) {
+
+    return this.execute(() -> this.store.remove(collectionName, query, false));
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<MongoClientDeleteResult> removeDocuments(@NotNull final String collectionName,
+      @NotNull final JsonObject query) {
+
+    return this.execute(() -> this.store.remove(collectionName, query, true));
+
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The operations are executed in order, and if one fails the next ones are not
+   * executed.
+   */
+  @Override
+  public Future<MongoClientBulkWriteResult> bulkWrite(@NotNull final String collectionName,
+      @NotNull final List<BulkOperation> operations, @NotNull final BulkWriteOptions options) {
+
+    return this.execute(() -> this.store.bulkWrite(collectionName, operations));
+
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The collections on memory are not indexed, so only the collection is
+   * created.
+   */
+  @Override
+  public Future<Void> createIndexes(@NotNull final String collectionName, @NotNull final List<IndexModel> indexes) {
+
+    this.store.create(collectionName);
+    return Future.succeededFuture();
+
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The collections on memory are not indexed, so only the collection is
+   * created.
+   */
+  @Override
+  public Future<Void> createIndex(@NotNull final String collectionName, @NotNull final JsonObject keys,
+      final IndexOptions options) {
+
+    this.store.create(collectionName);
+    return Future.succeededFuture();
+
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The queries on memory are not planned, so the explanation does not have a
+   * winning plan.
+   */
+  @Override
+  public Future<JsonObject> explain(@NotNull final String collectionName, @NotNull final JsonObject query,
+      final JsonObject sort) {
+
+    return Future.succeededFuture(new JsonObject().put("queryPlanner", new JsonObject()));
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<List<String>> getCollections() {
+
+    return Future.succeededFuture(this.store.names());
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<Void> dropCollection(@NotNull final String collectionName) {
+
+    this.store.drop(collectionName);
+    return Future.succeededFuture();
+
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The changes of the collections on memory are not watched, so the stream
+   * does not emit any change and it does not end.
+   */
+  @Override
+  public ReadStream<ChangeStreamDocument<JsonObject>> watch(@NotNull final String collectionName,
+      final int batchSize) {
+
+    return new MemoryReadStream<>(this.vertx.getOrCreateContext(), Collections.emptyList(), null, true);
+
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The collections are not removed, because they can be shared with other
+   * storages.
+   */
+  @Override
+  public Future<Void> close() {
+
+    return Future.succeededFuture();
+
+  }
+
+  /**
+   * Check if a collation compares the strings ignoring the case.
+   *
+   * @param collation to check.
+   *
+   * @return {@code true} if the collation has a primary or secondary strength.
+   */
+  static boolean isCaseInsensitive(final CollationOptions collation) {
+
+    if (collation == null) {
+
+      return false;
+
+    } else {
+
+      final var strength = collation.getStrength();
+      return strength == CollationStrength.PRIMARY || strength == CollationStrength.SECONDARY;
+    }
+
+  }
+
+  /**
+   * The collections of documents stored on memory. The documents are copied when
+   * they are stored or returned, thus they can not be modified outside of the
+   * collections.
+   */
+  public static class Store implements Shareable {
+
+    /**
+     * The documents of each collection.
+     */
+    protected final Map<String, List<JsonObject>> documents = new LinkedHashMap<>();
+
+    /**
+     * Obtain the documents of a collection.
+     *
+     * @param collectionName name of the collection.
+     *
+     * @return the documents of the collection.
+     */
+    protected List<JsonObject> collection(final String collectionName) {
+
+      return this.documents.computeIfAbsent(collectionName, key -> new ArrayList<>());
+
+    }
+
+    /**
+     * Return the names of the collections.
+     *
+     * @return the sorted names of the collections.
+     */
+    public synchronized List<String> names() {
+
+      return new ArrayList<>(new TreeSet<>(this.documents.keySet()));
+
+    }
+
+    /**
+     * Create a collection if it does not exist.
+     *
+     * @param collectionName name of the collection.
+     */
+    public synchronized void create(final String collectionName) {
+
+      this.collection(collectionName);
+
+    }
+
+    /**
+     * Remove a collection.
+     *
+     * @param collectionName name of the collection.
+     */
+    public synchronized void drop(final String collectionName) {
+
+      this.documents.remove(collectionName);
+
+    }
+
+    /**
+     * Insert a document. As the MongoDB client, if the document does not have an
+     * identifier a new one is generated and set into the document.
+     *
+     * @param collectionName name of the collection.
+     * @param document       to insert.
+     *
+     * @return the generated identifier, or {@code null} if the document has one.
+     */
+    public synchronized String insert(final String collectionName, final JsonObject document) {
+
+      final var collection = this.collection(collectionName);
+      String generated = null;
+      if (document.getValue("_id") == null) {
+
+        generated = new ObjectId().toHexString();
+        document.put("_id", generated);
+
+      } else if (this.indexOf(collection, document.getValue("_id")) > -1) {
+
+        throw new IllegalStateException("E11000 duplicate key error collection: " + collectionName + " dup key: { _id: "
+            + document.getValue("_id") + " }");
+      }
+      collection.add(document.copy());
+      return generated;
+
+    }
+
+    /**
+     * Obtain the position of a document on a collection.
+     *
+     * @param collection where search the document.
+     * @param id         of the document.
+     *
+     * @return the position of the document, or {@code -1} if it is not found.
+     */
+    protected int indexOf(final List<JsonObject> collection, final Object id) {
+
+      if (id != null) {
+
+        for (var i = 0; i < collection.size(); i++) {
+
+          if (id.equals(collection.get(i).getValue("_id"))) {
+
+            return i;
+          }
+        }
+      }
+      return -1;
+
+    }
+
+    /**
+     * Find some documents.
+     *
+     * @param collectionName name of the collection.
+     * @param query          to match.
+     * @param options        to sort, limit and project the documents.
+     *
+     * @return the found documents.
+     */
+    public synchronized List<JsonObject> find(final String collectionName, final JsonObject query,
+        final FindOptions options) {
+
+      final var caseInsensitive = isCaseInsensitive(options.getCollation());
+      final var matched = new ArrayList<JsonObject>();
+      for (final var document : this.collection(collectionName)) {
+
+        if (MemoryQueries.matches(document, query, caseInsensitive)) {
+
+          matched.add(document);
+        }
+      }
+      if (options.getSort() != null && !options.getSort().isEmpty()) {
+
+        matched.sort(MemoryQueries.comparator(options.getSort(), caseInsensitive));
+      }
+      final var from = Math.min(Math.max(options.getSkip(), 0), matched.size());
+      var to = matched.size();
+      if (options.getLimit() > 0) {
+
+        to = Math.min(from + options.getLimit(), to);
+      }
+      final var found = new ArrayList<JsonObject>();
+      for (final var document : matched.subList(from, to)) {
+
+        found.add(MemoryQueries.project(document, options.getFields()));
+      }
+      return found;
+
+    }
+
+    /**
+     * Count the documents that match a query.
+     *
+     * @param collectionName name of the collection.
+     * @param query          to match, or {@code null} to count all the
+     *                       documents.
+     * @param collation      to compare the strings, or {@code null} to use the
+     *                       binary comparison.
+     *
+     * @return the number of documents that match the query.
+     */
+    public synchronized long count(final String collectionName, final JsonObject query,
+        final CollationOptions collation) {
+
+      final var caseInsensitive = isCaseInsensitive(collation);
+      return this.collection(collectionName).stream()
+          .filter(document -> MemoryQueries.matches(document, query, caseInsensitive)).count();
+
+    }
+
+    /**
+     * Update the documents that match a query.
+     *
+     * @param collectionName name of the collection.
+     * @param query          to match.
+     * @param update         to apply.
+     * @param options        of the update.
+     *
+     * @return the result of the update.
+     */
+    public synchronized MongoClientUpdateResult update(final String collectionName, final JsonObject query,
+        final JsonObject update, final UpdateOptions options) {
+
+      final var collection = this.collection(collectionName);
+      var matched = 0L;
+      var modified = 0L;
+      for (var i = 0; i < collection.size(); i++) {
+
+        final var document = collection.get(i);
+        if (MemoryQueries.matches(document, query, false)) {
+
+          matched++;
+          final var updated = MemoryQueries.update(document, update, false);
+          if (!updated.equals(document)) {
+
+            collection.set(i, updated);
+            modified++;
+          }
+          if (!options.isMulti() || MemoryQueries.isReplacement(update)) {
+
+            break;
+          }
+        }
+      }
+
+      JsonObject upsertedId = null;
+      if (matched == 0 && options.isUpsert()) {
+
+        final var inserted = MemoryQueries.update(MemoryQueries.upsertDocumentFor(query), update, true);
+        this.insert(collectionName, inserted);
+        upsertedId = new JsonObject().put("_id", inserted.getValue("_id"));
+      }
+      return new MongoClientUpdateResult(matched, upsertedId, modified);
+
+    }
+
+    /**
+     * Remove the documents that match a query.
+     *
+     * @param collectionName name of the collection.
+     * @param query          to match.
+     * @param multi          is {@code true} to remove all the matched documents,
+     *                       or {@code false} to remove only the first one.
+     *
+     * @return the result of the remove.
+     */
+    public synchronized MongoClientDeleteResult remove(final String collectionName, final JsonObject query,
+        final boolean multi) {
+
+      var removed = 0L;
+      final Iterator<JsonObject> iterator = this.collection(collectionName).iterator();
+      while (iterator.hasNext()) {
+
+        if (MemoryQueries.matches(iterator.next(), query, false)) {
+
+          iterator.remove();
+          removed++;
+          if (!multi) {
+
+            break;
+          }
+        }
+      }
+      return new MongoClientDeleteResult(removed);
+
+    }
+
+    /**
+     * Execute some write operations in order. If an operation fails, the next
+     * ones are not executed.
+     *
+     * @param collectionName name of the collection.
+     * @param operations     to execute.
+     *
+     * @return the result of the operations.
+     */
+    public synchronized MongoClientBulkWriteResult bulkWrite(final String collectionName,
+        final List<BulkOperation> operations) {
+
+      var inserted = 0L;
+      var matched = 0L;
+      var deleted = 0L;
+      var modified = 0L;
+      final var upserts = new ArrayList<JsonObject>();
+      for (var i = 0; i < operations.size(); i++) {
+
+        final var operation = operations.get(i);
+        switch (operation.getType()) {
+        case INSERT:
+          this.insert(collectionName, operation.getDocument());
+          inserted++;
+          break;
+        case UPDATE:
+        case REPLACE:
+          final var options = new UpdateOptions().setUpsert(operation.isUpsert()).setMulti(operation.isMulti());
+          final var updated = this.update(collectionName, operation.getFilter(), operation.getDocument(), options);
+          matched += updated.getDocMatched();
+          modified += updated.getDocModified();
+          if (updated.getDocUpsertedId() != null) {
+
+            upserts.add(new JsonObject().put(MongoClientBulkWriteResult.ID, updated.getDocUpsertedId().getValue("_id"))
+                .put(MongoClientBulkWriteResult.INDEX, i));
+          }
+          break;
+        default:
+          deleted += this.remove(collectionName, operation.getFilter(), operation.isMulti()).getRemovedCount();
+        }
+      }
+      return new MongoClientBulkWriteResult(inserted, matched, deleted, modified, upserts);
+
+    }
+
+    /**
+     * Aggregate the documents of a collection.
+     *
+     * @param collectionName name of the collection.
+     * @param pipeline       with the stages to apply.
+     * @param collation      to compare the strings, or {@code null} to use the
+     *                       binary comparison.
+     *
+     * @return the aggregated documents.
+     */
+    public synchronized List<JsonObject> aggregate(final String collectionName, final JsonArray pipeline,
+        final CollationOptions collation) {
+
+      final var copies = new ArrayList<JsonObject>();
+      for (final var document : this.collection(collectionName)) {
+
+        copies.add(document.copy());
+      }
+      return MemoryQueries.aggregate(copies, pipeline, isCaseInsensitive(collation));
+
+    }
+
+  }
+
+  /**
+   * A stream that emits the items of a result on a context while it is not
+   * paused. The items are never emitted on the call that sets a handler or
+   * requests more items, as the streams of MongoDB.
+   *
+   * @param <T> type of the emitted items.
+   */
+  protected static class MemoryReadStream<T> implements ReadStream<T> {
+
+    /**
+     * The context where the items are emitted.
+     */
+    protected final Context context;
+
+    /**
+     * The items to emit.
+     */
+    protected final Iterator<T> items;
+
+    /**
+     * This is {@code true} if the stream never ends.
+     */
+    protected final boolean endless;
+
+    /**
+     * The error to report, or {@code null} if the items can be emitted.
+     */
+    protected Throwable failure;
+
+    /**
+     * The handler of the emitted items.
+     */
+    protected Handler<T> handler;
+
+    /**
+     * The handler to call when all the items are emitted.
+     */
+    protected Handler<Void> endHandler;
+
+    /**
+     * The handler to inform of the errors.
+     */
+    protected Handler<Throwable> exceptionHandler;
+
+    /**
+     * The number of items that can be emitted, or {@link Long#MAX_VALUE} if the
+     * stream is flowing.
+     */
+    protected long demand = Long.MAX_VALUE;
+
+    /**
+     * This is {@code true} if the items will be emitted on the context.
+     */
+    protected boolean scheduled;
+
+    /**
+     * Create the stream.
+     *
+     * @param context where the items are emitted.
+     * @param items   to emit.
+     * @param failure the error to report, or {@code null} if the items can be
+     *                emitted.
+     * @param endless is {@code true} if the stream never ends.
+     */
+    public MemoryReadStream(final Context context, final List<T> items, final Throwable failure,
+        final boolean endless) {
+
+      this.context = context;
+      this.items = items.iterator();
+      this.failure = failure;
+      this.endless = endless;
+
+    }
+
+    /**
+     * Emit the items on the context, if they are not already scheduled.
+     */
+    protected synchronized void schedule() {
+
+      if (!this.scheduled) {
+
+        this.scheduled = true;
+        this.context.runOnContext(any -> this.emit());
+      }
+
+    }
+
+    /**
+     * Emit the items while there is demand.
+     */
+    protected void emit() {
+
+      synchronized (this) {
+
+        this.scheduled = false;
+      }
+      if (this.failure != null) {
+
+        if (this.exceptionHandler != null) {
+
+          final var cause = this.failure;
+          this.failure = null;
+          this.exceptionHandler.handle(cause);
+        }
+
+      } else {
+
+        while (this.demand > 0 && this.handler != null && this.items.hasNext()) {
+
+          if (this.demand != Long.MAX_VALUE) {
+
+            this.demand--;
+          }
+          this.handler.handle(this.items.next());
+        }
+        if (!this.endless && this.handler != null && !this.items.hasNext() && this.endHandler != null) {
+
+          final var end = this.endHandler;
+          this.endHandler = null;
+          end.handle(null);
+        }
+      }
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ReadStream<T> exceptionHandler(final Handler<Throwable> handler) {
+
+      this.exceptionHandler = handler;
+      this.schedule();
+      return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ReadStream<T> handler(final Handler<T> handler) {
+
+      this.handler = handler;
+      this.schedule();
+      return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ReadStream<T> pause() {
+
+      this.demand = 0;
+      return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ReadStream<T> resume() {
+
+      return this.fetch(Long.MAX_VALUE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ReadStream<T> fetch(final long amount) {
+
+      if (amount > 0) {
+
+        this.demand = amount == Long.MAX_VALUE || this.demand > Long.MAX_VALUE - amount ? Long.MAX_VALUE
+            : this.demand + amount;
+        this.schedule();
+      }
+      return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ReadStream<T> endHandler(final Handler<Void> endHandler) {
+
+      this.endHandler = endHandler;
+      this.schedule();
+      return this;
+    }
+
+  }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import javax.validation.constraints.NotNull;
+
+/**
+ * The options to apply when migrate the documents of a collection to a new
+ * schema version. The persistence verticle configures the options that the
+ * repositories of a Vert.x instance use by default.
+ *
+ * @see Repository#migrateCollection(String, Class, String)
+ * @see AbstractPersistenceVerticle#migrationOptions()
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class MigrationOptions implements Shareable {
+
+  /**
+   * The name of the local map where the options are shared.
+   */
+  public static final String SHARED_MAP_NAME = "eu.internetofus.common.vertx.MigrationOptions";
+
+  /**
+   * The default number of documents to update on each bulk write.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 500;
+
+  /**
+   * The name of the configuration property that contains the number of
+   * documents to update on each bulk write.
+   */
+  public static final String BATCH_SIZE_KEY = "batchSize";
+
+  /**
+   * The default maximum number of bulk writes that can be executed at the same
+   * time.
+   */
+  public static final int DEFAULT_CONCURRENCY = 4;
+
+  /**
+   * The name of the configuration property that contains the maximum number of
+   * bulk writes that can be executed at the same time.
+   */
+  public static final String CONCURRENCY_KEY = "concurrency";
+
+  /**
+   * The default name of the collection where the migration checkpoints are
+   * stored.
+   */
+  public static final String DEFAULT_CHECKPOINT_COLLECTION = "schemaMigrations";
+
+  /**
+   * The name of the configuration property that contains the name of the
+   * collection where the migration checkpoints are stored.
+   */
+  public static final String CHECKPOINT_COLLECTION_KEY = "checkpointCollection";
+
+  /**
+   * The number of documents to update on each bulk write.
+   */
+  public int batchSize = DEFAULT_BATCH_SIZE;
+
+  /**
+   * The maximum number of bulk writes that can be executed at the same time.
+   */
+  public int concurrency = DEFAULT_CONCURRENCY;
+
+  /**
+   * The name of the collection where the checkpoints are stored, or
+   * {@code null} if the migration is not resumable.
+   */
+  public String checkpointCollection = DEFAULT_CHECKPOINT_COLLECTION;
+
+  /**
+   * Create the default migration options.
+   */
+  public MigrationOptions() {
+
+  }
+
+  /**
+   * Create the migration options defined on a configuration.
+   *
+   * @param conf configuration with the migration options.
+   */
+  public MigrationOptions(final JsonObject conf) {
+
+    if (conf != null) {
+
+      this.batchSize = Math.max(1, conf.getInteger(BATCH_SIZE_KEY, DEFAULT_BATCH_SIZE));
+      this.concurrency = Math.max(1, conf.getInteger(CONCURRENCY_KEY, DEFAULT_CONCURRENCY));
+      this.checkpointCollection = conf.getString(CHECKPOINT_COLLECTION_KEY, DEFAULT_CHECKPOINT_COLLECTION);
+    }
+
+  }
+
+  /**
+   * Obtain the options that the repositories of a Vert.x instance use to migrate
+   * the collections.
+   *
+   * @param vertx instance to get the options.
+   *
+   * @return the configured options, or the default ones if they are not
+   *         configured.
+   *
+   * @see #configure(Vertx, MigrationOptions)
+   */
+  public static MigrationOptions shared(@NotNull final Vertx vertx) {
+
+    final var options = vertx.sharedData().<String, MigrationOptions>getLocalMap(SHARED_MAP_NAME)
+        .get(SHARED_MAP_NAME);
+    if (options == null) {
+
+      return new MigrationOptions();
+
+    } else {
+
+      return options;
+    }
+
+  }
+
+  /**
+   * Change the options that the repositories of a Vert.x instance that are
+   * created after it use to migrate the collections.
+   *
+   * @param vertx   instance to configure.
+   * @param options to migrate the collections.
+   */
+  public static void configure(@NotNull final Vertx vertx, @NotNull final MigrationOptions options) {
+
+    vertx.sharedData().<String, MigrationOptions>getLocalMap(SHARED_MAP_NAME).put(SHARED_MAP_NAME, options);
+
+  }
+
+}
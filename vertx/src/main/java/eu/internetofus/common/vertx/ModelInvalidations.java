@@ -0,0 +1,182 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+import javax.validation.constraints.NotNull;
+
+/**
+ * The events that inform that the models stored on a collection has changed.
+ * The changes are obtained from the MongoDB change streams of the collections
+ * and published on the event bus, thus the caches of the models can remove the
+ * values that are not valid. The event bus only delivers the events to other
+ * processes when the Vert.x instances are clustered, otherwise only the caches
+ * of the process that watches the collection are invalidated, and the other
+ * ones expire by their timeouts.
+ *
+ * @see Repository#publishInvalidations(String)
+ * @see ComponentClientWithCache#invalidateOnChangesOf(Vertx, String, Object...)
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public interface ModelInvalidations {
+
+  /**
+   * The prefix of the addresses where the invalidation events are published.
+   */
+  String ADDRESS_PREFIX = "wenet.invalidations.";
+
+  /**
+   * The name of the field of an event with the name of the changed collection.
+   */
+  String COLLECTION = "collection";
+
+  /**
+   * The name of the field of an event with the type of change. It is one of the
+   * values of {@link OperationType}, for example {@code delete}.
+   */
+  String OPERATION = "operation";
+
+  /**
+   * The name of the field of an event with the identifier of the changed model.
+   * It is not defined when the change affects all the collection.
+   */
+  String ID = "id";
+
+  /**
+   * The number of changes to obtain on each batch of a change stream.
+   */
+  int DEFAULT_BATCH_SIZE = 100;
+
+  /**
+   * Return the address where are published the invalidation events of a
+   * collection.
+   *
+   * @param collectionName name of the collection.
+   *
+   * @return the address of the events of the collection.
+   */
+  static String addressFor(@NotNull final String collectionName) {
+
+    return ADDRESS_PREFIX + collectionName;
+
+  }
+
+  /**
+   * Create the invalidation event of a change.
+   *
+   * @param collectionName name of the changed collection.
+   * @param change         on the collection.
+   *
+   * @return the invalidation event.
+   */
+  static JsonObject eventFor(@NotNull final String collectionName,
+      @NotNull final ChangeStreamDocument<JsonObject> change) {
+
+    final var event = new JsonObject().put(COLLECTION, collectionName);
+    final var operation = change.getOperationType();
+    if (operation != null) {
+
+      event.put(OPERATION, operation.getValue());
+    }
+    final var key = change.getDocumentKey();
+    if (key != null) {
+
+      final var id = key.get("_id");
+      if (id != null) {
+
+        if (id.isString()) {
+
+          event.put(ID, id.asString().getValue());
+
+        } else if (id.isObjectId()) {
+
+          event.put(ID, id.asObjectId().getValue().toHexString());
+
+        } else {
+
+          event.put(ID, id.toString());
+        }
+      }
+    }
+    return event;
+
+  }
+
+  /**
+   * Start to publish the invalidation events of a collection. The collection has
+   * to be on a replica set, otherwise the change stream fails and it is opened
+   * again later. The events are published on the event bus, so they only reach
+   * the consumers of other processes when the Vert.x instances are clustered.
+   *
+   * @param vertx          event bus where the events are published.
+   * @param pool           to the database.
+   * @param collectionName name of the collection to watch.
+   *
+   * @return the publisher of the changes, that has to be closed when the changes
+   *         must not be published.
+   *
+   * @see ModelInvalidationsPublisher
+   */
+  static ModelInvalidationsPublisher publishChangesOf(@NotNull final Vertx vertx, @NotNull final RepositoryStorage pool,
+      @NotNull final String collectionName) {
+
+    return new ModelInvalidationsPublisher(vertx, pool, collectionName).start();
+
+  }
+
+  /**
+   * Register a handler for the invalidation events of a collection.
+   *
+   * @param vertx          event bus where the events are published.
+   * @param collectionName name of the collection.
+   * @param handler        to call with the invalidation events.
+   *
+   * @return the consumer of the events.
+   */
+  static MessageConsumer<JsonObject> consume(@NotNull final Vertx vertx, @NotNull final String collectionName,
+      @NotNull final Handler<JsonObject> handler) {
+
+    return vertx.eventBus().<JsonObject>consumer(addressFor(collectionName), message -> handler.handle(message.body()));
+
+  }
+
+  /**
+   * Check if an event can change if a model exist or not.
+   *
+   * @param event to check.
+   *
+   * @return {@code true} if the event is not an update or a replace of a model.
+   */
+  static boolean changesExistence(@NotNull final JsonObject event) {
+
+    final var operation = event.getString(OPERATION);
+    return !OperationType.UPDATE.getValue().equals(operation) && !OperationType.REPLACE.getValue().equals(operation);
+
+  }
+
+}
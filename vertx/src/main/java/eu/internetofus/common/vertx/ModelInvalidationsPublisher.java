@@ -0,0 +1,212 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import javax.validation.constraints.NotNull;
+import org.tinylog.Logger;
+
+/**
+ * Publish the invalidation events of the changes of a collection. The changes
+ * are obtained from a MongoDB change stream that is opened again when it fails
+ * or ends. The MongoDB client can not resume a change stream from its resume
+ * token, so when the stream is opened again an event without identifier is
+ * published to invalidate all the models of the collection that may have
+ * changed meanwhile.
+ *
+ * @see ModelInvalidations#publishChangesOf(Vertx, RepositoryStorage, String)
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class ModelInvalidationsPublisher {
+
+  /**
+   * The default milliseconds to wait before open again a change stream that
+   * has failed.
+   */
+  public static final long DEFAULT_RETRY_DELAY = 1000;
+
+  /**
+   * The maximum milliseconds to wait before open again a change stream that
+   * has failed.
+   */
+  public static final long MAX_RETRY_DELAY = 60000;
+
+  /**
+   * The event bus where the events are published.
+   */
+  protected final Vertx vertx;
+
+  /**
+   * The pool to the database.
+   */
+  protected final RepositoryStorage pool;
+
+  /**
+   * The name of the collection to watch.
+   */
+  protected final String collectionName;
+
+  /**
+   * The milliseconds to wait before open again the change stream.
+   */
+  protected long retryDelay = DEFAULT_RETRY_DELAY;
+
+  /**
+   * The stream with the changes of the collection, or {@code null} if it is not
+   * opened.
+   */
+  protected ReadStream<ChangeStreamDocument<JsonObject>> changes;
+
+  /**
+   * The identifier of the timer to open again the change stream, or {@code -1}
+   * if it is not waiting.
+   */
+  protected long timerId = -1;
+
+  /**
+   * This is {@code true} if the changes may have been lost because the change
+   * stream has been opened again.
+   */
+  protected boolean reopened;
+
+  /**
+   * This is {@code true} if the publisher is closed.
+   */
+  protected boolean closed;
+
+  /**
+   * Create the publisher of the changes of a collection.
+   *
+   * @param vertx          event bus where the events are published.
+   * @param pool           to the database.
+   * @param collectionName name of the collection to watch.
+   */
+  public ModelInvalidationsPublisher(@NotNull final Vertx vertx, @NotNull final RepositoryStorage pool,
+      @NotNull final String collectionName) {
+
+    this.vertx = vertx;
+    this.pool = pool;
+    this.collectionName = collectionName;
+
+  }
+
+  /**
+   * Start to publish the changes of the collection.
+   *
+   * @return this publisher.
+   */
+  public synchronized ModelInvalidationsPublisher start() {
+
+    if (!this.closed && this.changes == null && this.timerId < 0) {
+
+      this.open();
+    }
+    return this;
+
+  }
+
+  /**
+   * Open the change stream of the collection.
+   */
+  protected void open() {
+
+    final var address = ModelInvalidations.addressFor(this.collectionName);
+    final var stream = this.pool.watch(this.collectionName, ModelInvalidations.DEFAULT_BATCH_SIZE);
+    this.changes = stream;
+    stream.exceptionHandler(cause -> {
+
+      Logger.warn(cause, "Cannot watch the changes of '{}', so it will be watched again in {} ms.",
+          this.collectionName, this.retryDelay);
+      this.openLater(stream);
+    });
+    stream.endHandler(end -> {
+
+      Logger.trace("Finished to watch the changes of '{}'.", this.collectionName);
+      this.openLater(stream);
+    });
+    if (this.reopened) {
+
+      this.vertx.eventBus().publish(address, new JsonObject().put(ModelInvalidations.COLLECTION, this.collectionName)
+          .put(ModelInvalidations.OPERATION, OperationType.INVALIDATE.getValue()));
+    }
+    stream.handler(change -> {
+
+      this.retryDelay = DEFAULT_RETRY_DELAY;
+      this.vertx.eventBus().publish(address, ModelInvalidations.eventFor(this.collectionName, change));
+    });
+
+  }
+
+  /**
+   * Open again the change stream after the retry delay.
+   *
+   * @param stream that has failed or ended.
+   */
+  protected synchronized void openLater(final ReadStream<ChangeStreamDocument<JsonObject>> stream) {
+
+    if (!this.closed && this.changes == stream) {
+
+      this.changes = null;
+      final var delay = this.retryDelay;
+      this.retryDelay = Math.min(MAX_RETRY_DELAY, delay * 2);
+      this.timerId = this.vertx.setTimer(delay, id -> {
+
+        synchronized (this) {
+
+          this.timerId = -1;
+          if (!this.closed) {
+
+            this.reopened = true;
+            this.open();
+          }
+        }
+      });
+    }
+
+  }
+
+  /**
+   * Stop to publish the changes of the collection and close the change stream.
+   */
+  public synchronized void close() {
+
+    this.closed = true;
+    if (this.timerId >= 0) {
+
+      this.vertx.cancelTimer(this.timerId);
+      this.timerId = -1;
+    }
+    if (this.changes != null) {
+
+      final var stream = this.changes;
+      this.changes = null;
+      stream.handler(null);
+    }
+
+  }
+
+}
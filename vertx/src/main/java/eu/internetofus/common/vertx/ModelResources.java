@@ -21,6 +21,7 @@
 package eu.internetofus.common.vertx;
 
 import eu.internetofus.common.model.CreateUpdateTsDetails;
+import eu.internetofus.common.model.ErrorMessage;
 import eu.internetofus.common.model.Mergeable;
 import eu.internetofus.common.model.Model;
 import eu.internetofus.common.model.TimeManager;
@@ -32,8 +33,13 @@ import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.core.streams.WriteStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.BiConsumer;
@@ -70,7 +76,8 @@ public interface ModelResources {
       @NotNull final ModelContext<T, I, C> model, @NotNull final BiConsumer<I, Handler<AsyncResult<T>>> searcher,
       @NotNull final ServiceContext context, @NotNull final Runnable success) {
 
-    searcher.accept(model.id, retrieve -> {
+    final var span = TraceSpan.start("retrieve " + model.name, TraceSpan.INTERNAL);
+    span.run(() -> searcher.accept(model.id, span.ending(retrieve -> {
 
       model.target = retrieve.result();
       if (retrieve.failed() || model.target == null) {
@@ -86,7 +93,7 @@ public interface ModelResources {
         success.run();
       }
 
-    });
+    })));
 
   }
 
@@ -110,6 +117,84 @@ public interface ModelResources {
 
   }
 
+  /**
+   * Create the handler to manage the retrieve of some fields of a model. The
+   * fields to return are defined on the query parameter
+   * {@link ServiceRequests#FIELDS_PARAMETER} of the request, and it responds
+   * with a bad request if any of them is not valid.
+   *
+   * @param model    context of the model to retrieve.
+   * @param searcher the function used to obtain the fields of the model.
+   * @param context  of the request.
+   * @param success  function to call if the model can be retrieved.
+   *
+   * @param <T>      type of model to retrieve.
+   * @param <I>      type for the model identifier.
+   * @param <C>      type of validation context to use.
+   *
+   * @see ServiceRequests#extractFieldsProjection(io.vertx.ext.web.api.service.ServiceRequest)
+   */
+  static public <T extends Model, I, C extends ValidateContext<C>> void retrieveModelProjectionChain(
+      @NotNull final ModelContext<T, I, C> model, @NotNull final ProjectionSearcher<I, T> searcher,
+      @NotNull final ServiceContext context, @NotNull final Runnable success) {
+
+    extractFieldsProjection(context, fields -> retrieveModelChain(model,
+        (id, handler) -> searcher.search(id, fields, handler), context, success));
+
+  }
+
+  /**
+   * Obtain the projection with the fields to return that are defined on the
+   * request.
+   *
+   * @param context of the request.
+   * @param success function to call with the projection, or with {@code null}
+   *                if all the fields has to be returned.
+   *
+   * @see ServiceRequests#extractFieldsProjection(io.vertx.ext.web.api.service.ServiceRequest)
+   */
+  static void extractFieldsProjection(@NotNull final ServiceContext context,
+      @NotNull final Consumer<JsonObject> success) {
+
+    JsonObject fields = null;
+    try {
+
+      fields = ServiceRequests.extractFieldsProjection(context.request);
+
+    } catch (final IllegalArgumentException cause) {
+
+      Logger.trace(cause, "Bad fields to return.\n{}", context);
+      ServiceResponseHandlers.responseWithErrorMessage(context.resultHandler, Status.BAD_REQUEST, "bad_fields",
+          cause.getMessage());
+      return;
+    }
+    success.accept(fields);
+
+  }
+
+  /**
+   * The method to call when is retrieving some fields of a model.
+   *
+   * @param model    context of the model to retrieve.
+   * @param searcher the function used to obtain the fields of the model.
+   * @param context  of the request.
+   *
+   * @param <T>      type of model to retrieve.
+   * @param <I>      type for the model identifier.
+   * @param <C>      type of validation context to use.
+   *
+   * @see #retrieveModelProjectionChain(ModelContext, ProjectionSearcher,
+   *      ServiceContext, Runnable)
+   */
+  static public <T extends Model, I, C extends ValidateContext<C>> void retrieveModelProjection(
+      @NotNull final ModelContext<T, I, C> model, @NotNull final ProjectionSearcher<I, T> searcher,
+      @NotNull final ServiceContext context) {
+
+    retrieveModelProjectionChain(model, searcher, context,
+        () -> ServiceResponseHandlers.responseOk(context.resultHandler, model.target));
+
+  }
+
   /**
    * Create the handler to manage the retrieve of a model.
    *
@@ -126,7 +211,8 @@ public interface ModelResources {
       @NotNull final ModelContext<T, I, C> model, @NotNull final BiConsumer<I, Handler<AsyncResult<Void>>> deleter,
       @NotNull final ServiceContext context, @NotNull final Runnable success) {
 
-    deleter.accept(model.id, delete -> {
+    final var span = TraceSpan.start("delete " + model.name, TraceSpan.INTERNAL);
+    span.run(() -> deleter.accept(model.id, span.ending(delete -> {
 
       if (delete.failed()) {
 
@@ -140,7 +226,7 @@ public interface ModelResources {
         Logger.trace("Deleted {}.\n{}", model, context);
         success.run();
       }
-    });
+    })));
 
   }
 
@@ -178,7 +264,9 @@ public interface ModelResources {
       @NotNull final ModelContext<T, I, C> model, @NotNull final ServiceContext context,
       @NotNull final Runnable success) {
 
-    model.source.validate(model.validateContext).onComplete(valid -> {
+    final var validation = TraceSpan.trace("validate " + model.name,
+        () -> model.source.validate(model.validateContext));
+    validation.onComplete(valid -> {
 
       if (valid.failed()) {
 
@@ -292,7 +380,8 @@ public interface ModelResources {
           timestamp._creationTs = now;
           timestamp._lastUpdateTs = now;
         }
-        storer.accept(model.value, stored -> {
+        final var span = TraceSpan.start("store " + model.name, TraceSpan.INTERNAL);
+        span.run(() -> storer.accept(model.value, span.ending(stored -> {
 
           if (stored.failed()) {
 
@@ -306,7 +395,7 @@ public interface ModelResources {
             Logger.trace("Stored {}.\n{}", model, context);
             success.run();
           }
-        });
+        })));
       });
     });
 
@@ -327,7 +416,9 @@ public interface ModelResources {
       @NotNull final ModelContext<T, I, C> model, @NotNull final ServiceContext context,
       @NotNull final Runnable success) {
 
-    model.target.merge(model.source, model.validateContext).onComplete(merge -> {
+    final var merged = TraceSpan.trace("merge " + model.name,
+        () -> model.target.merge(model.source, model.validateContext));
+    merged.onComplete(merge -> {
 
       if (merge.failed()) {
 
@@ -485,7 +576,8 @@ public interface ModelResources {
       final var now = TimeManager.now();
       ((CreateUpdateTsDetails) model.value)._lastUpdateTs = now;
     }
-    updater.accept(model.value, stored -> {
+    final var span = TraceSpan.start("update " + model.name, TraceSpan.INTERNAL);
+    span.run(() -> updater.accept(model.value, span.ending(stored -> {
 
       if (stored.failed()) {
 
@@ -499,10 +591,247 @@ public interface ModelResources {
         success.run();
       }
 
+    })));
+
+  }
+
+  /**
+   * The maximum number of times that a model is read and changed again when it
+   * has been modified by another request while it was updating.
+   */
+  int MAX_CONCURRENT_UPDATE_RETRIES = 3;
+
+  /**
+   * Merge a JSON model to the defined on the DB storing only the changed fields
+   * and finish with an OK.
+   *
+   * @param value    of the model to merge.
+   * @param model    context of the model to merge.
+   * @param searcher the function used to obtain a model.
+   * @param updater  the function used to store the changes of a model.
+   * @param context  of the request.
+   *
+   * @param <T>      type of model to merge.
+   * @param <I>      type of the model identifier.
+   * @param <C>      type of validation context to use.
+   */
+  static public <C extends ValidateContext<C>, T extends Model & Mergeable<T, C>, I> void mergeModelWithDelta(
+      final JsonObject value, @NotNull final ModelContext<T, I, C> model,
+      @NotNull final BiConsumer<I, Handler<AsyncResult<T>>> searcher, @NotNull final DeltaUpdater<T> updater,
+      @NotNull final ServiceContext context) {
+
+    mergeModelWithDeltaChain(value, model, searcher, updater, context,
+        () -> ServiceResponseHandlers.responseOk(context.resultHandler, model.value));
+
+  }
+
+  /**
+   * Merge a JSON model to the defined on the DB storing only the changed
+   * fields. If the model is modified by another request while it is merging,
+   * the merge is done again over the new stored model.
+   *
+   * @param value    of the model to merge.
+   * @param model    context of the model to merge.
+   * @param searcher the function used to obtain a model.
+   * @param updater  the function used to store the changes of a model.
+   * @param context  of the request.
+   * @param success  component to process the merged model.
+   *
+   * @param <T>      type of model to merge.
+   * @param <I>      type of the model identifier.
+   * @param <C>      type of validation context to use.
+   *
+   * @see #MAX_CONCURRENT_UPDATE_RETRIES
+   */
+  static public <C extends ValidateContext<C>, T extends Model & Mergeable<T, C>, I> void mergeModelWithDeltaChain(
+      final JsonObject value, @NotNull final ModelContext<T, I, C> model,
+      @NotNull final BiConsumer<I, Handler<AsyncResult<T>>> searcher, @NotNull final DeltaUpdater<T> updater,
+      @NotNull final ServiceContext context, @NotNull final Runnable success) {
+
+    toModel(value, model, context, () -> mergeModelWithDeltaChain(model, searcher, updater, context,
+        MAX_CONCURRENT_UPDATE_RETRIES, success));
+
+  }
+
+  /**
+   * Retrieve a model, merge it with the source and store only the changed
+   * fields.
+   *
+   * @param model    context of the model to merge.
+   * @param searcher the function used to obtain a model.
+   * @param updater  the function used to store the changes of a model.
+   * @param context  of the request.
+   * @param retries  number of times that can be merged again if the model has
+   *                 been modified by another request.
+   * @param success  component to process the merged model.
+   *
+   * @param <T>      type of model to merge.
+   * @param <I>      type of the model identifier.
+   * @param <C>      type of validation context to use.
+   */
+  static public <C extends ValidateContext<C>, T extends Model & Mergeable<T, C>, I> void mergeModelWithDeltaChain(
+      @NotNull final ModelContext<T, I, C> model, @NotNull final BiConsumer<I, Handler<AsyncResult<T>>> searcher,
+      @NotNull final DeltaUpdater<T> updater, @NotNull final ServiceContext context, final int retries,
+      @NotNull final Runnable success) {
+
+    retrieveModelChain(model, searcher, context, () -> {
+
+      merge(model, context, () -> storeModelDeltaChain(model, updater, context, retries,
+          () -> mergeModelWithDeltaChain(model, searcher, updater, context, retries - 1, success), success));
+
     });
 
   }
 
+  /**
+   * Update a JSON model to the defined on the DB storing only the changed fields
+   * and finish with an OK.
+   *
+   * @param value    of the model to update.
+   * @param model    context of the model to update.
+   * @param searcher the function used to obtain a model.
+   * @param updater  the function used to store the changes of a model.
+   * @param context  of the request.
+   *
+   * @param <T>      type of model to update.
+   * @param <I>      type of the model identifier.
+   * @param <C>      type of validation context to use.
+   */
+  static public <C extends ValidateContext<C>, T extends Model & Updateable<T, C>, I> void updateModelWithDelta(
+      final JsonObject value, @NotNull final ModelContext<T, I, C> model,
+      @NotNull final BiConsumer<I, Handler<AsyncResult<T>>> searcher, @NotNull final DeltaUpdater<T> updater,
+      @NotNull final ServiceContext context) {
+
+    updateModelWithDeltaChain(value, model, searcher, updater, context,
+        () -> ServiceResponseHandlers.responseOk(context.resultHandler, model.value));
+
+  }
+
+  /**
+   * Update a JSON model to the defined on the DB storing only the changed
+   * fields. If the model is modified by another request while it is updating,
+   * the update is done again over the new stored model.
+   *
+   * @param value    of the model to update.
+   * @param model    context of the model to update.
+   * @param searcher the function used to obtain a model.
+   * @param updater  the function used to store the changes of a model.
+   * @param context  of the request.
+   * @param success  component to process the updated model.
+   *
+   * @param <T>      type of model to update.
+   * @param <I>      type of the model identifier.
+   * @param <C>      type of validation context to use.
+   *
+   * @see #MAX_CONCURRENT_UPDATE_RETRIES
+   */
+  static public <C extends ValidateContext<C>, T extends Model & Updateable<T, C>, I> void updateModelWithDeltaChain(
+      final JsonObject value, @NotNull final ModelContext<T, I, C> model,
+      @NotNull final BiConsumer<I, Handler<AsyncResult<T>>> searcher, @NotNull final DeltaUpdater<T> updater,
+      @NotNull final ServiceContext context, @NotNull final Runnable success) {
+
+    toModel(value, model, context, () -> updateModelWithDeltaChain(model, searcher, updater, context,
+        MAX_CONCURRENT_UPDATE_RETRIES, success));
+
+  }
+
+  /**
+   * Retrieve a model, update it with the source and store only the changed
+   * fields.
+   *
+   * @param model    context of the model to update.
+   * @param searcher the function used to obtain a model.
+   * @param updater  the function used to store the changes of a model.
+   * @param context  of the request.
+   * @param retries  number of times that can be updated again if the model has
+   *                 been modified by another request.
+   * @param success  component to process the updated model.
+   *
+   * @param <T>      type of model to update.
+   * @param <I>      type of the model identifier.
+   * @param <C>      type of validation context to use.
+   */
+  static public <C extends ValidateContext<C>, T extends Model & Updateable<T, C>, I> void updateModelWithDeltaChain(
+      @NotNull final ModelContext<T, I, C> model, @NotNull final BiConsumer<I, Handler<AsyncResult<T>>> searcher,
+      @NotNull final DeltaUpdater<T> updater, @NotNull final ServiceContext context, final int retries,
+      @NotNull final Runnable success) {
+
+    retrieveModelChain(model, searcher, context, () -> {
+
+      update(model, context, true, () -> storeModelDeltaChain(model, updater, context, retries,
+          () -> updateModelWithDeltaChain(model, searcher, updater, context, retries - 1, success), success));
+
+    });
+
+  }
+
+  /**
+   * Store the changes of a model into the DB. The version of the updated model
+   * is the one of the original model plus one, because the changes are only
+   * stored if the stored model has not been modified by another request.
+   *
+   * @param model   context of the model to update.
+   * @param updater the function used to store the changes of a model.
+   * @param context of the request.
+   * @param retries number of times that can be updated again if the model has
+   *                been modified by another request.
+   * @param retry   component to call to do again the update.
+   * @param success component to process the updated model.
+   *
+   * @param <T>     type of model to update.
+   * @param <I>     type of the model identifier.
+   * @param <C>     type of validation context to use.
+   */
+  static public <T extends Model, I, C extends ValidateContext<C>> void storeModelDeltaChain(
+      @NotNull final ModelContext<T, I, C> model, @NotNull final DeltaUpdater<T> updater,
+      @NotNull final ServiceContext context, final int retries, @NotNull final Runnable retry,
+      @NotNull final Runnable success) {
+
+    if (model.value instanceof CreateUpdateTsDetails) {
+
+      final var updated = (CreateUpdateTsDetails) model.value;
+      updated._lastUpdateTs = TimeManager.now();
+      if (model.target instanceof CreateUpdateTsDetails) {
+
+        updated._version = ((CreateUpdateTsDetails) model.target)._version + 1;
+      }
+    }
+    final var span = TraceSpan.start("update " + model.name, TraceSpan.INTERNAL);
+    span.run(() -> updater.update(model.target, model.value, span.ending(stored -> {
+
+      if (stored.failed()) {
+
+        final var cause = stored.cause();
+        if (cause instanceof ConcurrentUpdateException) {
+
+          if (retries > 0) {
+
+            Logger.trace("The {} has been modified by another request, so try to update it again.\n{}", model,
+                context);
+            retry.run();
+
+          } else {
+
+            Logger.trace(cause, "Cannot update {}, because it is modified by other requests.\n{}", model, context);
+            ServiceResponseHandlers.responseFailedWith(context.resultHandler, Status.CONFLICT, cause);
+          }
+
+        } else {
+
+          Logger.trace(cause, "Cannot update {}.\n{}", model, context);
+          ServiceResponseHandlers.responseFailedWith(context.resultHandler, Status.BAD_REQUEST, cause);
+        }
+
+      } else {
+
+        Logger.trace("Updated {}.\n{}", model, context);
+        success.run();
+      }
+
+    })));
+
+  }
+
   /**
    * Update a source model with the target one.
    *
@@ -520,7 +849,9 @@ public interface ModelResources {
       @NotNull final ModelContext<T, I, C> model, @NotNull final ServiceContext context, final boolean nonEquals,
       @NotNull final Runnable success) {
 
-    model.target.update(model.source, model.validateContext).onComplete(update -> {
+    final var updated = TraceSpan.trace("update " + model.name,
+        () -> model.target.update(model.source, model.validateContext));
+    updated.onComplete(update -> {
 
       if (update.failed()) {
 
@@ -1108,19 +1439,145 @@ public interface ModelResources {
       @NotNull final BiConsumer<ModelsPageContext, Promise<JsonObject>> searcher, @NotNull final ServiceContext context,
       final Consumer<JsonObject> success) {
 
+    retrieveModelsPageChain(offset, limit, null, true, searcher, context, success);
+
+  }
+
+  /**
+   * Retrieve a page of models that can be continued with a keyset pagination.
+   *
+   * @param offset    index of the first model to return. It is ignored if the
+   *                  continuation token is defined.
+   * @param limit     number maximum of models to return.
+   * @param after     the continuation token returned on the previous page, or
+   *                  {@code null} to use the offset.
+   * @param withTotal is {@code true} if the page has to contain the number total
+   *                  of models.
+   * @param searcher  function to obtain the page.
+   * @param context   of the request.
+   *
+   * @see ModelsPageContext#after
+   */
+  static public void retrieveModelsPage(final int offset, final int limit, final String after,
+      final boolean withTotal, @NotNull final BiConsumer<ModelsPageContext, Promise<JsonObject>> searcher,
+      @NotNull final ServiceContext context) {
+
+    retrieveModelsPageChain(offset, limit, after, withTotal, searcher, context,
+        found -> ServiceResponseHandlers.responseOk(context.resultHandler, found));
+
+  }
+
+  /**
+   * Retrieve a page of models that can be continued with a keyset pagination.
+   *
+   * @param offset    index of the first model to return. It is ignored if the
+   *                  continuation token is defined.
+   * @param limit     number maximum of models to return.
+   * @param after     the continuation token returned on the previous page, or
+   *                  {@code null} to use the offset.
+   * @param withTotal is {@code true} if the page has to contain the number total
+   *                  of models.
+   * @param searcher  function to obtain the page.
+   * @param context   of the request.
+   * @param success   to inform to the page.
+   *
+   * @see ModelsPageContext#after
+   */
+  static public void retrieveModelsPageChain(final int offset, final int limit, final String after,
+      final boolean withTotal, @NotNull final BiConsumer<ModelsPageContext, Promise<JsonObject>> searcher,
+      @NotNull final ServiceContext context, final Consumer<JsonObject> success) {
+
     final var page = new ModelsPageContext();
     page.offset = offset;
     page.limit = limit;
+    page.after = after;
+    page.withTotal = withTotal;
+    retrieveModelsPageChain(page, searcher, context, success);
+
+  }
+
+  /**
+   * Retrieve a page with some fields of the models that can be continued with
+   * a keyset pagination. The fields to return are defined on the query
+   * parameter {@link ServiceRequests#FIELDS_PARAMETER} of the request, and it
+   * responds with a bad request if any of them is not valid.
+   *
+   * @param offset    index of the first model to return. It is ignored if the
+   *                  continuation token is defined.
+   * @param limit     number maximum of models to return.
+   * @param after     the continuation token returned on the previous page, or
+   *                  {@code null} to use the offset.
+   * @param withTotal is {@code true} if the page has to contain the number total
+   *                  of models.
+   * @param searcher  function to obtain the page.
+   * @param context   of the request.
+   * @param success   to inform to the page.
+   *
+   * @see ModelsPageContext#fields
+   */
+  static public void retrieveModelsPageProjectionChain(final int offset, final int limit, final String after,
+      final boolean withTotal, @NotNull final BiConsumer<ModelsPageContext, Promise<JsonObject>> searcher,
+      @NotNull final ServiceContext context, final Consumer<JsonObject> success) {
+
+    extractFieldsProjection(context, fields -> {
+
+      final var page = new ModelsPageContext();
+      page.offset = offset;
+      page.limit = limit;
+      page.after = after;
+      page.withTotal = withTotal;
+      page.fields = fields;
+      retrieveModelsPageChain(page, searcher, context, success);
+
+    });
+
+  }
+
+  /**
+   * Retrieve a page with some fields of the models that can be continued with
+   * a keyset pagination.
+   *
+   * @param offset    index of the first model to return. It is ignored if the
+   *                  continuation token is defined.
+   * @param limit     number maximum of models to return.
+   * @param after     the continuation token returned on the previous page, or
+   *                  {@code null} to use the offset.
+   * @param withTotal is {@code true} if the page has to contain the number total
+   *                  of models.
+   * @param searcher  function to obtain the page.
+   * @param context   of the request.
+   *
+   * @see #retrieveModelsPageProjectionChain(int, int, String, boolean,
+   *      BiConsumer, ServiceContext, Consumer)
+   */
+  static public void retrieveModelsPageProjection(final int offset, final int limit, final String after,
+      final boolean withTotal, @NotNull final BiConsumer<ModelsPageContext, Promise<JsonObject>> searcher,
+      @NotNull final ServiceContext context) {
+
+    retrieveModelsPageProjectionChain(offset, limit, after, withTotal, searcher, context,
+        found -> ServiceResponseHandlers.responseOk(context.resultHandler, found));
+
+  }
+
+  /**
+   * Retrieve the page of models defined on a context.
+   *
+   * @param page     context of the page to retrieve.
+   * @param searcher function to obtain the page.
+   * @param context  of the request.
+   * @param success  to inform to the page.
+   */
+  static void retrieveModelsPageChain(@NotNull final ModelsPageContext page,
+      @NotNull final BiConsumer<ModelsPageContext, Promise<JsonObject>> searcher,
+      @NotNull final ServiceContext context, final Consumer<JsonObject> success) {
+
     final Promise<JsonObject> promise = Promise.promise();
-    try {
+    TraceSpan.trace("retrieve page", () -> {
 
       searcher.accept(page, promise);
+      return promise.future();
 
-    } catch (final Throwable cause) {
-
-      promise.fail(cause);
-    }
-    promise.future().onComplete(search -> {
+    }).onComplete(search -> {
 
       if (search.failed()) {
 
@@ -1152,7 +1609,8 @@ public interface ModelResources {
   static <I, T extends Model> void checkModelExist(@NotNull final ModelContext<T, I, ?> model,
       @NotNull final BiConsumer<I, Handler<AsyncResult<T>>> searcher, @NotNull final ServiceContext context) {
 
-    searcher.accept(model.id, search -> {
+    final var span = TraceSpan.start("retrieve " + model.name, TraceSpan.INTERNAL);
+    span.run(() -> searcher.accept(model.id, span.ending(search -> {
 
       if (search.result() != null) {
 
@@ -1164,7 +1622,7 @@ public interface ModelResources {
             "not_found_" + model.name, "Does not exist a '" + model.name + "' associated to '" + model.id + "'.");
       }
 
-    });
+    })));
 
   }
 
@@ -1214,4 +1672,67 @@ public interface ModelResources {
     }
   }
 
+  /**
+   * The content type of the responses with a model per line.
+   */
+  String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
+  /**
+   * Write the models of a stream into a HTTP response as newline delimited
+   * JSON. The response is chunked, thus the models are not loaded in memory,
+   * and the stream is paused while the response can not accept more data.
+   *
+   * @param models   the stream with the models to return.
+   * @param response to write the models.
+   *
+   * @return the future that will be completed when all the models are written.
+   *
+   * @see #pipeNdjson(ReadStream, WriteStream)
+   */
+  static public Future<Void> streamModels(@NotNull final ReadStream<JsonObject> models,
+      @NotNull final HttpServerResponse response) {
+
+    response.setStatusCode(Status.OK.getStatusCode());
+    response.putHeader(HttpHeaders.CONTENT_TYPE, NDJSON_CONTENT_TYPE);
+    response.setChunked(true);
+    return pipeNdjson(models, response).onFailure(cause -> {
+
+      Logger.trace(cause, "Cannot stream the models.");
+      if (!response.headWritten()) {
+
+        final var error = new ErrorMessage("cannot_stream_models", cause.getMessage());
+        response.setStatusCode(Status.INTERNAL_SERVER_ERROR.getStatusCode());
+        response.putHeader(HttpHeaders.CONTENT_TYPE, "application/json");
+        response.end(error.toBuffer());
+
+      } else if (!response.ended()) {
+
+        // Close the connection, thus the client does not believe the export is complete
+        response.reset();
+      }
+
+    });
+
+  }
+
+  /**
+   * Write the models of a stream as newline delimited JSON. The destination is
+   * not ended if the stream fails.
+   *
+   * @param models      the stream with the models to write.
+   * @param destination where the models are written.
+   *
+   * @return the future that will be completed when all the models are written.
+   */
+  static public Future<Void> pipeNdjson(@NotNull final ReadStream<JsonObject> models,
+      @NotNull final WriteStream<Buffer> destination) {
+
+    final var lines = new MappedReadStream<JsonObject, Buffer>(models,
+        model -> model.toBuffer().appendByte((byte) '\n'));
+    final var pipe = lines.pipe();
+    pipe.endOnFailure(false);
+    return pipe.to(destination);
+
+  }
+
 }
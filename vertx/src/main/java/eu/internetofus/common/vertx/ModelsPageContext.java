@@ -21,6 +21,7 @@
 package eu.internetofus.common.vertx;
 
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.CollationOptions;
 import io.vertx.ext.mongo.FindOptions;
 
 /**
@@ -50,6 +51,36 @@ public class ModelsPageContext {
    */
   public int limit;
 
+  /**
+   * The continuation token returned on the previous page to obtain the models
+   * after it, or {@code null} to use the {@link #offset}.
+   *
+   * @see PageToken
+   */
+  public String after;
+
+  /**
+   * This is {@code true} if the page has to contains the number total of models
+   * that match the query.
+   */
+  public boolean withTotal = true;
+
+  /**
+   * The projection with the fields of the models to return, or {@code null} to
+   * return all the fields.
+   *
+   * @see ServiceRequests#extractFieldsProjection(io.vertx.ext.web.api.service.ServiceRequest)
+   */
+  public JsonObject fields;
+
+  /**
+   * The collation to compare the strings of the query and the sort, or
+   * {@code null} to use the default one.
+   *
+   * @see QueryBuilder#collation()
+   */
+  public CollationOptions collation;
+
   /**
    * {@inheritDoc}
    */
@@ -78,6 +109,32 @@ public class ModelsPageContext {
     builder.append(this.limit);
     builder.append('\n');
 
+    if (this.after != null) {
+
+      builder.append("after:");
+      builder.append(this.after);
+      builder.append('\n');
+    }
+
+    if (!this.withTotal) {
+
+      builder.append("withTotal:false\n");
+    }
+
+    if (this.fields != null) {
+
+      builder.append("fields:");
+      builder.append(this.fields.encode());
+      builder.append('\n');
+    }
+
+    if (this.collation != null) {
+
+      builder.append("collation:");
+      builder.append(this.collation.toJson().encode());
+      builder.append('\n');
+    }
+
     return builder.toString();
   }
 
@@ -92,8 +149,19 @@ public class ModelsPageContext {
     if (this.sort != null) {
       options.setSort(this.sort);
     }
-    options.setSkip(this.offset);
+    if (this.after == null) {
+
+      options.setSkip(this.offset);
+    }
     options.setLimit(this.limit);
+    if (this.fields != null) {
+
+      options.setFields(this.fields.copy());
+    }
+    if (this.collation != null) {
+
+      options.setCollation(this.collation);
+    }
     return options;
   }
 
@@ -0,0 +1,331 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.mongo.AggregateOptions;
+import io.vertx.ext.mongo.BulkOperation;
+import io.vertx.ext.mongo.BulkWriteOptions;
+import io.vertx.ext.mongo.CountOptions;
+import io.vertx.ext.mongo.FindOptions;
+import io.vertx.ext.mongo.IndexModel;
+import io.vertx.ext.mongo.IndexOptions;
+import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.mongo.MongoClientBulkWriteResult;
+import io.vertx.ext.mongo.MongoClientDeleteResult;
+import io.vertx.ext.mongo.MongoClientUpdateResult;
+import io.vertx.ext.mongo.UpdateOptions;
+import java.util.List;
+import javax.validation.constraints.NotNull;
+
+/**
+ * The storage that stores the documents on MongoDB through a pool of
+ * connections.
+ *
+ * @see MongoClient
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class MongoRepositoryStorage implements RepositoryStorage {
+
+  /**
+   * The pool of connections to MongoDB.
+   */
+  protected final MongoClient pool;
+
+  /**
+   * Create a new storage.
+   *
+   * @param pool of connections to MongoDB.
+   */
+  public MongoRepositoryStorage(@NotNull final MongoClient pool) {
+
+    this.pool = pool;
+
+  }
+
+  /**
+   * Return the pool of connections to MongoDB.
+   *
+   * @return the pool used by this storage.
+   */
+  public MongoClient getPool() {
+
+    return this.pool;
+
+  }
+
+  /**
+   * Return the pool of connections to MongoDB of a storage.
+   *
+   * @param storage to get the pool.
+   *
+   * @return the pool used by the storage, or {@code null} if the storage does
+   *         not store the documents on MongoDB.
+   */
+  public static MongoClient poolOf(final RepositoryStorage storage) {
+
+    if (storage instanceof MongoRepositoryStorage) {
+
+      return ((MongoRepositoryStorage) storage).pool;
+
+    } else {
+
+      return null;
+    }
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<String> insert(@NotNull final String collectionName, @NotNull final JsonObject document) {
+
+    return this.pool.insert(collectionName, document);
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<JsonObject> findOne(@NotNull final String collectionName, @NotNull final JsonObject query,
+      final JsonObject fields) {
+
+    return this.pool.findOne(collectionName, query, fields);
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<List<JsonObject>> find(@NotNull final String collectionName, @NotNull final JsonObject query,
+      @NotNull final FindOptions options) {
+
+    return this.pool.findWithOptions(collectionName, query, options);
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReadStream<JsonObject> findBatch(@NotNull final String collectionName, @NotNull final JsonObject query,
+      @NotNull final FindOptions options) {
+
+    return this.pool.findBatchWithOptions(collectionName, query, options);
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<Long> count(@NotNull final String collectionName, @NotNull final JsonObject query,
+      final CountOptions options) {
+
+    if (options == null) {
+
+      return this.pool.count(collectionName, query);
+
+    } else {
+
+      return this.pool.countWithOptions(collectionName, query, options);
+    }
+
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The number is obtained with the {@code count} command without query, thus
+   * the collection is not scanned.
+   */
+  @Override
+  public Future<Long> estimatedCount(@NotNull final String collectionName) {
+
+    return this.pool.runCommand("count", new JsonObject().put("count", collectionName)).map(result -> {
+
+      final var total = result.getLong("n");
+      if (total == null) {
+
+        return 0L;
+
+      } else {
+
+        return total;
+      }
+
+    });
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReadStream<JsonObject> aggregate(@NotNull final String collectionName, @NotNull final JsonArray pipeline,
+      final AggregateOptions options) {
+
+    if (options == null) {
+
+      return this.pool.aggregate(collectionName, pipeline);
+
+    } else {
+
+      return this.pool.aggregateWithOptions(collectionName, pipeline, options);
+    }
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<MongoClientUpdateResult> update(@NotNull final String collectionName,
+      @NotNull final JsonObject query, @NotNull final JsonObject update, @NotNull final UpdateOptions options) {
+
+    return this.pool.updateCollectionWithOptions(collectionName, query, update, options);
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<MongoClientDeleteResult> removeDocument(@NotNull final String collectionName,
+      @NotNull final JsonObject query) {
+
+    return this.pool.removeDocument(collectionName, query);
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<MongoClientDeleteResult> removeDocuments(@NotNull final String collectionName,
+      @NotNull final JsonObject query) {
+
+    return this.pool.removeDocuments(collectionName, query);
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<MongoClientBulkWriteResult> bulkWrite(@NotNull final String collectionName,
+      @NotNull final List<BulkOperation> operations, @NotNull final BulkWriteOptions options) {
+
+    return this.pool.bulkWriteWithOptions(collectionName, operations, options);
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<Void> createIndexes(@NotNull final String collectionName, @NotNull final List<IndexModel> indexes) {
+
+    return this.pool.createIndexes(collectionName, indexes);
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<Void> createIndex(@NotNull final String collectionName, @NotNull final JsonObject keys,
+      final IndexOptions options) {
+
+    return this.pool.createIndexWithOptions(collectionName, keys, options == null ? new IndexOptions() : options);
+
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The query is explained with the {@code queryPlanner} verbosity, thus it is
+   * not executed.
+   */
+  @Override
+  public Future<JsonObject> explain(@NotNull final String collectionName, @NotNull final JsonObject query,
+      final JsonObject sort) {
+
+    final var find = new JsonObject().put("find", collectionName).put("filter", query);
+    if (sort != null) {
+
+      find.put("sort", sort);
+    }
+    final var command = new JsonObject().put("explain", find).put("verbosity", "queryPlanner");
+    return this.pool.runCommand("explain", command);
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<List<String>> getCollections() {
+
+    return this.pool.getCollections();
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<Void> dropCollection(@NotNull final String collectionName) {
+
+    return this.pool.dropCollection(collectionName);
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReadStream<ChangeStreamDocument<JsonObject>> watch(@NotNull final String collectionName,
+      final int batchSize) {
+
+    return this.pool.watch(collectionName, new JsonArray(), false, batchSize);
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Future<Void> close() {
+
+    return this.pool.close();
+
+  }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import eu.internetofus.common.model.ValidationErrorException;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.Base64;
+
+/**
+ * The opaque continuation token used to obtain the next page of a keyset
+ * pagination. It encodes the values of the sort keys of the last model of a
+ * page, thus the next page can be obtained with a range query instead of
+ * skipping the previous models.
+ *
+ * @see ModelsPageContext#after
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public interface PageToken {
+
+  /**
+   * The name of the field of a page that contains the token to obtain the next
+   * page.
+   */
+  String NEXT_FIELD = "next";
+
+  /**
+   * Return the sort to use on a keyset pagination. It is the specified sort
+   * followed by the unique keys that are not defined on it, thus the order of
+   * the models is total.
+   *
+   * @param sort       the order of the models. It can be {@code null}.
+   * @param uniqueKeys the keys that identify a model.
+   *
+   * @return the sort to use on the keyset pagination.
+   */
+  static JsonObject keysetSort(final JsonObject sort, final String... uniqueKeys) {
+
+    final var keysetSort = sort == null ? new JsonObject() : sort.copy();
+    for (final var key : uniqueKeys) {
+
+      if (!keysetSort.containsKey(key)) {
+
+        keysetSort.put(key, 1);
+      }
+    }
+    return keysetSort;
+
+  }
+
+  /**
+   * Create the token to obtain the models after a document.
+   *
+   * @param sort     the keyset sort of the page.
+   * @param document the last document of the page.
+   *
+   * @return the token to obtain the next page.
+   *
+   * @see #keysetSort(JsonObject, String...)
+   */
+  static String encode(final JsonObject sort, final JsonObject document) {
+
+    final var values = new JsonArray();
+    for (final var key : sort.fieldNames()) {
+
+      values.add(valueOf(document, key));
+    }
+    final var token = new JsonObject().put("k", new JsonArray(new ArrayList<>(sort.fieldNames()))).put("v", values);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(token.toBuffer().getBytes());
+
+  }
+
+  /**
+   * Return the query that match the models after the ones defined in a token.
+   * The undefined values are sorted before any other value, as MongoDB does, so
+   * on an ascending key the models after an undefined value are the defined
+   * ones, and on a descending key the models after a defined value include the
+   * undefined ones.
+   *
+   * @param sort     the keyset sort of the page.
+   * @param token    to obtain the next page.
+   * @param codeName the error code to report if the token is not valid.
+   *
+   * @return the query to obtain the models after the token.
+   *
+   * @throws ValidationErrorException if the token is not valid for the sort.
+   *
+   * @see #keysetSort(JsonObject, String...)
+   */
+  static JsonObject afterQuery(final JsonObject sort, final String token, final String codeName)
+      throws ValidationErrorException {
+
+    JsonArray keys;
+    JsonArray values;
+    try {
+
+      final var decoded = Buffer.buffer(Base64.getUrlDecoder().decode(token)).toJsonObject();
+      keys = decoded.getJsonArray("k");
+      values = decoded.getJsonArray("v");
+
+    } catch (final Throwable cause) {
+
+      throw new ValidationErrorException(codeName, "The page token is not valid.", cause);
+    }
+
+    if (keys == null || values == null || keys.size() != values.size()
+        || !keys.equals(new JsonArray(new ArrayList<>(sort.fieldNames())))) {
+
+      throw new ValidationErrorException(codeName, "The page token does not match the order of the models.");
+    }
+
+    final var alternatives = new JsonArray();
+    final var max = keys.size();
+    for (var i = 0; i < max; i++) {
+
+      final var alternative = new JsonObject();
+      for (var j = 0; j < i; j++) {
+
+        alternative.put(keys.getString(j), values.getValue(j));
+      }
+      final var key = keys.getString(i);
+      final var value = values.getValue(i);
+      if (sort.getInteger(key, 1) < 0) {
+
+        if (value != null) {
+
+          final var nullAlternative = alternative.copy();
+          alternative.put(key, new JsonObject().put("$lt", value));
+          alternatives.add(alternative);
+          nullAlternative.put(key, null);
+          alternatives.add(nullAlternative);
+        }
+
+      } else if (value == null) {
+
+        alternative.put(key, new JsonObject().put("$ne", null));
+        alternatives.add(alternative);
+
+      } else {
+
+        alternative.put(key, new JsonObject().put("$gt", value));
+        alternatives.add(alternative);
+      }
+    }
+    if (alternatives.isEmpty()) {
+
+      return new JsonObject().put("_id", new JsonObject().put("$exists", false));
+    }
+    return new JsonObject().put("$or", alternatives);
+
+  }
+
+  /**
+   * Return the value of a document field.
+   *
+   * @param document to get the value.
+   * @param path     to the field, where the fields are separated by dots.
+   *
+   * @return the value of the field or {@code null} if it is not defined.
+   */
+  static Object valueOf(final JsonObject document, final String path) {
+
+    Object value = document;
+    for (final var field : AggregationBuilder.splitElementPath(path)) {
+
+      if (value instanceof JsonObject) {
+
+        value = ((JsonObject) value).getValue(field);
+
+      } else {
+
+        return null;
+      }
+    }
+    return value;
+
+  }
+
+}
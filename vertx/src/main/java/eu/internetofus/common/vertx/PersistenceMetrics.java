@@ -0,0 +1,296 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import com.mongodb.MongoClientSettings;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsCommandListener;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsConnectionPoolListener;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.micrometer.backends.BackendRegistries;
+import java.time.Duration;
+import javax.validation.constraints.NotNull;
+
+/**
+ * The metrics of the persistence of a Vert.x instance. It measures the latency
+ * and the outcome of each call that the repositories do to MongoDB, by
+ * collection and operation. The metrics are registered on the Micrometer
+ * registry of the Vert.x instance, thus they are exported with the other
+ * metrics of Vert.x when the Prometheus backend is enabled on the
+ * {@code metricsOptions} of the configuration. It also counts the progress of
+ * the migrations of the collections, and it can measure the commands and the
+ * connections pool of the MongoDB driver.
+ *
+ * @see Repository#startSample(String, String)
+ * @see #instrument(MongoClientSettings)
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class PersistenceMetrics implements Shareable {
+
+  /**
+   * The name of the local map where the metrics are shared.
+   */
+  public static final String SHARED_MAP_NAME = "eu.internetofus.common.vertx.PersistenceMetrics";
+
+  /**
+   * The name of the timer of the operations done on MongoDB.
+   */
+  public static final String OPERATION_TIMER_NAME = "wenet.repository.operation";
+
+  /**
+   * The name of the counter of the documents migrated to the current schema
+   * version.
+   */
+  public static final String MIGRATED_DOCUMENTS_COUNTER_NAME = "wenet.repository.migration.documents";
+
+  /**
+   * The name of the counter of the bulk writes done to migrate the documents to
+   * the current schema version.
+   */
+  public static final String MIGRATED_BATCHES_COUNTER_NAME = "wenet.repository.migration.batches";
+
+  /**
+   * The name of the tag with the collection where an operation is done.
+   */
+  public static final String COLLECTION_TAG = "collection";
+
+  /**
+   * The name of the tag with the name of an operation.
+   */
+  public static final String OPERATION_TAG = "operation";
+
+  /**
+   * The name of the tag with the outcome of an operation.
+   */
+  public static final String OUTCOME_TAG = "outcome";
+
+  /**
+   * The outcome of an operation that has succeeded.
+   */
+  public static final String SUCCESS_OUTCOME = "success";
+
+  /**
+   * The outcome of an operation that has failed.
+   */
+  public static final String ERROR_OUTCOME = "error";
+
+  /**
+   * The upper bounds of the buckets of the latency histograms.
+   */
+  public static final Duration[] LATENCY_BUCKETS = { Duration.ofMillis(1), Duration.ofMillis(5),
+      Duration.ofMillis(10), Duration.ofMillis(25), Duration.ofMillis(50), Duration.ofMillis(100),
+      Duration.ofMillis(250), Duration.ofMillis(500), Duration.ofSeconds(1), Duration.ofMillis(2500),
+      Duration.ofSeconds(5), Duration.ofSeconds(10) };
+
+  /**
+   * A measure of the latency of an operation that has started.
+   */
+  public class Sample {
+
+    /**
+     * The name of the collection where the operation is done.
+     */
+    protected final String collectionName;
+
+    /**
+     * The name of the operation.
+     */
+    protected final String operation;
+
+    /**
+     * The timer sample that has started with the operation.
+     */
+    protected final Timer.Sample start = Timer.start(PersistenceMetrics.this.registry);
+
+    /**
+     * The span that trace the operation.
+     */
+    protected final TraceSpan span;
+
+    /**
+     * Create a sample.
+     *
+     * @param collectionName name of the collection where the operation is done.
+     * @param operation      name of the operation.
+     */
+    protected Sample(final String collectionName, final String operation) {
+
+      this.collectionName = collectionName;
+      this.operation = operation;
+      this.span = TraceSpan.start(operation + " " + collectionName, TraceSpan.CLIENT).attribute("db.system", "mongodb")
+          .attribute("db.operation", operation).attribute("db.mongodb.collection", collectionName);
+    }
+
+    /**
+     * Record the latency of the operation and finish its span when it
+     * finishes.
+     *
+     * @param result future result of the operation.
+     *
+     * @param <T>    type of the result.
+     *
+     * @return the result of the operation.
+     */
+    public <T> Future<T> stop(final Future<T> result) {
+
+      return result.onComplete(done -> {
+
+        this.start.stop(PersistenceMetrics.this.operationTimer(this.collectionName, this.operation, done.succeeded()));
+        this.span.end(done.cause());
+      });
+    }
+
+  }
+
+  /**
+   * The registry where the metrics are registered.
+   */
+  protected final MeterRegistry registry;
+
+  /**
+   * Create the metrics.
+   *
+   * @param registry where the metrics are registered.
+   */
+  public PersistenceMetrics(@NotNull final MeterRegistry registry) {
+
+    this.registry = registry;
+
+  }
+
+  /**
+   * Obtain the metrics that are shared by all the repositories of a Vert.x
+   * instance.
+   *
+   * @param vertx instance to get the metrics.
+   *
+   * @return the metrics of the instance.
+   */
+  public static PersistenceMetrics shared(@NotNull final Vertx vertx) {
+
+    return vertx.sharedData().<String, PersistenceMetrics>getLocalMap(SHARED_MAP_NAME)
+        .computeIfAbsent(SHARED_MAP_NAME, key -> new PersistenceMetrics(registryOf(vertx)));
+
+  }
+
+  /**
+   * Return the registry where the metrics of a Vert.x instance are registered.
+   *
+   * @param vertx instance to get the registry.
+   *
+   * @return the Micrometer registry of the Vert.x instance, or a registry that
+   *         does not record anything if the metrics are not enabled.
+   */
+  public static MeterRegistry registryOf(@NotNull final Vertx vertx) {
+
+    MeterRegistry registry = null;
+    if (vertx.isMetricsEnabled()) {
+
+      registry = BackendRegistries.getDefaultNow();
+    }
+    if (registry == null) {
+
+      registry = new CompositeMeterRegistry();
+    }
+    return registry;
+
+  }
+
+  /**
+   * Start to measure an operation.
+   *
+   * @param collectionName name of the collection where the operation is done.
+   * @param operation      name of the operation.
+   *
+   * @return the sample to stop when the operation finishes.
+   */
+  public Sample start(final String collectionName, @NotNull final String operation) {
+
+    return new Sample(collectionName == null ? "" : collectionName, operation);
+
+  }
+
+  /**
+   * Add to the settings of a MongoDB client the listeners that measure the
+   * latency of the commands and the size, the checked out connections and the
+   * waits of the connections pool of the driver.
+   *
+   * @param settings of the client to measure.
+   *
+   * @return the settings with the listeners of the metrics.
+   *
+   * @see MongoMetricsCommandListener
+   * @see MongoMetricsConnectionPoolListener
+   */
+  public MongoClientSettings instrument(@NotNull final MongoClientSettings settings) {
+
+    return MongoClientSettings.builder(settings)
+        .applyToConnectionPoolSettings(
+            pool -> pool.addConnectionPoolListener(new MongoMetricsConnectionPoolListener(this.registry)))
+        .addCommandListener(new MongoMetricsCommandListener(this.registry)).build();
+
+  }
+
+  /**
+   * Count a batch of documents that has been migrated to the current schema
+   * version.
+   *
+   * @param collectionName name of the collection that is migrating.
+   * @param documents      number of migrated documents of the batch.
+   *
+   * @see Repository#migrateCollection(String, Class, String, MigrationOptions)
+   */
+  public void migrated(@NotNull final String collectionName, final int documents) {
+
+    Counter.builder(MIGRATED_DOCUMENTS_COUNTER_NAME).description("Documents migrated to the current schema version.")
+        .tag(COLLECTION_TAG, collectionName).register(this.registry).increment(documents);
+    Counter.builder(MIGRATED_BATCHES_COUNTER_NAME)
+        .description("Bulk writes done to migrate the documents to the current schema version.")
+        .tag(COLLECTION_TAG, collectionName).register(this.registry).increment();
+
+  }
+
+  /**
+   * Return the timer of an operation.
+   *
+   * @param collectionName name of the collection where the operation is done.
+   * @param operation      name of the operation.
+   * @param succeeded      is {@code true} if the operation has succeeded.
+   *
+   * @return the timer of the operation.
+   */
+  protected Timer operationTimer(final String collectionName, final String operation, final boolean succeeded) {
+
+    return Timer.builder(OPERATION_TIMER_NAME).description("Latency of the operations done on MongoDB.")
+        .tags(COLLECTION_TAG, collectionName, OPERATION_TAG, operation, OUTCOME_TAG,
+            succeeded ? SUCCESS_OUTCOME : ERROR_OUTCOME)
+        .serviceLevelObjectives(LATENCY_BUCKETS).register(this.registry);
+
+  }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Function used to obtain some fields of a model.
+ *
+ * @param <I> type for the model identifier.
+ * @param <T> type of model to obtain.
+ *
+ * @see ModelResources#retrieveModelProjection(ModelContext, ProjectionSearcher,
+ *      ServiceContext)
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+@FunctionalInterface
+public interface ProjectionSearcher<I, T> {
+
+  /**
+   * Called when has to obtain the fields of a model.
+   *
+   * @param id      identifier of the model to obtain.
+   * @param fields  projection with the fields to return, or {@code null} to
+   *                return all the fields.
+   * @param handler to inform of the found model.
+   */
+  void search(I id, JsonObject fields, Handler<AsyncResult<T>> handler);
+
+}
@@ -20,8 +20,12 @@
 
 package eu.internetofus.common.vertx;
 
+import com.mongodb.client.model.CollationStrength;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.CollationOptions;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
  * This component is used to create a query.
@@ -30,17 +34,298 @@ import io.vertx.core.json.JsonObject;
  */
 public class QueryBuilder {
 
+  /**
+   * The character that is greater than any other on a collation, and it is
+   * used as upper bound of the prefix ranges.
+   */
+  public static final String MAX_COLLATION_CHARACTER = "\uFFFF";
+
+  /**
+   * The modes to match the regular expressions.
+   */
+  public enum MatchMode {
+
+    /**
+     * All the regular expressions are matched as case insensitive regular
+     * expressions.
+     */
+    REGEX,
+
+    /**
+     * The anchored patterns are matched with predicates that can use an index.
+     * The patterns like {@code ^prefix} are converted to a range and the ones
+     * like {@code ^value$} to an equality, and both are evaluated with a case
+     * insensitive collation. The collation applies to the whole query, so the
+     * patterns are only converted when the query does not compare any other
+     * string, otherwise they are matched as the other patterns, as case
+     * insensitive regular expressions.
+     *
+     * @see QueryBuilder#collation()
+     */
+    INDEXED;
+
+  }
+
   /**
    * The query that is creating.
    */
   private final JsonObject query;
 
   /**
-   * Create a query builder.
+   * The mode to match the regular expressions.
+   */
+  private final MatchMode matchMode;
+
+  /**
+   * The patterns that can be matched with a predicate that can use an index.
+   * The key is the predicate of the query and the value is the pattern that it
+   * matches.
+   */
+  private final Map<JsonObject, String> indexedMatches = new IdentityHashMap<>();
+
+  /**
+   * This is {@code true} if the query has to be evaluated with the case
+   * insensitive collation.
+   */
+  private boolean needsCollation;
+
+  /**
+   * Create a query builder that match the regular expressions as case
+   * insensitive regular expressions.
    */
   public QueryBuilder() {
 
+    this(MatchMode.REGEX);
+
+  }
+
+  /**
+   * Create a query builder.
+   *
+   * @param matchMode the mode to match the regular expressions.
+   */
+  public QueryBuilder(final MatchMode matchMode) {
+
     this.query = new JsonObject();
+    this.matchMode = matchMode;
+
+  }
+
+  /**
+   * Return the collation that compare the strings ignoring the case. The
+   * indexes that have to be used by the queries of the {@link MatchMode#INDEXED}
+   * mode has to be created with this collation.
+   *
+   * @return the case insensitive collation.
+   */
+  public static CollationOptions caseInsensitiveCollation() {
+
+    return new CollationOptions().setLocale("en").setStrength(CollationStrength.SECONDARY);
+
+  }
+
+  /**
+   * Return the collation that has to be used to evaluate the query.
+   *
+   * @return the case insensitive collation if any pattern has been converted to
+   *         a predicate that needs it, or {@code null} if the query has to be
+   *         evaluated with the default collation.
+   *
+   * @see #caseInsensitiveCollation()
+   */
+  public CollationOptions collation() {
+
+    this.resolveIndexedMatches();
+    if (this.needsCollation) {
+
+      return caseInsensitiveCollation();
+
+    } else {
+
+      return null;
+    }
+
+  }
+
+  /**
+   * Return the predicate to match a pattern.
+   *
+   * @param pattern to match.
+   *
+   * @return the predicate to match the pattern.
+   */
+  protected JsonObject patternMatch(final String pattern) {
+
+    if (this.matchMode == MatchMode.INDEXED) {
+
+      final var indexed = this.indexedMatch(pattern);
+      if (indexed != null) {
+
+        final var match = new JsonObject().put("$regex", pattern).put("$options", "i");
+        this.indexedMatches.put(match, pattern);
+        return match;
+      }
+    }
+
+    return new JsonObject().put("$regex", pattern).put("$options", "i");
+
+  }
+
+  /**
+   * Convert the patterns that can use an index if the case insensitive
+   * collation does not modify how the other predicates of the query are
+   * evaluated.
+   *
+   * @see #indexedMatches
+   */
+  private void resolveIndexedMatches() {
+
+    if (!this.indexedMatches.isEmpty()) {
+
+      this.needsCollation = !this.comparesOtherStrings(this.query);
+      for (final var match : this.indexedMatches.entrySet()) {
+
+        final var predicate = match.getKey();
+        final var pattern = match.getValue();
+        predicate.clear();
+        if (this.needsCollation) {
+
+          predicate.mergeIn(this.indexedMatch(pattern));
+
+        } else {
+
+          predicate.put("$regex", pattern).put("$options", "i");
+        }
+      }
+    }
+
+  }
+
+  /**
+   * Check if a value of the query compares a string that is not a pattern.
+   *
+   * @param value to check.
+   *
+   * @return {@code true} if the value is or contains a string that is compared
+   *         with the collation of the query.
+   */
+  private boolean comparesOtherStrings(final Object value) {
+
+    if (value instanceof String) {
+
+      return true;
+
+    } else if (value instanceof JsonObject) {
+
+      final var object = (JsonObject) value;
+      return !this.indexedMatches.containsKey(object) && this.comparesOtherStrings(object.getMap());
+
+    } else if (value instanceof JsonArray) {
+
+      return this.comparesOtherStrings(((JsonArray) value).getList());
+
+    } else if (value instanceof Map) {
+
+      final var map = (Map<?, ?>) value;
+      return !map.containsKey("$regex") && this.comparesOtherStrings(map.values());
+
+    } else if (value instanceof Iterable) {
+
+      for (final var element : (Iterable<?>) value) {
+
+        if (this.comparesOtherStrings(element)) {
+
+          return true;
+        }
+      }
+    }
+
+    return false;
+
+  }
+
+
+  /**
+   * Return the predicate that can use an index to match an anchored pattern.
+   *
+   * @param pattern to match.
+   *
+   * @return the range predicate if the pattern is like {@code ^prefix}, the
+   *         equality predicate if it is like {@code ^value$}, or {@code null} if
+   *         the pattern can not be converted.
+   */
+  protected JsonObject indexedMatch(final String pattern) {
+
+    if (!pattern.startsWith("^")) {
+
+      return null;
+    }
+
+    var end = pattern.length();
+    var exact = false;
+    if (pattern.endsWith(".*") && !isEscaped(pattern, end - 2)) {
+
+      end -= 2;
+
+    } else if (pattern.endsWith("$") && !isEscaped(pattern, end - 1)) {
+
+      end -= 1;
+      exact = true;
+    }
+
+    final var literal = new StringBuilder();
+    var i = 1;
+    while (i < end) {
+
+      var c = pattern.charAt(i++);
+      if (c == '\\') {
+
+        if (i >= end || Character.isLetterOrDigit(pattern.charAt(i))) {
+
+          return null;
+        }
+        c = pattern.charAt(i++);
+
+      } else if (".^$*+?()[]{}|".indexOf(c) > -1) {
+
+        return null;
+      }
+      literal.append(c);
+    }
+
+    final var value = literal.toString();
+    if (exact) {
+
+      return new JsonObject().put("$eq", value);
+
+    } else if (value.isEmpty()) {
+
+      return null;
+
+    } else {
+
+      return new JsonObject().put("$gte", value).put("$lt", value + MAX_COLLATION_CHARACTER);
+    }
+
+  }
+
+  /**
+   * Check if a character of a pattern is escaped.
+   *
+   * @param pattern to check.
+   * @param index   of the character.
+   *
+   * @return {@code true} if the character is preceded by an odd number of
+   *         backslashes.
+   */
+  private static boolean isEscaped(final String pattern, final int index) {
+
+    var backslashes = 0;
+    for (var i = index - 1; i >= 0 && pattern.charAt(i) == '\\'; i--) {
+
+      backslashes++;
+    }
+    return backslashes % 2 == 1;
 
   }
 
@@ -51,12 +336,14 @@ public class QueryBuilder {
    * @param pattern   pattern that the field has to match.
    *
    * @return the factory that is using.
+   *
+   * @see MatchMode
    */
   public QueryBuilder withRegex(final String fieldName, final String pattern) {
 
     if (pattern != null) {
 
-      this.query.put(fieldName, new JsonObject().put("$regex", pattern).put("$options", "i"));
+      this.query.put(fieldName, this.patternMatch(pattern));
     }
 
     return this;
@@ -77,8 +364,7 @@ public class QueryBuilder {
       final var patternsMatch = new JsonArray();
       for (final String pattern : patterns) {
 
-        patternsMatch
-            .add(new JsonObject().put("$elemMatch", new JsonObject().put("$regex", pattern).put("$options", "i")));
+        patternsMatch.add(new JsonObject().put("$elemMatch", this.patternMatch(pattern)));
       }
       if (patternsMatch.size() != 0) {
 
@@ -275,17 +561,15 @@ public class QueryBuilder {
    */
   protected JsonObject elementMatch(final String value) {
 
-    final var elementMatch = new JsonObject();
     if (this.containsPattern(value)) {
 
       final var pattern = this.extractPattern(value);
-      elementMatch.put("$regex", pattern).put("$options", "i");
+      return this.patternMatch(pattern);
 
     } else {
 
-      elementMatch.put("$eq", value);
+      return new JsonObject().put("$eq", value);
     }
-    return elementMatch;
   }
 
   /**
@@ -295,6 +579,7 @@ public class QueryBuilder {
    */
   public JsonObject build() {
 
+    this.resolveIndexedMatches();
     return this.query;
   }
 
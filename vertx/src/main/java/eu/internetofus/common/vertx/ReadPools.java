@@ -0,0 +1,208 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import javax.validation.constraints.NotNull;
+import org.tinylog.Logger;
+
+/**
+ * The pools of database connections that read from the members of the MongoDB
+ * replica set selected by a read preference. It is used to send the reads that
+ * tolerate some staleness, as the pages and the counts, to the secondaries,
+ * while the writes and the reads that validate or modify the models stay on
+ * the primary.
+ *
+ * @see ReadPreferenceOptions
+ * @see Repository#readPool(String)
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class ReadPools implements Shareable {
+
+  /**
+   * The name of the local map where the pools are shared.
+   */
+  public static final String SHARED_MAP_NAME = "eu.internetofus.common.vertx.ReadPools";
+
+  /**
+   * The read preference of each collection.
+   */
+  protected final Map<String, ReadPreferenceOptions> preferences = new HashMap<>();
+
+  /**
+   * The pools by the key of its read preference.
+   */
+  protected final Map<String, RepositoryStorage> pools = new HashMap<>();
+
+  /**
+   * The function to create the pool of a read preference, or {@code null} if
+   * the pools has not been configured.
+   */
+  protected Function<ReadPreferenceOptions, RepositoryStorage> factory;
+
+  /**
+   * The number of verticles that use the pools.
+   */
+  protected int users;
+
+  /**
+   * Obtain the pools that are shared by all the repositories of a Vert.x
+   * instance.
+   *
+   * @param vertx instance to get the pools.
+   *
+   * @return the pools of the instance.
+   */
+  public static ReadPools shared(@NotNull final Vertx vertx) {
+
+    return vertx.sharedData().<String, ReadPools>getLocalMap(SHARED_MAP_NAME).computeIfAbsent(SHARED_MAP_NAME,
+        key -> new ReadPools());
+
+  }
+
+  /**
+   * Configure the pools. The pools are only configured by the first verticle
+   * that uses them, the next ones only are counted as users.
+   *
+   * @param factory function to create the pool of a read preference.
+   * @param conf    configuration with the read preference of each collection.
+   *
+   * @return this pools.
+   *
+   * @see #release()
+   */
+  public synchronized ReadPools configure(@NotNull final Function<ReadPreferenceOptions, RepositoryStorage> factory,
+      final JsonObject conf) {
+
+    this.users++;
+    if (this.factory == null) {
+
+      this.factory = factory;
+      if (conf != null) {
+
+        for (final var collectionName : conf.fieldNames()) {
+
+          final var value = conf.getValue(collectionName);
+          if (value instanceof JsonObject) {
+
+            this.preferences.put(collectionName, new ReadPreferenceOptions((JsonObject) value));
+          }
+        }
+      }
+    }
+    return this;
+
+  }
+
+  /**
+   * Return the read preference of a collection.
+   *
+   * @param collectionName name of the collection.
+   *
+   * @return the read preference of the collection, or {@code null} if it is not
+   *         defined.
+   */
+  public synchronized ReadPreferenceOptions preferenceOf(final String collectionName) {
+
+    return this.preferences.get(collectionName);
+
+  }
+
+  /**
+   * Return the pool to read with a preference.
+   *
+   * @param preference of the reads, or {@code null} to read from the primary.
+   * @param primary    pool to use to read from the primary.
+   *
+   * @return the pool to read with the preference. It is the primary pool if the
+   *         preference is to read from the primary, the pools has not been
+   *         configured or the pool can not be created.
+   */
+  public synchronized RepositoryStorage poolFor(final ReadPreferenceOptions preference,
+      @NotNull final RepositoryStorage primary) {
+
+    if (preference == null || preference.isPrimary() || this.factory == null) {
+
+      return primary;
+    }
+
+    final var key = preference.key();
+    var pool = this.pools.get(key);
+    if (pool == null) {
+
+      try {
+
+        pool = this.factory.apply(preference);
+        this.pools.put(key, pool);
+
+      } catch (final Throwable cause) {
+
+        Logger.warn(cause, "Cannot create the pool to read from '{}', so the primary is used.", key);
+        this.preferences.values().removeIf(value -> key.equals(value.key()));
+        return primary;
+      }
+    }
+    return pool;
+
+  }
+
+  /**
+   * Stop to use the pools. When any verticle use them, the pools are closed.
+   *
+   * @return the future that will be completed when the pools are closed.
+   *
+   * @see #configure(Function, JsonObject)
+   */
+  @SuppressWarnings("rawtypes")
+  public Future<Void> release() {
+
+    final List<Future> futures = new ArrayList<>();
+    synchronized (this) {
+
+      this.users--;
+      if (this.users <= 0) {
+
+        for (final var pool : this.pools.values()) {
+
+          futures.add(pool.close());
+        }
+        this.pools.clear();
+        this.preferences.clear();
+        this.factory = null;
+        this.users = 0;
+      }
+    }
+    return CompositeFuture.join(futures).<Void>mapEmpty().otherwiseEmpty();
+
+  }
+
+}
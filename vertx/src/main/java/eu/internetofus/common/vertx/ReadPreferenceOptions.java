@@ -0,0 +1,224 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import com.mongodb.ReadPreference;
+import io.vertx.core.json.JsonObject;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.tinylog.Logger;
+
+/**
+ * The options to select the members of the MongoDB replica set that can
+ * answer the reads of a collection.
+ *
+ * @see ReadPools
+ * @see Repository#readPool(String)
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class ReadPreferenceOptions {
+
+  /**
+   * The mode of the reads that are done on the primary.
+   */
+  public static final String PRIMARY = "primary";
+
+  /**
+   * The default mode of the reads.
+   */
+  public static final String DEFAULT_MODE = PRIMARY;
+
+  /**
+   * The name of the configuration property that contains the mode of the reads.
+   * It can be {@code primary}, {@code primaryPreferred}, {@code secondary},
+   * {@code secondaryPreferred} or {@code nearest}.
+   */
+  public static final String MODE_KEY = "mode";
+
+  /**
+   * The name of the property of the MongoDB client configuration that contains
+   * the read preference.
+   */
+  public static final String READ_PREFERENCE_KEY = "readPreference";
+
+  /**
+   * The name of the property of the MongoDB client configuration that contains
+   * the connection string.
+   */
+  public static final String CONNECTION_STRING_KEY = "connection_string";
+
+  /**
+   * The default maximum seconds that a secondary can be behind the primary. If
+   * it is negative any staleness is accepted.
+   */
+  public static final long DEFAULT_MAX_STALENESS = -1;
+
+  /**
+   * The name of the configuration property that contains the maximum seconds
+   * that a secondary can be behind the primary.
+   */
+  public static final String MAX_STALENESS_KEY = "maxStaleness";
+
+  /**
+   * The mode of the reads.
+   */
+  public String mode = DEFAULT_MODE;
+
+  /**
+   * The maximum seconds that a secondary can be behind the primary, or a
+   * negative value if any staleness is accepted. MongoDB requires at least 90
+   * seconds.
+   */
+  public long maxStaleness = DEFAULT_MAX_STALENESS;
+
+  /**
+   * Create the default options, that read from the primary.
+   */
+  public ReadPreferenceOptions() {
+
+  }
+
+  /**
+   * Create the read preference options defined on a configuration.
+   *
+   * @param conf configuration with the read preference options.
+   */
+  public ReadPreferenceOptions(final JsonObject conf) {
+
+    if (conf != null) {
+
+      this.mode = conf.getString(MODE_KEY, DEFAULT_MODE);
+      this.maxStaleness = conf.getLong(MAX_STALENESS_KEY, DEFAULT_MAX_STALENESS);
+    }
+
+  }
+
+  /**
+   * Check if the reads are done on the primary.
+   *
+   * @return {@code true} if the reads are done on the primary.
+   */
+  public boolean isPrimary() {
+
+    return this.mode == null || PRIMARY.equalsIgnoreCase(this.mode);
+
+  }
+
+  /**
+   * Return the identifier of the options. The options with the same identifier
+   * read from the same members.
+   *
+   * @return the identifier of the options.
+   */
+  public String key() {
+
+    if (this.isPrimary()) {
+
+      return PRIMARY;
+
+    } else if (this.maxStaleness < 0) {
+
+      return this.mode;
+
+    } else {
+
+      return this.mode + "_" + this.maxStaleness;
+    }
+
+  }
+
+  /**
+   * Return the read preference of the MongoDB driver.
+   *
+   * @return the read preference defined by the options.
+   *
+   * @throws IllegalArgumentException if the mode or the maximum staleness are
+   *                                  not valid.
+   */
+  public ReadPreference toReadPreference() {
+
+    if (this.isPrimary()) {
+
+      return ReadPreference.primary();
+
+    } else if (this.maxStaleness < 0) {
+
+      return ReadPreference.valueOf(this.mode);
+
+    } else {
+
+      return ReadPreference.valueOf(this.mode, Collections.emptyList(), this.maxStaleness, TimeUnit.SECONDS);
+    }
+
+  }
+
+  /**
+   * Return the configuration of a MongoDB client that reads with these options.
+   * The maximum staleness can only be defined on the connection string, thus it
+   * is ignored if the configuration does not have a connection string.
+   *
+   * @param persistenceConf configuration of the MongoDB client.
+   *
+   * @return a copy of the configuration with the read preference.
+   *
+   * @throws IllegalArgumentException if the mode or the maximum staleness are
+   *                                  not valid.
+   */
+  public JsonObject applyTo(final JsonObject persistenceConf) {
+
+    this.toReadPreference();
+    final var conf = persistenceConf == null ? new JsonObject() : persistenceConf.copy();
+    final var connectionString = conf.getString(CONNECTION_STRING_KEY);
+    if (this.isPrimary() || this.maxStaleness < 0 || connectionString == null) {
+
+      if (!this.isPrimary() && this.maxStaleness >= 0) {
+
+        Logger.warn("Ignored the maximum staleness of the '{}' reads, because it requires a connection string.",
+            this.mode);
+      }
+      conf.put(READ_PREFERENCE_KEY, this.isPrimary() ? PRIMARY : this.mode);
+
+    } else {
+
+      conf.remove(READ_PREFERENCE_KEY);
+      final var builder = new StringBuilder(connectionString);
+      if (connectionString.indexOf('?') < 0) {
+
+        if (connectionString.indexOf('/', connectionString.indexOf("://") + 3) < 0) {
+
+          builder.append('/');
+        }
+        builder.append('?');
+
+      } else {
+
+        builder.append('&');
+      }
+      builder.append("readPreference=").append(this.mode).append("&maxStalenessSeconds=").append(this.maxStaleness);
+      conf.put(CONNECTION_STRING_KEY, builder.toString());
+    }
+    return conf;
+
+  }
+
+}
@@ -22,19 +22,43 @@ package eu.internetofus.common.vertx;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.mongodb.MongoBulkWriteException;
 import eu.internetofus.common.model.Model;
+import eu.internetofus.common.model.ModelReaders;
+import eu.internetofus.common.model.TimeManager;
 import eu.internetofus.common.model.ValidationErrorException;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.jackson.DatabindCodec;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.mongo.AggregateOptions;
+import io.vertx.ext.mongo.BulkOperation;
+import io.vertx.ext.mongo.BulkWriteOptions;
+import io.vertx.ext.mongo.CollationOptions;
+import io.vertx.ext.mongo.CountOptions;
 import io.vertx.ext.mongo.FindOptions;
+import io.vertx.ext.mongo.IndexOptions;
 import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.mongo.MongoClientBulkWriteResult;
 import io.vertx.ext.mongo.UpdateOptions;
-import java.util.UUID;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import javax.validation.constraints.NotNull;
 import org.tinylog.Logger;
 
@@ -51,10 +75,43 @@ public class Repository {
   public static final String SCHEMA_VERSION = "schema_version";
 
   /**
-   * The pool of database connections.
+   * Name of the field with the number of times that a document has been
+   * updated. It is used to check that a document has not been modified after it
+   * was read.
+   */
+  public static final String VERSION = ModelReaders.VERSION_FIELD;
+
+  /**
+   * Name of the field of a page that is {@code true} when the total is estimated
+   * instead of counted.
+   */
+  public static final String ESTIMATED_TOTAL_FIELD = "estimatedTotal";
+
+  /**
+   * The mapper used to convert the documents to migrate to the models.
+   */
+  private static final ObjectMapper MIGRATION_MAPPER = new ObjectMapper()
+      .configure(DeserializationFeature.FAIL_ON_IGNORED_PROPERTIES, false)
+      .configure(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES, false)
+      .configure(DeserializationFeature.FAIL_ON_INVALID_SUBTYPE, false)
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+  /**
+   * The readers used to convert the documents to migrate to the models.
+   */
+  private static final Map<Class<?>, ObjectReader> MIGRATION_READERS = new ConcurrentHashMap<>();
+
+  /**
+   * The pool of connections to MongoDB, or {@code null} if the documents are
+   * not stored on MongoDB.
    */
   protected MongoClient pool;
 
+  /**
+   * The storage of the documents.
+   */
+  protected RepositoryStorage storage;
+
   /**
    * The version for the schemas.
    */
@@ -66,17 +123,191 @@ public class Repository {
   protected Vertx vertx;
 
   /**
-   * Create a new service.
+   * The default number of documents that are obtained from the database on
+   * each batch of a stream.
+   */
+  public static final int DEFAULT_STREAM_BATCH_SIZE = 500;
+
+  /**
+   * The options to use when migrate the collections.
+   */
+  protected MigrationOptions migrationOptions;
+
+  /**
+   * The cache with the number of documents that match the queries.
+   */
+  protected CountCache countCache;
+
+  /**
+   * The metrics of the operations of the repositories.
+   */
+  protected PersistenceMetrics metrics;
+
+  /**
+   * Create a new service that stores the documents on MongoDB.
    *
    * @param vertx         event bus to use.
    * @param pool          to create the connections.
    * @param schemaVersion version of the schemas stored by this repository.
+   *
+   * @see MongoRepositoryStorage
    */
   public Repository(final Vertx vertx, final MongoClient pool, final String schemaVersion) {
 
+    this(vertx, new MongoRepositoryStorage(pool), schemaVersion);
+
+  }
+
+  /**
+   * Create a new service.
+   *
+   * @param vertx         event bus to use.
+   * @param storage       of the documents.
+   * @param schemaVersion version of the schemas stored by this repository.
+   */
+  public Repository(final Vertx vertx, final RepositoryStorage storage, final String schemaVersion) {
+
     this.vertx = vertx;
-    this.pool = pool;
+    this.storage = storage;
+    this.pool = MongoRepositoryStorage.poolOf(storage);
     this.schemaVersion = schemaVersion;
+    this.countCache = CountCache.shared(vertx);
+    this.metrics = PersistenceMetrics.shared(vertx);
+    this.migrationOptions = MigrationOptions.shared(vertx);
+
+  }
+
+  /**
+   * Change the options to use when migrate the collections.
+   *
+   * @param migrationOptions the options for the migrations.
+   *
+   * @see #migrateCollection(String, Class, String)
+   */
+  public void setMigrationOptions(@NotNull final MigrationOptions migrationOptions) {
+
+    this.migrationOptions = migrationOptions;
+
+  }
+
+  /**
+   * Return the pool to use for the reads of a collection that tolerate some
+   * staleness, as the pages, the counts and the aggregations. The reads that
+   * validate or modify the models must use the {@link #storage}.
+   *
+   * @param collectionName name of the collection to read.
+   *
+   * @return the pool with the read preference defined for the collection on the
+   *         {@code persistence.readPreferences} configuration, or the primary
+   *         pool if it is not defined.
+   *
+   * @see #readPool(ReadPreferenceOptions)
+   */
+  protected RepositoryStorage readPool(final String collectionName) {
+
+    final var pools = ReadPools.shared(this.vertx);
+    return pools.poolFor(pools.preferenceOf(collectionName), this.storage);
+
+  }
+
+  /**
+   * Return the pool to read with a preference.
+   *
+   * @param preference of the reads, or {@code null} to read from the primary.
+   *
+   * @return the pool to read with the preference.
+   *
+   * @see ReadPools#poolFor(ReadPreferenceOptions, RepositoryStorage)
+   */
+  protected RepositoryStorage readPool(final ReadPreferenceOptions preference) {
+
+    return ReadPools.shared(this.vertx).poolFor(preference, this.storage);
+
+  }
+
+  /**
+   * Start to measure the latency of a call to MongoDB over a collection. Only
+   * the calls to the pool has to be measured, thus the operations that do more
+   * than one call are not counted twice.
+   *
+   * @param collectionName name of the collection where the operation is done.
+   * @param operation      name of the method of the pool that is called.
+   *
+   * @return the sample to stop when the operation finishes.
+   *
+   * @see PersistenceMetrics
+   */
+  protected PersistenceMetrics.Sample startSample(final String collectionName, @NotNull final String operation) {
+
+    return this.metrics.start(collectionName, operation);
+
+  }
+
+  /**
+   * Declare an index that the queries of this repository need.
+   *
+   * @param collectionName name of the collection.
+   * @param keys           of the index.
+   *
+   * @see #declareIndex(String, JsonObject, IndexOptions)
+   */
+  protected void declareIndex(@NotNull final String collectionName, @NotNull final JsonObject keys) {
+
+    this.declareIndex(collectionName, keys, null);
+
+  }
+
+  /**
+   * Declare an index that the queries of this repository need. The index is
+   * created when the persistence verticle starts.
+   *
+   * @param collectionName name of the collection.
+   * @param keys           of the index.
+   * @param options        of the index, or {@code null} to use the default
+   *                       ones.
+   *
+   * @see IndexRegistry
+   */
+  protected void declareIndex(@NotNull final String collectionName, @NotNull final JsonObject keys,
+      final IndexOptions options) {
+
+    IndexRegistry.shared(this.vertx).index(collectionName, keys, options);
+
+  }
+
+  /**
+   * Declare a representative query of this repository. The query is explained
+   * when the persistence verticle starts to warn if it scans the whole
+   * collection.
+   *
+   * @param collectionName name of the collection.
+   * @param query          to match the documents.
+   * @param sort           of the documents, or {@code null} if they are not
+   *                       sorted.
+   *
+   * @see IndexRegistry
+   */
+  protected void declareQuery(@NotNull final String collectionName, @NotNull final JsonObject query,
+      final JsonObject sort) {
+
+    IndexRegistry.shared(this.vertx).query(collectionName, query, sort);
+
+  }
+
+  /**
+   * Start to publish on the event bus the events that inform when the models of
+   * a collection are changed.
+   *
+   * @param collectionName name of the collection to watch.
+   *
+   * @return the publisher of the changes, that has to be closed when the
+   *         repository is not used.
+   *
+   * @see ModelInvalidations
+   */
+  protected ModelInvalidationsPublisher publishInvalidations(@NotNull final String collectionName) {
+
+    return ModelInvalidations.publishChangesOf(this.vertx, this.storage, collectionName);
 
   }
 
@@ -92,205 +323,1179 @@ public class Repository {
    *
    * @return the future found page.
    */
-  protected Future<JsonObject> searchPageObject(final String collectionName, final JsonObject query,
-      final FindOptions options, final String resultKey, final Consumer<JsonObject> map) {
+  protected Future<JsonObject> searchPageObject(final String collectionName, final JsonObject query,
+      final FindOptions options, final String resultKey, final Consumer<JsonObject> map) {
+
+    final var offset = options.getSkip();
+    final var pageTotal = this.countTotal(new JsonObject().put("offset", offset), collectionName, query,
+        options.getCollation());
+    return pageTotal.compose(page -> {
+
+      final var total = page.getLong("total");
+      if (!page.containsKey(ESTIMATED_TOTAL_FIELD) && (total == 0 || offset >= total)) {
+
+        return Future.succeededFuture(page);
+
+      } else {
+
+        options.setFields(fieldsWithoutSchema(options.getFields()));
+        final var sample = this.startSample(collectionName, "find");
+        return sample.stop(this.readPool(collectionName).find(collectionName, query, options))
+            .compose(foundObjects -> {
+
+              if (map != null) {
+
+                foundObjects.stream().forEach(map);
+              }
+              page.put(resultKey, foundObjects);
+              return Future.succeededFuture(page);
+
+            });
+      }
+
+    });
+  }
+
+  /**
+   * Search for a page that can be continued with a keyset pagination. The models
+   * are sorted by the order of the context followed by the {@code _id}, and if
+   * there are more models after the page it contains the token to obtain the
+   * next page.
+   *
+   * @param collectionName of the collections that contains the models.
+   * @param context        of the page to search.
+   * @param resultKey      to store the found models.
+   * @param map            function to apply to each found object or {@code null}
+   *                       to not modify the components.
+   *
+   * @return the future found page.
+   *
+   * @see ModelsPageContext#after
+   * @see PageToken
+   */
+  protected Future<JsonObject> searchPageObject(final String collectionName, @NotNull final ModelsPageContext context,
+      final String resultKey, final Consumer<JsonObject> map) {
+
+    final var query = context.query == null ? new JsonObject() : context.query;
+    final var sort = PageToken.keysetSort(context.sort, "_id");
+    var pageQuery = query;
+    if (context.after != null) {
+
+      try {
+
+        pageQuery = new JsonObject().put("$and",
+            new JsonArray().add(query).add(PageToken.afterQuery(sort, context.after, "after")));
+
+      } catch (final ValidationErrorException cause) {
+
+        return Future.failedFuture(cause);
+      }
+    }
+
+    final var options = context.toFindOptions();
+    options.setSort(sort);
+    options.setFields(fieldsWithoutSchema(options.getFields(), sort.fieldNames()));
+    if (context.limit > 0) {
+
+      options.setLimit(context.limit + 1);
+    }
+    final var findQuery = pageQuery;
+    Future<JsonObject> pageTotal;
+    if (context.withTotal) {
+
+      pageTotal = this.countTotal(new JsonObject().put("offset", context.offset), collectionName, query,
+          context.collation);
+
+    } else {
+
+      pageTotal = Future.succeededFuture(new JsonObject().put("offset", context.offset));
+    }
+    return pageTotal.compose(page -> {
+
+      if (page.containsKey("total") && !page.containsKey(ESTIMATED_TOTAL_FIELD) && (page.getLong("total") == 0
+          || context.after == null && context.offset >= page.getLong("total"))) {
+
+        return Future.succeededFuture(page);
+
+      } else {
+
+        final var sample = this.startSample(collectionName, "find");
+        return sample.stop(this.readPool(collectionName).find(collectionName, findQuery, options))
+            .map(found -> {
+
+              var foundObjects = found;
+              if (context.limit > 0 && found.size() > context.limit) {
+
+                foundObjects = found.subList(0, context.limit);
+                page.put(PageToken.NEXT_FIELD, PageToken.encode(sort, foundObjects.get(context.limit - 1)));
+              }
+              if (map != null) {
+
+                foundObjects.stream().forEach(map);
+              }
+              page.put(resultKey, foundObjects);
+              return page;
+
+            });
+      }
+
+    });
+  }
+
+  /**
+   * Return the projection to use to obtain some fields of the documents without
+   * the schema version. If the fields include some paths, the {@code id} field is
+   * translated to {@code _id} and the required paths are included, otherwise the
+   * fields are returned without the schema version.
+   *
+   * @param fields   the projection with the fields to return, or {@code null} to
+   *                 return all the fields.
+   * @param required the paths that has to be returned if the fields include some
+   *                 paths, as the ones used to sort the documents.
+   *
+   * @return the projection to use on the MongoDB client.
+   */
+  protected static JsonObject fieldsWithoutSchema(final JsonObject fields, final Iterable<String> required) {
+
+    final var included = new ArrayList<String>();
+    if (fields != null) {
+
+      for (final var field : fields.fieldNames()) {
+
+        final var value = fields.getValue(field);
+        if (Boolean.TRUE.equals(value) || value instanceof Number && ((Number) value).intValue() != 0) {
+
+          included.add("id".equals(field) ? "_id" : field);
+        }
+      }
+    }
+
+    if (included.isEmpty()) {
+
+      final var projection = fields == null ? new JsonObject() : fields.copy();
+      projection.put(SCHEMA_VERSION, false);
+      return projection;
+
+    } else {
+
+      if (required != null) {
+
+        required.forEach(included::add);
+      }
+      final var projection = AggregationBuilder.projection(included);
+      if (!included.contains("_id") && fields.containsKey("_id")) {
+
+        projection.put("_id", fields.getValue("_id"));
+      }
+      return projection;
+    }
+
+  }
+
+  /**
+   * Return the projection to use to obtain some fields of the documents without
+   * the schema version.
+   *
+   * @param fields the projection with the fields to return, or {@code null} to
+   *               return all the fields.
+   *
+   * @return the projection to use on the MongoDB client.
+   *
+   * @see #fieldsWithoutSchema(JsonObject, Iterable)
+   */
+  protected static JsonObject fieldsWithoutSchema(final JsonObject fields) {
+
+    return fieldsWithoutSchema(fields, null);
+
+  }
+
+  /**
+   * Obtain a stream with the documents that match a query. The documents are
+   * obtained from the database in batches, while the stream is consumed, thus
+   * the collection is not loaded in memory.
+   *
+   * @param collectionName of the collections that contains the models.
+   * @param query          to match the documents to return.
+   * @param options        to apply to the search. If the batch size is the
+   *                       default of the client, it is used the
+   *                       {@link #DEFAULT_STREAM_BATCH_SIZE}.
+   * @param map            function to modify the found documents, or
+   *                       {@code null} to not modify them.
+   *
+   * @return the stream with the found documents.
+   */
+  protected ReadStream<JsonObject> streamDocuments(@NotNull final String collectionName, final JsonObject query,
+      @NotNull final FindOptions options, final Function<JsonObject, JsonObject> map) {
+
+    options.setFields(fieldsWithoutSchema(options.getFields()));
+    if (options.getBatchSize() == FindOptions.DEFAULT_BATCH_SIZE) {
+
+      options.setBatchSize(DEFAULT_STREAM_BATCH_SIZE);
+    }
+    final var readPool = this.readPool(collectionName);
+    final var stream = readPool.findBatch(collectionName, query == null ? new JsonObject() : query, options);
+    return map == null ? stream : new MappedReadStream<>(stream, map);
+
+  }
+
+  /**
+   * Obtain a stream with the documents that result of an aggregation. The
+   * documents are obtained from the database in batches, while the stream is
+   * consumed.
+   *
+   * @param collectionName of the collections that contains the models.
+   * @param pipeline       of the aggregation.
+   * @param map            function to modify the found documents, or
+   *                       {@code null} to not modify them.
+   *
+   * @return the stream with the aggregated documents.
+   */
+  protected ReadStream<JsonObject> streamAggregation(@NotNull final String collectionName,
+      @NotNull final JsonArray pipeline, final Function<JsonObject, JsonObject> map) {
+
+    final var options = new AggregateOptions().setBatchSize(DEFAULT_STREAM_BATCH_SIZE);
+    final var stream = this.readPool(collectionName).aggregate(collectionName, pipeline, options);
+    return map == null ? stream : new MappedReadStream<>(stream, map);
+
+  }
+
+  /**
+   * Count the documents that match a query.
+   *
+   * @param collectionName of the collections that contains the models.
+   * @param query          to match the documents to count.
+   * @param collation      to compare the strings, or {@code null} to use the
+   *                       default one.
+   *
+   * @return the future number of documents that match the query.
+   */
+  protected Future<Long> count(@NotNull final String collectionName, final JsonObject query,
+      final CollationOptions collation) {
+
+    return this.count(this.readPool(collectionName), collectionName, query, collation);
+
+  }
+
+  /**
+   * Count the documents that match a query with a pool.
+   *
+   * @param readPool       the pool to use to count the documents.
+   * @param collectionName of the collections that contains the models.
+   * @param query          to match the documents to count.
+   * @param collation      to compare the strings, or {@code null} to use the
+   *                       default one.
+   *
+   * @return the future number of documents that match the query.
+   */
+  protected Future<Long> count(@NotNull final RepositoryStorage readPool, @NotNull final String collectionName,
+      final JsonObject query, final CollationOptions collation) {
+
+    final var key = new JsonObject().put("query", query);
+    if (collation != null) {
+
+      key.put("collation", collation.toJson());
+    }
+    return this.countCache.count(collectionName, key, () -> {
+
+      final var sample = this.startSample(collectionName, "count");
+      if (collation == null) {
+
+        return sample.stop(readPool.count(collectionName, query, null));
+
+      } else {
+
+        final var options = new CountOptions().setCollation(collation);
+        return sample.stop(readPool.count(collectionName, query, options));
+      }
+
+    });
+
+  }
+
+  /**
+   * Estimate the number of documents of a collection from its metadata, without
+   * scanning the collection.
+   *
+   * @param collectionName of the collections to count.
+   *
+   * @return the future estimated number of documents.
+   */
+  protected Future<Long> estimatedCount(@NotNull final String collectionName) {
+
+    return this.countCache.count(collectionName, "estimated", () -> {
+
+      final var sample = this.startSample(collectionName, "estimatedCount");
+      return sample.stop(this.readPool(collectionName).estimatedCount(collectionName));
+
+    });
+
+  }
+
+  /**
+   * Add into a page the total of documents that match a query. If the query does
+   * not filter any document the total is estimated from the metadata of the
+   * collection, and the page is marked with {@link #ESTIMATED_TOTAL_FIELD}.
+   *
+   * @param page           to add the total.
+   * @param collectionName of the collections that contains the models.
+   * @param query          to match the documents to count.
+   * @param collation      to compare the strings, or {@code null} to use the
+   *                       default one.
+   *
+   * @return the future page with the total.
+   *
+   * @see CountCache#canEstimate(JsonObject, Object)
+   */
+  protected Future<JsonObject> countTotal(@NotNull final JsonObject page, @NotNull final String collectionName,
+      final JsonObject query, final CollationOptions collation) {
+
+    if (this.countCache.canEstimate(query, collation)) {
+
+      return this.estimatedCount(collectionName)
+          .map(total -> page.put("total", total).put(ESTIMATED_TOTAL_FIELD, true));
+
+    } else {
+
+      return this.count(collectionName, query, collation).map(total -> page.put("total", total));
+    }
+
+  }
+
+  /**
+   * Remove the cached counts of a collection when a modification of it
+   * finishes.
+   *
+   * @param collectionName name of the modified collection.
+   * @param modification   the future result of the modification.
+   *
+   * @param <T>            type of the modification result.
+   *
+   * @return the modification future.
+   */
+  protected <T> Future<T> invalidateCountsWhenComplete(final String collectionName, final Future<T> modification) {
+
+    return modification.onComplete(any -> this.countCache.invalidate(collectionName));
+
+  }
+
+  /**
+   * Execute an aggregation.
+   *
+   * @param collectionName of the collections that contains the models.
+   * @param pipeline       of the aggregation.
+   * @param collation      to compare the strings, or {@code null} to use the
+   *                       default one.
+   *
+   * @return the stream with the aggregated documents.
+   */
+  protected ReadStream<JsonObject> aggregate(@NotNull final String collectionName, @NotNull final JsonArray pipeline,
+      final CollationOptions collation) {
+
+    if (collation == null) {
+
+      return this.readPool(collectionName).aggregate(collectionName, pipeline, null);
+
+    } else {
+
+      final var options = new AggregateOptions().setCollation(collation);
+      return this.readPool(collectionName).aggregate(collectionName, pipeline, options);
+    }
+
+  }
+
+  /**
+   * Create a page with the total of models if the context requires it.
+   *
+   * @param context of the page.
+   * @param counter function to obtain the total of models.
+   *
+   * @return the future page with the offset and, if it is required, the total.
+   */
+  protected Future<JsonObject> countPageTotal(@NotNull final ModelsPageContext context,
+      @NotNull final Supplier<Future<Long>> counter) {
+
+    final var page = new JsonObject().put("offset", context.offset);
+    if (context.withTotal) {
+
+      return counter.get().map(total -> page.put("total", total));
+
+    } else {
+
+      return Future.succeededFuture(page);
+    }
+
+  }
+
+  /**
+   * Delete one document.
+   *
+   * @param collectionName of the collections that contains the model to delete.
+   * @param query          to to match the document to delete.
+   *
+   * @return the future result of the delete action.
+   */
+  protected Future<Void> deleteOneDocument(final String collectionName, final JsonObject query) {
+
+    final var sample = this.startSample(collectionName, "removeDocument");
+    final var removed = sample.stop(this.storage.removeDocument(collectionName, query));
+    return this.invalidateCountsWhenComplete(collectionName, removed).compose(result -> {
+
+      if (result.getRemovedCount() != 1) {
+
+        return Future.failedFuture("Not found document to delete");
+
+      } else {
+
+        return Future.succeededFuture();
+      }
+
+    });
+
+  }
+
+  /**
+   * Delete some document.
+   *
+   * @param collectionName of the collections that contains the model to delete.
+   * @param query          to to match the documents to delete.
+   *
+   * @return the future result of the delete action.
+   */
+  protected Future<Void> deleteDocuments(final String collectionName, final JsonObject query) {
+
+    final var sample = this.startSample(collectionName, "removeDocuments");
+    final var removed = sample.stop(this.storage.removeDocuments(collectionName, query));
+    return this.invalidateCountsWhenComplete(collectionName, removed).compose(result -> {
+
+      if (result.getRemovedCount() < 1) {
+
+        return Future.failedFuture("Not found document to delete");
+
+      } else {
+
+        return Future.succeededFuture();
+      }
+
+    });
+
+  }
+
+  /**
+   * Update one document.
+   *
+   * @param collectionName of the collections that contains the model to update.
+   * @param query          to to match the document to update.
+   * @param updateModel    the new values of the model.
+   *
+   * @return the future result of the update action.
+   */
+  protected Future<Void> updateOneDocument(@NotNull final String collectionName, @NotNull final JsonObject query,
+      final JsonObject updateModel) {
+
+    return this.upsertOneDocument(collectionName, query, updateModel, false).map(any -> null);
+
+  }
+
+  /**
+   * Add or update one document.
+   *
+   * @param collectionName of the collections that contains the model to update.
+   * @param query          to to match the document to update.
+   * @param updateModel    the new values of the model.
+   * @param upsert         is {@code true} if has to add if not defined.
+   *
+   * @return the future result of the update action with a {@code null} value if
+   *         the model is updated or with the identifier of the added model.
+   */
+  protected Future<String> upsertOneDocument(@NotNull final String collectionName, @NotNull final JsonObject query,
+      final JsonObject updateModel, final boolean upsert) {
+
+    if (updateModel == null) {
+
+      return Future.failedFuture("Not found document to update");
+
+    } else {
+
+      final var updateQuery = this.createUpdateQueryFor(updateModel);
+      final var options = new UpdateOptions().setMulti(false).setUpsert(upsert);
+      final var sample = this.startSample(collectionName, "updateCollection");
+      final var updated = sample.stop(this.storage.update(collectionName, query, updateQuery, options));
+      return this.invalidateCountsWhenComplete(collectionName, updated).compose(result -> {
+
+        if (result.getDocModified() != 1) {
+
+          if (upsert) {
+
+            String _id = null;
+            final var id = result.getDocUpsertedId();
+            if (id != null) {
+
+              _id = id.getString("_id");
+            }
+
+            if (_id == null && result.getDocMatched() != 1) {
+
+              return Future.failedFuture("Not added document");
+
+            } else {
+
+              return Future.succeededFuture(_id);
+            }
+
+          } else {
+
+            return Future.failedFuture("Not found document to update");
+          }
+
+        } else {
+
+          return Future.succeededFuture();
+        }
+
+      });
+
+    }
+  }
+
+  /**
+   * Update only the changed fields of a document, if it has not been modified
+   * after the original model was read. The document is only updated if it has
+   * the {@link #VERSION} of the original model, and the version is incremented
+   * with the update. Otherwise the update fails with a
+   * {@link ConcurrentUpdateException}.
+   *
+   * @param collectionName of the collections that contains the model to update.
+   * @param query          to to match the document to update.
+   * @param original       the values of the model that has been read.
+   * @param updateModel    the new values of the model.
+   *
+   * @return the future result of the update action.
+   *
+   * @see #createDeltaUpdateQueryFor(JsonObject, JsonObject)
+   */
+  protected Future<Void> updateOneDocumentIfNotModified(@NotNull final String collectionName,
+      @NotNull final JsonObject query, @NotNull final JsonObject original, final JsonObject updateModel) {
+
+    if (updateModel == null) {
+
+      return Future.failedFuture("Not found document to update");
+
+    } else {
+
+      final var updateQuery = this.createDeltaUpdateQueryFor(original, updateModel);
+      final var guardedQuery = query.copy();
+      final var version = original.getLong(VERSION, 0L);
+      if (version == 0L) {
+
+        guardedQuery.put(VERSION, new JsonObject().put("$exists", false));
+
+      } else {
+
+        guardedQuery.put(VERSION, version);
+      }
+      final var options = new UpdateOptions().setMulti(false);
+      final var sample = this.startSample(collectionName, "updateCollection");
+      final var updated = sample.stop(this.storage.update(collectionName, guardedQuery, updateQuery, options));
+      return this.invalidateCountsWhenComplete(collectionName, updated).compose(result -> {
+
+        if (result.getDocMatched() == 1) {
+
+          return Future.succeededFuture();
+
+        } else {
+
+          final var countSample = this.startSample(collectionName, "count");
+          return countSample.stop(this.storage.count(collectionName, query, null)).compose(found -> {
+
+            if (found == null || found == 0) {
+
+              return Future.failedFuture("Not found document to update");
+
+            } else {
+
+              return Future.failedFuture(
+                  new ConcurrentUpdateException("The document has been modified after it was read."));
+            }
+
+          });
+        }
+
+      });
+    }
+
+  }
+
+  /**
+   * Add or update a set of documents with the default options.
+   *
+   * @param collectionName of the collections that contains the models.
+   * @param updateModels   the new values of the models.
+   * @param queryFor       function to obtain the query to match the document
+   *                       of a model.
+   *
+   * @return the future results of each model.
+   *
+   * @see #bulkUpsertDocuments(String, List, Function, BulkUpsertOptions)
+   */
+  protected Future<JsonArray> bulkUpsertDocuments(@NotNull final String collectionName,
+      @NotNull final List<JsonObject> updateModels, @NotNull final Function<JsonObject, JsonObject> queryFor) {
+
+    return this.bulkUpsertDocuments(collectionName, updateModels, queryFor, new BulkUpsertOptions());
+
+  }
+
+  /**
+   * Add or update a set of documents with bulk writes. The documents are
+   * written in batches, thus a set of models is stored with a few round trips
+   * instead of one per model. The result of each model is reported, thus the
+   * caller can know which ones have failed.
+   *
+   * @param collectionName of the collections that contains the models.
+   * @param updateModels   the new values of the models.
+   * @param queryFor       function to obtain the query to match the document
+   *                       of a model.
+   * @param options        for the bulk writes.
+   *
+   * @return the future results of each model, in the same order that the
+   *         models.
+   *
+   * @see BulkUpsertResults
+   */
+  protected Future<JsonArray> bulkUpsertDocuments(@NotNull final String collectionName,
+      @NotNull final List<JsonObject> updateModels, @NotNull final Function<JsonObject, JsonObject> queryFor,
+      @NotNull final BulkUpsertOptions options) {
+
+    final var max = updateModels.size();
+    final var results = new JsonObject[max];
+    final var operations = new ArrayList<BulkOperation>();
+    final var indexes = new ArrayList<Integer>();
+    var stopped = false;
+    for (var i = 0; i < max; i++) {
+
+      final var updateModel = updateModels.get(i);
+      if (stopped) {
+
+        results[i] = BulkUpsertResults.notExecuted(i);
+
+      } else if (updateModel == null) {
+
+        results[i] = BulkUpsertResults.failed(i, "Not found document to update");
+        stopped = options.ordered;
+
+      } else {
+
+        try {
+
+          final var query = queryFor.apply(updateModel);
+          final var updateQuery = this.createUpdateQueryFor(updateModel.copy());
+          operations.add(BulkOperation.createUpdate(query, updateQuery, true, false));
+          indexes.add(i);
+
+        } catch (final Throwable cause) {
+
+          results[i] = BulkUpsertResults.failed(i, cause.getMessage());
+          stopped = options.ordered;
+        }
+      }
+    }
+
+    final var writeOptions = new BulkWriteOptions().setOrdered(options.ordered);
+    Future<Boolean> write = Future.succeededFuture(true);
+    for (var start = 0; start < operations.size(); start += options.batchSize) {
+
+      final var end = Math.min(start + options.batchSize, operations.size());
+      final var batchOperations = operations.subList(start, end);
+      final var batchIndexes = indexes.subList(start, end);
+      write = write.compose(next -> {
+
+        if (!next) {
+
+          for (final var index : batchIndexes) {
+
+            results[index] = BulkUpsertResults.notExecuted(index);
+          }
+          return Future.succeededFuture(false);
+
+        } else {
+
+          final var sample = this.startSample(collectionName, "bulkWrite");
+          final var written = sample.stop(this.storage.bulkWrite(collectionName, batchOperations, writeOptions));
+          return this.invalidateCountsWhenComplete(collectionName, written).transform(batch -> {
+
+            final var upserts = new HashMap<Integer, String>();
+            final var errors = new HashMap<Integer, String>();
+            if (batch.succeeded()) {
+
+              for (final var upsert : batch.result().getUpserts()) {
+
+                upserts.put(upsert.getInteger(MongoClientBulkWriteResult.INDEX),
+                    String.valueOf(upsert.getValue(MongoClientBulkWriteResult.ID)));
+              }
+
+            } else if (batch.cause() instanceof MongoBulkWriteException) {
+
+              final var cause = (MongoBulkWriteException) batch.cause();
+              for (final var upsert : cause.getWriteResult().getUpserts()) {
+
+                final var id = upsert.getId();
+                upserts.put(upsert.getIndex(),
+                    id.isObjectId() ? id.asObjectId().getValue().toHexString()
+                        : id.isString() ? id.asString().getValue() : String.valueOf(id));
+              }
+              for (final var error : cause.getWriteErrors()) {
+
+                errors.put(error.getIndex(), error.getMessage());
+              }
+
+            } else {
+
+              Logger.trace(batch.cause(), "Cannot write a batch of {} documents on '{}'.", batchOperations::size,
+                  () -> collectionName);
+              for (var i = 0; i < batchIndexes.size(); i++) {
+
+                errors.put(i, batch.cause().getMessage());
+              }
+            }
+            return Future.succeededFuture(this.fillBulkUpsertResults(results, batchIndexes, upserts, errors,
+                options.ordered));
+
+          });
+        }
+
+      });
+    }
+
+    return write.map(any -> new JsonArray(Arrays.asList((Object[]) results)));
+
+  }
+
+  /**
+   * Fill the results of the documents of a bulk write.
+   *
+   * @param results the results of the documents.
+   * @param indexes the indexes of the documents on the bulk write.
+   * @param upserts the identifiers of the added documents by its position on the
+   *                bulk write.
+   * @param errors  the errors of the failed documents by its position on the
+   *                bulk write.
+   * @param ordered is {@code true} if the documents are written in order.
+   *
+   * @return {@code true} if the next documents has to be written.
+   */
+  private boolean fillBulkUpsertResults(final JsonObject[] results, final List<Integer> indexes,
+      final Map<Integer, String> upserts, final Map<Integer, String> errors, final boolean ordered) {
+
+    var stopped = false;
+    for (var i = 0; i < indexes.size(); i++) {
+
+      final int index = indexes.get(i);
+      if (stopped) {
+
+        results[index] = BulkUpsertResults.notExecuted(index);
+
+      } else if (errors.containsKey(i)) {
+
+        results[index] = BulkUpsertResults.failed(index, errors.get(i));
+        stopped = ordered;
+
+      } else {
+
+        results[index] = BulkUpsertResults.written(index, upserts.get(i));
+      }
+    }
+    return !stopped;
+
+  }
+
+  /**
+   * Create the query to update a document with the values of a model. The
+   * {@code null} values are removed from the document, the schema version is
+   * set to the current one and the {@link #VERSION} is increased, thus the
+   * updates of the changes that have read the document before fail.
+   *
+   * @param updateModel the new values of the model.
+   *
+   * @return the query to update the document.
+   */
+  protected JsonObject createUpdateQueryFor(@NotNull final JsonObject updateModel) {
+
+    // NO modify the _creationTs and the version of the changes.
+    updateModel.remove("_creationTs");
+    updateModel.remove(VERSION);
+
+    final var setFields = new JsonObject().put(SCHEMA_VERSION, this.schemaVersion);
+    final var updateQuery = new JsonObject();
+    updateQuery.put("$set", setFields);
+    updateQuery.put("$inc", new JsonObject().put(VERSION, 1));
+    final var unsetFields = new JsonObject();
+    for (final String fieldName : updateModel.fieldNames()) {
+
+      final var fieldValue = updateModel.getValue(fieldName);
+      if (fieldValue != null) {
+
+        setFields.put(fieldName, fieldValue);
+
+      } else {
+
+        unsetFields.put(fieldName, "");
+      }
+
+    }
+
+    if (!unsetFields.isEmpty()) {
+
+      updateQuery.put("$unset", unsetFields);
+
+    }
+
+    return updateQuery;
+
+  }
+
+  /**
+   * Create the query to update only the fields of a document that has changed.
+   * The fields that are {@code null} are removed, the arrays that only have new
+   * elements at the end are pushed, the objects are compared field by field and
+   * the other changed values are set. The fields that are not defined on the
+   * updated model are not modified, the schema version is set to the current
+   * one and the {@link #VERSION} is increased.
+   *
+   * @param original    the values of the model that is stored.
+   * @param updateModel the new values of the model.
+   *
+   * @return the query to update the document.
+   *
+   * @see #createUpdateQueryFor(JsonObject)
+   */
+  protected JsonObject createDeltaUpdateQueryFor(@NotNull final JsonObject original,
+      @NotNull final JsonObject updateModel) {
+
+    final var setFields = new JsonObject().put(SCHEMA_VERSION, this.schemaVersion);
+    final var unsetFields = new JsonObject();
+    final var pushFields = new JsonObject();
+    final var changes = updateModel.copy();
+    // NO modify the _creationTs, the identifier and the version of the changes.
+    changes.remove("_creationTs");
+    changes.remove("_id");
+    changes.remove(VERSION);
+    fillDeltaUpdate("", original, changes, false, setFields, unsetFields, pushFields);
+
+    final var updateQuery = new JsonObject().put("$set", setFields).put("$inc",
+        new JsonObject().put(VERSION, 1));
+    if (!unsetFields.isEmpty()) {
+
+      updateQuery.put("$unset", unsetFields);
+    }
+    if (!pushFields.isEmpty()) {
+
+      updateQuery.put("$push", pushFields);
+    }
+    return updateQuery;
+
+  }
+
+  /**
+   * Fill in the operators to update the changed fields of an object.
+   *
+   * @param prefix         of the path to the fields.
+   * @param original       the stored values of the object.
+   * @param updated        the new values of the object.
+   * @param unsetUndefined is {@code true} if the original fields that are not
+   *                       defined on the updated object has to be removed.
+   * @param setFields      the fields to set.
+   * @param unsetFields    the fields to remove.
+   * @param pushFields     the new elements to add at the end of the arrays.
+   */
+  private static void fillDeltaUpdate(final String prefix, final JsonObject original, final JsonObject updated,
+      final boolean unsetUndefined, final JsonObject setFields, final JsonObject unsetFields,
+      final JsonObject pushFields) {
 
-    return this.pool.count(collectionName, query).compose(countResult -> {
+    for (final var fieldName : updated.fieldNames()) {
 
-      final var total = countResult.longValue();
-      final var offset = options.getSkip();
-      final var page = new JsonObject().put("offset", offset).put("total", total);
-      if (total == 0 || offset >= total) {
+      final var path = prefix + fieldName;
+      final var value = updated.getValue(fieldName);
+      final var originalValue = original.getValue(fieldName);
+      if (value == null) {
 
-        return Future.succeededFuture(page);
+        if (originalValue != null) {
 
-      } else {
+          unsetFields.put(path, "");
+        }
 
-        options.getFields().put(SCHEMA_VERSION, false);
-        return this.pool.findWithOptions(collectionName, query, options).compose(foundObjects -> {
+      } else if (!value.equals(originalValue)) {
 
-          if (map != null) {
+        if (value instanceof JsonObject && originalValue instanceof JsonObject
+            && canUpdateFieldByField((JsonObject) originalValue) && canUpdateFieldByField((JsonObject) value)) {
 
-            foundObjects.stream().forEach(map);
-          }
-          page.put(resultKey, foundObjects);
-          return Future.succeededFuture(page);
+          fillDeltaUpdate(path + ".", (JsonObject) originalValue, (JsonObject) value, true, setFields, unsetFields,
+              pushFields);
 
-        });
+        } else if (value instanceof JsonArray && originalValue instanceof JsonArray
+            && isAppendOf((JsonArray) originalValue, (JsonArray) value)) {
+
+          final var elements = ((JsonArray) value).getList();
+          final var added = new JsonArray(
+              new ArrayList<>(elements.subList(((JsonArray) originalValue).size(), elements.size())));
+          pushFields.put(path, new JsonObject().put("$each", added));
+
+        } else {
+
+          setFields.put(path, value);
+        }
       }
+    }
+
+    if (unsetUndefined) {
+
+      for (final var fieldName : original.fieldNames()) {
+
+        if (!updated.containsKey(fieldName) && original.getValue(fieldName) != null) {
+
+          unsetFields.put(prefix + fieldName, "");
+        }
+      }
+    }
 
-    });
   }
 
   /**
-   * Delete one document.
+   * Check if an object can be updated field by field.
    *
-   * @param collectionName of the collections that contains the model to delete.
-   * @param query          to to match the document to delete.
+   * @param object to check.
    *
-   * @return the future result of the delete action.
+   * @return {@code true} if the object is not empty and all its fields can be
+   *         used on a dot path.
    */
-  protected Future<Void> deleteOneDocument(final String collectionName, final JsonObject query) {
+  private static boolean canUpdateFieldByField(final JsonObject object) {
 
-    return this.pool.removeDocument(collectionName, query).compose(result -> {
-
-      if (result.getRemovedCount() != 1) {
+    if (object.isEmpty()) {
 
-        return Future.failedFuture("Not found document to delete");
+      return false;
+    }
+    for (final var fieldName : object.fieldNames()) {
 
-      } else {
+      if (fieldName.isEmpty() || fieldName.contains(".") || fieldName.startsWith("$")) {
 
-        return Future.succeededFuture();
+        return false;
       }
-
-    });
+    }
+    return true;
 
   }
 
   /**
-   * Delete some document.
+   * Check if an array is the original one with some elements added at the end.
    *
-   * @param collectionName of the collections that contains the model to delete.
-   * @param query          to to match the documents to delete.
+   * @param original the stored array.
+   * @param updated  the new array.
    *
-   * @return the future result of the delete action.
+   * @return {@code true} if the updated array starts with all the elements of
+   *         the original one and has more elements.
    */
-  protected Future<Void> deleteDocuments(final String collectionName, final JsonObject query) {
+  private static boolean isAppendOf(final JsonArray original, final JsonArray updated) {
 
-    return this.pool.removeDocuments(collectionName, query).compose(result -> {
+    final var max = original.size();
+    if (max == 0 || updated.size() <= max) {
 
-      if (result.getRemovedCount() < 1) {
-
-        return Future.failedFuture("Not found document to delete");
+      return false;
+    }
+    for (var i = 0; i < max; i++) {
 
-      } else {
+      if (!Objects.equals(original.getValue(i), updated.getValue(i))) {
 
-        return Future.succeededFuture();
+        return false;
       }
-
-    });
+    }
+    return true;
 
   }
 
   /**
-   * Update one document.
+   * Store one document.
    *
-   * @param collectionName of the collections that contains the model to update.
-   * @param query          to to match the document to update.
-   * @param updateModel    the new values of the model.
+   * @param collectionName of the collections that contains the model to store.
+   * @param model          to store.
+   * @param map            function to modify the stored document. If it is
+   *                       {@code null} no modification is applied.
    *
-   * @return the future result of the update action.
+   * @return the future stored model.
    */
-  protected Future<Void> updateOneDocument(@NotNull final String collectionName, @NotNull final JsonObject query,
-      final JsonObject updateModel) {
+  protected Future<JsonObject> storeOneDocument(@NotNull final String collectionName, @NotNull final JsonObject model,
+      final Function<JsonObject, JsonObject> map) {
 
-    return this.upsertOneDocument(collectionName, query, updateModel, false).map(any -> null);
+    model.put(SCHEMA_VERSION, this.schemaVersion);
+    final var sample = this.startSample(collectionName, "insert");
+    final var stored = this.invalidateCountsWhenComplete(collectionName,
+        sample.stop(this.storage.insert(collectionName, model)));
+    return stored.compose(id -> {
+
+      model.remove(SCHEMA_VERSION);
+      return this.applyMap(model, map);
+
+    });
 
   }
 
   /**
-   * Add or update one document.
+   * Store one document on the bucket that contains its timestamp. If the
+   * document does not have a timestamp the current time is used.
    *
-   * @param collectionName of the collections that contains the model to update.
-   * @param query          to to match the document to update.
-   * @param updateModel    the new values of the model.
-   * @param upsert         is {@code true} if has to add if not defined.
+   * @param buckets of the collection that contains the model to store.
+   * @param model   to store.
+   * @param map     function to modify the stored document. If it is {@code null}
+   *                no modification is applied.
    *
-   * @return the future result of the update action with a {@code null} value if
-   *         the model is updated or with the identifier of the added model.
+   * @return the future stored model.
+   *
+   * @see TimeBuckets
    */
-  protected Future<String> upsertOneDocument(@NotNull final String collectionName, @NotNull final JsonObject query,
-      final JsonObject updateModel, final boolean upsert) {
-
-    if (updateModel == null) {
+  protected Future<JsonObject> storeOneDocumentInBucket(@NotNull final TimeBuckets buckets,
+      @NotNull final JsonObject model, final Function<JsonObject, JsonObject> map) {
 
-      return Future.failedFuture("Not found document to update");
+    var timestamp = model.getLong(buckets.timestampField);
+    if (timestamp == null) {
 
-    } else {
+      timestamp = TimeManager.now();
+      model.put(buckets.timestampField, timestamp);
+    }
+    final var indexes = IndexRegistry.shared(this.vertx).indexesOf(buckets.collectionName);
+    return buckets.prepareBucketFor(this.storage, indexes, timestamp)
+        .compose(bucket -> this.storeOneDocument(bucket, model, map));
 
-      // NO modify the _creationTs.
-      updateModel.remove("_creationTs");
+  }
 
-      // Create the query to update the model.
-      final var setFields = new JsonObject().put(SCHEMA_VERSION, this.schemaVersion);
-      final var updateQuery = new JsonObject();
-      updateQuery.put("$set", setFields);
-      final var unsetFields = new JsonObject();
-      for (final String fieldName : updateModel.fieldNames()) {
+  /**
+   * Search for a page of the documents stored on the buckets that overlap a
+   * range of time. The buckets are visited from the oldest to the newest, or
+   * from the newest to the oldest if the documents are sorted by descending
+   * timestamp, so the page is sorted as a single collection. The documents can
+   * only be sorted by the timestamp first, because the page is obtained visiting
+   * the buckets in order. The buckets are counted
+   * and searched on the read pool of the collection, thus the total and the
+   * documents of the page are read from the same members.
+   *
+   * @param buckets   of the collection that contains the models.
+   * @param from      the minimum timestamp (inclusive), or {@code null} if the
+   *                  range does not have a lower bound.
+   * @param to        the maximum timestamp (inclusive), or {@code null} if the
+   *                  range does not have an upper bound.
+   * @param query     to obtain the components of the page.
+   * @param options   to apply to the search.
+   * @param resultKey to store the found models.
+   * @param map       function to apply to each found object or {@code null} to
+   *                  not modify the components.
+   *
+   * @return the future found page.
+   *
+   * @see TimeBuckets#bucketsBetween(RepositoryStorage, Long, Long)
+   */
+  @SuppressWarnings("rawtypes")
+  protected Future<JsonObject> searchBucketsPageObject(@NotNull final TimeBuckets buckets, final Long from,
+      final Long to, final JsonObject query, @NotNull final FindOptions options, final String resultKey,
+      final Consumer<JsonObject> map) {
 
-        final var fieldValue = updateModel.getValue(fieldName);
-        if (fieldValue != null) {
+    final var sort = options.getSort();
+    if (sort != null && !sort.isEmpty() && !buckets.timestampField.equals(sort.fieldNames().iterator().next())) {
 
-          setFields.put(fieldName, fieldValue);
+      return Future.failedFuture(new ValidationErrorException("order",
+          "The documents of '" + buckets.collectionName + "' have to be sorted first by '" + buckets.timestampField
+              + "'."));
+    }
 
-        } else {
+    final var rangeQuery = buckets.rangeQuery(query, from, to);
+    final var readPool = this.readPool(buckets.collectionName);
+    final var pageOptions = new FindOptions(options);
+    pageOptions.setFields(fieldsWithoutSchema(options.getFields()));
+    return buckets.bucketsBetween(this.storage, from, to).compose(names -> {
 
-          unsetFields.put(fieldName, "");
-        }
+      if (sort != null && Integer.valueOf(-1).equals(sort.getInteger(buckets.timestampField))) {
 
+        Collections.reverse(names);
       }
+      final List<Future> counts = new ArrayList<>();
+      for (final var name : names) {
 
-      if (!unsetFields.isEmpty()) {
-
-        updateQuery.put("$unset", unsetFields);
-
+        counts.add(this.count(readPool, name, rangeQuery, pageOptions.getCollation()));
       }
+      return CompositeFuture.all(counts).compose(counted -> {
+
+        final var offset = pageOptions.getSkip();
+        var skip = offset;
+        var limit = pageOptions.getLimit() > 0 ? pageOptions.getLimit() : Integer.MAX_VALUE;
+        var total = 0L;
+        final List<Future> finds = new ArrayList<>();
+        for (var i = 0; i < names.size(); i++) {
+
+          final long count = counted.resultAt(i);
+          total += count;
+          if (skip >= count) {
+
+            skip -= count;
+
+          } else if (limit > 0) {
+
+            final var bucketOptions = new FindOptions(pageOptions).setSkip(skip);
+            final var bucketLimit = (int) Math.min(limit, count - skip);
+            bucketOptions.setLimit(bucketLimit);
+            final var sample = this.startSample(names.get(i), "find");
+            finds.add(sample.stop(readPool.find(names.get(i), rangeQuery, bucketOptions)));
+            limit -= bucketLimit;
+            skip = 0;
+          }
+        }
 
-      final var options = new UpdateOptions().setMulti(false).setUpsert(upsert);
-      return this.pool.updateCollectionWithOptions(collectionName, query, updateQuery, options).compose(result -> {
-
-        if (result.getDocModified() != 1) {
+        final var page = new JsonObject().put("offset", offset).put("total", total);
+        return CompositeFuture.all(finds).map(found -> {
 
-          if (upsert) {
+          if (!finds.isEmpty()) {
 
-            String _id = null;
-            final var id = result.getDocUpsertedId();
-            if (id != null) {
+            final var foundObjects = new ArrayList<JsonObject>();
+            for (var i = 0; i < finds.size(); i++) {
 
-              _id = id.getString("_id");
+              final List<JsonObject> bucketObjects = found.resultAt(i);
+              foundObjects.addAll(bucketObjects);
             }
+            if (map != null) {
 
-            if (_id == null && result.getDocMatched() != 1) {
-
-              return Future.failedFuture("Not added document");
-
-            } else {
-
-              return Future.succeededFuture(_id);
+              foundObjects.stream().forEach(map);
             }
-
-          } else {
-
-            return Future.failedFuture("Not found document to update");
+            page.put(resultKey, foundObjects);
           }
+          return page;
 
-        } else {
-
-          return Future.succeededFuture();
-        }
+        });
 
       });
 
-    }
+    });
+
   }
 
   /**
-   * Store one document.
+   * Store one document in a batch with other documents of the same collection.
+   * It is useful for the collections where a lot of documents are added, because
+   * the documents are inserted with a bulk write instead of one by one. The
+   * queue is shared with the other repositories that use the same pool.
    *
    * @param collectionName of the collections that contains the model to store.
    * @param model          to store.
    * @param map            function to modify the stored document. If it is
    *                       {@code null} no modification is applied.
    *
-   * @return the future stored model.
+   * @return the future stored model. It fails with a
+   *         {@link java.util.concurrent.RejectedExecutionException} if there
+   *         are too many documents waiting to be stored.
+   *
+   * @see WriteBehindQueue
    */
-  protected Future<JsonObject> storeOneDocument(@NotNull final String collectionName, @NotNull final JsonObject model,
-      final Function<JsonObject, JsonObject> map) {
+  protected Future<JsonObject> storeOneDocumentBehind(@NotNull final String collectionName,
+      @NotNull final JsonObject model, final Function<JsonObject, JsonObject> map) {
 
-    model.put(SCHEMA_VERSION, this.schemaVersion);
-    return this.pool.insert(collectionName, model).compose(id -> {
+    final var document = model.copy().put(SCHEMA_VERSION, this.schemaVersion);
+    final var queue = WriteBehindQueue.shared(this.vertx, this.storage, collectionName);
+    return this.invalidateCountsWhenComplete(collectionName, queue.insert(document)).compose(id -> {
 
-      model.remove(SCHEMA_VERSION);
+      model.put("_id", id);
       return this.applyMap(model, map);
 
     });
@@ -342,17 +1547,9 @@ public class Repository {
   protected Future<JsonObject> findOneDocument(@NotNull final String collectionName, final JsonObject query,
       final JsonObject fields, final Function<JsonObject, JsonObject> map) {
 
-    JsonObject fieldWithoutSchema;
-    if (fields == null) {
-
-      fieldWithoutSchema = new JsonObject();
-
-    } else {
-
-      fieldWithoutSchema = fields;
-    }
-    fieldWithoutSchema.put(SCHEMA_VERSION, false);
-    return this.pool.findOne(collectionName, query, fieldWithoutSchema).compose(foundObject -> {
+    final var sample = this.startSample(collectionName, "findOne");
+    final var found = sample.stop(this.storage.findOne(collectionName, query, fieldsWithoutSchema(fields)));
+    return found.compose(foundObject -> {
 
       if (foundObject == null) {
 
@@ -492,56 +1689,59 @@ public class Repository {
    * @param <T>            type of the documents.
    *
    * @return the future that will inform if has migrated or not the documents.
+   *
+   * @see #migrationOptions
    */
   protected <T extends Model> Future<Void> migrateCollection(final String collectionName, final Class<T> type,
       final String version) {
 
-    final var query = this.createQueryToReturnDocumentsWithAVersionLessThan(version);
-    return this.pool.count(collectionName, query).compose(maxDocuments -> {
-
-      if (maxDocuments > 0) {
+    return this.migrateCollection(collectionName, type, version, this.migrationOptions);
 
-        Logger.trace("Start to migrate {} documents", maxDocuments);
-        final Promise<Void> promise = Promise.promise();
-        final var consumerId = UUID.randomUUID().toString();
-        final var consumer = this.vertx.eventBus().localConsumer(consumerId);
-        consumer.handler(msg -> {
-
-          final var body = msg.body();
-          if (body instanceof Number) {
-
-            this.migrateOneDocument(consumerId, collectionName, type, query, ((Number) body).longValue());
-
-          } else {
-
-            if (body instanceof String) {
-
-              promise.fail((String) body);
-
-            } else {
-
-              promise.complete();
-            }
-
-            consumer.unregister().onComplete(unregister -> {
+  }
 
-              Logger.trace(unregister.cause(), "Finished documents migrations");
+  /**
+   * Migrate the documents of a collection to the current schema. The documents
+   * are read with a cursor and updated in batches, and the last migrated
+   * document is stored as a checkpoint, thus if the migration is interrupted it
+   * continues where it stopped.
+   *
+   * @param collectionName name of the collection to migrate.
+   * @param type           of the documents on the collection.
+   * @param version        of the documents to migrate.
+   * @param options        for the migration.
+   *
+   * @param <T>            type of the documents.
+   *
+   * @return the future that will inform if has migrated or not the documents.
+   */
+  protected <T extends Model> Future<Void> migrateCollection(final String collectionName, final Class<T> type,
+      final String version, @NotNull final MigrationOptions options) {
 
-            });
-          }
+    return this.invalidateCountsWhenComplete(collectionName,
+        new CollectionMigration<>(this, collectionName, type, version, options).start());
 
-        });
+  }
 
-        consumer.completionHandler(
-            register -> this.migrateOneDocument(consumerId, collectionName, type, query, maxDocuments));
-        return promise.future();
+  /**
+   * Convert a document to migrate to a model. The document is converted without
+   * encoding it, thus the migration does not serialize and parse each document.
+   *
+   * @param document to convert.
+   * @param type     of the model.
+   *
+   * @param <T>      type of the model.
+   *
+   * @return the model of the document.
+   *
+   * @throws IOException if the document cannot be converted to the model.
+   */
+  static <T> T migrationValueOf(final JsonObject document, final Class<T> type) throws IOException {
 
-      } else {
-        // nothing to migrate
-        return Future.succeededFuture();
-      }
+    try (var buffer = new TokenBuffer(MIGRATION_MAPPER, false)) {
 
-    });
+      DatabindCodec.mapper().writeValue(buffer, document.getMap());
+      return MIGRATION_READERS.computeIfAbsent(type, MIGRATION_MAPPER::readerFor).readValue(buffer.asParser());
+    }
 
   }
 
@@ -555,7 +1755,11 @@ public class Repository {
    * @param maxDocuments   number of document that has to migrate.
    *
    * @param <T>            type of the documents.
+   *
+   * @deprecated the collections are migrated in batches by
+   *             {@link #migrateCollection(String, Class, String, MigrationOptions)}.
    */
+  @Deprecated
   protected <T extends Model> void migrateOneDocument(final String consumerId, final String collectionName,
       final Class<T> type, final JsonObject query, final long maxDocuments) {
 
@@ -572,15 +1776,7 @@ public class Repository {
         final var foundObject = find.result();
         try {
 
-          final var mapper = new ObjectMapper();
-          mapper.configure(DeserializationFeature.FAIL_ON_IGNORED_PROPERTIES, false);
-          mapper.configure(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES, false);
-          mapper.configure(DeserializationFeature.FAIL_ON_INVALID_SUBTYPE, false);
-          mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-          final var reader = mapper.readerFor(type);
-
-          @SuppressWarnings("unchecked")
-          final var value = (T) reader.readValue(foundObject.encode());
+          final var value = migrationValueOf(foundObject, type);
           final var id = foundObject.remove("_id");
           final var updateQuery = new JsonObject().put("_id", id);
           final var model = value.toJsonObject();
@@ -673,10 +1869,11 @@ public class Repository {
   protected Future<Void> updateCollection(final String collectionName, final JsonObject query,
       final JsonObject update) {
 
+    final var sample = this.startSample(collectionName, "updateCollection");
     final Promise<Void> promise = Promise.promise();
     final var options = new UpdateOptions();
     options.setMulti(true);
-    this.pool.updateCollectionWithOptions(collectionName, query, update, options, updated -> {
+    this.storage.update(collectionName, query, update, options).onComplete(updated -> {
 
       if (updated.failed()) {
 
@@ -694,7 +1891,7 @@ public class Repository {
 
     });
 
-    return promise.future();
+    return sample.stop(this.invalidateCountsWhenComplete(collectionName, promise.future()));
 
   }
 
@@ -716,48 +1913,161 @@ public class Repository {
       @NotNull final String elementPath) {
 
     final var splitted = AggregationBuilder.splitElementPath(elementPath);
-    return this.countAggregation(collectionName, splitted, query).compose(total -> {
+    final var pagePipeline = new AggregationBuilder().sort(order, offset, limit).projectElement(order, splitted)
+        .build();
+    return this.aggregateElementsPage(collectionName, splitted, query, pagePipeline, offset, true, null, limit, null);
 
-      final Promise<JsonObject> promise = Promise.promise();
-      if (total == 0 || total < offset) {
+  }
 
-        final var page = new JsonObject().put("offset", offset).put("total", total);
-        promise.complete(page);
+  /**
+   * Search for a page of aggregated elements that can be continued with a keyset
+   * pagination. The elements are sorted by the order of the context followed by
+   * the {@code _id} of the document and the index of the element, and if there
+   * are more elements after the page it contains the token to obtain the next
+   * page.
+   *
+   * @param collectionName of the collections that contains the models.
+   * @param context        of the page to search.
+   * @param elementPath    the name of the element to unwind. It has to be the
+   *                       values to access to component on the document.
+   *
+   * @return the future found page.
+   *
+   * @see ModelsPageContext#after
+   * @see PageToken
+   */
+  protected Future<JsonObject> aggregatePageObject(@NotNull final String collectionName,
+      @NotNull final ModelsPageContext context, @NotNull final String elementPath) {
+
+    final var splitted = AggregationBuilder.splitElementPath(elementPath);
+    final var uniqueKeys = new String[splitted.length + 1];
+    uniqueKeys[0] = "_id";
+    for (var i = 0; i < splitted.length; i++) {
+
+      uniqueKeys[i + 1] = splitted[i] + "Index";
+    }
+    final var sort = PageToken.keysetSort(context.sort, uniqueKeys);
+    final var pageBuilder = new AggregationBuilder();
+    if (context.after != null) {
+
+      try {
+
+        pageBuilder.match(PageToken.afterQuery(sort, context.after, "after"));
+
+      } catch (final ValidationErrorException cause) {
+
+        return Future.failedFuture(cause);
+      }
+    }
+    final var offset = context.after == null ? context.offset : 0;
+    final var fetchLimit = context.limit > 0 ? context.limit + 1 : context.limit;
+    final var pagePipeline = pageBuilder.sort(sort, offset, fetchLimit).projectElement(sort, context.fields, splitted)
+        .build();
+    return this.aggregateElementsPage(collectionName, splitted, context.query, pagePipeline, context.offset,
+        context.withTotal, sort, context.limit, context.collation);
+
+  }
+
+  /**
+   * Obtain a page of aggregated elements with a single pipeline execution. If
+   * the total is required, it is calculated in the same execution with a
+   * {@code $facet} stage.
+   *
+   * @param collectionName of the collections that contains the models.
+   * @param elementPath    the splitted path of the elements.
+   * @param query          to satisfy.
+   * @param pagePipeline   the stages to obtain the documents of the page.
+   * @param offset         the index of the first elements to return.
+   * @param withTotal      is {@code true} if the page has to contain the total.
+   * @param tokenSort      the keyset sort used to create the token of the next
+   *                       page, or {@code null} to not return it. When it is
+   *                       defined the page pipeline has to obtain one element
+   *                       more than the limit to known if there is a next page.
+   * @param limit          the number maximum of elements to return.
+   * @param collation      to compare the strings, or {@code null} to use the
+   *                       default one.
+   *
+   * @return the future found page.
+   *
+   * @see AggregationBuilder#facetPage(JsonArray)
+   */
+  protected Future<JsonObject> aggregateElementsPage(@NotNull final String collectionName,
+      @NotNull final String[] elementPath, final JsonObject query, @NotNull final JsonArray pagePipeline,
+      final int offset, final boolean withTotal, final JsonObject tokenSort, final int limit,
+      final CollationOptions collation) {
+
+    final var builder = new AggregationBuilder().unwindPath(elementPath).match(query);
+    if (withTotal) {
+
+      builder.facetPage(pagePipeline);
+
+    } else {
+
+      builder.append(pagePipeline);
+    }
+
+    final var sample = this.startSample(collectionName, "aggregate");
+    final Promise<JsonObject> promise = Promise.promise();
+    final var page = new JsonObject().put("offset", offset);
+    final var documents = new ArrayList<JsonObject>();
+    this.aggregate(collectionName, builder.build(), collation).handler(value -> {
+
+      if (withTotal) {
+
+        final var totals = value.getJsonArray(AggregationBuilder.FACET_TOTAL, new JsonArray());
+        final var total = totals.isEmpty() ? 0L : totals.getJsonObject(0).getLong(AggregationBuilder.FACET_TOTAL, 0L);
+        page.put("total", total);
+        final var models = value.getJsonArray(AggregationBuilder.FACET_MODELS, new JsonArray());
+        for (var i = 0; i < models.size(); i++) {
+
+          documents.add(models.getJsonObject(i));
+        }
 
       } else {
 
-        final var retrievePipeline = new AggregationBuilder().unwindPath(splitted).match(query)
-            .sort(order, offset, limit).build();
-        final var elements = new JsonArray();
-        final var resultKey = splitted[splitted.length - 1];
-        final var page = new JsonObject().put("offset", offset).put("total", total).put(resultKey, elements);
-        this.pool.aggregate(collectionName, retrievePipeline).handler(value -> {
+        documents.add(value);
+      }
 
-          var element = value.getJsonObject(splitted[0]);
-          for (var i = 1; i < splitted.length; i++) {
+    }).exceptionHandler(cause -> {
 
-            element = element.getJsonObject(splitted[i]);
-          }
-          elements.add(element);
+      promise.fail(cause);
+
+    }).endHandler(finishedRetrieve -> {
+
+      if (withTotal && !page.containsKey("total")) {
 
-        }).exceptionHandler(cause -> {
+        page.put("total", 0L);
+      }
+      var hasNext = false;
+      if (tokenSort != null && limit > 0 && documents.size() > limit) {
 
-          promise.fail(cause);
+        documents.subList(limit, documents.size()).clear();
+        hasNext = true;
+      }
+      if (!documents.isEmpty()) {
 
-        }).endHandler(finishedRetrieve -> {
+        final var elements = new JsonArray();
+        for (final var document : documents) {
 
-          if (elements.isEmpty()) {
+          var element = document.getJsonObject(elementPath[0]);
+          for (var i = 1; i < elementPath.length; i++) {
 
-            page.remove(resultKey);
+            element = element.getJsonObject(elementPath[i]);
           }
-          promise.complete(page);
+          elements.add(element);
+        }
+        page.put(elementPath[elementPath.length - 1], elements);
+        if (hasNext) {
 
-        });
+          page.put(PageToken.NEXT_FIELD, PageToken.encode(tokenSort, documents.get(documents.size() - 1)));
+        }
       }
-      return promise.future();
+      promise.tryComplete(page);
 
     });
 
+    return sample.stop(promise.future());
+
   }
 
   /**
@@ -772,25 +2082,30 @@ public class Repository {
   protected Future<Long> countAggregation(@NotNull final String collectionName, @NotNull final String[] elementPath,
       @NotNull final JsonObject query) {
 
-    final Promise<Long> promise = Promise.promise();
     final var countPipeline = new AggregationBuilder().unwindPath(elementPath).match(query).build()
         .add(new JsonObject().put("$count", "total"));
-    this.pool.aggregate(collectionName, countPipeline).handler(element -> {
+    return this.countCache.count(collectionName, countPipeline, () -> {
 
-      final var total = element.getLong("total", 0l);
-      promise.complete(total);
+      final var sample = this.startSample(collectionName, "aggregate");
+      final Promise<Long> promise = Promise.promise();
+      this.readPool(collectionName).aggregate(collectionName, countPipeline, null).handler(element -> {
 
-    }).exceptionHandler(cause -> {
+        final var total = element.getLong("total", 0l);
+        promise.complete(total);
 
-      promise.fail(cause);
+      }).exceptionHandler(cause -> {
 
-    }).endHandler(empty -> {
-      // Use this complete when no documents match
-      promise.tryComplete(0l);
+        promise.fail(cause);
 
-    });
+      }).endHandler(empty -> {
+        // Use this complete when no documents match
+        promise.tryComplete(0l);
 
-    return promise.future();
+      });
+
+      return sample.stop(promise.future());
+
+    });
 
   }
 
@@ -0,0 +1,245 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.mongo.AggregateOptions;
+import io.vertx.ext.mongo.BulkOperation;
+import io.vertx.ext.mongo.BulkWriteOptions;
+import io.vertx.ext.mongo.CountOptions;
+import io.vertx.ext.mongo.FindOptions;
+import io.vertx.ext.mongo.IndexModel;
+import io.vertx.ext.mongo.IndexOptions;
+import io.vertx.ext.mongo.MongoClientBulkWriteResult;
+import io.vertx.ext.mongo.MongoClientDeleteResult;
+import io.vertx.ext.mongo.MongoClientUpdateResult;
+import io.vertx.ext.mongo.UpdateOptions;
+import java.util.List;
+import javax.validation.constraints.NotNull;
+
+/**
+ * The storage where the {@link Repository} stores the documents of the models.
+ * It contains only the operations that the repositories use, thus the models
+ * can be stored on MongoDB or on memory.
+ *
+ * @see MongoRepositoryStorage
+ * @see MemoryRepositoryStorage
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public interface RepositoryStorage {
+
+  /**
+   * Insert a document. If the document does not have an identifier a new one is
+   * generated.
+   *
+   * @param collectionName name of the collection.
+   * @param document       to insert.
+   *
+   * @return the future generated identifier, or {@code null} if the document
+   *         has one.
+   */
+  Future<String> insert(@NotNull String collectionName, @NotNull JsonObject document);
+
+  /**
+   * Find the first document that match a query.
+   *
+   * @param collectionName name of the collection.
+   * @param query          to match.
+   * @param fields         to return, or {@code null} to return all of them.
+   *
+   * @return the future found document, or {@code null} if any document match
+   *         the query.
+   */
+  Future<JsonObject> findOne(@NotNull String collectionName, @NotNull JsonObject query, JsonObject fields);
+
+  /**
+   * Find the documents that match a query.
+   *
+   * @param collectionName name of the collection.
+   * @param query          to match.
+   * @param options        to sort, paginate and project the documents.
+   *
+   * @return the future found documents.
+   */
+  Future<List<JsonObject>> find(@NotNull String collectionName, @NotNull JsonObject query,
+      @NotNull FindOptions options);
+
+  /**
+   * Find the documents that match a query in batches.
+   *
+   * @param collectionName name of the collection.
+   * @param query          to match.
+   * @param options        to sort, paginate and project the documents.
+   *
+   * @return the stream with the found documents.
+   */
+  ReadStream<JsonObject> findBatch(@NotNull String collectionName, @NotNull JsonObject query,
+      @NotNull FindOptions options);
+
+  /**
+   * Count the documents that match a query.
+   *
+   * @param collectionName name of the collection.
+   * @param query          to match.
+   * @param options        to count, or {@code null} to use the default ones.
+   *
+   * @return the future number of documents that match the query.
+   */
+  Future<Long> count(@NotNull String collectionName, @NotNull JsonObject query, CountOptions options);
+
+  /**
+   * Estimate the number of documents of a collection from its metadata.
+   *
+   * @param collectionName name of the collection.
+   *
+   * @return the future estimated number of documents of the collection.
+   */
+  Future<Long> estimatedCount(@NotNull String collectionName);
+
+  /**
+   * Aggregate the documents of a collection.
+   *
+   * @param collectionName name of the collection.
+   * @param pipeline       with the stages to apply.
+   * @param options        of the aggregation, or {@code null} to use the
+   *                       default ones.
+   *
+   * @return the stream with the aggregated documents.
+   */
+  ReadStream<JsonObject> aggregate(@NotNull String collectionName, @NotNull JsonArray pipeline,
+      AggregateOptions options);
+
+  /**
+   * Update the documents that match a query.
+   *
+   * @param collectionName name of the collection.
+   * @param query          to match.
+   * @param update         to apply.
+   * @param options        of the update.
+   *
+   * @return the future result of the update.
+   */
+  Future<MongoClientUpdateResult> update(@NotNull String collectionName, @NotNull JsonObject query,
+      @NotNull JsonObject update, @NotNull UpdateOptions options);
+
+  /**
+   * Remove the first document that match a query.
+   *
+   * @param collectionName name of the collection.
+   * @param query          to match.
+   *
+   * @return the future result of the remove.
+   */
+  Future<MongoClientDeleteResult> removeDocument(@NotNull String collectionName, @NotNull JsonObject query);
+
+  /**
+   * Remove all the documents that match a query.
+   *
+   * @param collectionName name of the collection.
+   * @param query          to match.
+   *
+   * @return the future result of the remove.
+   */
+  Future<MongoClientDeleteResult> removeDocuments(@NotNull String collectionName, @NotNull JsonObject query);
+
+  /**
+   * Execute some write operations.
+   *
+   * @param collectionName name of the collection.
+   * @param operations     to execute.
+   * @param options        of the writes.
+   *
+   * @return the future result of the writes.
+   */
+  Future<MongoClientBulkWriteResult> bulkWrite(@NotNull String collectionName,
+      @NotNull List<BulkOperation> operations, @NotNull BulkWriteOptions options);
+
+  /**
+   * Create some indexes on a collection.
+   *
+   * @param collectionName name of the collection.
+   * @param indexes        to create.
+   *
+   * @return the future that will be completed when the indexes are created.
+   */
+  Future<Void> createIndexes(@NotNull String collectionName, @NotNull List<IndexModel> indexes);
+
+  /**
+   * Create an index on a collection.
+   *
+   * @param collectionName name of the collection.
+   * @param keys           of the index.
+   * @param options        of the index.
+   *
+   * @return the future that will be completed when the index is created.
+   */
+  Future<Void> createIndex(@NotNull String collectionName, @NotNull JsonObject keys, IndexOptions options);
+
+  /**
+   * Explain how a query is planned.
+   *
+   * @param collectionName name of the collection.
+   * @param query          to explain.
+   * @param sort           of the query, or {@code null} if it is not sorted.
+   *
+   * @return the future explanation with the {@code queryPlanner} of the query.
+   */
+  Future<JsonObject> explain(@NotNull String collectionName, @NotNull JsonObject query, JsonObject sort);
+
+  /**
+   * Obtain the names of the collections.
+   *
+   * @return the future names of the collections.
+   */
+  Future<List<String>> getCollections();
+
+  /**
+   * Remove a collection.
+   *
+   * @param collectionName name of the collection.
+   *
+   * @return the future that will be completed when the collection is removed.
+   */
+  Future<Void> dropCollection(@NotNull String collectionName);
+
+  /**
+   * Watch the changes of a collection.
+   *
+   * @param collectionName name of the collection.
+   * @param batchSize      number of changes to obtain on each batch.
+   *
+   * @return the stream with the changes of the collection.
+   */
+  ReadStream<ChangeStreamDocument<JsonObject>> watch(@NotNull String collectionName, int batchSize);
+
+  /**
+   * Close the storage.
+   *
+   * @return the future that will be completed when the storage is closed.
+   */
+  Future<Void> close();
+
+}
@@ -46,6 +46,15 @@ public class ServiceContext {
   @NotNull
   public Handler<AsyncResult<ServiceResponse>> resultHandler;
 
+  /**
+   * The span that trace the request. It continues the trace defined on the
+   * {@code traceparent} header of the request, and it finishes when the
+   * response is informed, restoring the context that was running before the
+   * request.
+   */
+  @NotNull
+  public TraceSpan span;
+
   /**
    * Create a new context.
    *
@@ -55,7 +64,26 @@ public class ServiceContext {
   public ServiceContext(@NotNull final ServiceRequest request, @NotNull final Handler<AsyncResult<ServiceResponse>> resultHandler) {
 
     this.request = request;
-    this.resultHandler = resultHandler;
+    final var headers = request.getHeaders();
+    final var parent = headers == null ? null : TraceContext.parse(headers.get(TraceContext.TRACEPARENT_HEADER));
+    this.span = TraceSpan.start("ServiceRequest", TraceSpan.SERVER, parent);
+    final var previous = this.span.attach();
+    this.resultHandler = result -> {
+
+      try {
+
+        if (result.succeeded() && result.result() != null) {
+
+          this.span.attribute("http.status_code", result.result().getStatusCode());
+        }
+        this.span.end(result.cause());
+        resultHandler.handle(result);
+
+      } finally {
+
+        TraceContext.attach(previous);
+      }
+    };
 
   }
 
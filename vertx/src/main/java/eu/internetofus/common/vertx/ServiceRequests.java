@@ -38,6 +38,11 @@ import javax.ws.rs.core.HttpHeaders;
  */
 public interface ServiceRequests {
 
+  /**
+   * The name of the query parameter with the fields of the models to return.
+   */
+  String FIELDS_PARAMETER = "fields";
+
   /**
    * Obtain the accepted language defined on the header.
    *
@@ -163,4 +168,82 @@ public interface ServiceRequests {
 
   }
 
+  /**
+   * Obtain the projection with the fields of the models to return that are
+   * defined on the query parameter {@link #FIELDS_PARAMETER}. The fields are
+   * separated by commas, and the nested fields by dots.
+   *
+   * @param request to get the fields.
+   *
+   * @return the projection with the fields to return, or {@code null} if all the
+   *         fields has to be returned.
+   *
+   * @throws IllegalArgumentException if any field is not valid.
+   *
+   * @see #toFieldsProjection(List)
+   */
+  static JsonObject extractFieldsProjection(final ServiceRequest request) {
+
+    if (request == null || request.getParams() == null) {
+
+      return null;
+
+    } else {
+
+      final var value = getQueryParamters(request).getValue(FIELDS_PARAMETER);
+      List<String> fields = null;
+      if (value instanceof JsonArray) {
+
+        final var joined = toListString((JsonArray) value);
+        if (joined != null) {
+
+          fields = extractQueryArray(String.join(",", joined));
+        }
+
+      } else if (value instanceof String) {
+
+        fields = extractQueryArray((String) value);
+      }
+      return toFieldsProjection(fields);
+    }
+
+  }
+
+  /**
+   * Convert a list of fields to a projection that only includes them. A field
+   * is not valid if any of its nested names is empty or starts with {@code $},
+   * because MongoDB will use it as an operator.
+   *
+   * @param fields to include.
+   *
+   * @return the projection that includes the fields, or {@code null} if the
+   *         fields are {@code null} or empty.
+   *
+   * @throws IllegalArgumentException if any field is not valid.
+   */
+  static JsonObject toFieldsProjection(final List<String> fields) {
+
+    if (fields == null || fields.isEmpty()) {
+
+      return null;
+
+    } else {
+
+      final var projection = new JsonObject();
+      for (final var field : fields) {
+
+        for (final var name : field.split("\\.", -1)) {
+
+          if (name.isEmpty() || name.startsWith("$")) {
+
+            throw new IllegalArgumentException("The field '" + field + "' is not valid.");
+          }
+        }
+        projection.put(field, 1);
+      }
+      return projection;
+    }
+
+  }
+
 }
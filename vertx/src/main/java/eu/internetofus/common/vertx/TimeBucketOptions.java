@@ -0,0 +1,199 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import io.vertx.core.json.JsonObject;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * The options to split a collection into collections that contains the
+ * documents of a period of time.
+ *
+ * @see TimeBuckets
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class TimeBucketOptions {
+
+  /**
+   * The periods of time that can contain a bucket.
+   */
+  public enum Granularity {
+
+    /**
+     * The bucket contains the documents of a year.
+     */
+    YEAR(ChronoUnit.YEARS, "yyyy"),
+
+    /**
+     * The bucket contains the documents of a month.
+     */
+    MONTH(ChronoUnit.MONTHS, "yyyyMM"),
+
+    /**
+     * The bucket contains the documents of a day.
+     */
+    DAY(ChronoUnit.DAYS, "yyyyMMdd");
+
+    /**
+     * The unit of time of the period.
+     */
+    public final ChronoUnit unit;
+
+    /**
+     * The pattern of the date that is used as suffix of the bucket names.
+     */
+    public final String pattern;
+
+    /**
+     * Create the granularity.
+     *
+     * @param unit    of time of the period.
+     * @param pattern of the date used as suffix of the bucket names.
+     */
+    Granularity(final ChronoUnit unit, final String pattern) {
+
+      this.unit = unit;
+      this.pattern = pattern;
+    }
+
+  }
+
+  /**
+   * The default period of time of the buckets.
+   */
+  public static final Granularity DEFAULT_GRANULARITY = Granularity.MONTH;
+
+  /**
+   * The name of the configuration property that contains the period of time of
+   * the buckets.
+   */
+  public static final String GRANULARITY_KEY = "granularity";
+
+  /**
+   * The default number of buckets to retain. If it is zero any bucket is
+   * removed.
+   */
+  public static final int DEFAULT_RETENTION = 0;
+
+  /**
+   * The name of the configuration property that contains the number of buckets
+   * to retain.
+   */
+  public static final String RETENTION_KEY = "retention";
+
+  /**
+   * The default milliseconds between the checks to remove the buckets that are
+   * not retained.
+   */
+  public static final long DEFAULT_RETENTION_CHECK = 3600000;
+
+  /**
+   * The name of the configuration property that contains the milliseconds
+   * between the checks to remove the buckets that are not retained.
+   */
+  public static final String RETENTION_CHECK_KEY = "retentionCheck";
+
+  /**
+   * The default field with the timestamp of the documents.
+   */
+  public static final String DEFAULT_TIMESTAMP_FIELD = "timestamp";
+
+  /**
+   * The name of the configuration property that contains the field with the
+   * timestamp of the documents.
+   */
+  public static final String TIMESTAMP_FIELD_KEY = "timestampField";
+
+  /**
+   * The default milliseconds that the names of the buckets of the database are
+   * cached.
+   */
+  public static final long DEFAULT_BUCKETS_CACHE_TIME = 60000;
+
+  /**
+   * The name of the configuration property that contains the milliseconds that
+   * the names of the buckets of the database are cached.
+   */
+  public static final String BUCKETS_CACHE_TIME_KEY = "bucketsCacheTime";
+
+  /**
+   * The period of time of the buckets.
+   */
+  public Granularity granularity = DEFAULT_GRANULARITY;
+
+  /**
+   * The number of buckets to retain, including the current one. The older
+   * buckets are removed. If it is zero any bucket is removed.
+   */
+  public int retention = DEFAULT_RETENTION;
+
+  /**
+   * The milliseconds between the checks to remove the buckets that are not
+   * retained.
+   */
+  public long retentionCheck = DEFAULT_RETENTION_CHECK;
+
+  /**
+   * The field with the timestamp of the documents.
+   */
+  public String timestampField = DEFAULT_TIMESTAMP_FIELD;
+
+  /**
+   * The milliseconds that the names of the buckets of the database are cached.
+   * If it is zero they are obtained on each search.
+   */
+  public long bucketsCacheTime = DEFAULT_BUCKETS_CACHE_TIME;
+
+  /**
+   * Create the default time bucket options.
+   */
+  public TimeBucketOptions() {
+
+  }
+
+  /**
+   * Create the time bucket options defined on a configuration.
+   *
+   * @param conf configuration with the time bucket options.
+   */
+  public TimeBucketOptions(final JsonObject conf) {
+
+    if (conf != null) {
+
+      final var granularity = conf.getString(GRANULARITY_KEY, DEFAULT_GRANULARITY.name());
+      for (final var value : Granularity.values()) {
+
+        if (value.name().equalsIgnoreCase(granularity)) {
+
+          this.granularity = value;
+        }
+      }
+      this.retention = Math.max(0, conf.getInteger(RETENTION_KEY, DEFAULT_RETENTION));
+      this.retentionCheck = Math.max(1, conf.getLong(RETENTION_CHECK_KEY, DEFAULT_RETENTION_CHECK));
+      this.timestampField = conf.getString(TIMESTAMP_FIELD_KEY, DEFAULT_TIMESTAMP_FIELD);
+      this.bucketsCacheTime = Math.max(0, conf.getLong(BUCKETS_CACHE_TIME_KEY, DEFAULT_BUCKETS_CACHE_TIME));
+    }
+
+  }
+
+}
@@ -0,0 +1,480 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import eu.internetofus.common.model.TimeManager;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.IndexModel;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import javax.validation.constraints.NotNull;
+import org.tinylog.Logger;
+
+/**
+ * The collections that contains the documents of a period of time. The
+ * documents are stored on the bucket that contains its timestamp, named as the
+ * collection followed by the date of the period (for example
+ * {@code interactions_202305} for the interactions of May of 2023). Thus, the
+ * queries over a range of time only touch the buckets that overlap the range,
+ * and the old documents are removed dropping its buckets. The names of the
+ * buckets of the database are cached for
+ * {@link TimeBucketOptions#bucketsCacheTime} milliseconds.
+ *
+ * @see TimeBucketOptions
+ * @see Repository#storeOneDocumentInBucket(TimeBuckets, JsonObject,
+ *      java.util.function.Function)
+ * @see Repository#searchBucketsPageObject(TimeBuckets, Long, Long, JsonObject,
+ *      io.vertx.ext.mongo.FindOptions, String, java.util.function.Consumer)
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class TimeBuckets {
+
+  /**
+   * The name of the collection that is split into buckets.
+   */
+  public final String collectionName;
+
+  /**
+   * The field with the timestamp, in seconds since epoch, used to select the
+   * bucket of a document.
+   */
+  public final String timestampField;
+
+  /**
+   * The options of the buckets.
+   */
+  public final TimeBucketOptions options;
+
+  /**
+   * The formatter of the date of the bucket names.
+   */
+  protected final DateTimeFormatter formatter;
+
+  /**
+   * The buckets where the indexes has been created.
+   */
+  protected final Set<String> indexed = ConcurrentHashMap.newKeySet();
+
+  /**
+   * The future sorted names of the buckets of the database, or {@code null} if
+   * they have to be obtained.
+   */
+  protected Future<NavigableSet<String>> known;
+
+  /**
+   * The milliseconds when the names of the buckets have been obtained.
+   */
+  protected long knownAt;
+
+  /**
+   * Create the buckets of a collection.
+   *
+   * @param collectionName name of the collection to split into buckets.
+   * @param timestampField field with the timestamp of the documents.
+   * @param options        of the buckets.
+   */
+  public TimeBuckets(@NotNull final String collectionName, @NotNull final String timestampField,
+      @NotNull final TimeBucketOptions options) {
+
+    this.collectionName = collectionName;
+    this.timestampField = timestampField;
+    this.options = options;
+    this.formatter = DateTimeFormatter.ofPattern(options.granularity.pattern).withZone(ZoneOffset.UTC);
+
+  }
+
+  /**
+   * Create the buckets of a collection with the timestamp field defined on the
+   * options.
+   *
+   * @param collectionName name of the collection to split into buckets.
+   * @param options        of the buckets.
+   *
+   * @see TimeBucketOptions#timestampField
+   */
+  public TimeBuckets(@NotNull final String collectionName, @NotNull final TimeBucketOptions options) {
+
+    this(collectionName, options.timestampField, options);
+
+  }
+
+  /**
+   * Return the name of the bucket that contains a timestamp.
+   *
+   * @param timestamp in seconds since epoch.
+   *
+   * @return the name of the bucket for the timestamp.
+   */
+  public String bucketFor(final long timestamp) {
+
+    return this.collectionName + "_" + this.formatter.format(Instant.ofEpochSecond(timestamp));
+
+  }
+
+  /**
+   * Return the bucket where has to be stored a document with a timestamp. The
+   * first time that a bucket is used, the indexes of the collection are created
+   * on it.
+   *
+   * @param pool      to the database.
+   * @param indexes   of the collection to create on the bucket.
+   * @param timestamp of the document to store in seconds since epoch.
+   *
+   * @return the future name of the bucket. It never fails, because the bucket
+   *         can be used without the indexes.
+   *
+   * @see IndexRegistry#indexesOf(String)
+   */
+  public Future<String> prepareBucketFor(@NotNull final RepositoryStorage pool, @NotNull final List<IndexModel> indexes,
+      final long timestamp) {
+
+    final var bucket = this.bucketFor(timestamp);
+    this.remember(bucket);
+    if (indexes.isEmpty() || !this.indexed.add(bucket)) {
+
+      return Future.succeededFuture(bucket);
+
+    } else {
+
+      return pool.createIndexes(bucket, indexes).map(bucket).otherwise(cause -> {
+
+        Logger.warn(cause, "Cannot create the indexes of the bucket '{}'.", bucket);
+        this.indexed.remove(bucket);
+        return bucket;
+
+      });
+    }
+
+  }
+
+  /**
+   * Return the start of the period of a bucket.
+   *
+   * @param bucket name of the bucket.
+   *
+   * @return the seconds since epoch when the period of the bucket starts, or
+   *         {@code null} if the name is not of a bucket of the collection.
+   */
+  public Long startOf(final String bucket) {
+
+    final var prefix = this.collectionName + "_";
+    if (bucket == null || !bucket.startsWith(prefix)
+        || bucket.length() != prefix.length() + this.options.granularity.pattern.length()) {
+
+      return null;
+    }
+
+    try {
+
+      final var date = bucket.substring(prefix.length());
+      final var year = Integer.parseInt(date.substring(0, 4));
+      var month = 1;
+      if (date.length() > 4) {
+
+        month = Integer.parseInt(date.substring(4, 6));
+      }
+      var day = 1;
+      if (date.length() > 6) {
+
+        day = Integer.parseInt(date.substring(6, 8));
+      }
+      return LocalDate.of(year, month, day).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+
+    } catch (final NumberFormatException | DateTimeException cause) {
+
+      return null;
+    }
+
+  }
+
+  /**
+   * Return the end of the period of a bucket.
+   *
+   * @param start seconds since epoch when the period of the bucket starts.
+   *
+   * @return the seconds since epoch when the period of the bucket ends
+   *         (exclusive).
+   */
+  protected long endOf(final long start) {
+
+    return Instant.ofEpochSecond(start).atZone(ZoneOffset.UTC).plus(1, this.options.granularity.unit)
+        .toEpochSecond();
+
+  }
+
+  /**
+   * Check if a bucket overlaps a range of time.
+   *
+   * @param bucket name of the bucket.
+   * @param from   the minimum timestamp (inclusive), or {@code null} if the
+   *               range does not have a lower bound.
+   * @param to     the maximum timestamp (inclusive), or {@code null} if the range
+   *               does not have an upper bound.
+   *
+   * @return {@code true} if the bucket overlaps the range.
+   */
+  public boolean overlaps(final String bucket, final Long from, final Long to) {
+
+    final var start = this.startOf(bucket);
+    return start != null && (to == null || start <= to) && (from == null || this.endOf(start) > from);
+
+  }
+
+  /**
+   * Return a query that match the documents with a timestamp in a range.
+   *
+   * @param query to add the range, or {@code null} to match any document.
+   * @param from  the minimum timestamp (inclusive), or {@code null} if the range
+   *              does not have a lower bound.
+   * @param to    the maximum timestamp (inclusive), or {@code null} if the range
+   *              does not have an upper bound.
+   *
+   * @return the query with the range.
+   */
+  public JsonObject rangeQuery(final JsonObject query, final Long from, final Long to) {
+
+    if (from == null && to == null) {
+
+      return query == null ? new JsonObject() : query;
+
+    } else {
+
+      final var range = new JsonObject();
+      if (from != null) {
+
+        range.put("$gte", from);
+      }
+      if (to != null) {
+
+        range.put("$lte", to);
+      }
+      final var timestamp = new JsonObject().put(this.timestampField, range);
+      if (query == null || query.isEmpty()) {
+
+        return timestamp;
+
+      } else {
+
+        return new JsonObject().put("$and", new JsonArray().add(query).add(timestamp));
+      }
+    }
+
+  }
+
+  /**
+   * Obtain the buckets of the database that overlap a range of time.
+   *
+   * @param pool to the database.
+   * @param from the minimum timestamp (inclusive), or {@code null} if the range
+   *             does not have a lower bound.
+   * @param to   the maximum timestamp (inclusive), or {@code null} if the range
+   *             does not have an upper bound.
+   *
+   * @return the future names of the buckets sorted from the oldest to the
+   *         newest.
+   */
+  public Future<List<String>> bucketsBetween(@NotNull final RepositoryStorage pool, final Long from, final Long to) {
+
+    return this.knownBuckets(pool).map(known -> {
+
+      final var buckets = new ArrayList<String>();
+      for (final var bucket : known) {
+
+        if (this.overlaps(bucket, from, to)) {
+
+          buckets.add(bucket);
+        }
+      }
+      return buckets;
+
+    });
+
+  }
+
+  /**
+   * Return the names of the buckets of the database. They are obtained again
+   * when the cached ones are older than the
+   * {@link TimeBucketOptions#bucketsCacheTime}.
+   *
+   * @param pool to the database.
+   *
+   * @return the future sorted names of the buckets.
+   */
+  protected synchronized Future<NavigableSet<String>> knownBuckets(@NotNull final RepositoryStorage pool) {
+
+    final var now = System.currentTimeMillis();
+    var obtained = this.known;
+    if (obtained == null || now - this.knownAt >= this.options.bucketsCacheTime) {
+
+      obtained = pool.getCollections().map(collections -> {
+
+        final NavigableSet<String> buckets = new ConcurrentSkipListSet<>();
+        for (final var collection : collections) {
+
+          if (this.startOf(collection) != null) {
+
+            buckets.add(collection);
+          }
+        }
+        return buckets;
+
+      });
+      this.known = obtained;
+      this.knownAt = now;
+      final var failed = obtained;
+      obtained.onFailure(cause -> this.forget(failed));
+    }
+    return obtained;
+
+  }
+
+  /**
+   * Remove the cached names of the buckets if they are the obtained ones.
+   *
+   * @param obtained the future names of the buckets to remove.
+   */
+  protected synchronized void forget(final Future<NavigableSet<String>> obtained) {
+
+    if (this.known == obtained) {
+
+      this.known = null;
+    }
+
+  }
+
+  /**
+   * Add a bucket to the cached names of the buckets.
+   *
+   * @param bucket name of the bucket that has been used.
+   */
+  protected synchronized void remember(final String bucket) {
+
+    if (this.known != null && this.known.succeeded()) {
+
+      this.known.result().add(bucket);
+    }
+
+  }
+
+  /**
+   * Remove the buckets that are older than the retained ones.
+   *
+   * @param pool to the database.
+   * @param now  the current time in seconds since epoch.
+   *
+   * @return the future names of the removed buckets.
+   *
+   * @see TimeBucketOptions#retention
+   */
+  public Future<List<String>> retire(@NotNull final RepositoryStorage pool, final long now) {
+
+    if (this.options.retention <= 0) {
+
+      return Future.succeededFuture(Collections.emptyList());
+    }
+
+    final var current = Instant.ofEpochSecond(this.startOf(this.bucketFor(now))).atZone(ZoneOffset.UTC);
+    final var limit = current.minus(this.options.retention - 1L, this.options.granularity.unit).toEpochSecond();
+    return this.bucketsBetween(pool, null, limit - 1).compose(buckets -> {
+
+      var future = Future.<Void>succeededFuture();
+      for (final var bucket : buckets) {
+
+        future = future.compose(any -> pool.dropCollection(bucket)).onSuccess(dropped -> {
+
+          synchronized (this) {
+
+            this.indexed.remove(bucket);
+            if (this.known != null && this.known.succeeded()) {
+
+              this.known.result().remove(bucket);
+            }
+          }
+        });
+      }
+      return future.map(buckets);
+
+    });
+
+  }
+
+  /**
+   * Remove periodically the buckets that are not retained, and invalidate their
+   * cached counts.
+   *
+   * @param vertx where the timer is defined.
+   * @param pool  to the database.
+   *
+   * @return the identifier of the periodic timer that remove the buckets, or
+   *         {@code -1} if all the buckets are retained.
+   *
+   * @see TimeBucketOptions#retention
+   * @see #retire(RepositoryStorage, long)
+   * @see CountCache#invalidate(String)
+   */
+  public long retain(@NotNull final Vertx vertx, @NotNull final RepositoryStorage pool) {
+
+    if (this.options.retention <= 0) {
+
+      return -1;
+    }
+
+    final Handler<Long> retire = id -> this.retire(pool, TimeManager.now()).onComplete(retired -> {
+
+      if (retired.failed()) {
+
+        final var cause = retired.cause();
+        Logger.warn(cause, "Cannot remove the old buckets of '{}'.", this.collectionName);
+
+      } else if (!retired.result().isEmpty()) {
+
+        final var removed = retired.result();
+        Logger.debug("Removed the old buckets {} of '{}'.", removed, this.collectionName);
+        final var countCache = CountCache.shared(vertx);
+        for (final var bucket : removed) {
+
+          countCache.invalidate(bucket);
+        }
+      }
+
+    });
+    retire.handle(-1L);
+    return vertx.setPeriodic(this.options.retentionCheck, retire);
+
+  }
+
+}
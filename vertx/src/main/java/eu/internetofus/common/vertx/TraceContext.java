@@ -0,0 +1,409 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryContext;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ServiceBinder;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The context of a distributed trace, that is propagated between the
+ * components with the W3C {@code traceparent} header, as OpenTelemetry does.
+ * The context of the operation that is running is stored on the Vert.x
+ * context, thus it is shared by the handlers of an HTTP request or an event
+ * bus message, that Vert.x runs on their own duplicated context. It is added
+ * to the requests of the {@link ComponentClient}, to the messages sent on the
+ * event bus once it is propagated with {@link #propagate(Vertx)}, and resumed
+ * by the services registered with {@link #binder(Vertx)}.
+ *
+ * @see TraceSpan
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public final class TraceContext {
+
+  /**
+   * The name of the header that propagates the context.
+   */
+  public static final String TRACEPARENT_HEADER = "traceparent";
+
+  /**
+   * The version of the {@code traceparent} header that is generated.
+   */
+  private static final String VERSION = "00";
+
+  /**
+   * The key used to store the context on the Vert.x context.
+   */
+  private static final String LOCAL_KEY = TraceContext.class.getName();
+
+  /**
+   * The key of the local map that marks the Vert.x instances that propagate the
+   * context on the messages of the event bus.
+   */
+  private static final String PROPAGATE_KEY = LOCAL_KEY + ".propagate";
+
+  /**
+   * The hexadecimal digits used to encode the identifiers.
+   */
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  /**
+   * The identifier of the trace, as 32 lowercase hexadecimal digits.
+   */
+  public final String traceId;
+
+  /**
+   * The identifier of the span, as 16 lowercase hexadecimal digits.
+   */
+  public final String spanId;
+
+  /**
+   * This is {@code true} if the spans of the trace have to be recorded.
+   */
+  public final boolean sampled;
+
+  /**
+   * Create a context.
+   *
+   * @param traceId identifier of the trace.
+   * @param spanId  identifier of the span.
+   * @param sampled {@code true} if the spans have to be recorded.
+   */
+  private TraceContext(final String traceId, final String spanId, final boolean sampled) {
+
+    this.traceId = traceId;
+    this.spanId = spanId;
+    this.sampled = sampled;
+
+  }
+
+  /**
+   * Create the context of a new trace.
+   *
+   * @return the context of a new sampled trace.
+   */
+  public static TraceContext root() {
+
+    return new TraceContext(randomId(2), randomId(1), true);
+
+  }
+
+  /**
+   * Create the context of a span that is a child of this one.
+   *
+   * @return the context with the same trace and a new span.
+   */
+  public TraceContext child() {
+
+    return new TraceContext(this.traceId, randomId(1), this.sampled);
+
+  }
+
+  /**
+   * Obtain the context defined on a {@code traceparent} header.
+   *
+   * @param traceparent value of the header.
+   *
+   * @return the context of the header, or {@code null} if it is not valid.
+   */
+  public static TraceContext parse(final String traceparent) {
+
+    if (traceparent == null) {
+
+      return null;
+    }
+    final var value = traceparent.trim();
+    if (value.length() < 55 || value.charAt(2) != '-' || value.charAt(35) != '-' || value.charAt(52) != '-'
+        || !isHex(value, 0, 2) || value.startsWith("ff") || !isHex(value, 3, 35) || !isHex(value, 36, 52)
+        || !isHex(value, 53, 55) || value.length() > 55 && (value.startsWith(VERSION) || value.charAt(55) != '-')) {
+
+      return null;
+    }
+
+    final var traceId = value.substring(3, 35);
+    final var spanId = value.substring(36, 52);
+    if (isZero(traceId) || isZero(spanId)) {
+
+      return null;
+    }
+    final var flags = Integer.parseInt(value.substring(53, 55), 16);
+    return new TraceContext(traceId, spanId, (flags & 1) == 1);
+
+  }
+
+  /**
+   * Return the {@code traceparent} header that propagates this context.
+   *
+   * @return the value of the header.
+   */
+  public String toTraceparent() {
+
+    return VERSION + "-" + this.traceId + "-" + this.spanId + (this.sampled ? "-01" : "-00");
+
+  }
+
+  /**
+   * Return the context of the operation that is running.
+   *
+   * @return the context stored on the current Vert.x context, or {@code null}
+   *         if it is not defined.
+   */
+  public static TraceContext current() {
+
+    final var context = Vertx.currentContext();
+    if (context == null) {
+
+      return null;
+
+    } else {
+
+      return context.getLocal(LOCAL_KEY);
+    }
+
+  }
+
+  /**
+   * Store a context as the one of the operation that is running.
+   *
+   * @param trace the context to store, or {@code null} to remove it.
+   *
+   * @return the context that was stored before, or {@code null} if it was not
+   *         defined or it is not running on a Vert.x context.
+   */
+  public static TraceContext attach(final TraceContext trace) {
+
+    final var context = Vertx.currentContext();
+    if (context == null) {
+
+      return null;
+    }
+
+    final TraceContext previous = context.getLocal(LOCAL_KEY);
+    if (trace == null) {
+
+      context.removeLocal(LOCAL_KEY);
+
+    } else {
+
+      context.putLocal(LOCAL_KEY, trace);
+    }
+    return previous;
+
+  }
+
+  /**
+   * Add the context of the operation that is running to all the messages that
+   * are sent on the event bus of a Vert.x instance. Thus the service proxies
+   * propagate the context that is running when each message is sent, and not
+   * the one that was running when the proxy was created. The interceptor is
+   * added only once per Vert.x instance.
+   *
+   * @param vertx instance to propagate the context.
+   *
+   * @see #stamp(DeliveryContext)
+   */
+  public static void propagate(final Vertx vertx) {
+
+    if (vertx.sharedData().getLocalMap(PROPAGATE_KEY).putIfAbsent(PROPAGATE_KEY, true) == null) {
+
+      vertx.eventBus().addOutboundInterceptor(TraceContext::stamp);
+    }
+
+  }
+
+  /**
+   * Add the {@code traceparent} header of the operation that is running to a
+   * message that is sent, if it is not already defined.
+   *
+   * @param context of the message that is sent.
+   *
+   * @param <T>     type of the message body.
+   */
+  static <T> void stamp(final DeliveryContext<T> context) {
+
+    final var trace = current();
+    if (trace != null) {
+
+      final var headers = context.message().headers();
+      if (!headers.contains(TRACEPARENT_HEADER)) {
+
+        headers.add(TRACEPARENT_HEADER, trace.toTraceparent());
+      }
+    }
+    context.next();
+
+  }
+
+  /**
+   * Create the binder to register a service that resumes the context
+   * propagated on the received messages, and that propagates it on the
+   * messages that the service sends.
+   *
+   * @param vertx event bus where the service has to be registered.
+   *
+   * @return the binder to register the service.
+   *
+   * @see #propagate(Vertx)
+   */
+  public static ServiceBinder binder(final Vertx vertx) {
+
+    propagate(vertx);
+    return new ServiceBinder(vertx).addInterceptor((owner, interceptorContext, message) -> resume(message));
+
+  }
+
+  /**
+   * Store the context that is propagated on a message as the one of the
+   * operation that is running. If the message does not propagate any context
+   * the stored one is removed, thus it does not continue a previous trace.
+   *
+   * @param message that has been received.
+   *
+   * @return the received message.
+   */
+  public static Future<Message<JsonObject>> resume(final Message<JsonObject> message) {
+
+    attach(parse(message.headers().get(TRACEPARENT_HEADER)));
+    return Future.succeededFuture(message);
+
+  }
+
+  /**
+   * Check that some characters of a value are lowercase hexadecimal digits.
+   *
+   * @param value to check.
+   * @param start index of the first character to check.
+   * @param end   index after the last character to check.
+   *
+   * @return {@code true} if all the characters are hexadecimal digits.
+   */
+  private static boolean isHex(final String value, final int start, final int end) {
+
+    for (var i = start; i < end; i++) {
+
+      final var c = value.charAt(i);
+      if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+
+        return false;
+      }
+    }
+    return true;
+
+  }
+
+  /**
+   * Check if an identifier is only zeros, that is not a valid identifier.
+   *
+   * @param id to check.
+   *
+   * @return {@code true} if all the digits are zero.
+   */
+  private static boolean isZero(final String id) {
+
+    for (var i = 0; i < id.length(); i++) {
+
+      if (id.charAt(i) != '0') {
+
+        return false;
+      }
+    }
+    return true;
+
+  }
+
+  /**
+   * Create a random identifier that is not zero.
+   *
+   * @param longs number of random longs of the identifier.
+   *
+   * @return the hexadecimal digits of the identifier.
+   */
+  private static String randomId(final int longs) {
+
+    final var random = ThreadLocalRandom.current();
+    final var digits = new char[longs * 16];
+    boolean zero;
+    do {
+
+      zero = true;
+      for (var i = 0; i < longs; i++) {
+
+        final var value = random.nextLong();
+        zero &= value == 0;
+        for (var j = 0; j < 16; j++) {
+
+          digits[i * 16 + j] = HEX_DIGITS[(int) (value >>> 60 - 4 * j) & 0xf];
+        }
+      }
+
+    } while (zero);
+    return new String(digits);
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(final Object obj) {
+
+    if (this == obj) {
+
+      return true;
+
+    } else if (!(obj instanceof TraceContext)) {
+
+      return false;
+
+    } else {
+
+      final var other = (TraceContext) obj;
+      return this.sampled == other.sampled && this.traceId.equals(other.traceId) && this.spanId.equals(other.spanId);
+    }
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+
+    return this.traceId.hashCode() * 31 + this.spanId.hashCode();
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+
+    return this.toTraceparent();
+
+  }
+
+}
@@ -0,0 +1,458 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.validation.constraints.NotNull;
+import org.tinylog.Logger;
+
+/**
+ * A timed operation of a distributed trace. The spans are created as children
+ * of the {@link TraceContext} of the operation that is running, and when they
+ * finish they are exported with the names of the OpenTelemetry data model. By
+ * default they are logged as debug messages, but any other exporter can be
+ * defined with {@link #exportTo(Consumer)}. Only the children of a sampled
+ * context are recorded, the other spans do not record nor change the context
+ * of the operation that is running, thus the operations that are not traced
+ * do not pay for it. The tracing can be disabled with the
+ * {@value #TRACING_KEY} configuration.
+ *
+ * @see TraceContext
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class TraceSpan {
+
+  /**
+   * The kind of the spans that manage a request from other component.
+   */
+  public static final String SERVER = "SPAN_KIND_SERVER";
+
+  /**
+   * The kind of the spans that send a request to other component.
+   */
+  public static final String CLIENT = "SPAN_KIND_CLIENT";
+
+  /**
+   * The kind of the spans of the internal operations.
+   */
+  public static final String INTERNAL = "SPAN_KIND_INTERNAL";
+
+  /**
+   * The name of the configuration property that contains the tracing options.
+   */
+  public static final String TRACING_KEY = "tracing";
+
+  /**
+   * The name of the tracing option that enables to record the spans.
+   */
+  public static final String ENABLED_KEY = "enabled";
+
+  /**
+   * This is {@code true} if the spans are recorded when they are children of a
+   * sampled context.
+   */
+  private static volatile boolean enabled = true;
+
+  /**
+   * The function used to export the finished spans.
+   */
+  private static volatile Consumer<TraceSpan> exporter = TraceSpan::log;
+
+  /**
+   * The name of the operation.
+   */
+  public final String name;
+
+  /**
+   * The kind of the span.
+   */
+  public final String kind;
+
+  /**
+   * The context of the span. If the span is not recording it is the context of
+   * the parent, or {@code null} if it is not defined.
+   */
+  public final TraceContext context;
+
+  /**
+   * The identifier of the parent span, or {@code null} if the span is not
+   * recording.
+   */
+  public final String parentSpanId;
+
+  /**
+   * This is {@code true} if the span is recorded when it finishes.
+   */
+  public final boolean recording;
+
+  /**
+   * The attributes that describe the operation.
+   */
+  public final JsonObject attributes = new JsonObject();
+
+  /**
+   * The epoch time in nanoseconds when the span has started.
+   */
+  public final long startTimeUnixNano = System.currentTimeMillis() * 1000000L;
+
+  /**
+   * The nanoseconds when the span has started, to measure its duration.
+   */
+  protected final long start = System.nanoTime();
+
+  /**
+   * The nanoseconds that the operation has taken, or {@code -1} if it has not
+   * finished.
+   */
+  public long duration = -1;
+
+  /**
+   * The error that has made the operation fail, or {@code null} if it has not
+   * failed.
+   */
+  public Throwable error;
+
+  /**
+   * This is {@code true} if the span has finished.
+   */
+  protected final AtomicBoolean ended = new AtomicBoolean(false);
+
+  /**
+   * Create a span.
+   *
+   * @param name   of the operation.
+   * @param kind   of the span.
+   * @param parent context of the parent span, or {@code null} if it is not
+   *               defined.
+   */
+  protected TraceSpan(final String name, final String kind, final TraceContext parent) {
+
+    this.name = name;
+    this.kind = kind;
+    this.recording = enabled && parent != null && parent.sampled;
+    if (this.recording) {
+
+      this.context = parent.child();
+      this.parentSpanId = parent.spanId;
+
+    } else {
+
+      this.context = parent;
+      this.parentSpanId = null;
+    }
+
+  }
+
+  /**
+   * Start a span that is a child of the operation that is running.
+   *
+   * @param name of the operation.
+   * @param kind of the span.
+   *
+   * @return the started span.
+   *
+   * @see TraceContext#current()
+   */
+  public static TraceSpan start(@NotNull final String name, @NotNull final String kind) {
+
+    return start(name, kind, TraceContext.current());
+
+  }
+
+  /**
+   * Start a span.
+   *
+   * @param name   of the operation.
+   * @param kind   of the span.
+   * @param parent context of the parent span, or {@code null} if it is not
+   *               defined.
+   *
+   * @return the started span, that is only recording if the parent is
+   *         sampled.
+   */
+  public static TraceSpan start(@NotNull final String name, @NotNull final String kind, final TraceContext parent) {
+
+    return new TraceSpan(name, kind, parent);
+
+  }
+
+  /**
+   * Configure the tracing.
+   *
+   * @param conf the tracing options, or {@code null} to use the default ones.
+   */
+  public static void configure(final JsonObject conf) {
+
+    enabled = conf == null || conf.getBoolean(ENABLED_KEY, true);
+
+  }
+
+  /**
+   * Define the function used to export the finished spans.
+   *
+   * @param exporter function to export the spans, or {@code null} to log them.
+   */
+  public static void exportTo(final Consumer<TraceSpan> exporter) {
+
+    if (exporter == null) {
+
+      TraceSpan.exporter = TraceSpan::log;
+
+    } else {
+
+      TraceSpan.exporter = exporter;
+    }
+
+  }
+
+  /**
+   * Set an attribute of the span.
+   *
+   * @param key   of the attribute.
+   * @param value of the attribute.
+   *
+   * @return this span.
+   */
+  public TraceSpan attribute(@NotNull final String key, final Object value) {
+
+    if (value != null && this.recording) {
+
+      synchronized (this.attributes) {
+
+        this.attributes.put(key, value);
+      }
+    }
+    return this;
+
+  }
+
+  /**
+   * Store the context of this span as the one of the operation that is
+   * running. If the span is not recording the context is not changed.
+   *
+   * @return the context that was stored before.
+   *
+   * @see TraceContext#attach(TraceContext)
+   */
+  public TraceContext attach() {
+
+    if (this.recording) {
+
+      return TraceContext.attach(this.context);
+
+    } else {
+
+      return TraceContext.current();
+    }
+
+  }
+
+  /**
+   * Run an action as a child of this span. The context of the span is the one
+   * of the operation that is running while the action is called.
+   *
+   * @param action to run.
+   */
+  public void run(@NotNull final Runnable action) {
+
+    final var previous = this.attach();
+    try {
+
+      action.run();
+
+    } finally {
+
+      TraceContext.attach(previous);
+    }
+
+  }
+
+  /**
+   * Call an asynchronous operation as a child of this span, that finishes when
+   * the operation finishes.
+   *
+   * @param operation to call.
+   *
+   * @param <T>       type of the result of the operation.
+   *
+   * @return the result of the operation.
+   */
+  public <T> Future<T> call(@NotNull final Supplier<Future<T>> operation) {
+
+    Future<T> result;
+    final var previous = this.attach();
+    try {
+
+      result = operation.get();
+
+    } catch (final Throwable cause) {
+
+      result = Future.failedFuture(cause);
+
+    } finally {
+
+      TraceContext.attach(previous);
+    }
+    return result.onComplete(done -> this.end(done.cause()));
+
+  }
+
+  /**
+   * Trace an asynchronous operation with a span that is a child of the
+   * operation that is running.
+   *
+   * @param name      of the operation.
+   * @param operation to call.
+   *
+   * @param <T>       type of the result of the operation.
+   *
+   * @return the result of the operation.
+   */
+  public static <T> Future<T> trace(@NotNull final String name, @NotNull final Supplier<Future<T>> operation) {
+
+    return start(name, INTERNAL).call(operation);
+
+  }
+
+  /**
+   * Return a handler that finishes this span before calling another handler.
+   *
+   * @param handler to call when the span finishes.
+   *
+   * @param <T>     type of the result to handle.
+   *
+   * @return the handler that finishes the span.
+   */
+  public <T> Handler<AsyncResult<T>> ending(@NotNull final Handler<AsyncResult<T>> handler) {
+
+    return result -> {
+
+      this.end(result.cause());
+      handler.handle(result);
+    };
+
+  }
+
+  /**
+   * Finish the span successfully.
+   */
+  public void end() {
+
+    this.end(null);
+
+  }
+
+  /**
+   * Finish the span. Only the first time that it is called has effect.
+   *
+   * @param error that has made the operation fail, or {@code null} if it has
+   *              not failed.
+   */
+  public void end(final Throwable error) {
+
+    if (this.ended.compareAndSet(false, true)) {
+
+      this.duration = System.nanoTime() - this.start;
+      this.error = error;
+      if (this.recording) {
+
+        try {
+
+          exporter.accept(this);
+
+        } catch (final Throwable cause) {
+
+          Logger.trace(cause, "Cannot export the span {}", this.name);
+        }
+      }
+    }
+
+  }
+
+  /**
+   * Return the span with the names of the OpenTelemetry data model. The
+   * identifiers are only defined if the span is recording.
+   *
+   * @return the JSON representation of the span.
+   */
+  public JsonObject toJson() {
+
+    final var json = new JsonObject();
+    if (this.recording) {
+
+      json.put("traceId", this.context.traceId).put("spanId", this.context.spanId).put("parentSpanId",
+          this.parentSpanId);
+    }
+    json.put("name", this.name).put("kind", this.kind).put("startTimeUnixNano", this.startTimeUnixNano);
+    if (this.duration >= 0) {
+
+      json.put("endTimeUnixNano", this.startTimeUnixNano + this.duration);
+    }
+    synchronized (this.attributes) {
+
+      json.put("attributes", this.attributes.copy());
+    }
+    final var status = new JsonObject();
+    if (this.error == null) {
+
+      status.put("code", "STATUS_CODE_UNSET");
+
+    } else {
+
+      status.put("code", "STATUS_CODE_ERROR").put("message", String.valueOf(this.error.getMessage()));
+    }
+    json.put("status", status);
+    return json;
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+
+    return this.toJson().encode();
+
+  }
+
+  /**
+   * Log a finished span as a debug message.
+   *
+   * @param span to log.
+   */
+  protected static void log(final TraceSpan span) {
+
+    if (Logger.isDebugEnabled()) {
+
+      Logger.debug("Span {}", span);
+    }
+
+  }
+
+}
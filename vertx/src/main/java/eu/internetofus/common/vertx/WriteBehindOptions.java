@@ -0,0 +1,107 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * The options of the queues that store the documents in batches.
+ *
+ * @see WriteBehindQueue
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class WriteBehindOptions {
+
+  /**
+   * The default maximum number of documents to store on each bulk write.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 500;
+
+  /**
+   * The name of the configuration property that contains the maximum number of
+   * documents to store on each bulk write.
+   */
+  public static final String BATCH_SIZE_KEY = "batchSize";
+
+  /**
+   * The default maximum milliseconds that a document waits before it is stored.
+   */
+  public static final long DEFAULT_MAX_DELAY = 100;
+
+  /**
+   * The name of the configuration property that contains the maximum
+   * milliseconds that a document waits before it is stored.
+   */
+  public static final String MAX_DELAY_KEY = "maxDelay";
+
+  /**
+   * The default maximum number of documents that can be waiting or storing.
+   */
+  public static final int DEFAULT_CAPACITY = 10000;
+
+  /**
+   * The name of the configuration property that contains the maximum number of
+   * documents that can be waiting or storing.
+   */
+  public static final String CAPACITY_KEY = "capacity";
+
+  /**
+   * The maximum number of documents to store on each bulk write.
+   */
+  public int batchSize = DEFAULT_BATCH_SIZE;
+
+  /**
+   * The maximum milliseconds that a document waits before it is stored.
+   */
+  public long maxDelay = DEFAULT_MAX_DELAY;
+
+  /**
+   * The maximum number of documents that can be waiting or storing. When it is
+   * reached the new documents are rejected.
+   */
+  public int capacity = DEFAULT_CAPACITY;
+
+  /**
+   * Create the default write-behind options.
+   */
+  public WriteBehindOptions() {
+
+  }
+
+  /**
+   * Create the write-behind options defined on a configuration.
+   *
+   * @param conf configuration with the write-behind options.
+   */
+  public WriteBehindOptions(final JsonObject conf) {
+
+    if (conf != null) {
+
+      this.batchSize = Math.max(1, conf.getInteger(BATCH_SIZE_KEY, DEFAULT_BATCH_SIZE));
+      this.maxDelay = Math.max(1, conf.getLong(MAX_DELAY_KEY, DEFAULT_MAX_DELAY));
+      this.capacity = Math.max(this.batchSize, conf.getInteger(CAPACITY_KEY, DEFAULT_CAPACITY));
+    }
+
+  }
+
+}
@@ -0,0 +1,509 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import com.mongodb.MongoBulkWriteException;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.mongo.BulkOperation;
+import io.vertx.ext.mongo.BulkWriteOptions;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import javax.validation.constraints.NotNull;
+import org.bson.types.ObjectId;
+import org.tinylog.Logger;
+
+/**
+ * A queue that stores the documents of a collection in batches. The documents
+ * are inserted with a bulk write when the batch is full or when the first
+ * document of the batch has waited the maximum delay. The number of documents
+ * that are waiting or storing is bounded, and when the queue is full the new
+ * documents are rejected until it is drained.
+ *
+ * @see Repository#storeOneDocumentBehind(String, JsonObject,
+ *      java.util.function.Function)
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class WriteBehindQueue implements Shareable {
+
+  /**
+   * The name of the local map where the queues are shared.
+   */
+  public static final String SHARED_MAP_NAME = "eu.internetofus.common.vertx.WriteBehindQueue";
+
+  /**
+   * The event bus that is using.
+   */
+  protected final Vertx vertx;
+
+  /**
+   * The pool of database connections.
+   */
+  protected final RepositoryStorage pool;
+
+  /**
+   * The name of the collection where the documents are stored.
+   */
+  protected final String collectionName;
+
+  /**
+   * The options of the queue.
+   */
+  protected final WriteBehindOptions options;
+
+  /**
+   * The documents that are waiting to be stored.
+   */
+  protected List<Entry> pending = new ArrayList<>();
+
+  /**
+   * The bulk writes that are executing.
+   */
+  protected final Set<Future<Void>> writing = new LinkedHashSet<>();
+
+  /**
+   * The number of documents that are waiting or storing.
+   */
+  protected int size;
+
+  /**
+   * The identifier of the timer that stores the pending documents, or
+   * {@code -1} if it is not set.
+   */
+  protected long timerId = -1;
+
+  /**
+   * The handler to call when the queue is not full.
+   */
+  protected Handler<Void> drainHandler;
+
+  /**
+   * This is {@code true} if the queue does not accept more documents.
+   */
+  protected boolean closed;
+
+  /**
+   * A document that is waiting to be stored.
+   */
+  protected static class Entry {
+
+    /**
+     * The document to store.
+     */
+    final JsonObject document;
+
+    /**
+     * The promise to inform when the document is stored.
+     */
+    final Promise<String> promise = Promise.promise();
+
+    /**
+     * Create the entry of a document.
+     *
+     * @param document to store.
+     */
+    Entry(final JsonObject document) {
+
+      this.document = document;
+    }
+
+  }
+
+  /**
+   * Create a new queue.
+   *
+   * @param vertx          event bus to use.
+   * @param pool           to the database.
+   * @param collectionName name of the collection where the documents are
+   *                       stored.
+   * @param options        of the queue.
+   */
+  public WriteBehindQueue(@NotNull final Vertx vertx, @NotNull final RepositoryStorage pool,
+      @NotNull final String collectionName, @NotNull final WriteBehindOptions options) {
+
+    this.vertx = vertx;
+    this.pool = pool;
+    this.collectionName = collectionName;
+    this.options = options;
+
+  }
+
+  /**
+   * The queues and their options of the pools of a Vert.x instance.
+   */
+  protected static class Registry implements Shareable {
+
+    /**
+     * The options of the queues of each pool.
+     */
+    final Map<RepositoryStorage, WriteBehindOptions> options = new IdentityHashMap<>();
+
+    /**
+     * The queues of each pool by the name of their collection.
+     */
+    final Map<RepositoryStorage, Map<String, WriteBehindQueue>> queues = new IdentityHashMap<>();
+
+  }
+
+  /**
+   * Obtain the registry of the queues of a Vert.x instance.
+   *
+   * @param vertx event bus where the queues are shared.
+   *
+   * @return the registry of the queues of the instance.
+   */
+  protected static Registry registryOf(@NotNull final Vertx vertx) {
+
+    return vertx.sharedData().<String, Registry>getLocalMap(SHARED_MAP_NAME).computeIfAbsent(SHARED_MAP_NAME,
+        key -> new Registry());
+
+  }
+
+  /**
+   * Change the options of the queues of a pool that are created after it.
+   *
+   * @param vertx   event bus where the queues are shared.
+   * @param pool    to the database.
+   * @param options of the queues of the pool.
+   */
+  public static void configure(@NotNull final Vertx vertx, @NotNull final RepositoryStorage pool,
+      @NotNull final WriteBehindOptions options) {
+
+    final var registry = registryOf(vertx);
+    synchronized (registry) {
+
+      registry.options.put(pool, options);
+    }
+
+  }
+
+  /**
+   * Obtain the queue of a collection that is shared by all the repositories
+   * that store the documents on the same pool. The queue is created with the
+   * options configured for the pool, or with the default ones if they are not
+   * configured.
+   *
+   * @param vertx          event bus to use.
+   * @param pool           to the database.
+   * @param collectionName name of the collection where the documents are
+   *                       stored.
+   *
+   * @return the queue of the collection on the pool.
+   *
+   * @see #configure(Vertx, RepositoryStorage, WriteBehindOptions)
+   */
+  public static WriteBehindQueue shared(@NotNull final Vertx vertx, @NotNull final RepositoryStorage pool,
+      @NotNull final String collectionName) {
+
+    final var registry = registryOf(vertx);
+    synchronized (registry) {
+
+      final var options = registry.options.getOrDefault(pool, new WriteBehindOptions());
+      return registry.queues.computeIfAbsent(pool, key -> new HashMap<>()).computeIfAbsent(collectionName,
+          key -> new WriteBehindQueue(vertx, pool, collectionName, options));
+    }
+
+  }
+
+  /**
+   * Close the shared queues of a pool, after storing their pending documents.
+   * The queues of the other pools are not modified.
+   *
+   * @param vertx event bus where the queues are shared.
+   * @param pool  to the database whose queues has to be closed.
+   *
+   * @return the future that will be completed when all the documents are
+   *         stored.
+   */
+  @SuppressWarnings("rawtypes")
+  public static Future<Void> closeAll(@NotNull final Vertx vertx, @NotNull final RepositoryStorage pool) {
+
+    final var registry = registryOf(vertx);
+    final Map<String, WriteBehindQueue> queues;
+    synchronized (registry) {
+
+      registry.options.remove(pool);
+      queues = registry.queues.remove(pool);
+    }
+    final List<Future> futures = new ArrayList<>();
+    if (queues != null) {
+
+      for (final var queue : queues.values()) {
+
+        futures.add(queue.close());
+      }
+    }
+    return CompositeFuture.join(futures).<Void>mapEmpty().otherwiseEmpty();
+
+  }
+
+  /**
+   * Add a document to store. If the document does not have an identifier a new
+   * one is generated.
+   *
+   * @param document to store.
+   *
+   * @return the future identifier of the stored document. It fails with a
+   *         {@link RejectedExecutionException} if the queue is full.
+   *
+   * @see #writeQueueFull()
+   * @see #drainHandler(Handler)
+   */
+  public Future<String> insert(@NotNull final JsonObject document) {
+
+    final var entry = new Entry(document);
+    List<Entry> batch = null;
+    synchronized (this) {
+
+      if (this.closed) {
+
+        return Future.failedFuture(
+            new RejectedExecutionException("The write-behind queue of '" + this.collectionName + "' is closed."));
+
+      } else if (this.size >= this.options.capacity) {
+
+        return Future.failedFuture(
+            new RejectedExecutionException("The write-behind queue of '" + this.collectionName + "' is full."));
+      }
+
+      if (document.getValue("_id") == null) {
+
+        document.put("_id", new ObjectId().toHexString());
+      }
+      this.pending.add(entry);
+      this.size++;
+      if (this.pending.size() >= this.options.batchSize) {
+
+        batch = this.takePending();
+
+      } else if (this.timerId < 0) {
+
+        this.timerId = this.vertx.setTimer(this.options.maxDelay, id -> this.writePending());
+      }
+    }
+
+    if (batch != null) {
+
+      this.write(batch);
+    }
+    return entry.promise.future();
+
+  }
+
+  /**
+   * Check if the queue can not accept more documents.
+   *
+   * @return {@code true} if the queue is full.
+   */
+  public synchronized boolean writeQueueFull() {
+
+    return this.size >= this.options.capacity;
+
+  }
+
+  /**
+   * Set the handler to call when the queue is full and it has been drained to
+   * the half of its capacity. The handler is called only once.
+   *
+   * @param handler to call when the queue accepts documents again.
+   *
+   * @return this queue.
+   */
+  public synchronized WriteBehindQueue drainHandler(final Handler<Void> handler) {
+
+    this.drainHandler = handler;
+    return this;
+
+  }
+
+  /**
+   * Store all the pending documents.
+   *
+   * @return the future that will be completed when all the documents that has
+   *         been added are stored.
+   */
+  public Future<Void> flush() {
+
+    this.writePending();
+    synchronized (this) {
+
+      return this.whenWritten();
+    }
+
+  }
+
+  /**
+   * Store all the pending documents and reject the new ones.
+   *
+   * @return the future that will be completed when all the documents that has
+   *         been added are stored.
+   */
+  public Future<Void> close() {
+
+    synchronized (this) {
+
+      this.closed = true;
+    }
+    return this.flush();
+
+  }
+
+  /**
+   * Return the future that will be completed when the executing bulk writes
+   * finish.
+   *
+   * @return the future of the executing writes.
+   */
+  @SuppressWarnings("rawtypes")
+  protected Future<Void> whenWritten() {
+
+    final List<Future> futures = new ArrayList<>(this.writing);
+    return CompositeFuture.join(futures).<Void>mapEmpty().otherwiseEmpty();
+
+  }
+
+  /**
+   * Store the documents that are waiting.
+   */
+  protected void writePending() {
+
+    final List<Entry> batch;
+    synchronized (this) {
+
+      batch = this.takePending();
+    }
+    if (!batch.isEmpty()) {
+
+      this.write(batch);
+    }
+
+  }
+
+  /**
+   * Remove the documents that are waiting.
+   *
+   * @return the documents that were waiting.
+   */
+  protected List<Entry> takePending() {
+
+    if (this.timerId >= 0) {
+
+      this.vertx.cancelTimer(this.timerId);
+      this.timerId = -1;
+    }
+    final var batch = this.pending;
+    this.pending = new ArrayList<>();
+    return batch;
+
+  }
+
+  /**
+   * Insert a batch of documents.
+   *
+   * @param batch with the documents to insert.
+   */
+  protected void write(final List<Entry> batch) {
+
+    final var operations = new ArrayList<BulkOperation>(batch.size());
+    for (final var entry : batch) {
+
+      operations.add(BulkOperation.createInsert(entry.document));
+    }
+    final Promise<Void> written = Promise.promise();
+    synchronized (this) {
+
+      this.writing.add(written.future());
+    }
+    this.pool.bulkWrite(this.collectionName, operations, new BulkWriteOptions().setOrdered(false))
+        .onComplete(result -> {
+
+          final var errors = new HashMap<Integer, String>();
+          final var cause = result.cause();
+          if (cause instanceof MongoBulkWriteException) {
+
+            for (final var error : ((MongoBulkWriteException) cause).getWriteErrors()) {
+
+              errors.put(error.getIndex(), error.getMessage());
+            }
+          }
+
+          if (result.failed() && errors.isEmpty()) {
+
+            Logger.error(cause, "Cannot store a batch of {} documents on '{}'.", () -> batch.size(),
+                () -> this.collectionName);
+            for (final var entry : batch) {
+
+              entry.promise.fail(cause);
+            }
+
+          } else {
+
+            final var max = batch.size();
+            for (var i = 0; i < max; i++) {
+
+              final var entry = batch.get(i);
+              final var error = errors.get(i);
+              if (error == null) {
+
+                entry.promise.complete(entry.document.getString("_id"));
+
+              } else {
+
+                entry.promise.fail(error);
+              }
+            }
+          }
+
+          Handler<Void> drain = null;
+          synchronized (this) {
+
+            this.size -= batch.size();
+            this.writing.remove(written.future());
+            if (this.drainHandler != null && this.size <= this.options.capacity / 2) {
+
+              drain = this.drainHandler;
+              this.drainHandler = null;
+            }
+          }
+          written.complete();
+          if (drain != null) {
+
+            drain.handle(null);
+          }
+
+        });
+
+  }
+
+}
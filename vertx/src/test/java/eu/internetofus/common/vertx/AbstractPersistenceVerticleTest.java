@@ -23,11 +23,13 @@ package eu.internetofus.common.vertx;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
 
 import eu.internetofus.common.test.MongoContainer;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
 import io.vertx.core.json.JsonObject;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
@@ -87,8 +89,9 @@ public class AbstractPersistenceVerticleTest {
   @BeforeEach
   public void setDefaultMocks(final Vertx vertx) {
 
-    doReturn(new JsonObject().put("persistence", container.getMongoDBConfig())).when(this.verticle).config();
-    doReturn(vertx).when(this.verticle).getVertx();
+    lenient().doReturn(new JsonObject().put("persistence", container.getMongoDBConfig())).when(this.verticle)
+        .config();
+    lenient().doReturn(vertx).when(this.verticle).getVertx();
 
   }
 
@@ -124,8 +127,10 @@ public class AbstractPersistenceVerticleTest {
     this.verticle.start(startPromise);
     startPromise.future().onComplete(testContext.succeeding(empty -> testContext.verify(() -> {
 
-      assertThat(this.verticle.pool).isNotNull();
+      assertThat(this.verticle.storage).isNotNull();
+      assertThat(this.verticle.pool).isNotNull().isSameAs(MongoRepositoryStorage.poolOf(this.verticle.storage));
       this.verticle.stop();
+      assertThat(this.verticle.storage).isNull();
       assertThat(this.verticle.pool).isNull();
       this.verticle.stop();
       testContext.completeNow();
@@ -133,4 +138,83 @@ public class AbstractPersistenceVerticleTest {
 
   }
 
+  /**
+   * Check that the verticle does not wait for the indexes by default.
+   *
+   * @param testContext context of the test.
+   */
+  @Test
+  public void shouldNotWaitIndexesByDefault(final VertxTestContext testContext) {
+
+    this.verticle.waitIndexes(Promise.<Void>promise().future()).onComplete(testContext.succeedingThenComplete());
+
+  }
+
+  /**
+   * Check that the verticle waits for the indexes until the timeout expires.
+   *
+   * @param testContext context of the test.
+   */
+  @Test
+  public void shouldWaitIndexesUntilTimeout(final VertxTestContext testContext) {
+
+    this.verticle.config().getJsonObject("persistence").put("indexes",
+        new JsonObject().put(AbstractPersistenceVerticle.INDEXES_TIMEOUT_KEY, 100));
+    final var start = System.currentTimeMillis();
+    final Promise<Void> provisioned = Promise.promise();
+    this.verticle.waitIndexes(provisioned.future()).onComplete(testContext.succeeding(any -> testContext.verify(() -> {
+
+      assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(100);
+      assertThat(provisioned.future().isComplete()).isFalse();
+      testContext.completeNow();
+    })));
+
+  }
+
+  /**
+   * Check that the pools of the memory backend share the collections.
+   *
+   * @param testContext context of the test.
+   */
+  @Test
+  public void shouldCreateMemoryPools(final VertxTestContext testContext) {
+
+    final var conf = new JsonObject().put(AbstractPersistenceVerticle.BACKEND_KEY,
+        AbstractPersistenceVerticle.MEMORY_BACKEND);
+    final var pool = this.verticle.createStorage(conf);
+    final var readPool = this.verticle.createStorage(conf, "read", new ReadPreferenceOptions());
+    assertThat(MongoRepositoryStorage.poolOf(pool)).isNull();
+    pool.insert("models", new JsonObject().put("_id", "1"))
+        .compose(id -> readPool.count("models", new JsonObject(), null))
+        .onComplete(testContext.succeeding(count -> testContext.verify(() -> {
+
+          assertThat(count).isEqualTo(1L);
+          testContext.completeNow();
+        })));
+
+  }
+
+  /**
+   * Check that the commands and the connections pool of the driver are measured
+   * when the metrics are enabled.
+   *
+   * @param testContext context of the test.
+   */
+  @Test
+  public void shouldCreateMeasuredPool(final VertxTestContext testContext) {
+
+    final var vertx = Vertx.vertx(new VertxOptions(new JsonObject().put("metricsOptions",
+        new JsonObject().put("enabled", true).put("prometheusOptions", new JsonObject().put("enabled", true)))));
+    doReturn(vertx).when(this.verticle).getVertx();
+    final var pool = this.verticle.createPool(this.verticle.config().getJsonObject("persistence"), "measured");
+    pool.count("models", new JsonObject()).onComplete(testContext.succeeding(count -> testContext.verify(() -> {
+
+      final var registry = PersistenceMetrics.registryOf(vertx);
+      assertThat(registry.get("mongodb.driver.pool.size").gauge()).isNotNull();
+      assertThat(registry.get("mongodb.driver.commands").timers()).isNotEmpty();
+      pool.close().compose(closed -> vertx.close()).onComplete(testContext.succeedingThenComplete());
+    })));
+
+  }
+
 }
@@ -24,6 +24,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import java.util.Arrays;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EmptySource;
@@ -248,4 +249,79 @@ public class AggregationBuilderTest {
 
   }
 
+  /**
+   * Should project the paths without collisions.
+   *
+   * @see AggregationBuilder#project(Iterable)
+   */
+  @Test
+  public void shouldCreateCommandWithProject() {
+
+    assertThat(new AggregationBuilder().project(Arrays.asList("a.b.c", "a.b", "d", "a.bc", "d")).build())
+        .isEqualTo(new JsonArray().add(new JsonObject().put("$project",
+            new JsonObject().put("d", 1).put("a.b", 1).put("a.bc", 1))));
+
+  }
+
+  /**
+   * Should project the unwound element, its indexes and the sort fields.
+   *
+   * @see AggregationBuilder#projectElement(JsonObject, String...)
+   */
+  @Test
+  public void shouldCreateCommandWithProjectElement() {
+
+    final var order = new JsonObject().put("a.b.index", -1).put("name", 1);
+    assertThat(new AggregationBuilder().projectElement(order, "a", "b").build())
+        .isEqualTo(new JsonArray().add(new JsonObject().put("$project", new JsonObject().put("a.b", 1)
+            .put("name", 1).put("aIndex", 1).put("bIndex", 1))));
+
+  }
+
+  /**
+   * Should calculate the total and the page on the same stage.
+   *
+   * @see AggregationBuilder#facetPage(JsonArray)
+   */
+  @Test
+  public void shouldCreateCommandWithFacetPage() {
+
+    final var pagePipeline = new AggregationBuilder().sort(null, 0, 10).build();
+    assertThat(new AggregationBuilder().match(new JsonObject().put("id", "value")).facetPage(pagePipeline).build()
+        .getJsonObject(1)).isEqualTo(new JsonObject().put("$facet",
+            new JsonObject()
+                .put(AggregationBuilder.FACET_TOTAL,
+                    new JsonArray().add(new JsonObject().put("$count", AggregationBuilder.FACET_TOTAL)))
+                .put(AggregationBuilder.FACET_MODELS, pagePipeline)));
+
+  }
+
+  /**
+   * Should append stages.
+   *
+   * @see AggregationBuilder#append(JsonArray)
+   */
+  @Test
+  public void shouldAppendStages() {
+
+    final var stages = new JsonArray().add(new JsonObject().put("$limit", 1));
+    assertThat(new AggregationBuilder().append(null).append(stages).build()).isEqualTo(stages);
+
+  }
+
+  /**
+   * Should project some fields of the unwound element.
+   *
+   * @see AggregationBuilder#projectElement(JsonObject, JsonObject, String...)
+   */
+  @Test
+  public void shouldCreateCommandWithProjectElementFields() {
+
+    assertThat(new AggregationBuilder().projectElement(null, new JsonObject().put("name", 1).put("id", 1), "a")
+        .build())
+        .isEqualTo(new JsonArray().add(new JsonObject().put("$project",
+            new JsonObject().put("a.id", 1).put("aIndex", 1).put("a.name", 1))));
+
+  }
+
 }
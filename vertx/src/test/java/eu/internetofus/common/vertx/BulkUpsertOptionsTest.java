@@ -0,0 +1,62 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the {@link BulkUpsertOptions}.
+ *
+ * @see BulkUpsertOptions
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class BulkUpsertOptionsTest {
+
+  /**
+   * Check the default options.
+   */
+  @Test
+  public void shouldCreateDefaultOptions() {
+
+    final var options = new BulkUpsertOptions(null);
+    assertThat(options.batchSize).isEqualTo(BulkUpsertOptions.DEFAULT_BATCH_SIZE);
+    assertThat(options.ordered).isFalse();
+
+  }
+
+  /**
+   * Check the options defined on a configuration.
+   */
+  @Test
+  public void shouldCreateOptionsFromConfiguration() {
+
+    final var options = new BulkUpsertOptions(
+        new JsonObject().put(BulkUpsertOptions.BATCH_SIZE_KEY, -1).put(BulkUpsertOptions.ORDERED_KEY, true));
+    assertThat(options.batchSize).isEqualTo(1);
+    assertThat(options.ordered).isTrue();
+
+  }
+
+}
@@ -0,0 +1,222 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.junit5.VertxExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * Test the {@link ComponentClientMetrics}.
+ *
+ * @see ComponentClientMetrics
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+@ExtendWith(VertxExtension.class)
+public class ComponentClientMetricsTest {
+
+  /**
+   * Should share the metrics of a Vert.x instance.
+   *
+   * @param vertx event bus to use.
+   */
+  @Test
+  public void shouldShareMetrics(final Vertx vertx) {
+
+    assertThat(ComponentClientMetrics.shared(vertx)).isSameAs(ComponentClientMetrics.shared(vertx));
+
+  }
+
+  /**
+   * Should obtain the destination of an URL.
+   */
+  @Test
+  public void shouldObtainDestination() {
+
+    assertThat(ComponentClientMetrics.destinationOf("http://localhost:8080/profiles/1?x=2"))
+        .isEqualTo("http://localhost:8080");
+    assertThat(ComponentClientMetrics.destinationOf("https://wenet.eu?x=2")).isEqualTo("https://wenet.eu");
+    assertThat(ComponentClientMetrics.destinationOf("https://wenet.eu")).isEqualTo("https://wenet.eu");
+    assertThat(ComponentClientMetrics.destinationOf(null)).isEmpty();
+
+  }
+
+  /**
+   * Should measure the requests by destination and method.
+   */
+  @Test
+  public void shouldMeasureRequests() {
+
+    final var registry = new SimpleMeterRegistry();
+    final var metrics = new ComponentClientMetrics(registry);
+    metrics.start(HttpMethod.GET, "http://localhost:8080/profiles/1").stop(Future.succeededFuture());
+    metrics.start(HttpMethod.GET, "http://localhost:8080/profiles/2").stop(Future.failedFuture("Not found"));
+    metrics.start(HttpMethod.HEAD, "http://localhost:8081/tasks/1").stop(Future.succeededFuture());
+
+    assertThat(registry.get("wenet.component.request").tags("destination", "http://localhost:8080", "method", "GET")
+        .timers()).hasSize(2).allMatch(timer -> timer.count() == 1);
+    assertThat(registry.get("wenet.component.request")
+        .tags("destination", "http://localhost:8080", "method", "GET", "outcome", "error").timer().count())
+        .isEqualTo(1);
+    assertThat(registry.get("wenet.component.request").tags("destination", "http://localhost:8081", "method", "HEAD")
+        .timer().count()).isEqualTo(1);
+    assertThat(registry.get("wenet.component.requests.in.flight").tag("destination", "http://localhost:8080").gauge()
+        .value()).isEqualTo(0);
+
+  }
+
+  /**
+   * Should count the requests that wait for a connection.
+   */
+  @Test
+  public void shouldMeasurePoolWaits() {
+
+    final var registry = new SimpleMeterRegistry();
+    final var metrics = new ComponentClientMetrics(registry);
+    metrics.configure(new ComponentClientOptions(new JsonObject().put(ComponentClientOptions.PROTOCOL_VERSION_KEY,
+        "HTTP_1_1").put(ComponentClientOptions.MAX_POOL_SIZE_KEY, 1)));
+    final Promise<Void> first = Promise.promise();
+    final Promise<Void> second = Promise.promise();
+    metrics.start(HttpMethod.GET, "http://localhost:8080/profiles/1").stop(first.future());
+    metrics.start(HttpMethod.GET, "http://localhost:8080/profiles/2").stop(second.future());
+
+    final var destination = "http://localhost:8080";
+    assertThat(registry.get("wenet.component.requests.in.flight").tag("destination", destination).gauge().value())
+        .isEqualTo(2);
+    assertThat(registry.get("wenet.component.pool.wait.queue.size").tag("destination", destination).gauge().value())
+        .isEqualTo(1);
+    assertThat(registry.get("wenet.component.pool.waits").tag("destination", destination).counter().count())
+        .isEqualTo(1);
+    assertThat(registry.get("wenet.component.pool.capacity").tag("destination", destination).gauge().value())
+        .isEqualTo(1);
+
+    first.complete();
+    second.complete();
+    assertThat(registry.get("wenet.component.requests.in.flight").tag("destination", destination).gauge().value())
+        .isEqualTo(0);
+    assertThat(registry.get("wenet.component.pool.wait.queue.size").tag("destination", destination).gauge().value())
+        .isEqualTo(0);
+    assertThat(registry.get("wenet.component.pool.waits").tag("destination", destination).counter().count())
+        .isEqualTo(1);
+
+  }
+
+  /**
+   * Should measure the pool waits with the capacity of the negotiated protocol.
+   */
+  @Test
+  public void shouldMeasurePoolWaitsWithNegotiatedProtocol() {
+
+    final var registry = new SimpleMeterRegistry();
+    final var metrics = new ComponentClientMetrics(registry);
+    metrics.configure(new ComponentClientOptions(new JsonObject().put(ComponentClientOptions.PROTOCOL_VERSION_KEY,
+        "HTTP_2").put(ComponentClientOptions.MAX_POOL_SIZE_KEY, 1)));
+    final var destination = "http://localhost:8080";
+    final Promise<HttpResponse<Void>> first = Promise.promise();
+    metrics.start(HttpMethod.GET, "http://localhost:8080/profiles/1").stop(first.future());
+    metrics.start(HttpMethod.GET, "http://localhost:8080/profiles/2").stop(Promise.promise().future());
+    final var capacity = registry.get("wenet.component.pool.capacity").tag("destination", destination).gauge();
+    assertThat(capacity.value()).isEqualTo(1);
+    assertThat(registry.get("wenet.component.pool.waits").tag("destination", destination).counter().count())
+        .isEqualTo(1);
+
+    final HttpResponse<Void> response = mock(HttpResponse.class);
+    doReturn(HttpVersion.HTTP_2).when(response).version();
+    first.complete(response);
+    assertThat(capacity.value()).isEqualTo(
+        ComponentClientOptions.DEFAULT_HTTP2_MAX_POOL_SIZE * ComponentClientOptions.DEFAULT_HTTP2_MULTIPLEXING_LIMIT);
+    assertThat(registry.get("wenet.component.pool.wait.queue.size").tag("destination", destination).gauge().value())
+        .isEqualTo(0);
+
+  }
+
+  /**
+   * Should not measure the requests when the metrics are disabled or there is no
+   * context.
+   */
+  @Test
+  public void shouldNotMeasureWhenDisabled() {
+
+    final var metrics = new ComponentClientMetrics(new SimpleMeterRegistry());
+    metrics.configure(new ComponentClientOptions(new JsonObject().put(ComponentClientOptions.METRICS_KEY, false)));
+    assertThat(metrics.start(HttpMethod.GET, "http://localhost:8080")).isNull();
+    assertThat(ComponentClientMetrics.startOnCurrentContext(HttpMethod.GET, "http://localhost:8080")).isNull();
+    final var result = Future.succeededFuture();
+    assertThat(ComponentClientMetrics.stop(null, result)).isSameAs(result);
+
+  }
+
+  /**
+   * Should count the requests that share the response of one in flight.
+   */
+  @Test
+  public void shouldMeasureCoalescedRequests() {
+
+    final var registry = new SimpleMeterRegistry();
+    final var metrics = new ComponentClientMetrics(registry);
+    metrics.coalesced("http://localhost:8080/profiles/1", false);
+    metrics.coalesced("http://localhost:8080/profiles/1", true);
+    metrics.coalesced("http://localhost:8080/profiles/1", true);
+
+    assertThat(registry.get("wenet.component.coalesce.hits").tag("destination", "http://localhost:8080").counter()
+        .count()).isEqualTo(2);
+    assertThat(registry.get("wenet.component.coalesce.misses").tag("destination", "http://localhost:8080").counter()
+        .count()).isEqualTo(1);
+
+  }
+
+  /**
+   * Should count the lookups and refreshes of the caches.
+   */
+  @Test
+  public void shouldMeasureCaches() {
+
+    final var registry = new SimpleMeterRegistry();
+    final var metrics = new ComponentClientMetrics(registry);
+    metrics.cacheLookup("http://localhost:8080/api", "head", "/profiles", ComponentClientMetrics.CACHE_HIT);
+    metrics.cacheLookup("http://localhost:8080/api", "head", "/profiles", ComponentClientMetrics.CACHE_HIT);
+    metrics.cacheLookup("http://localhost:8080/api", "head", "/profiles", ComponentClientMetrics.CACHE_STALE);
+    metrics.cacheRefresh("http://localhost:8080/api", "head", "/profiles");
+
+    final var tags = new String[] { "destination", "http://localhost:8080", "cache", "head", "path", "/profiles" };
+    assertThat(registry.get("wenet.component.cache.lookups").tags(tags).tag("result", "hit").counter().count())
+        .isEqualTo(2);
+    assertThat(registry.get("wenet.component.cache.lookups").tags(tags).tag("result", "stale").counter().count())
+        .isEqualTo(1);
+    assertThat(registry.get("wenet.component.cache.refreshes").tags(tags).counter().count()).isEqualTo(1);
+
+  }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClientOptions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the {@link ComponentClientOptions}.
+ *
+ * @see ComponentClientOptions
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class ComponentClientOptionsTest {
+
+  /**
+   * Should use the default values when the configuration is not defined.
+   */
+  @Test
+  public void shouldUseDefaultValues() {
+
+    final var options = new ComponentClientOptions(null);
+    assertThat(options.protocolVersion).isEqualTo(ComponentClientOptions.DEFAULT_PROTOCOL_VERSION);
+    assertThat(options.http2ClearTextUpgrade).isTrue();
+    assertThat(options.maxPoolSize).isEqualTo(ComponentClientOptions.DEFAULT_MAX_POOL_SIZE);
+    assertThat(options.http2MaxPoolSize).isEqualTo(ComponentClientOptions.DEFAULT_HTTP2_MAX_POOL_SIZE);
+    assertThat(options.http2MultiplexingLimit).isEqualTo(ComponentClientOptions.DEFAULT_HTTP2_MULTIPLEXING_LIMIT);
+    assertThat(options.keepAliveTimeout).isEqualTo(ComponentClientOptions.DEFAULT_KEEP_ALIVE_TIMEOUT);
+    assertThat(options.keepAlive).isTrue();
+    assertThat(options.useAlpn).isNull();
+    assertThat(options.maxWaitQueueSize).isEqualTo(ComponentClientOptions.DEFAULT_MAX_WAIT_QUEUE_SIZE);
+    assertThat(options.metrics).isTrue();
+    assertThat(options.isHttp2()).isFalse();
+    assertThat(options.keepAliveTimeout).isLessThan(60);
+    assertThat(options.capacity(HttpVersion.HTTP_1_1)).isEqualTo(ComponentClientOptions.DEFAULT_MAX_POOL_SIZE);
+    assertThat(options.capacity(HttpVersion.HTTP_2)).isEqualTo(ComponentClientOptions.DEFAULT_MAX_POOL_SIZE);
+
+  }
+
+  /**
+   * Should load the values of the configuration.
+   */
+  @Test
+  public void shouldLoadConfiguration() {
+
+    final var conf = new JsonObject().put(ComponentClientOptions.PROTOCOL_VERSION_KEY, "HTTP_1_1")
+        .put(ComponentClientOptions.MAX_POOL_SIZE_KEY, 8).put(ComponentClientOptions.KEEP_ALIVE_TIMEOUT_KEY, 0)
+        .put(ComponentClientOptions.METRICS_KEY, false);
+    final var options = new ComponentClientOptions(conf);
+    assertThat(options.isHttp2()).isFalse();
+    assertThat(options.capacity(HttpVersion.HTTP_1_1)).isEqualTo(8);
+    assertThat(options.metrics).isFalse();
+
+    final var webClientOptions = options.applyTo(new WebClientOptions(conf));
+    assertThat(webClientOptions.getProtocolVersion()).isEqualTo(HttpVersion.HTTP_1_1);
+    assertThat(webClientOptions.getMaxPoolSize()).isEqualTo(8);
+    assertThat(webClientOptions.isKeepAlive()).isFalse();
+
+  }
+
+  /**
+   * Should use the default protocol when the configured one is not valid.
+   */
+  @Test
+  public void shouldUseDefaultProtocolWhenNotValid() {
+
+    final var options = new ComponentClientOptions(
+        new JsonObject().put(ComponentClientOptions.PROTOCOL_VERSION_KEY, "undefined"));
+    assertThat(options.protocolVersion).isEqualTo(ComponentClientOptions.DEFAULT_PROTOCOL_VERSION);
+
+  }
+
+  /**
+   * Should tune the web client for HTTP/2.
+   */
+  @Test
+  public void shouldApplyHttp2() {
+
+    final var options = new ComponentClientOptions(
+        new JsonObject().put(ComponentClientOptions.PROTOCOL_VERSION_KEY, "HTTP_2"));
+    assertThat(options.capacity(HttpVersion.HTTP_2)).isEqualTo(
+        ComponentClientOptions.DEFAULT_HTTP2_MAX_POOL_SIZE * ComponentClientOptions.DEFAULT_HTTP2_MULTIPLEXING_LIMIT);
+    assertThat(options.capacity(HttpVersion.HTTP_1_1)).isEqualTo(ComponentClientOptions.DEFAULT_MAX_POOL_SIZE);
+    final var webClientOptions = options.applyTo(new WebClientOptions().setSsl(true));
+    assertThat(webClientOptions.getProtocolVersion()).isEqualTo(HttpVersion.HTTP_2);
+    assertThat(webClientOptions.isHttp2ClearTextUpgrade()).isTrue();
+    assertThat(webClientOptions.isUseAlpn()).isTrue();
+    assertThat(webClientOptions.getHttp2MaxPoolSize()).isEqualTo(ComponentClientOptions.DEFAULT_HTTP2_MAX_POOL_SIZE);
+    assertThat(webClientOptions.getHttp2MultiplexingLimit())
+        .isEqualTo(ComponentClientOptions.DEFAULT_HTTP2_MULTIPLEXING_LIMIT);
+    assertThat(webClientOptions.getMaxWaitQueueSize()).isEqualTo(ComponentClientOptions.DEFAULT_MAX_WAIT_QUEUE_SIZE);
+
+  }
+
+  /**
+   * Should not replace the values defined on the configuration.
+   */
+  @Test
+  public void shouldKeepConfiguredValues() {
+
+    final var conf = new JsonObject().put(ComponentClientOptions.PROTOCOL_VERSION_KEY, "HTTP_2")
+        .put(ComponentClientOptions.KEEP_ALIVE_KEY, false).put(ComponentClientOptions.USE_ALPN_KEY, false)
+        .put(ComponentClientOptions.MAX_WAIT_QUEUE_SIZE_KEY, -1).put("ssl", true);
+    final var options = new ComponentClientOptions(conf);
+    assertThat(options.keepAlive).isFalse();
+    assertThat(options.useAlpn).isFalse();
+
+    final var webClientOptions = options.applyTo(new WebClientOptions(conf));
+    assertThat(webClientOptions.isKeepAlive()).isFalse();
+    assertThat(webClientOptions.isUseAlpn()).isFalse();
+    assertThat(webClientOptions.getMaxWaitQueueSize()).isEqualTo(-1);
+
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the {@link ComponentClientResilienceOptions}.
+ *
+ * @see ComponentClientResilienceOptions
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class ComponentClientResilienceOptionsTest {
+
+  /**
+   * Should use the default values when the configuration is not defined.
+   */
+  @Test
+  public void shouldUseDefaultValues() {
+
+    final var options = ComponentClientResilienceOptions.forComponent(null, "profileManager");
+    assertThat(options.timeout).isEqualTo(ComponentClientResilienceOptions.DEFAULT_TIMEOUT).isZero();
+    assertThat(options.adaptiveTimeoutFactor).isZero();
+    assertThat(options.failureThreshold).isEqualTo(ComponentClientResilienceOptions.DEFAULT_FAILURE_THRESHOLD)
+        .isZero();
+    assertThat(options.openTimeout).isEqualTo(ComponentClientResilienceOptions.DEFAULT_OPEN_TIMEOUT);
+    assertThat(options.halfOpenProbes).isEqualTo(ComponentClientResilienceOptions.DEFAULT_HALF_OPEN_PROBES);
+    assertThat(options.maxConcurrency).isEqualTo(ComponentClientResilienceOptions.DEFAULT_MAX_CONCURRENCY);
+    assertThat(options.hedge).isFalse();
+
+  }
+
+  /**
+   * Should redefine the options for a component.
+   */
+  @Test
+  public void shouldRedefineOptionsForComponent() {
+
+    final var conf = new JsonObject().put(ComponentClientResilienceOptions.RESILIENCE_KEY,
+        new JsonObject().put(ComponentClientResilienceOptions.TIMEOUT_KEY, 5000)
+            .put(ComponentClientResilienceOptions.MAX_CONCURRENCY_KEY, 10)
+            .put("socialContextBuilder", new JsonObject().put(ComponentClientResilienceOptions.TIMEOUT_KEY, 60000)
+                .put(ComponentClientResilienceOptions.HEDGE_KEY, true)));
+
+    final var profileManager = ComponentClientResilienceOptions.forComponent(conf, "profileManager");
+    assertThat(profileManager.timeout).isEqualTo(5000L);
+    assertThat(profileManager.maxConcurrency).isEqualTo(10);
+    assertThat(profileManager.hedge).isFalse();
+
+    final var socialContextBuilder = ComponentClientResilienceOptions.forComponent(conf, "socialContextBuilder");
+    assertThat(socialContextBuilder.timeout).isEqualTo(60000L);
+    assertThat(socialContextBuilder.maxConcurrency).isEqualTo(10);
+    assertThat(socialContextBuilder.hedge).isTrue();
+
+  }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import eu.internetofus.common.vertx.ComponentClientResilience.CircuitState;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the {@link ComponentClientResilience}.
+ *
+ * @see ComponentClientResilience
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class ComponentClientResilienceTest {
+
+  /**
+   * Should open the circuit after the consecutive failures and close it after a
+   * successful probe.
+   *
+   * @throws InterruptedException if the test is interrupted.
+   */
+  @Test
+  public void shouldOpenAndCloseCircuit() throws InterruptedException {
+
+    final var options = new ComponentClientResilienceOptions();
+    options.failureThreshold = 2;
+    options.openTimeout = 50;
+    final var resilience = new ComponentClientResilience(options);
+    assertThat(resilience.tryAcquire()).isNull();
+    resilience.release(false, 10);
+    assertThat(resilience.getState()).isEqualTo(CircuitState.CLOSED);
+    assertThat(resilience.tryAcquire()).isNull();
+    resilience.release(false, 10);
+    assertThat(resilience.getState()).isEqualTo(CircuitState.OPEN);
+    final var rejected = resilience.tryAcquire();
+    assertThat(rejected).isNotNull();
+    assertThat(rejected.failureCode()).isEqualTo(503);
+    assertThat(rejected.getDebugInfo().getString(ComponentClientResilience.REASON)).isEqualTo("open");
+
+    Thread.sleep(100);
+    assertThat(resilience.tryAcquire()).isNull();
+    assertThat(resilience.getState()).isEqualTo(CircuitState.HALF_OPEN);
+    assertThat(resilience.tryAcquire().getDebugInfo().getString(ComponentClientResilience.REASON))
+        .isEqualTo("half_open");
+    resilience.release(true, 10);
+    assertThat(resilience.getState()).isEqualTo(CircuitState.CLOSED);
+
+  }
+
+  /**
+   * Should open again the circuit when the probe fails.
+   *
+   * @throws InterruptedException if the test is interrupted.
+   */
+  @Test
+  public void shouldOpenCircuitWhenProbeFails() throws InterruptedException {
+
+    final var options = new ComponentClientResilienceOptions();
+    options.failureThreshold = 1;
+    options.openTimeout = 50;
+    final var resilience = new ComponentClientResilience(options);
+    assertThat(resilience.tryAcquire()).isNull();
+    resilience.release(false, 10);
+    Thread.sleep(100);
+    assertThat(resilience.tryAcquire()).isNull();
+    resilience.release(false, 10);
+    assertThat(resilience.getState()).isEqualTo(CircuitState.OPEN);
+    assertThat(resilience.tryAcquire()).isNotNull();
+
+  }
+
+  /**
+   * Should bound the concurrent requests.
+   */
+  @Test
+  public void shouldBoundConcurrency() {
+
+    final var options = new ComponentClientResilienceOptions();
+    options.maxConcurrency = 2;
+    final var resilience = new ComponentClientResilience(options);
+    assertThat(resilience.tryAcquire()).isNull();
+    assertThat(resilience.tryAcquire()).isNull();
+    assertThat(resilience.tryAcquire().getDebugInfo().getString(ComponentClientResilience.REASON))
+        .isEqualTo("concurrency");
+    resilience.release(true, 10);
+    assertThat(resilience.tryAcquire()).isNull();
+
+  }
+
+  /**
+   * Should adapt the deadlines and the hedge delay to the observed latency.
+   */
+  @Test
+  public void shouldAdaptToLatency() {
+
+    final var options = new ComponentClientResilienceOptions();
+    options.minSamples = 10;
+    options.adaptiveTimeoutFactor = 2;
+    options.minTimeout = 100;
+    options.timeout = 1000;
+    options.hedge = true;
+    options.hedgePercentile = 0.5;
+    options.hedgeMinDelay = 5;
+    final var resilience = new ComponentClientResilience(options);
+    assertThat(resilience.timeout()).isEqualTo(1000L);
+    assertThat(resilience.hedgeDelay()).isNegative();
+
+    for (var i = 1; i <= 100; i++) {
+
+      assertThat(resilience.tryAcquire()).isNull();
+      resilience.release(true, i);
+    }
+    assertThat(resilience.latencyPercentile(0.5)).isEqualTo(50L);
+    assertThat(resilience.latencyPercentile(0.99)).isEqualTo(99L);
+    assertThat(resilience.timeout()).isEqualTo(198L);
+    assertThat(resilience.hedgeDelay()).isEqualTo(50L);
+
+    options.adaptiveTimeoutFactor = 20;
+    assertThat(resilience.timeout()).isEqualTo(1000L);
+
+  }
+
+  /**
+   * Should count the latencies on a histogram that is exact for the small
+   * latencies and bounds the error of the big ones.
+   */
+  @Test
+  public void shouldObtainPercentilesFromHistogram() {
+
+    final var options = new ComponentClientResilienceOptions();
+    options.minSamples = 1;
+    final var resilience = new ComponentClientResilience(options);
+    for (var i = 0; i < ComponentClientResilience.LATENCY_WINDOW; i++) {
+
+      resilience.release(true, 10000);
+    }
+    assertThat(resilience.latencyPercentile(0.5)).isBetween(10000L, 10000L + 10000L / 16);
+    for (var i = 0; i < ComponentClientResilience.LATENCY_WINDOW; i++) {
+
+      resilience.release(true, 20);
+    }
+    assertThat(resilience.latencyPercentile(1)).isEqualTo(20L);
+
+    for (var millis = 0L; millis < 1000000L; millis += 7) {
+
+      final var bucket = ComponentClientResilience.bucketOf(millis);
+      assertThat(ComponentClientResilience.maxLatencyOf(bucket)).isBetween(millis, millis + millis / 16);
+    }
+    assertThat(ComponentClientResilience.maxLatencyOf(ComponentClientResilience.bucketOf(Long.MAX_VALUE)))
+        .isEqualTo(Long.MAX_VALUE);
+
+  }
+
+  /**
+   * Should observe the latency of the requests that fail by their deadline.
+   */
+  @Test
+  public void shouldObserveLatencyOfTimedOutRequests() {
+
+    final var options = new ComponentClientResilienceOptions();
+    options.minSamples = 2;
+    final var resilience = new ComponentClientResilience(options);
+    resilience.release(false, 10, 0);
+    resilience.release(false, 10, 50);
+    assertThat(resilience.latencyPercentile(1)).isNegative();
+    resilience.release(false, 50, 50);
+    resilience.release(false, 60, 50);
+    assertThat(resilience.latencyPercentile(0)).isEqualTo(50L);
+    assertThat(resilience.latencyPercentile(1)).isEqualTo(60L);
+
+  }
+
+  /**
+   * Should the hedged requests take a place of the bounded concurrency.
+   */
+  @Test
+  public void shouldBoundHedgedRequests() {
+
+    final var options = new ComponentClientResilienceOptions();
+    options.maxConcurrency = 2;
+    final var resilience = new ComponentClientResilience(options);
+    assertThat(resilience.tryAcquire()).isNull();
+    assertThat(resilience.tryAcquireHedge()).isTrue();
+    assertThat(resilience.tryAcquireHedge()).isFalse();
+    assertThat(resilience.tryAcquire()).isNotNull();
+    resilience.releaseHedge();
+    assertThat(resilience.tryAcquireHedge()).isTrue();
+
+  }
+
+}
@@ -21,10 +21,14 @@
 package eu.internetofus.common.vertx;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.Mockito.doReturn;
 
+import eu.internetofus.common.model.ErrorMessage;
 import eu.internetofus.common.model.ErrorMessageTest;
 import eu.internetofus.common.model.Model;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
@@ -37,8 +41,11 @@ import io.vertx.ext.web.client.WebClient;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
 import io.vertx.serviceproxy.ServiceException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.ws.rs.core.Response.Status;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -46,6 +53,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.tinylog.Logger;
 
 /**
  * Test the {@link ComponentClient}
@@ -489,7 +497,9 @@ public class ComponentClientTest {
       "https://localhost:8080/,a/:/b/c:d,https://localhost:8080/a/b/c/d",
       "https://localhost:8080/,/a/:b / d /:/c,https://localhost:8080/a/b%20/%20d%20/c",
       "https://localhost:8080,/a/b/c/,https://localhost:8080/a/b/c/",
-      "https://localhost:8080/,/a/b/c/,https://localhost:8080/a/b/c/" })
+      "https://localhost:8080/,/a/b/c/,https://localhost:8080/a/b/c/",
+      "https://localhost:8080,a:\u00e9\u20ac,https://localhost:8080/a/%c3%a9%e2%82%ac",
+      "https://localhost:8080,a:b?c=d,https://localhost:8080/a/b%3fc%3dd" })
   public void shouldCreateAbsoluteUrlWith(final String componentURL, final String values, final String expectedURL,
       final Vertx vertx, final WebClient client, final VertxTestContext testContext) {
 
@@ -948,4 +958,366 @@ public class ComponentClientTest {
 
   }
 
+  /**
+   * Verify that the identical get requests that are in flight at the same time
+   * share the same response.
+   *
+   * @param vertx       platform that manage the event bus.
+   * @param client      to use.
+   * @param testContext context that manage the test.
+   */
+  @Test
+  public void shouldCoalesceIdenticalGets(final Vertx vertx, final WebClient client,
+      final VertxTestContext testContext) {
+
+    final var requests = new AtomicInteger();
+    vertx.createHttpServer().requestHandler(request -> {
+
+      requests.incrementAndGet();
+      vertx.setTimer(100, id -> {
+        final var response = request.response();
+        response.putHeader("content-type", "application/json");
+        response.end(new JsonObject().put("id", "1").encode());
+      });
+
+    }).listen(0, "localhost", testContext.succeeding(server -> {
+
+      final var service = new ComponentClient(client, "http://localhost:" + server.actualPort() + "/api");
+      final var first = service.getJsonObject("models", "1");
+      final var second = service.getJsonObject("models", "1");
+      final var other = service.getJsonObject("models", "2");
+      CompositeFuture.all(first, second, other)
+          .onComplete(testContext.succeeding(all -> testContext.verify(() -> {
+
+            server.close();
+            assertThat(requests.get()).isEqualTo(2);
+            assertThat(first.result()).isEqualTo(second.result()).isNotSameAs(second.result());
+            assertThat(service.inFlightRequests).isEmpty();
+            testContext.completeNow();
+
+          })));
+
+    }));
+
+  }
+
+  /**
+   * Verify that the posts are not coalesced.
+   *
+   * @param vertx       platform that manage the event bus.
+   * @param client      to use.
+   * @param testContext context that manage the test.
+   */
+  @Test
+  public void shouldNotCoalescePosts(final Vertx vertx, final WebClient client, final VertxTestContext testContext) {
+
+    final var requests = new AtomicInteger();
+    vertx.createHttpServer().requestHandler(request -> {
+
+      requests.incrementAndGet();
+      vertx.setTimer(100, id -> {
+        final var response = request.response();
+        response.putHeader("content-type", "application/json");
+        response.end(new JsonObject().encode());
+      });
+
+    }).listen(0, "localhost", testContext.succeeding(server -> {
+
+      final var service = new ComponentClient(client, "http://localhost:" + server.actualPort() + "/api");
+      CompositeFuture.all(service.post(new JsonObject(), "models"), service.post(new JsonObject(), "models"))
+          .onComplete(testContext.succeeding(all -> testContext.verify(() -> {
+
+            server.close();
+            assertThat(requests.get()).isEqualTo(2);
+            testContext.completeNow();
+
+          })));
+
+    }));
+
+  }
+
+  /**
+   * Verify that a request fails when the component does not answer before the
+   * deadline.
+   *
+   * @param vertx       platform that manage the event bus.
+   * @param client      to use.
+   * @param testContext context that manage the test.
+   */
+  @Test
+  public void shouldFailWhenDeadlineExpires(final Vertx vertx, final WebClient client,
+      final VertxTestContext testContext) {
+
+    vertx.createHttpServer().requestHandler(request -> {
+
+      vertx.setTimer(1000, id -> request.response().end(new JsonObject().encode()));
+
+    }).listen(0, "localhost", testContext.succeeding(server -> {
+
+      final var conf = new JsonObject().put("component", "http://localhost:" + server.actualPort() + "/api")
+          .put(ComponentClientResilienceOptions.RESILIENCE_KEY,
+              new JsonObject().put(ComponentClientResilienceOptions.TIMEOUT_KEY, 100));
+      final var service = new ComponentClient(client, conf, "component", null);
+      service.getJsonObject("models", "1").onComplete(testContext.failing(error -> testContext.verify(() -> {
+
+        server.close();
+        testContext.completeNow();
+
+      })));
+
+    }));
+
+  }
+
+  /**
+   * Verify that the requests are rejected when the circuit to the component is
+   * open.
+   *
+   * @param vertx       platform that manage the event bus.
+   * @param client      to use.
+   * @param testContext context that manage the test.
+   */
+  @Test
+  public void shouldRejectWhenCircuitIsOpen(final Vertx vertx, final WebClient client,
+      final VertxTestContext testContext) {
+
+    final var requests = new AtomicInteger();
+    vertx.createHttpServer().requestHandler(request -> {
+
+      requests.incrementAndGet();
+      request.response().setStatusCode(Status.INTERNAL_SERVER_ERROR.getStatusCode()).end();
+
+    }).listen(0, "localhost", testContext.succeeding(server -> {
+
+      final var conf = new JsonObject().put("component", "http://localhost:" + server.actualPort() + "/api")
+          .put(ComponentClientResilienceOptions.RESILIENCE_KEY,
+              new JsonObject().put(ComponentClientResilienceOptions.FAILURE_THRESHOLD_KEY, 1));
+      final var service = new ComponentClient(client, conf, "component", null);
+      service.getJsonObject("models", "1").onComplete(testContext.failing(first -> {
+
+        service.getJsonObject("models", "1").onComplete(testContext.failing(error -> testContext.verify(() -> {
+
+          server.close();
+          assertThat(requests.get()).isEqualTo(1);
+          assertThat(error).isInstanceOf(ServiceException.class);
+          assertThat(((ServiceException) error).failureCode()).isEqualTo(Status.SERVICE_UNAVAILABLE.getStatusCode());
+          testContext.completeNow();
+
+        })));
+
+      }));
+
+    }));
+
+  }
+
+  /**
+   * Verify that a model is decoded directly from the response.
+   *
+   * @param vertx       platform that manage the event bus.
+   * @param client      to use.
+   * @param testContext context that manage the test.
+   */
+  @Test
+  public void shouldGetModel(final Vertx vertx, final WebClient client, final VertxTestContext testContext) {
+
+    final var expected = new ErrorMessage("code", "message");
+    vertx.createHttpServer().requestHandler(request -> {
+
+      request.response().putHeader("content-type", "application/json").end(expected.toBuffer());
+
+    }).listen(0, "localhost", testContext.succeeding(server -> {
+
+      final var service = new ComponentClient(client, "http://localhost:" + server.actualPort() + "/api");
+      service.getModel(ErrorMessage.class, null, "errors", "1")
+          .onComplete(testContext.succeeding(model -> testContext.verify(() -> {
+
+            server.close();
+            assertThat(model).isEqualTo(expected);
+            testContext.completeNow();
+
+          })));
+
+    }));
+
+  }
+
+  /**
+   * Verify that fails to get a model if the response is not valid.
+   *
+   * @param vertx       platform that manage the event bus.
+   * @param client      to use.
+   * @param testContext context that manage the test.
+   */
+  @Test
+  public void shouldNotGetInvalidModel(final Vertx vertx, final WebClient client, final VertxTestContext testContext) {
+
+    vertx.createHttpServer().requestHandler(request -> {
+
+      request.response().putHeader("content-type", "application/json").end("[]");
+
+    }).listen(0, "localhost", testContext.succeeding(server -> {
+
+      final var service = new ComponentClient(client, "http://localhost:" + server.actualPort() + "/api");
+      service.getModel(ErrorMessage.class, null, "errors", "1")
+          .onComplete(testContext.failing(error -> testContext.verify(() -> {
+
+            server.close();
+            assertThat(error).isInstanceOf(DecodeException.class);
+            testContext.completeNow();
+
+          })));
+
+    }));
+
+  }
+
+  /**
+   * Should create the absolute URL with a template.
+   *
+   * @param vertx  platform that manage the event bus.
+   * @param client to use.
+   */
+  @Test
+  public void shouldCreateAbsoluteUrlWithTemplate(final Vertx vertx, final WebClient client) {
+
+    final var componentClient = new ComponentClient(client, "https://localhost:8080/");
+    final var template = ComponentPathTemplate.of("/tasks/{taskId}/transactions/{transactionId}");
+    assertThat(componentClient.createAbsoluteUrlWith(template, "1", "a b"))
+        .isEqualTo("https://localhost:8080/tasks/1/transactions/a%20b");
+
+  }
+
+  /**
+   * Should not create the action identifier if the trace messages are not
+   * logged.
+   */
+  @Test
+  public void shouldCreateTracedActionIdOnlyWhenTraceIsEnabled() {
+
+    final var service = new ComponentClient(null, null);
+    final var actionId = service.createTracedActionId(HttpMethod.GET, "http://localhost", null);
+    if (Logger.isTraceEnabled()) {
+
+      assertThat(actionId).contains("GET", "http://localhost");
+
+    } else {
+
+      assertThat(actionId).isNull();
+    }
+
+  }
+
+  /**
+   * Should apply an operation to the distinct identifiers of a batch, with a
+   * bounded number of them in flight.
+   *
+   * @param vertx       platform that manage the event bus.
+   * @param client      to use.
+   * @param testContext context that manage the test.
+   */
+  @Test
+  public void shouldBatch(final Vertx vertx, final WebClient client, final VertxTestContext testContext) {
+
+    final var inFlight = new AtomicInteger();
+    final var maxInFlight = new AtomicInteger();
+    final var requests = new AtomicInteger();
+    vertx.createHttpServer().requestHandler(request -> {
+
+      requests.incrementAndGet();
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      final var id = request.path().substring(request.path().lastIndexOf('/') + 1);
+      vertx.setTimer(20, timer -> {
+
+        inFlight.decrementAndGet();
+        request.response().putHeader("content-type", "application/json")
+            .end(new JsonObject().put("id", id).encode());
+      });
+
+    }).listen(0, "localhost", testContext.succeeding(server -> {
+
+      final var service = new ComponentClient(client, "http://localhost:" + server.actualPort() + "/api");
+      service.batchConcurrency = 2;
+      final var ids = Arrays.asList("4", "1", null, "2", "4", "3", "5");
+      service.batch(ids, id -> service.getJsonObject("models", id).map(model -> model.getString("id")))
+          .onComplete(testContext.succeeding(results -> testContext.verify(() -> {
+
+            server.close();
+            assertThat(results).containsExactly(entry("4", "4"), entry("1", "1"), entry("2", "2"), entry("3", "3"),
+                entry("5", "5"));
+            assertThat(requests.get()).isEqualTo(5);
+            assertThat(maxInFlight.get()).isEqualTo(2);
+            testContext.completeNow();
+
+          })));
+
+    }));
+
+  }
+
+  /**
+   * Should fail a batch when any operation fails, and succeed an empty batch.
+   *
+   * @param vertx       platform that manage the event bus.
+   * @param client      to use.
+   * @param testContext context that manage the test.
+   */
+  @Test
+  public void shouldFailBatch(final Vertx vertx, final WebClient client, final VertxTestContext testContext) {
+
+    final var service = new ComponentClient(client, "http://localhost/api");
+    service.batch(Arrays.asList("1", "2"), id -> "2".equals(id) ? Future.failedFuture("Undefined " + id)
+        : Future.succeededFuture(id)).onComplete(testContext.failing(error -> testContext.verify(() -> {
+
+          assertThat(error.getMessage()).isEqualTo("Undefined 2");
+          service.batch(Arrays.asList((String) null, null), id -> Future.failedFuture("Unexpected"))
+              .onComplete(testContext.succeeding(results -> testContext.verify(() -> {
+
+                assertThat(results).isEmpty();
+                testContext.completeNow();
+              })));
+        })));
+
+  }
+
+  /**
+   * Should propagate the context of the running trace on the requests.
+   *
+   * @param vertx       platform that manage the event bus.
+   * @param client      to use.
+   * @param testContext context that manage the test.
+   */
+  @Test
+  public void shouldPropagateTraceContext(final Vertx vertx, final WebClient client,
+      final VertxTestContext testContext) {
+
+    final var traceparents = new ArrayList<String>();
+    vertx.createHttpServer().requestHandler(request -> {
+
+      traceparents.add(request.getHeader(TraceContext.TRACEPARENT_HEADER));
+      request.response().putHeader("content-type", "application/json").end("{}");
+
+    }).listen(0, "localhost", testContext.succeeding(server -> vertx.getOrCreateContext().runOnContext(any -> {
+
+      final var parent = TraceContext.root();
+      TraceContext.attach(parent);
+      final var service = new ComponentClient(client, "http://localhost:" + server.actualPort() + "/api");
+      service.getJsonObject("models", "1").onComplete(testContext.succeeding(content -> testContext.verify(() -> {
+
+        server.close();
+        assertThat(traceparents).hasSize(1);
+        final var propagated = TraceContext.parse(traceparents.get(0));
+        assertThat(propagated).isNotNull();
+        assertThat(propagated.traceId).isEqualTo(parent.traceId);
+        assertThat(propagated.spanId).isNotEqualTo(parent.spanId);
+        assertThat(TraceContext.current()).isSameAs(parent);
+        testContext.completeNow();
+
+      })));
+
+    })));
+
+  }
+
 }
@@ -27,6 +27,7 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -100,7 +101,7 @@ public class ComponentClientWithCacheTest {
 
     final var defaultUrl = "http://localhost:1234/api";
     final var service = new ComponentClientWithCache(client, new JsonObject(), "api", defaultUrl);
-    service.cache.put("head:" + defaultUrl + "/1", "true");
+    service.cache.put("head:" + defaultUrl + "/1", new ComponentClientWithCache.CachedExistence(true, 300, 0));
     service.headWithCache("1").onComplete(testContext.succeeding(content -> testContext.verify(() -> {
 
       assertThat(content).isTrue();
@@ -110,4 +111,398 @@ public class ComponentClientWithCacheTest {
 
   }
 
-}
\ No newline at end of file
+  /**
+   * Verify that the cached head is removed when the model is removed.
+   *
+   * @param vertx       platform that manage the event bus.
+   * @param client      to use.
+   * @param testContext context that manage the test.
+   */
+  @Test
+  public void shouldInvalidateHeadWhenModelIsRemoved(final Vertx vertx, final WebClient client,
+      final VertxTestContext testContext) {
+
+    final var defaultUrl = "http://localhost:1234/api";
+    final var service = new ComponentClientWithCache(client, new JsonObject(), "api", defaultUrl);
+    service.cache.put("head:" + defaultUrl + "/tasks/1", new ComponentClientWithCache.CachedExistence(true, 300, 0));
+    service.cache.put("head:" + defaultUrl + "/tasks/2", new ComponentClientWithCache.CachedExistence(true, 300, 0));
+    service.cache.put("head:" + defaultUrl + "/other/3", new ComponentClientWithCache.CachedExistence(true, 300, 0));
+    service.invalidateOnChangesOf(vertx, "tasks", "/tasks").completionHandler(testContext.succeeding(registered -> {
+
+      final var address = ModelInvalidations.addressFor("tasks");
+      vertx.eventBus().publish(address,
+          new JsonObject().put(ModelInvalidations.OPERATION, "update").put(ModelInvalidations.ID, "2"));
+      vertx.eventBus().publish(address,
+          new JsonObject().put(ModelInvalidations.OPERATION, "delete").put(ModelInvalidations.ID, "1"));
+      vertx.setTimer(100, timer -> testContext.verify(() -> {
+
+        assertThat(service.cache.asMap()).containsOnlyKeys("head:" + defaultUrl + "/tasks/2",
+            "head:" + defaultUrl + "/other/3");
+        vertx.eventBus().publish(address, new JsonObject().put(ModelInvalidations.OPERATION, "drop"));
+        vertx.setTimer(100, timer2 -> testContext.verify(() -> {
+
+          assertThat(service.cache.asMap()).containsOnlyKeys("head:" + defaultUrl + "/other/3");
+          testContext.completeNow();
+
+        }));
+
+      }));
+
+    }));
+
+  }
+
+  /**
+   * Verify that the cached heads are removed when the configured collections
+   * change.
+   *
+   * @param vertx       platform that manage the event bus.
+   * @param client      to use.
+   * @param testContext context that manage the test.
+   */
+  @Test
+  public void shouldInvalidateOnConfiguredChanges(final Vertx vertx, final WebClient client,
+      final VertxTestContext testContext) {
+
+    final var defaultUrl = "http://localhost:1234/api";
+    final var invalidations = new JsonObject().put("api", new JsonObject().put("tasks", "/tasks")).put("other",
+        new JsonObject().put("other", "/other"));
+    final var conf = new JsonObject().put("cache",
+        new JsonObject().put(ComponentClientWithCache.CACHE_INVALIDATIONS_KEY, invalidations));
+    final var service = new ComponentClientWithCache(client, conf, "api", defaultUrl);
+    service.cache.put("head:" + defaultUrl + "/tasks/1", new ComponentClientWithCache.CachedExistence(true, 300, 0));
+    service.cache.put("head:" + defaultUrl + "/other/3", new ComponentClientWithCache.CachedExistence(true, 300, 0));
+    final var consumers = service.invalidateOnChanges(vertx);
+    assertThat(consumers).hasSize(1);
+    consumers.get(0).completionHandler(testContext.succeeding(registered -> {
+
+      vertx.eventBus().publish(ModelInvalidations.addressFor("other"),
+          new JsonObject().put(ModelInvalidations.OPERATION, "drop"));
+      vertx.eventBus().publish(ModelInvalidations.addressFor("tasks"),
+          new JsonObject().put(ModelInvalidations.OPERATION, "invalidate"));
+      vertx.setTimer(100, timer -> testContext.verify(() -> {
+
+        assertThat(service.cache.asMap()).containsOnlyKeys("head:" + defaultUrl + "/other/3");
+        testContext.completeNow();
+
+      }));
+
+    }));
+
+  }
+
+  /**
+   * Verify that the models of the paths with a policy are cached.
+   *
+   * @param vertx       platform that manage the event bus.
+   * @param client      to use.
+   * @param testContext context that manage the test.
+   */
+  @Test
+  public void shouldGetWithCacheByPolicy(final Vertx vertx, final WebClient client,
+      final VertxTestContext testContext) {
+
+    final var requests = new AtomicInteger();
+    vertx.createHttpServer().requestHandler(request -> {
+      requests.incrementAndGet();
+      final var response = request.response();
+      response.putHeader("content-type", "application/json");
+      response.end(new JsonObject().put("id", "1").encode());
+    }).listen(0, "localhost", testContext.succeeding(server -> {
+
+      final var url = "http://localhost:" + server.actualPort() + "/api";
+      final var conf = new JsonObject().put("api", url).put("cache",
+          new JsonObject().put(ComponentClientWithCache.CACHE_POLICIES_KEY, new JsonObject().put("/models", 60)));
+      final var service = new ComponentClientWithCache(client, conf, "api", "http://undefined");
+      service.getJsonObjectWithCache("/models", "1").compose(first -> {
+
+        first.put("modified", true);
+        return service.getJsonObjectWithCache("/models", "1");
+
+      }).onComplete(testContext.succeeding(second -> testContext.verify(() -> {
+
+        server.close();
+        assertThat(requests.get()).isEqualTo(1);
+        assertThat(second).isEqualTo(new JsonObject().put("id", "1"));
+        service.put(new JsonObject(), "/models", "1");
+        assertThat(service.responses.getIfPresent(url + "/models/1")).isNull();
+        testContext.completeNow();
+
+      })));
+
+    }));
+
+  }
+
+  /**
+   * Verify that the cached models are revalidated with their entity tag.
+   *
+   * @param vertx       platform that manage the event bus.
+   * @param client      to use.
+   * @param testContext context that manage the test.
+   */
+  @Test
+  public void shouldRevalidateWithEtag(final Vertx vertx, final WebClient client,
+      final VertxTestContext testContext) {
+
+    final var notModified = new AtomicInteger();
+    vertx.createHttpServer().requestHandler(request -> {
+      final var response = request.response();
+      response.putHeader("ETag", "\"v1\"");
+      if ("\"v1\"".equals(request.getHeader("If-None-Match"))) {
+
+        notModified.incrementAndGet();
+        response.setStatusCode(304).end();
+
+      } else {
+
+        response.putHeader("content-type", "application/json");
+        response.end(new JsonObject().put("id", "1").encode());
+      }
+    }).listen(0, "localhost", testContext.succeeding(server -> {
+
+      final var url = "http://localhost:" + server.actualPort() + "/api";
+      final var service = new ComponentClientWithCache(client, new JsonObject().put("api", url), "api",
+          "http://undefined");
+      service.getJsonObjectWithCache("/models", "1")
+          .compose(first -> service.getJsonObjectWithCache("/models", "1"))
+          .onComplete(testContext.succeeding(second -> testContext.verify(() -> {
+
+            server.close();
+            assertThat(notModified.get()).isEqualTo(1);
+            assertThat(second).isEqualTo(new JsonObject().put("id", "1"));
+            testContext.completeNow();
+
+          })));
+
+    }));
+
+  }
+
+  /**
+   * Verify that a revalidated model is kept when the {@code 304} does not repeat
+   * the headers of the cached response.
+   *
+   * @param vertx       platform that manage the event bus.
+   * @param client      to use.
+   * @param testContext context that manage the test.
+   */
+  @Test
+  public void shouldKeepRevalidatedResponseWithoutHeaders(final Vertx vertx, final WebClient client,
+      final VertxTestContext testContext) {
+
+    final var notModified = new AtomicInteger();
+    vertx.createHttpServer().requestHandler(request -> {
+      final var response = request.response();
+      if ("\"v1\"".equals(request.getHeader("If-None-Match"))) {
+
+        notModified.incrementAndGet();
+        response.setStatusCode(304).end();
+
+      } else {
+
+        response.putHeader("ETag", "\"v1\"");
+        response.putHeader("content-type", "application/json");
+        response.end(new JsonObject().put("id", "1").encode());
+      }
+    }).listen(0, "localhost", testContext.succeeding(server -> {
+
+      final var url = "http://localhost:" + server.actualPort() + "/api";
+      final var service = new ComponentClientWithCache(client, new JsonObject().put("api", url), "api",
+          "http://undefined");
+      service.getJsonObjectWithCache("/models", "1")
+          .compose(first -> service.getJsonObjectWithCache("/models", "1"))
+          .compose(second -> service.getJsonObjectWithCache("/models", "1"))
+          .onComplete(testContext.succeeding(third -> testContext.verify(() -> {
+
+            server.close();
+            assertThat(notModified.get()).isEqualTo(2);
+            assertThat(third).isEqualTo(new JsonObject().put("id", "1"));
+            assertThat(service.responses.getIfPresent(url + "/models/1").etag).isEqualTo("\"v1\"");
+            testContext.completeNow();
+
+          })));
+
+    }));
+
+  }
+
+  /**
+   * Verify that a response that has to be revalidated is not fresh even if its
+   * path has a policy.
+   *
+   * @param vertx       platform that manage the event bus.
+   * @param client      to use.
+   * @param testContext context that manage the test.
+   */
+  @Test
+  public void shouldRevalidateNoCacheResponsesWithPolicy(final Vertx vertx, final WebClient client,
+      final VertxTestContext testContext) {
+
+    final var requests = new AtomicInteger();
+    vertx.createHttpServer().requestHandler(request -> {
+      requests.incrementAndGet();
+      final var response = request.response();
+      response.putHeader("content-type", "application/json");
+      response.putHeader("Cache-Control", "no-cache, max-age=60");
+      response.end(new JsonObject().put("id", "1").encode());
+    }).listen(0, "localhost", testContext.succeeding(server -> {
+
+      final var url = "http://localhost:" + server.actualPort() + "/api";
+      final var conf = new JsonObject().put("api", url).put("cache",
+          new JsonObject().put(ComponentClientWithCache.CACHE_POLICIES_KEY, new JsonObject().put("/models", 60)));
+      final var service = new ComponentClientWithCache(client, conf, "api", "http://undefined");
+      service.getJsonObjectWithCache("/models", "1")
+          .compose(first -> service.getJsonObjectWithCache("/models", "1"))
+          .onComplete(testContext.succeeding(second -> testContext.verify(() -> {
+
+            server.close();
+            assertThat(requests.get()).isEqualTo(2);
+            assertThat(second).isEqualTo(new JsonObject().put("id", "1"));
+            testContext.completeNow();
+
+          })));
+
+    }));
+
+  }
+
+  /**
+   * Verify that the responses that can not be stored are not cached.
+   *
+   * @param vertx       platform that manage the event bus.
+   * @param client      to use.
+   * @param testContext context that manage the test.
+   */
+  @Test
+  public void shouldNotCacheNoStoreResponses(final Vertx vertx, final WebClient client,
+      final VertxTestContext testContext) {
+
+    vertx.createHttpServer().requestHandler(request -> {
+      final var response = request.response();
+      response.putHeader("content-type", "application/json");
+      response.putHeader("Cache-Control", "private, no-store");
+      response.end(new JsonObject().put("id", "1").encode());
+    }).listen(0, "localhost", testContext.succeeding(server -> {
+
+      final var url = "http://localhost:" + server.actualPort() + "/api";
+      final var conf = new JsonObject().put("api", url).put("cache",
+          new JsonObject().put(ComponentClientWithCache.CACHE_POLICIES_KEY, new JsonObject().put("/models", 60)));
+      final var service = new ComponentClientWithCache(client, conf, "api", "http://undefined");
+      service.getJsonObjectWithCache("/models", "1")
+          .onComplete(testContext.succeeding(model -> testContext.verify(() -> {
+
+            server.close();
+            assertThat(model).isEqualTo(new JsonObject().put("id", "1"));
+            assertThat(service.responses.size()).isZero();
+            testContext.completeNow();
+
+          })));
+
+    }));
+
+  }
+
+  /**
+   * Verify that the policy of the longest path is used.
+   *
+   * @param vertx  platform that manage the event bus.
+   * @param client to use.
+   */
+  @Test
+  public void shouldUseLongestPolicy(final Vertx vertx, final WebClient client) {
+
+    final var defaultUrl = "http://localhost:1234/api";
+    final var conf = new JsonObject().put("cache", new JsonObject().put(ComponentClientWithCache.CACHE_POLICIES_KEY,
+        new JsonObject().put("/models", 60).put("/models/special", 0)));
+    final var service = new ComponentClientWithCache(client, conf, "api", defaultUrl);
+    service.defaultResponsePolicy("/models", 10);
+    service.defaultResponsePolicy("/others", 10);
+    assertThat(service.policyFor(defaultUrl + "/models/1")).isEqualTo(60L);
+    assertThat(service.policyFor(defaultUrl + "/models/special/1")).isEqualTo(0L);
+    assertThat(service.policyFor(defaultUrl + "/modelsX/1")).isNull();
+    assertThat(service.policyFor(defaultUrl + "/others/1")).isEqualTo(10L);
+
+  }
+
+  /**
+   * Verify that the models that are not defined are cached.
+   *
+   * @param vertx       platform that manage the event bus.
+   * @param client      to use.
+   * @param testContext context that manage the test.
+   */
+  @Test
+  public void shouldHeadWithNegativeCache(final Vertx vertx, final WebClient client,
+      final VertxTestContext testContext) {
+
+    final var requests = new AtomicInteger();
+    vertx.createHttpServer().requestHandler(request -> {
+      requests.incrementAndGet();
+      request.response().setStatusCode(404).end();
+    }).listen(0, "localhost", testContext.succeeding(server -> {
+
+      final var url = "http://localhost:" + server.actualPort() + "/api";
+      final var service = new ComponentClientWithCache(client, new JsonObject().put("api", url), "api",
+          "http://undefined");
+      service.headWithCache("/models", "1").compose(first -> {
+
+        assertThat(first).isFalse();
+        return service.headWithCache("/models", "1");
+
+      }).onComplete(testContext.succeeding(second -> testContext.verify(() -> {
+
+        server.close();
+        assertThat(second).isFalse();
+        assertThat(requests.get()).isEqualTo(1);
+        service.post(new JsonObject(), "/models");
+        assertThat(service.cache.size()).isZero();
+        testContext.completeNow();
+
+      })));
+
+    }));
+
+  }
+
+  /**
+   * Verify that a stale cached existence is returned while it is refreshed.
+   *
+   * @param vertx       platform that manage the event bus.
+   * @param client      to use.
+   * @param testContext context that manage the test.
+   */
+  @Test
+  public void shouldHeadWithStaleCacheAndRefresh(final Vertx vertx, final WebClient client,
+      final VertxTestContext testContext) {
+
+    vertx.createHttpServer().requestHandler(request -> {
+      request.response().setStatusCode(404).end();
+    }).listen(0, "localhost", testContext.succeeding(server -> {
+
+      final var url = "http://localhost:" + server.actualPort() + "/api";
+      final var service = new ComponentClientWithCache(client, new JsonObject().put("api", url), "api",
+          "http://undefined");
+      final var key = "head:" + url + "/models/1";
+      service.cache.put(key, new ComponentClientWithCache.CachedExistence(true, 0, 60));
+      service.headWithCache("/models", "1").onComplete(testContext.succeeding(stale -> testContext.verify(() -> {
+
+        assertThat(stale).isTrue();
+        vertx.setTimer(500, timer -> testContext.verify(() -> {
+
+          server.close();
+          final var refreshed = service.cache.getIfPresent(key);
+          assertThat(refreshed).isNotNull();
+          assertThat(refreshed.found).isFalse();
+          assertThat(refreshed.isFresh()).isTrue();
+          testContext.completeNow();
+
+        }));
+
+      })));
+
+    }));
+
+  }
+
+}
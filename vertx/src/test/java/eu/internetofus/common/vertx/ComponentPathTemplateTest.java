@@ -0,0 +1,114 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Test the {@link ComponentPathTemplate}.
+ *
+ * @see ComponentPathTemplate
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class ComponentPathTemplateTest {
+
+  /**
+   * Should expand a template.
+   *
+   * @param base     URL to expand the template.
+   * @param pattern  of the template.
+   * @param values   of the variables separated by :.
+   * @param expected URL.
+   */
+  @ParameterizedTest(name = "Should expand {1} on {0} with {2} to {3}")
+  @CsvSource({ "https://localhost:8080,/profiles,,https://localhost:8080/profiles",
+      "https://localhost:8080/,/profiles/{id},1,https://localhost:8080/profiles/1",
+      "https://localhost:8080,profiles/{id},1,https://localhost:8080/profiles/1",
+      "https://localhost:8080/api,//users//{id}/historic,1,https://localhost:8080/api/users/1/historic",
+      "https://localhost:8080,/profiles/{id}/historic,../1/,https://localhost:8080/profiles/..%2f1%2f/historic",
+      "http://localhost,/tasks/{taskId}/messages/{id},1:2,http://localhost/tasks/1/messages/2",
+      "https://localhost:8080,/profiles/{id},a b\u00f1,https://localhost:8080/profiles/a%20b%c3%b1",
+      "https://localhost:8080,/emojis/{id},\ud83d\ude00,https://localhost:8080/emojis/%f0%9f%98%80" })
+  public void shouldExpand(final String base, final String pattern, final String values, final String expected) {
+
+    final var template = ComponentPathTemplate.compile(pattern);
+    final Object[] args = values == null ? new Object[0] : values.split(":");
+    assertThat(template.variables()).isEqualTo(args.length);
+    assertThat(template.expand(base, args)).isEqualTo(expected);
+
+  }
+
+  /**
+   * Should reuse the compiled templates.
+   */
+  @Test
+  public void shouldReuseTemplates() {
+
+    final var template = ComponentPathTemplate.of("/profiles/{id}");
+    assertThat(ComponentPathTemplate.of("/profiles/{id}")).isSameAs(template);
+    assertThat(template).hasToString("/profiles/{id}");
+
+  }
+
+  /**
+   * Should not expand a template with a wrong number of values.
+   */
+  @Test
+  public void shouldNotExpandWithWrongValues() {
+
+    final var template = ComponentPathTemplate.of("/profiles/{id}");
+    assertThatThrownBy(() -> template.expand("https://localhost:8080")).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> template.expand("https://localhost:8080", "1", "2"))
+        .isInstanceOf(IllegalArgumentException.class);
+
+  }
+
+  /**
+   * Should not compile a template with a variable that is not closed.
+   */
+  @Test
+  public void shouldNotCompileNotClosedVariable() {
+
+    assertThatThrownBy(() -> ComponentPathTemplate.compile("/profiles/{id"))
+        .isInstanceOf(IllegalArgumentException.class);
+
+  }
+
+  /**
+   * Should encode a lone surrogate as the replacement of the UTF-8 encoder.
+   */
+  @Test
+  public void shouldEncodeLoneSurrogate() {
+
+    final var builder = new StringBuilder();
+    ComponentPathTemplate.appendEncodedPath(builder, "a\ud83d");
+    assertThat(builder).hasToString("a%3f");
+
+  }
+
+}
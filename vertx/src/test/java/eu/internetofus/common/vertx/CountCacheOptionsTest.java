@@ -0,0 +1,65 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the {@link CountCacheOptions}.
+ *
+ * @see CountCacheOptions
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class CountCacheOptionsTest {
+
+  /**
+   * Check the default options.
+   */
+  @Test
+  public void shouldCreateDefaultOptions() {
+
+    final var options = new CountCacheOptions(null);
+    assertThat(options.ttl).isEqualTo(CountCacheOptions.DEFAULT_TTL);
+    assertThat(options.size).isEqualTo(CountCacheOptions.DEFAULT_SIZE);
+    assertThat(options.estimate).isEqualTo(CountCacheOptions.DEFAULT_ESTIMATE).isFalse();
+
+  }
+
+  /**
+   * Check the options defined on a configuration.
+   */
+  @Test
+  public void shouldCreateOptionsFromConfiguration() {
+
+    final var options = new CountCacheOptions(new JsonObject().put(CountCacheOptions.TTL_KEY, 0)
+        .put(CountCacheOptions.SIZE_KEY, -1).put(CountCacheOptions.ESTIMATE_KEY, true));
+    assertThat(options.ttl).isEqualTo(0);
+    assertThat(options.size).isEqualTo(1);
+    assertThat(options.estimate).isTrue();
+
+  }
+
+}
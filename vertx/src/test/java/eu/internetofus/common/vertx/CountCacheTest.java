@@ -0,0 +1,198 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the {@link CountCache}.
+ *
+ * @see CountCache
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class CountCacheTest {
+
+  /**
+   * Should reuse a count of an equivalent query.
+   */
+  @Test
+  public void shouldReuseCountOfEquivalentQuery() {
+
+    final var cache = new CountCache(new CountCacheOptions());
+    final var calls = new AtomicInteger();
+    final var first = cache.count("collection", new JsonObject().put("a", 1).put("b", "2"),
+        () -> Future.succeededFuture((long) calls.incrementAndGet()));
+    final var second = cache.count("collection", new JsonObject().put("b", "2").put("a", 1),
+        () -> Future.succeededFuture((long) calls.incrementAndGet()));
+    assertThat(first.result()).isEqualTo(1L);
+    assertThat(second.result()).isEqualTo(1L);
+    assertThat(calls).hasValue(1);
+
+  }
+
+  /**
+   * Should not reuse the counts of other collections or queries.
+   */
+  @Test
+  public void shouldNotReuseCountOfOtherCollectionOrQuery() {
+
+    final var cache = new CountCache(new CountCacheOptions());
+    final var calls = new AtomicInteger();
+    cache.count("collection", new JsonObject().put("a", 1),
+        () -> Future.succeededFuture((long) calls.incrementAndGet()));
+    cache.count("other", new JsonObject().put("a", 1), () -> Future.succeededFuture((long) calls.incrementAndGet()));
+    cache.count("collection", new JsonObject().put("a", "1"),
+        () -> Future.succeededFuture((long) calls.incrementAndGet()));
+    assertThat(calls).hasValue(3);
+
+  }
+
+  /**
+   * Should count again after the collection is invalidated.
+   */
+  @Test
+  public void shouldCountAgainAfterInvalidate() {
+
+    final var cache = new CountCache(new CountCacheOptions());
+    final var calls = new AtomicInteger();
+    cache.count("collection", null, () -> Future.succeededFuture((long) calls.incrementAndGet()));
+    cache.count("other", null, () -> Future.succeededFuture((long) calls.incrementAndGet()));
+    cache.invalidate("collection");
+    assertThat(cache.count("collection", null, () -> Future.succeededFuture((long) calls.incrementAndGet()))
+        .result()).isEqualTo(3L);
+    assertThat(cache.count("other", null, () -> Future.succeededFuture((long) calls.incrementAndGet())).result())
+        .isEqualTo(2L);
+
+  }
+
+  /**
+   * Should not cache a count that has started before an invalidation.
+   */
+  @Test
+  public void shouldNotCacheCountStartedBeforeInvalidate() {
+
+    final var cache = new CountCache(new CountCacheOptions());
+    final Promise<Long> promise = Promise.promise();
+    cache.count("collection", null, () -> promise.future());
+    cache.invalidate("collection");
+    promise.complete(1L);
+    final var calls = new AtomicInteger();
+    cache.count("collection", null, () -> Future.succeededFuture((long) calls.incrementAndGet()));
+    assertThat(calls).hasValue(1);
+
+  }
+
+  /**
+   * Should not cache the failed counts.
+   */
+  @Test
+  public void shouldNotCacheFailedCounts() {
+
+    final var cache = new CountCache(new CountCacheOptions());
+    assertThat(cache.count("collection", null, () -> Future.failedFuture("Error")).failed()).isTrue();
+    assertThat(cache.count("collection", null, () -> Future.succeededFuture(1L)).result()).isEqualTo(1L);
+
+  }
+
+  /**
+   * Should not cache when the time to live is zero.
+   */
+  @Test
+  public void shouldNotCacheWhenDisabled() {
+
+    final var options = new CountCacheOptions();
+    options.ttl = 0;
+    final var cache = new CountCache(options);
+    final var calls = new AtomicInteger();
+    cache.count("collection", null, () -> Future.succeededFuture((long) calls.incrementAndGet()));
+    cache.count("collection", null, () -> Future.succeededFuture((long) calls.incrementAndGet()));
+    cache.invalidate("collection");
+    assertThat(calls).hasValue(2);
+
+  }
+
+  /**
+   * Should estimate only the queries without filter.
+   */
+  @Test
+  public void shouldEstimateOnlyQueriesWithoutFilter() {
+
+    final var estimateOptions = new CountCacheOptions();
+    estimateOptions.estimate = true;
+    final var cache = new CountCache(estimateOptions);
+    assertThat(cache.canEstimate(null, null)).isTrue();
+    assertThat(cache.canEstimate(new JsonObject(), null)).isTrue();
+    assertThat(cache.canEstimate(new JsonObject().put("a", 1), null)).isFalse();
+    assertThat(cache.canEstimate(new JsonObject(), QueryBuilder.caseInsensitiveCollation())).isFalse();
+    assertThat(new CountCache(new CountCacheOptions()).canEstimate(null, null)).isFalse();
+
+  }
+
+  /**
+   * Should normalize the values without depend on the order of the fields.
+   */
+  @Test
+  public void shouldNormalize() {
+
+    final var first = new JsonObject().put("a", new JsonArray().add(new JsonObject().put("x", 1).put("y", 2)))
+        .put("b", "value");
+    final var second = new JsonObject().put("b", "value")
+        .put("a", new JsonArray().add(new JsonObject().put("y", 2).put("x", 1)));
+    assertThat(CountCache.normalize(first)).isEqualTo(CountCache.normalize(second));
+    assertThat(CountCache.normalize(new JsonArray().add(1).add(2)))
+        .isNotEqualTo(CountCache.normalize(new JsonArray().add(2).add(1)));
+    assertThat(CountCache.normalize("1")).isNotEqualTo(CountCache.normalize(1));
+
+  }
+
+  /**
+   * Should share the cache of a Vert.x instance.
+   */
+  @Test
+  public void shouldShareCache() {
+
+    final var vertx = Vertx.vertx();
+    try {
+
+      final var options = new CountCacheOptions();
+      options.ttl = 0;
+      final var cache = CountCache.shared(vertx, options);
+      assertThat(CountCache.shared(vertx)).isSameAs(cache);
+      assertThat(cache.options).isSameAs(options);
+
+    } finally {
+
+      vertx.close();
+    }
+
+  }
+
+}
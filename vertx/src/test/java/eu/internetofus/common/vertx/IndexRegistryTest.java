@@ -0,0 +1,191 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.IndexModel;
+import io.vertx.ext.mongo.IndexOptions;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+/**
+ * Test the {@link IndexRegistry}.
+ *
+ * @see IndexRegistry
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+@ExtendWith({ VertxExtension.class, MockitoExtension.class })
+public class IndexRegistryTest {
+
+  /**
+   * Should share the same registry on a Vert.x instance.
+   *
+   * @param vertx event bus to use.
+   */
+  @Test
+  public void shouldShareRegistry(final Vertx vertx) {
+
+    final var registry = IndexRegistry.shared(vertx);
+    assertThat(IndexRegistry.shared(vertx)).isSameAs(registry);
+    final var other = Vertx.vertx();
+    assertThat(IndexRegistry.shared(other)).isNotSameAs(registry);
+    other.close();
+
+  }
+
+  /**
+   * Should replace an index with the same keys.
+   */
+  @Test
+  public void shouldReplaceIndexWithSameKeys() {
+
+    final var registry = new IndexRegistry();
+    final var keys = new JsonObject().put("name", 1);
+    registry.index("collection", keys, null).index("collection", keys.copy(), new IndexOptions().unique(true))
+        .index("other", keys, null);
+    final var indexes = registry.indexesOf("collection");
+    assertThat(indexes).hasSize(1);
+    assertThat(indexes.get(0).getOptions().isUnique()).isTrue();
+    assertThat(registry.indexesOf("undefined")).isEmpty();
+
+  }
+
+  /**
+   * Should create the indexes of each collection.
+   *
+   * @param pool        mocked storage.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldProvisionIndexes(@Mock final RepositoryStorage pool, final VertxTestContext testContext) {
+
+    final var registry = new IndexRegistry();
+    registry.index("collection", new JsonObject().put("a", 1), null).index("collection",
+        new JsonObject().put("b", -1), null);
+    doReturn(Future.succeededFuture()).when(pool).createIndexes(eq("collection"), any());
+
+    registry.provision(pool).onComplete(testContext.succeeding(any -> testContext.verify(() -> {
+
+      @SuppressWarnings("unchecked")
+      final ArgumentCaptor<List<IndexModel>> models = ArgumentCaptor.forClass(List.class);
+      verify(pool, times(1)).createIndexes(eq("collection"), models.capture());
+      assertThat(models.getValue()).hasSize(2);
+      testContext.completeNow();
+
+    })));
+
+  }
+
+  /**
+   * Should create the indexes one by one when can not create them at once, and
+   * not fail if any can not be created.
+   *
+   * @param pool        mocked storage.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldProvisionIndexesOneByOne(@Mock final RepositoryStorage pool, final VertxTestContext testContext) {
+
+    final var registry = new IndexRegistry();
+    registry.index("collection", new JsonObject().put("a", 1), null).index("collection",
+        new JsonObject().put("b", -1), null);
+    doReturn(Future.failedFuture("Index conflict")).when(pool).createIndexes(eq("collection"), any());
+    doReturn(Future.succeededFuture(), Future.failedFuture("Index conflict")).when(pool)
+        .createIndex(eq("collection"), any(), any());
+
+    registry.provision(pool).onComplete(testContext.succeeding(any -> testContext.verify(() -> {
+
+      verify(pool, times(2)).createIndex(eq("collection"), any(), any());
+      testContext.completeNow();
+
+    })));
+
+  }
+
+  /**
+   * Should report the queries that do a collection scan.
+   *
+   * @param pool        mocked storage.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldExplainQueries(@Mock final RepositoryStorage pool, final VertxTestContext testContext) {
+
+    final var registry = new IndexRegistry();
+    final var query = new JsonObject().put("name", "value");
+    final var sort = new JsonObject().put("name", 1);
+    registry.query("collection", query, sort).query("collection", query.copy(), sort.copy());
+    final var plan = new JsonObject().put("queryPlanner", new JsonObject().put("winningPlan",
+        new JsonObject().put("stage", "SORT").put("inputStages",
+            new JsonArray().add(new JsonObject().put("stage", IndexRegistry.COLLSCAN_STAGE)))));
+    doReturn(Future.succeededFuture(plan)).when(pool).explain(eq("collection"), any(), any());
+
+    registry.explain(pool).onComplete(testContext.succeeding(report -> testContext.verify(() -> {
+
+      assertThat(report).isEqualTo(new JsonArray().add(new JsonObject().put("collection", "collection")
+          .put("query", query).put("sort", sort).put("collscan", true)));
+      verify(pool, times(1)).explain("collection", query, sort);
+      testContext.completeNow();
+
+    })));
+
+  }
+
+  /**
+   * Should not fail if a query can not be explained.
+   *
+   * @param pool        mocked storage.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldNotFailWhenCannotExplainQueries(@Mock final RepositoryStorage pool,
+      final VertxTestContext testContext) {
+
+    final var registry = new IndexRegistry();
+    registry.query("collection", new JsonObject(), null);
+    doReturn(Future.failedFuture("Not allowed")).when(pool).explain(eq("collection"), any(), any());
+
+    registry.explain(pool).onComplete(testContext.succeeding(report -> testContext.verify(() -> {
+
+      assertThat(report).isEmpty();
+      testContext.completeNow();
+
+    })));
+
+  }
+
+}
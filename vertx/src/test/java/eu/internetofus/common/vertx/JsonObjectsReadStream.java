@@ -0,0 +1,157 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * A {@link ReadStream} that emits a fixed set of objects. It is used to mock
+ * the cursors of the MongoDB client.
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class JsonObjectsReadStream implements ReadStream<JsonObject> {
+
+  /**
+   * The objects to emit.
+   */
+  protected Iterator<JsonObject> objects;
+
+  /**
+   * The handler of the emitted objects.
+   */
+  protected Handler<JsonObject> handler;
+
+  /**
+   * The handler to call when all the objects are emitted.
+   */
+  protected Handler<Void> endHandler;
+
+  /**
+   * This is {@code true} if the stream is paused.
+   */
+  protected boolean paused;
+
+  /**
+   * This is {@code true} if the stream is emitting objects.
+   */
+  protected boolean emitting;
+
+  /**
+   * Create the stream.
+   *
+   * @param objects to emit.
+   */
+  public JsonObjectsReadStream(final JsonObject... objects) {
+
+    this.objects = Arrays.asList(objects).iterator();
+
+  }
+
+  /**
+   * Emit the objects while the stream is not paused.
+   */
+  protected void emit() {
+
+    if (!this.emitting) {
+
+      this.emitting = true;
+      while (!this.paused && this.handler != null && this.objects.hasNext()) {
+
+        this.handler.handle(this.objects.next());
+      }
+      this.emitting = false;
+      if (!this.paused && this.handler != null && !this.objects.hasNext() && this.endHandler != null) {
+
+        final var end = this.endHandler;
+        this.endHandler = null;
+        end.handle(null);
+      }
+    }
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReadStream<JsonObject> exceptionHandler(final Handler<Throwable> handler) {
+
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReadStream<JsonObject> handler(final Handler<JsonObject> handler) {
+
+    this.handler = handler;
+    this.emit();
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReadStream<JsonObject> pause() {
+
+    this.paused = true;
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReadStream<JsonObject> resume() {
+
+    this.paused = false;
+    this.emit();
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReadStream<JsonObject> fetch(final long amount) {
+
+    return this.resume();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReadStream<JsonObject> endHandler(final Handler<Void> endHandler) {
+
+    this.endHandler = endHandler;
+    this.emit();
+    return this;
+  }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the {@link MappedReadStream}.
+ *
+ * @see MappedReadStream
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class MappedReadStreamTest {
+
+  /**
+   * Should convert the items of the source.
+   */
+  @Test
+  public void shouldConvertItems() {
+
+    final var source = new JsonObjectsReadStream(new JsonObject().put("i", 1), new JsonObject().put("i", 2));
+    final var converted = new ArrayList<Integer>();
+    final var ended = new ArrayList<Boolean>();
+    new MappedReadStream<JsonObject, Integer>(source, item -> item.getInteger("i")).endHandler(end -> ended.add(true))
+        .handler(converted::add);
+    assertThat(converted).containsExactly(1, 2);
+    assertThat(ended).containsExactly(true);
+
+  }
+
+  /**
+   * Should pause the source and report the error when an item can not be
+   * converted.
+   */
+  @Test
+  public void shouldReportConversionError() {
+
+    final var source = new JsonObjectsReadStream(new JsonObject().put("i", 1), new JsonObject().put("i", "bad"),
+        new JsonObject().put("i", 3));
+    final var converted = new ArrayList<Integer>();
+    final var errors = new ArrayList<Throwable>();
+    new MappedReadStream<JsonObject, Integer>(source, item -> item.getInteger("i")).exceptionHandler(errors::add)
+        .handler(converted::add);
+    assertThat(converted).containsExactly(1);
+    assertThat(errors).hasSize(1).first().isInstanceOf(ClassCastException.class);
+    assertThat(source.paused).isTrue();
+
+  }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the {@link MemoryQueries}.
+ *
+ * @see MemoryQueries
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class MemoryQueriesTest {
+
+  /**
+   * Create a document to test.
+   *
+   * @param index of the document.
+   *
+   * @return the document to test.
+   */
+  public static JsonObject createDocument(final int index) {
+
+    return new JsonObject().put("_id", String.valueOf(index)).put("name", "Name " + index).put("index", index)
+        .put("tags", new JsonArray().add("tag" + index).add("common"))
+        .put("norms", new JsonArray().add(new JsonObject().put("whenever", "when " + index).put("priority", index))
+            .add(new JsonObject().put("whenever", "always").put("priority", 0)));
+
+  }
+
+  /**
+   * Should match the queries created by the builder.
+   */
+  @Test
+  public void shouldMatchQueryBuilderQueries() {
+
+    final var document = createDocument(3);
+    assertThat(MemoryQueries.matches(document, new QueryBuilder().withEqOrRegex("name", "/^name \\d$/").build(), false))
+        .isTrue();
+    assertThat(MemoryQueries.matches(document, new QueryBuilder().withEqOrRegex("name", "Name 4").build(), false))
+        .isFalse();
+    assertThat(MemoryQueries.matches(document, new QueryBuilder().withRange("index", 1, 3).build(), false)).isTrue();
+    assertThat(MemoryQueries.matches(document, new QueryBuilder().withRange("index", 4, null).build(), false))
+        .isFalse();
+    assertThat(MemoryQueries.matches(document,
+        new QueryBuilder().withEqOrRegex("tags", Arrays.asList("/^TAG/", "common")).build(), false)).isTrue();
+    assertThat(MemoryQueries.matches(document,
+        new QueryBuilder().withEqOrRegex("tags", Arrays.asList("tag3", "undefined")).build(), false)).isFalse();
+    assertThat(MemoryQueries.matches(document, new QueryBuilder().withExist("norms", true).build(), false)).isTrue();
+    assertThat(MemoryQueries.matches(document, new QueryBuilder().withExist("undefined", true).build(), false))
+        .isFalse();
+
+  }
+
+  /**
+   * Should match the operators of the queries.
+   */
+  @Test
+  public void shouldMatchOperators() {
+
+    final var document = createDocument(2);
+    assertThat(MemoryQueries.matches(document, new JsonObject().put("norms",
+        new JsonObject().put("$elemMatch", new JsonObject().put("whenever", "when 2").put("priority", 2))), false))
+            .isTrue();
+    assertThat(MemoryQueries.matches(document, new JsonObject().put("norms",
+        new JsonObject().put("$elemMatch", new JsonObject().put("whenever", "when 2").put("priority", 0))), false))
+            .isFalse();
+    assertThat(MemoryQueries.matches(document, new JsonObject().put("norms.priority", 0), false)).isTrue();
+    assertThat(MemoryQueries.matches(document,
+        new JsonObject().put("$or", new JsonArray().add(new JsonObject().put("index", 1))
+            .add(new JsonObject().put("index", new JsonObject().put("$in", new JsonArray().add(2).add(5))))),
+        false)).isTrue();
+    assertThat(MemoryQueries.matches(document,
+        new JsonObject().put("index", new JsonObject().put("$mod", new JsonArray().add(2).add(1))), false)).isFalse();
+    assertThat(MemoryQueries.matches(document,
+        new JsonObject().put("name", new JsonObject().put("$not", new JsonObject().put("$type", "string"))), false))
+            .isFalse();
+    assertThat(MemoryQueries.matches(document, new JsonObject().put("name", "NAME 2"), false)).isFalse();
+    assertThat(MemoryQueries.matches(document, new JsonObject().put("name", "NAME 2"), true)).isTrue();
+    assertThat(MemoryQueries.matches(document, new JsonObject().put("name",
+        new JsonObject().put("$gte", "NAME").put("$lt", "NAME" + QueryBuilder.MAX_COLLATION_CHARACTER)), true))
+            .isTrue();
+
+  }
+
+  /**
+   * Should fail with the operators that are not supported.
+   */
+  @Test
+  public void shouldFailWithUnsupportedOperator() {
+
+    final var query = new JsonObject().put("$where", "this.index > 1");
+    assertThatThrownBy(() -> MemoryQueries.matches(createDocument(1), query, false))
+        .isInstanceOf(IllegalArgumentException.class);
+
+  }
+
+  /**
+   * Should project the fields of a document.
+   */
+  @Test
+  public void shouldProject() {
+
+    final var document = createDocument(1);
+    assertThat(MemoryQueries.project(document, new JsonObject().put("name", 1).put("norms.priority", 1)))
+        .isEqualTo(new JsonObject().put("_id", "1").put("name", "Name 1").put("norms", new JsonArray()
+            .add(new JsonObject().put("priority", 1)).add(new JsonObject().put("priority", 0))));
+    assertThat(MemoryQueries.project(document, new JsonObject().put("norms", 0).put("tags", 0).put("_id", 0)))
+        .isEqualTo(new JsonObject().put("name", "Name 1").put("index", 1));
+
+  }
+
+  /**
+   * Should apply the operators of an update.
+   */
+  @Test
+  public void shouldUpdate() {
+
+    final var update = new JsonObject().put("$set", new JsonObject().put("name", "Updated").put("other.value", 1))
+        .put("$unset", new JsonObject().put("norms", ""))
+        .put("$push", new JsonObject().put("tags", new JsonObject().put("$each", new JsonArray().add("new"))))
+        .put("$inc", new JsonObject().put("index", 2));
+    final var updated = MemoryQueries.update(createDocument(1), update, false);
+    assertThat(updated).isEqualTo(new JsonObject().put("_id", "1").put("name", "Updated").put("index", 3L)
+        .put("tags", new JsonArray().add("tag1").add("common").add("new"))
+        .put("other", new JsonObject().put("value", 1)));
+
+  }
+
+  /**
+   * Should create the document of an upsert from the equality fields.
+   */
+  @Test
+  public void shouldCreateUpsertDocument() {
+
+    final var query = new JsonObject().put("$and", new JsonArray().add(new JsonObject().put("source", "1"))
+        .add(new JsonObject().put("target", new JsonObject().put("$eq", "2"))))
+        .put("index", new JsonObject().put("$gt", 1));
+    assertThat(MemoryQueries.upsertDocumentFor(query))
+        .isEqualTo(new JsonObject().put("source", "1").put("target", "2"));
+
+  }
+
+  /**
+   * Should aggregate the page of the unwound elements.
+   */
+  @Test
+  public void shouldAggregateFacetPage() {
+
+    final var documents = List.of(createDocument(1), createDocument(2), createDocument(3));
+    final var order = new JsonObject().put("norms.priority", -1);
+    final var page = new AggregationBuilder().projectElement(order, "norms").sort(order, 1, 2).build();
+    final var pipeline = new AggregationBuilder().unwind("norms")
+        .match(new JsonObject().put("norms.whenever", new JsonObject().put("$regex", "^when").put("$options", "i")))
+        .facetPage(page).build();
+    final var result = MemoryQueries.aggregate(documents, pipeline, false);
+    assertThat(result).hasSize(1);
+    final var facet = result.get(0);
+    assertThat(facet.getJsonArray(AggregationBuilder.FACET_TOTAL))
+        .isEqualTo(new JsonArray().add(new JsonObject().put(AggregationBuilder.FACET_TOTAL, 3)));
+    final var models = facet.getJsonArray(AggregationBuilder.FACET_MODELS);
+    assertThat(models).hasSize(2);
+    assertThat(models.getJsonObject(0).getJsonObject("norms").getString("whenever")).isEqualTo("when 2");
+    assertThat(models.getJsonObject(1).getJsonObject("norms").getString("whenever")).isEqualTo("when 1");
+
+  }
+
+}
@@ -0,0 +1,311 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.BulkOperation;
+import io.vertx.ext.mongo.BulkWriteOptions;
+import io.vertx.ext.mongo.FindOptions;
+import io.vertx.ext.mongo.MongoClientBulkWriteResult;
+import io.vertx.ext.mongo.UpdateOptions;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * Test the {@link MemoryRepositoryStorage}.
+ *
+ * @see MemoryRepositoryStorage
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+@ExtendWith(VertxExtension.class)
+public class MemoryRepositoryStorageTest {
+
+  /**
+   * Should share the collections of a Vert.x instance.
+   *
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldShareCollections(final Vertx vertx, final VertxTestContext testContext) {
+
+    final var document = new JsonObject().put("name", "shared");
+    MemoryRepositoryStorage.createShared(vertx).insert("models", document)
+        .compose(id -> MemoryRepositoryStorage.createShared(vertx).findOne("models", new JsonObject().put("_id", id),
+            null))
+        .onComplete(testContext.succeeding(found -> testContext.verify(() -> {
+
+          assertThat(found).isEqualTo(document);
+          assertThat(document.getString("_id")).isNotEmpty();
+          testContext.completeNow();
+        })));
+
+  }
+
+  /**
+   * Should not share the collections of the not shared storages.
+   *
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldNotShareCollectionsOfCreatedStorages(final Vertx vertx, final VertxTestContext testContext) {
+
+    MemoryRepositoryStorage.create(vertx).insert("models", new JsonObject())
+        .compose(id -> MemoryRepositoryStorage.create(vertx).count("models", new JsonObject(), null))
+        .onComplete(testContext.succeeding(count -> testContext.verify(() -> {
+
+          assertThat(count).isZero();
+          testContext.completeNow();
+        })));
+
+  }
+
+  /**
+   * Should fail to insert a document with a duplicated identifier.
+   *
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldFailInsertDuplicatedId(final Vertx vertx, final VertxTestContext testContext) {
+
+    final var storage = MemoryRepositoryStorage.create(vertx);
+    storage.insert("models", new JsonObject().put("_id", "1"))
+        .compose(id -> storage.insert("models", new JsonObject().put("_id", "1")))
+        .onComplete(testContext.failing(error -> testContext.completeNow()));
+
+  }
+
+  /**
+   * Should update and upsert the documents.
+   *
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldUpdateAndUpsert(final Vertx vertx, final VertxTestContext testContext) {
+
+    final var storage = MemoryRepositoryStorage.create(vertx);
+    final var update = new JsonObject().put("$set", new JsonObject().put("value", 2));
+    storage.insert("models", new JsonObject().put("_id", "1").put("value", 1))
+        .compose(id -> storage.update("models", new JsonObject().put("_id", "1"), update, new UpdateOptions()))
+        .compose(updated -> {
+
+          assertThat(updated.getDocMatched()).isEqualTo(1L);
+          assertThat(updated.getDocModified()).isEqualTo(1L);
+          return storage.update("models", new JsonObject().put("_id", "2"), update,
+              new UpdateOptions().setUpsert(true));
+
+        }).compose(upserted -> {
+
+          assertThat(upserted.getDocUpsertedId()).isEqualTo(new JsonObject().put("_id", "2"));
+          final var options = new FindOptions().setSort(new JsonObject().put("_id", -1));
+          return storage.find("models", new JsonObject(), options);
+
+        }).onComplete(testContext.succeeding(found -> testContext.verify(() -> {
+
+          assertThat(found).containsExactly(new JsonObject().put("_id", "2").put("value", 2),
+              new JsonObject().put("_id", "1").put("value", 2));
+          testContext.completeNow();
+        })));
+
+  }
+
+  /**
+   * Should return the upserted documents of a bulk write.
+   *
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldBulkWrite(final Vertx vertx, final VertxTestContext testContext) {
+
+    final var storage = MemoryRepositoryStorage.create(vertx);
+    final var update = new JsonObject().put("$set", new JsonObject().put("value", 1));
+    final var query = new JsonObject().put("_id", "1");
+    final var operations = Arrays.asList(BulkOperation.createUpdate(query, update, true, false),
+        BulkOperation.createInsert(new JsonObject().put("_id", "2")),
+        BulkOperation.createUpdate(query, update, true, false));
+    storage.bulkWrite("models", operations, new BulkWriteOptions())
+        .onComplete(testContext.succeeding(result -> testContext.verify(() -> {
+
+          assertThat(result.getInsertedCount()).isEqualTo(1L);
+          assertThat(result.getMatchedCount()).isEqualTo(1L);
+          assertThat(result.getUpserts()).containsExactly(
+              new JsonObject().put(MongoClientBulkWriteResult.ID, "1").put(MongoClientBulkWriteResult.INDEX, 0));
+          testContext.completeNow();
+        })));
+
+  }
+
+  /**
+   * Should stream the aggregated documents.
+   *
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldStreamAggregation(final Vertx vertx, final VertxTestContext testContext) {
+
+    final var storage = MemoryRepositoryStorage.create(vertx);
+    storage.insert("models", new JsonObject().put("_id", "1").put("values", new JsonArray().add(1).add(2).add(3)))
+        .onComplete(testContext.succeeding(id -> {
+
+          final var pipeline = new AggregationBuilder().unwind("values")
+              .match(new JsonObject().put("values", new JsonObject().put("$gte", 2))).build();
+          final var values = new ArrayList<Object>();
+          final var stream = storage.aggregate("models", pipeline, null);
+          stream.handler(document -> values.add(document.getValue("values")));
+          stream.endHandler(end -> testContext.verify(() -> {
+
+            assertThat(values).containsExactly(2, 3);
+            testContext.completeNow();
+          }));
+
+        }));
+
+  }
+
+  /**
+   * Should emit the found documents after the handlers are set, and only the
+   * requested ones when the stream is paused.
+   *
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldEmitFoundDocumentsOnDemand(final Vertx vertx, final VertxTestContext testContext) {
+
+    final var storage = MemoryRepositoryStorage.create(vertx);
+    final var operations = new ArrayList<BulkOperation>();
+    for (var i = 0; i < 3; i++) {
+
+      operations.add(BulkOperation.createInsert(new JsonObject().put("_id", String.valueOf(i))));
+    }
+    storage.bulkWrite("models", operations, new BulkWriteOptions())
+        .onComplete(testContext.succeeding(written -> vertx.runOnContext(start -> {
+
+          final var ids = new ArrayList<String>();
+          final var stream = storage.findBatch("models", new JsonObject(), new FindOptions());
+          stream.pause();
+          stream.handler(document -> ids.add(document.getString("_id")));
+          stream.endHandler(end -> testContext.verify(() -> {
+
+            assertThat(ids).containsExactly("0", "1", "2");
+            testContext.completeNow();
+          }));
+          stream.fetch(1);
+          testContext.verify(() -> assertThat(ids).isEmpty());
+          vertx.setTimer(10, any -> {
+
+            testContext.verify(() -> assertThat(ids).containsExactly("0"));
+            stream.resume();
+          });
+
+        })));
+
+  }
+
+  /**
+   * Should report on the stream the operators that are not supported.
+   *
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldFailStreamWithUnsupportedOperator(final Vertx vertx, final VertxTestContext testContext) {
+
+    final var storage = MemoryRepositoryStorage.create(vertx);
+    storage.insert("models", new JsonObject()).onComplete(testContext.succeeding(id -> {
+
+      final var query = new JsonObject().put("$where", "true");
+      final var stream = storage.findBatch("models", query, new FindOptions());
+      stream.exceptionHandler(cause -> testContext.verify(() -> {
+
+        assertThat(cause).isInstanceOf(IllegalArgumentException.class);
+        testContext.completeNow();
+      }));
+
+    }));
+
+  }
+
+  /**
+   * Should not emit nor end the changes of a collection.
+   *
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldNotEndWatch(final Vertx vertx, final VertxTestContext testContext) {
+
+    final var storage = MemoryRepositoryStorage.create(vertx);
+    final var stream = storage.watch("models", 10);
+    stream.handler(change -> testContext.failNow("Unexpected change"));
+    stream.endHandler(end -> testContext.failNow("Unexpected end"));
+    storage.insert("models", new JsonObject()).onComplete(testContext.succeeding(id -> {
+
+      vertx.setTimer(10, any -> testContext.completeNow());
+    }));
+
+  }
+
+  /**
+   * Should search a page with a repository.
+   *
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldSearchPageWithRepository(final Vertx vertx, final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, MemoryRepositoryStorage.create(vertx), "1");
+    final var models = new ArrayList<JsonObject>();
+    for (var i = 0; i < 10; i++) {
+
+      models.add(new JsonObject().put("_id", String.valueOf(i)).put("index", i).put("name", "Model " + i));
+    }
+    final var query = new QueryBuilder().withEqOrRegex("name", "/^model/").withRange("index", 2, null).build();
+    final var options = new FindOptions().setSort(new JsonObject().put("index", -1)).setSkip(1).setLimit(2);
+    repository.bulkUpsertDocuments("models", models, model -> new JsonObject().put("_id", model.getString("_id")))
+        .compose(results -> repository.searchPageObject("models", query, options, "models", null))
+        .onComplete(testContext.succeeding(found -> testContext.verify(() -> {
+
+          assertThat(found.getLong("total")).isEqualTo(8L);
+          assertThat(found.getJsonArray("models")).isEqualTo(new JsonArray()
+              .add(new JsonObject().put("_id", "8").put("index", 8).put("name", "Model 8").put(Repository.VERSION, 1))
+              .add(new JsonObject().put("_id", "7").put("index", 7).put("name", "Model 7").put(Repository.VERSION, 1)));
+          testContext.completeNow();
+        })));
+
+  }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * Test the {@link MigrationOptions}.
+ *
+ * @see MigrationOptions
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+@ExtendWith(VertxExtension.class)
+public class MigrationOptionsTest {
+
+  /**
+   * Check the default options.
+   */
+  @Test
+  public void shouldCreateDefaultOptions() {
+
+    final var options = new MigrationOptions(null);
+    assertThat(options.batchSize).isEqualTo(MigrationOptions.DEFAULT_BATCH_SIZE);
+    assertThat(options.concurrency).isEqualTo(MigrationOptions.DEFAULT_CONCURRENCY);
+    assertThat(options.checkpointCollection).isEqualTo(MigrationOptions.DEFAULT_CHECKPOINT_COLLECTION);
+
+  }
+
+  /**
+   * Check the options defined on a configuration.
+   */
+  @Test
+  public void shouldCreateOptionsFromConfiguration() {
+
+    final var options = new MigrationOptions(new JsonObject().put(MigrationOptions.BATCH_SIZE_KEY, 10)
+        .put(MigrationOptions.CONCURRENCY_KEY, 0).put(MigrationOptions.CHECKPOINT_COLLECTION_KEY, "checkpoints"));
+    assertThat(options.batchSize).isEqualTo(10);
+    assertThat(options.concurrency).isEqualTo(1);
+    assertThat(options.checkpointCollection).isEqualTo("checkpoints");
+
+  }
+
+  /**
+   * Check that the repositories use the configured options.
+   *
+   * @param vertx event bus to use.
+   */
+  @Test
+  public void shouldUseConfiguredOptions(final Vertx vertx) {
+
+    assertThat(MigrationOptions.shared(vertx).batchSize).isEqualTo(MigrationOptions.DEFAULT_BATCH_SIZE);
+    final var options = new MigrationOptions(new JsonObject().put(MigrationOptions.BATCH_SIZE_KEY, 10));
+    MigrationOptions.configure(vertx, options);
+    assertThat(MigrationOptions.shared(vertx)).isSameAs(options);
+    assertThat(new Repository(vertx, (RepositoryStorage) null, "1").migrationOptions).isSameAs(options);
+
+  }
+
+}
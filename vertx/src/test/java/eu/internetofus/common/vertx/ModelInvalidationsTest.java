@@ -0,0 +1,225 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+/**
+ * Test the {@link ModelInvalidations}.
+ *
+ * @see ModelInvalidations
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+@ExtendWith({ VertxExtension.class, MockitoExtension.class })
+public class ModelInvalidationsTest {
+
+  /**
+   * Create a change of a collection.
+   *
+   * @param operation type of the change.
+   * @param id        identifier of the changed document, or {@code null} if it
+   *                  is not defined.
+   *
+   * @return the change.
+   */
+  public static ChangeStreamDocument<JsonObject> createChange(final String operation, final BsonValue id) {
+
+    BsonDocument key = null;
+    if (id != null) {
+
+      key = new BsonDocument("_id", id);
+    }
+    return new ChangeStreamDocument<>(operation, null, null, null, null, key, null, null, null, null);
+
+  }
+
+  /**
+   * Should create the event of a change with a string identifier.
+   */
+  @Test
+  public void shouldCreateEventForStringIdentifier() {
+
+    assertThat(ModelInvalidations.eventFor("tasks", createChange("delete", new BsonString("1"))))
+        .isEqualTo(new JsonObject().put(ModelInvalidations.COLLECTION, "tasks")
+            .put(ModelInvalidations.OPERATION, "delete").put(ModelInvalidations.ID, "1"));
+
+  }
+
+  /**
+   * Should create the event of a change with an object identifier.
+   */
+  @Test
+  public void shouldCreateEventForObjectIdentifier() {
+
+    final var id = new ObjectId();
+    assertThat(ModelInvalidations.eventFor("tasks", createChange("insert", new BsonObjectId(id)))
+        .getString(ModelInvalidations.ID)).isEqualTo(id.toHexString());
+    assertThat(ModelInvalidations.eventFor("tasks", createChange("insert", new BsonInt32(3)))
+        .getString(ModelInvalidations.ID)).isNotNull();
+
+  }
+
+  /**
+   * Should create the event of a change of the whole collection.
+   */
+  @Test
+  public void shouldCreateEventForCollectionChange() {
+
+    final var event = ModelInvalidations.eventFor("tasks", createChange("drop", null));
+    assertThat(event).isEqualTo(
+        new JsonObject().put(ModelInvalidations.COLLECTION, "tasks").put(ModelInvalidations.OPERATION, "drop"));
+    assertThat(ModelInvalidations.changesExistence(event)).isTrue();
+
+  }
+
+  /**
+   * Should the updates not change the existence of the models.
+   */
+  @Test
+  public void shouldUpdatesNotChangeExistence() {
+
+    assertThat(ModelInvalidations.changesExistence(new JsonObject().put(ModelInvalidations.OPERATION, "update")))
+        .isFalse();
+    assertThat(ModelInvalidations.changesExistence(new JsonObject().put(ModelInvalidations.OPERATION, "replace")))
+        .isFalse();
+    assertThat(ModelInvalidations.changesExistence(new JsonObject().put(ModelInvalidations.OPERATION, "delete")))
+        .isTrue();
+
+  }
+
+  /**
+   * Should publish the changes of a collection.
+   *
+   * @param pool        mocked storage.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldPublishChanges(@Mock final RepositoryStorage pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var changes = new MappedReadStream<JsonObject, ChangeStreamDocument<JsonObject>>(
+        new JsonObjectsReadStream(new JsonObject().put("id", "1")),
+        change -> createChange("delete", new BsonString(change.getString("id"))));
+    doReturn(changes).when(pool).watch(eq("tasks"), anyInt());
+
+    ModelInvalidations.consume(vertx, "tasks", event -> testContext.verify(() -> {
+
+      assertThat(event.getString(ModelInvalidations.ID)).isEqualTo("1");
+      testContext.completeNow();
+
+    })).completionHandler(
+        testContext.succeeding(registered -> ModelInvalidations.publishChangesOf(vertx, pool, "tasks")));
+
+  }
+
+  /**
+   * Should publish an invalidation of the whole collection when the change
+   * stream is opened again after it ends.
+   *
+   * @param pool        mocked storage.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldPublishInvalidationWhenReopened(@Mock final RepositoryStorage pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var first = new MappedReadStream<JsonObject, ChangeStreamDocument<JsonObject>>(new JsonObjectsReadStream(),
+        change -> createChange("delete", null));
+    final var second = new MappedReadStream<JsonObject, ChangeStreamDocument<JsonObject>>(new JsonObjectsReadStream(),
+        change -> createChange("delete", null));
+    doReturn(first, second).when(pool).watch(eq("tasks"), anyInt());
+
+    final var publisher = new ModelInvalidationsPublisher(vertx, pool, "tasks");
+    publisher.retryDelay = 10;
+    ModelInvalidations.consume(vertx, "tasks", event -> testContext.verify(() -> {
+
+      publisher.close();
+      assertThat(event).isEqualTo(new JsonObject().put(ModelInvalidations.COLLECTION, "tasks")
+          .put(ModelInvalidations.OPERATION, "invalidate"));
+      assertThat(ModelInvalidations.changesExistence(event)).isTrue();
+      testContext.completeNow();
+
+    })).completionHandler(testContext.succeeding(registered -> publisher.start()));
+
+  }
+
+  /**
+   * Should not open again the change stream when the publisher is closed.
+   *
+   * @param pool        mocked storage.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldNotReopenWhenClosed(@Mock final RepositoryStorage pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var changes = new MappedReadStream<JsonObject, ChangeStreamDocument<JsonObject>>(
+        new JsonObjectsReadStream(), change -> createChange("delete", null));
+    doReturn(changes).when(pool).watch(eq("tasks"), anyInt());
+
+    final var publisher = new ModelInvalidationsPublisher(vertx, pool, "tasks");
+    publisher.retryDelay = 10;
+    vertx.runOnContext(start -> testContext.verify(() -> {
+
+      publisher.start();
+      assertThat(publisher.timerId).isNotNegative();
+      publisher.close();
+      assertThat(publisher.timerId).isNegative();
+      vertx.setTimer(100, id -> testContext.verify(() -> {
+
+        verify(pool, times(1)).watch(eq("tasks"), anyInt());
+        assertThat(publisher.start().changes).isNull();
+        testContext.completeNow();
+
+      }));
+
+    }));
+
+  }
+
+}
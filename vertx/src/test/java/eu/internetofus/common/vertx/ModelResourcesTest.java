@@ -21,7 +21,9 @@
 package eu.internetofus.common.vertx;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.timeout;
@@ -38,11 +40,15 @@ import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.api.service.ServiceRequest;
 import io.vertx.ext.web.api.service.ServiceResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.function.BiConsumer;
@@ -2513,4 +2519,276 @@ public class ModelResourcesTest {
 
   }
 
+  /**
+   * Should retrieve the fields of a model defined on the request.
+   *
+   * @param searcher      the function that will search the model.
+   * @param resultHandler handler to manage the HTTP result.
+   *
+   * @see ModelResources#retrieveModelProjection(ModelContext, ProjectionSearcher,
+   *      ServiceContext)
+   */
+  @Test
+  public void shouldRetrieveModelProjection(@Mock final ProjectionSearcher<String, DummyComplexModel> searcher,
+      @Mock final Handler<AsyncResult<ServiceResponse>> resultHandler) {
+
+    final var model = this.createModelContext();
+    final var context = new ServiceContext(new ServiceRequest(new JsonObject().put("params",
+        new JsonObject().put("query", new JsonObject().put(ServiceRequests.FIELDS_PARAMETER, "id")))),
+        resultHandler);
+    ModelResources.retrieveModelProjection(model, searcher, context);
+
+    @SuppressWarnings("unchecked")
+    final ArgumentCaptor<Handler<AsyncResult<DummyComplexModel>>> searchHandler = ArgumentCaptor
+        .forClass(Handler.class);
+    verify(searcher, timeout(30000).times(1)).search(eq("id"), eq(new JsonObject().put("id", 1)),
+        searchHandler.capture());
+    final var expectedModel = new DummyComplexModel();
+    expectedModel.id = "id";
+    searchHandler.getValue().handle(Future.succeededFuture(expectedModel));
+
+    @SuppressWarnings("unchecked")
+    final ArgumentCaptor<AsyncResult<ServiceResponse>> resultCaptor = ArgumentCaptor.forClass(AsyncResult.class);
+    verify(resultHandler, timeout(30000).times(1)).handle(resultCaptor.capture());
+    final var result = resultCaptor.getValue().result();
+    assertThat(result.getStatusCode()).isEqualTo(Status.OK.getStatusCode());
+    assertThat(Model.fromBuffer(result.getPayload(), DummyComplexModel.class)).isEqualTo(expectedModel);
+
+  }
+
+  /**
+   * Should not retrieve the fields of a model when they are not valid.
+   *
+   * @param searcher      the function that will search the model.
+   * @param resultHandler handler to manage the HTTP result.
+   *
+   * @see ModelResources#retrieveModelProjection(ModelContext, ProjectionSearcher,
+   *      ServiceContext)
+   */
+  @Test
+  public void shouldNotRetrieveModelProjectionWithBadFields(
+      @Mock final ProjectionSearcher<String, DummyComplexModel> searcher,
+      @Mock final Handler<AsyncResult<ServiceResponse>> resultHandler) {
+
+    final var model = this.createModelContext();
+    final var context = new ServiceContext(new ServiceRequest(new JsonObject().put("params",
+        new JsonObject().put("query", new JsonObject().put(ServiceRequests.FIELDS_PARAMETER, "id,$where")))),
+        resultHandler);
+    ModelResources.retrieveModelProjection(model, searcher, context);
+
+    @SuppressWarnings("unchecked")
+    final ArgumentCaptor<AsyncResult<ServiceResponse>> resultCaptor = ArgumentCaptor.forClass(AsyncResult.class);
+    verify(resultHandler, timeout(30000).times(1)).handle(resultCaptor.capture());
+    final var result = resultCaptor.getValue().result();
+    assertThat(result.getStatusCode()).isEqualTo(Status.BAD_REQUEST.getStatusCode());
+    final var error = Model.fromBuffer(result.getPayload(), ErrorMessage.class);
+    assertThat(error.code).isEqualTo("bad_fields");
+    verify(searcher, never()).search(any(), any(), any());
+
+  }
+
+  /**
+   * Should retrieve a page with the fields of the models defined on the request.
+   *
+   * @param resultHandler handler to manage the HTTP result.
+   * @param searcher      the function to obtain the page.
+   *
+   * @see ModelResources#retrieveModelsPageProjection(int, int, String, boolean,
+   *      BiConsumer, ServiceContext)
+   */
+  @Test
+  public void shouldRetrieveModelsPageProjection(@Mock final Handler<AsyncResult<ServiceResponse>> resultHandler,
+      @Mock final BiConsumer<ModelsPageContext, Promise<JsonObject>> searcher) {
+
+    final var context = new ServiceContext(new ServiceRequest(new JsonObject().put("params",
+        new JsonObject().put("query", new JsonObject().put(ServiceRequests.FIELDS_PARAMETER, "id,name")))),
+        resultHandler);
+    ModelResources.retrieveModelsPageProjection(0, 100, null, true, searcher, context);
+
+    final ArgumentCaptor<ModelsPageContext> pageCaptor = ArgumentCaptor.forClass(ModelsPageContext.class);
+    @SuppressWarnings("unchecked")
+    final ArgumentCaptor<Promise<JsonObject>> searchHandler = ArgumentCaptor.forClass(Promise.class);
+    verify(searcher, timeout(30000).times(1)).accept(pageCaptor.capture(), searchHandler.capture());
+    assertThat(pageCaptor.getValue().fields).isEqualTo(new JsonObject().put("id", 1).put("name", 1));
+    searchHandler.getValue().complete(new JsonObject());
+
+    @SuppressWarnings("unchecked")
+    final ArgumentCaptor<AsyncResult<ServiceResponse>> resultCaptor = ArgumentCaptor.forClass(AsyncResult.class);
+    verify(resultHandler, timeout(30000).times(1)).handle(resultCaptor.capture());
+    assertThat(resultCaptor.getValue().result().getStatusCode()).isEqualTo(Status.OK.getStatusCode());
+
+  }
+
+  /**
+   * Should retrieve a page with all the fields of the models when the fields
+   * projection is not requested.
+   *
+   * @param searcher the function to obtain the page.
+   *
+   * @see ModelResources#retrieveModelsPage(int, int, String, boolean,
+   *      BiConsumer, ServiceContext)
+   */
+  @Test
+  public void shouldRetrieveModelsPageIgnoringFields(
+      @Mock final BiConsumer<ModelsPageContext, Promise<JsonObject>> searcher) {
+
+    final var context = new ServiceContext(new ServiceRequest(new JsonObject().put("params",
+        new JsonObject().put("query", new JsonObject().put(ServiceRequests.FIELDS_PARAMETER, "id")))),
+        result -> {
+        });
+    ModelResources.retrieveModelsPage(0, 100, null, true, searcher, context);
+
+    final ArgumentCaptor<ModelsPageContext> pageCaptor = ArgumentCaptor.forClass(ModelsPageContext.class);
+    verify(searcher, timeout(30000).times(1)).accept(pageCaptor.capture(), any());
+    assertThat(pageCaptor.getValue().fields).isNull();
+
+  }
+
+  /**
+   * Should stream the models as newline delimited JSON.
+   *
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   *
+   * @see ModelResources#streamModels(io.vertx.core.streams.ReadStream,
+   *      io.vertx.core.http.HttpServerResponse)
+   */
+  @Test
+  @ExtendWith(VertxExtension.class)
+  public void shouldStreamModels(final Vertx vertx, final VertxTestContext testContext) {
+
+    final var models = new JsonObject[] { new JsonObject().put("id", "1"), new JsonObject().put("id", "2") };
+    vertx.createHttpServer()
+        .requestHandler(request -> ModelResources.streamModels(new JsonObjectsReadStream(models), request.response()))
+        .listen(0).compose(server -> WebClient.create(vertx).get(server.actualPort(), "localhost", "/").send())
+        .onComplete(testContext.succeeding(response -> testContext.verify(() -> {
+
+          assertThat(response.statusCode()).isEqualTo(Status.OK.getStatusCode());
+          assertThat(response.getHeader("Content-Type")).isEqualTo(ModelResources.NDJSON_CONTENT_TYPE);
+          assertThat(response.bodyAsString()).isEqualTo("{\"id\":\"1\"}\n{\"id\":\"2\"}\n");
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should merge a model storing only the changes and retry when it has been
+   * modified by another request.
+   *
+   * @param resultHandler handler to manage the HTTP result.
+   *
+   * @see ModelResources#mergeModelWithDelta(JsonObject, ModelContext,
+   *      BiConsumer, DeltaUpdater, ServiceContext)
+   */
+  @Test
+  public void shouldMergeModelWithDeltaRetryingConcurrentUpdates(
+      @Mock final Handler<AsyncResult<ServiceResponse>> resultHandler) {
+
+    final var model = this.createModelContext();
+    final var context = this.createServiceContext(resultHandler);
+    final var source = new DummyComplexModelTest().createModelExample(2);
+    final var searches = new ArrayList<DummyComplexModel>();
+    final BiConsumer<String, Handler<AsyncResult<DummyComplexModel>>> searcher = (id, handler) -> {
+
+      final var target = new DummyComplexModelTest().createModelExample(1);
+      searches.add(target);
+      handler.handle(Future.succeededFuture(target));
+
+    };
+    final var updates = new ArrayList<DummyComplexModel>();
+    final DeltaUpdater<DummyComplexModel> updater = (original, updated, handler) -> {
+
+      updates.add(original);
+      if (updates.size() == 1) {
+
+        handler.handle(Future.failedFuture(new ConcurrentUpdateException("Modified")));
+
+      } else {
+
+        handler.handle(Future.succeededFuture());
+      }
+
+    };
+    ModelResources.mergeModelWithDelta(source.toJsonObject(), model, searcher, updater, context);
+
+    @SuppressWarnings("unchecked")
+    final ArgumentCaptor<AsyncResult<ServiceResponse>> resultCaptor = ArgumentCaptor.forClass(AsyncResult.class);
+    verify(resultHandler, timeout(30000).times(1)).handle(resultCaptor.capture());
+    final var result = resultCaptor.getValue().result();
+    assertThat(result.getStatusCode()).isEqualTo(Status.OK.getStatusCode());
+    assertThat(searches).hasSize(2);
+    assertThat(updates).containsExactlyElementsOf(searches);
+
+  }
+
+  /**
+   * Should not update a model when it is always modified by another request.
+   *
+   * @param resultHandler handler to manage the HTTP result.
+   *
+   * @see ModelResources#updateModelWithDelta(JsonObject, ModelContext,
+   *      BiConsumer, DeltaUpdater, ServiceContext)
+   */
+  @Test
+  public void shouldNotUpdateModelWithDeltaWhenAlwaysModified(
+      @Mock final Handler<AsyncResult<ServiceResponse>> resultHandler) {
+
+    final var model = this.createModelContext();
+    final var context = this.createServiceContext(resultHandler);
+    final var source = new DummyComplexModelTest().createModelExample(2);
+    final var searches = new ArrayList<DummyComplexModel>();
+    final BiConsumer<String, Handler<AsyncResult<DummyComplexModel>>> searcher = (id, handler) -> {
+
+      final var target = new DummyComplexModelTest().createModelExample(1);
+      searches.add(target);
+      handler.handle(Future.succeededFuture(target));
+
+    };
+    final DeltaUpdater<DummyComplexModel> updater = (original, updated, handler) -> handler
+        .handle(Future.failedFuture(new ConcurrentUpdateException("Modified")));
+    ModelResources.updateModelWithDelta(source.toJsonObject(), model, searcher, updater, context);
+
+    @SuppressWarnings("unchecked")
+    final ArgumentCaptor<AsyncResult<ServiceResponse>> resultCaptor = ArgumentCaptor.forClass(AsyncResult.class);
+    verify(resultHandler, timeout(30000).times(1)).handle(resultCaptor.capture());
+    final var result = resultCaptor.getValue().result();
+    assertThat(result.getStatusCode()).isEqualTo(Status.CONFLICT.getStatusCode());
+    assertThat(searches).hasSize(ModelResources.MAX_CONCURRENT_UPDATE_RETRIES + 1);
+
+  }
+
+  /**
+   * Should increase the version when update with delta.
+   *
+   * @param resultHandler handler to manage the HTTP result.
+   *
+   * @see ModelResources#storeModelDeltaChain(ModelContext, DeltaUpdater,
+   *      ServiceContext, int, Runnable, Runnable)
+   */
+  @Test
+  public void shouldIncreaseVersionWhenUpdateWithDelta(
+      @Mock final Handler<AsyncResult<ServiceResponse>> resultHandler) {
+
+    final var model = new ModelContext<DummyTsModel, String, DummyValidateContext>();
+    model.target = new DummyTsModel();
+    model.target._version = 3;
+    model.value = new DummyTsModel();
+    final var context = this.createServiceContext(resultHandler);
+    final var updates = new ArrayList<DummyTsModel>();
+    final var start = TimeManager.now();
+    ModelResources.storeModelDeltaChain(model, (original, updated, handler) -> {
+
+      updates.add(updated);
+      handler.handle(Future.succeededFuture());
+
+    }, context, 0, () -> fail("Unexpected retry"), () -> ServiceResponseHandlers.responseOk(resultHandler));
+
+    verify(resultHandler, timeout(30000).times(1)).handle(any());
+    assertThat(updates).hasSize(1);
+    assertThat(updates.get(0)._version).isEqualTo(4);
+    assertThat(updates.get(0)._lastUpdateTs).isGreaterThanOrEqualTo(start);
+
+  }
+
 }
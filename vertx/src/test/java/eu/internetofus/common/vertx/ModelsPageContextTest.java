@@ -137,4 +137,69 @@ public class ModelsPageContextTest {
 
   }
 
+  /**
+   * Check to string conversion with a continuation token and without total.
+   *
+   * @see ModelsPageContext#toString()
+   */
+  @Test
+  public void shoulCovertToStringWithAfterAndWithoutTotal() {
+
+    final var context = new ModelsPageContext();
+    context.limit = 10;
+    context.after = "token";
+    context.withTotal = false;
+    assertThat(context.toString()).isEqualTo("offset:0\nlimit:10\nafter:token\nwithTotal:false\n");
+
+  }
+
+  /**
+   * Check to find options conversion ignores the offset when a continuation
+   * token is defined.
+   *
+   * @see ModelsPageContext#toFindOptions()
+   */
+  @Test
+  public void shoulCovertToFindOptionsWithAfter() {
+
+    final var context = new ModelsPageContext();
+    context.offset = 11;
+    context.limit = 222;
+    context.after = "token";
+    final var options = context.toFindOptions();
+    assertThat(options.getSkip()).isEqualTo(0);
+    assertThat(options.getLimit()).isEqualTo(222);
+
+  }
+
+  /**
+   * Check to find options conversion uses the fields to return.
+   *
+   * @see ModelsPageContext#toFindOptions()
+   */
+  @Test
+  public void shoulCovertToFindOptionsWithFields() {
+
+    final var context = new ModelsPageContext();
+    context.fields = new JsonObject().put("name", 1);
+    assertThat(context.toFindOptions().getFields()).isEqualTo(context.fields).isNotSameAs(context.fields);
+    assertThat(context.toString()).isEqualTo("offset:0\nlimit:0\nfields:{\"name\":1}\n");
+
+  }
+
+  /**
+   * Check to find options conversion uses the collation.
+   *
+   * @see ModelsPageContext#toFindOptions()
+   */
+  @Test
+  public void shoulCovertToFindOptionsWithCollation() {
+
+    final var context = new ModelsPageContext();
+    context.collation = QueryBuilder.caseInsensitiveCollation();
+    assertThat(context.toFindOptions().getCollation()).isSameAs(context.collation);
+    assertThat(context.toString()).startsWith("offset:0\nlimit:0\ncollation:{");
+
+  }
+
 }
@@ -0,0 +1,111 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.CountOptions;
+import io.vertx.ext.mongo.MongoClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+/**
+ * Test the {@link MongoRepositoryStorage}.
+ *
+ * @see MongoRepositoryStorage
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+@ExtendWith(MockitoExtension.class)
+public class MongoRepositoryStorageTest {
+
+  /**
+   * Should count with the options only when they are defined.
+   *
+   * @param pool mocked MongoDB client.
+   */
+  @Test
+  public void shouldCountWithOptionsOnlyWhenDefined(@Mock final MongoClient pool) {
+
+    final var query = new JsonObject().put("name", "value");
+    doReturn(Future.succeededFuture(1L)).when(pool).count("models", query);
+    final var storage = new MongoRepositoryStorage(pool);
+    assertThat(storage.count("models", query, null).result()).isEqualTo(1L);
+    verify(pool, never()).countWithOptions(any(), any(), any());
+
+    final var options = new CountOptions();
+    doReturn(Future.succeededFuture(2L)).when(pool).countWithOptions("models", query, options);
+    assertThat(storage.count("models", query, options).result()).isEqualTo(2L);
+    verify(pool, times(1)).count(any(), any());
+
+  }
+
+  /**
+   * Should estimate the number of documents with the count command.
+   *
+   * @param pool mocked MongoDB client.
+   */
+  @Test
+  public void shouldEstimateCountWithCommand(@Mock final MongoClient pool) {
+
+    final var command = new JsonObject().put("count", "models");
+    doReturn(Future.succeededFuture(new JsonObject().put("n", 3L)), Future.succeededFuture(new JsonObject()))
+        .when(pool).runCommand("count", command);
+    final var storage = new MongoRepositoryStorage(pool);
+    assertThat(storage.estimatedCount("models").result()).isEqualTo(3L);
+    assertThat(storage.estimatedCount("models").result()).isZero();
+
+  }
+
+  /**
+   * Should explain a query with the query planner.
+   *
+   * @param pool mocked MongoDB client.
+   */
+  @Test
+  public void shouldExplainWithQueryPlanner(@Mock final MongoClient pool) {
+
+    final var plan = new JsonObject().put("queryPlanner", new JsonObject());
+    doReturn(Future.succeededFuture(plan)).when(pool).runCommand(eq("explain"), any());
+    final var query = new JsonObject().put("name", "value");
+    final var sort = new JsonObject().put("name", 1);
+    assertThat(new MongoRepositoryStorage(pool).explain("models", query, sort).result()).isEqualTo(plan);
+
+    final var command = ArgumentCaptor.forClass(JsonObject.class);
+    verify(pool, times(1)).runCommand(eq("explain"), command.capture());
+    assertThat(command.getValue()).isEqualTo(new JsonObject()
+        .put("explain", new JsonObject().put("find", "models").put("filter", query).put("sort", sort))
+        .put("verbosity", "queryPlanner"));
+
+  }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+import eu.internetofus.common.model.ValidationErrorException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Test the {@link PageToken}.
+ *
+ * @see PageToken
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class PageTokenTest {
+
+  /**
+   * Should add the unique keys to the sort.
+   *
+   * @see PageToken#keysetSort(JsonObject, String...)
+   */
+  @Test
+  public void shouldAddUniqueKeysToSort() {
+
+    assertThat(PageToken.keysetSort(null, "_id")).isEqualTo(new JsonObject().put("_id", 1));
+    final var sort = new JsonObject().put("name", -1).put("_id", -1);
+    assertThat(PageToken.keysetSort(sort, "_id", "elementsIndex"))
+        .isEqualTo(new JsonObject().put("name", -1).put("_id", -1).put("elementsIndex", 1));
+    assertThat(sort).isEqualTo(new JsonObject().put("name", -1).put("_id", -1));
+
+  }
+
+  /**
+   * Should obtain the query after a token.
+   *
+   * @see PageToken#encode(JsonObject, JsonObject)
+   * @see PageToken#afterQuery(JsonObject, String, String)
+   */
+  @Test
+  public void shouldObtainQueryAfterToken() {
+
+    final var sort = new JsonObject().put("goal.name", -1).put("_id", 1);
+    final var token = PageToken.encode(sort,
+        new JsonObject().put("_id", "1").put("goal", new JsonObject().put("name", "Goal")).put("other", true));
+    assertThat(token).doesNotContain("=");
+    assertThatCode(() -> {
+
+      final var query = PageToken.afterQuery(sort, token, "after");
+      assertThat(query).isEqualTo(new JsonObject().put("$or",
+          new JsonArray().add(new JsonObject().put("goal.name", new JsonObject().put("$lt", "Goal")))
+              .add(new JsonObject().putNull("goal.name"))
+              .add(new JsonObject().put("goal.name", "Goal").put("_id", new JsonObject().put("$gt", "1")))));
+
+    }).doesNotThrowAnyException();
+
+  }
+
+  /**
+   * Should obtain the query after a token with undefined values, that are sorted
+   * before any other value.
+   *
+   * @see PageToken#afterQuery(JsonObject, String, String)
+   */
+  @Test
+  public void shouldObtainQueryAfterTokenWithNullValues() {
+
+    final var document = new JsonObject().put("_id", "1");
+    final var ascending = new JsonObject().put("name", 1).put("_id", 1);
+    assertThatCode(() -> {
+
+      assertThat(PageToken.afterQuery(ascending, PageToken.encode(ascending, document), "after"))
+          .isEqualTo(new JsonObject().put("$or",
+              new JsonArray().add(new JsonObject().put("name", new JsonObject().putNull("$ne")))
+                  .add(new JsonObject().putNull("name").put("_id", new JsonObject().put("$gt", "1")))));
+
+    }).doesNotThrowAnyException();
+
+    final var descending = new JsonObject().put("name", -1).put("_id", -1);
+    assertThatCode(() -> {
+
+      assertThat(PageToken.afterQuery(descending, PageToken.encode(descending, document), "after"))
+          .isEqualTo(new JsonObject().put("$or",
+              new JsonArray().add(new JsonObject().putNull("name").put("_id", new JsonObject().put("$lt", "1")))
+                  .add(new JsonObject().putNull("name").putNull("_id"))));
+
+    }).doesNotThrowAnyException();
+
+  }
+
+  /**
+   * Should not obtain the query for a bad token.
+   *
+   * @param token that is not valid.
+   *
+   * @see PageToken#afterQuery(JsonObject, String, String)
+   */
+  @ParameterizedTest(name = "Should not obtain the query after {0}")
+  @ValueSource(strings = { "", "undefined", "e30", "eyJrIjpbIl9pZCJdLCJ2IjpbXX0" })
+  public void shouldNotObtainQueryAfterBadToken(final String token) {
+
+    final var error = catchThrowableOfType(
+        () -> PageToken.afterQuery(new JsonObject().put("_id", 1), token, "after"),
+        ValidationErrorException.class);
+    assertThat(error).isNotNull();
+    assertThat(error.getCode()).isEqualTo("after");
+
+  }
+
+  /**
+   * Should not obtain the query for a token of another sort.
+   *
+   * @see PageToken#afterQuery(JsonObject, String, String)
+   */
+  @Test
+  public void shouldNotObtainQueryAfterTokenOfOtherSort() {
+
+    final var token = PageToken.encode(new JsonObject().put("_id", 1), new JsonObject().put("_id", "1"));
+    final var error = catchThrowableOfType(
+        () -> PageToken.afterQuery(new JsonObject().put("name", 1).put("_id", 1), token, "after"),
+        ValidationErrorException.class);
+    assertThat(error).isNotNull();
+
+  }
+
+}
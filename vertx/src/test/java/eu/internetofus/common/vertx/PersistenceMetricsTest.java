@@ -0,0 +1,188 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionPoolSettings;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.ConnectionPoolCreatedEvent;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsCommandListener;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsConnectionPoolListener;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * Test the {@link PersistenceMetrics}.
+ *
+ * @see PersistenceMetrics
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+@ExtendWith(VertxExtension.class)
+public class PersistenceMetricsTest {
+
+  /**
+   * Should share the metrics of a Vert.x instance.
+   *
+   * @param vertx event bus to use.
+   */
+  @Test
+  public void shouldShareMetrics(final Vertx vertx) {
+
+    assertThat(PersistenceMetrics.shared(vertx)).isSameAs(PersistenceMetrics.shared(vertx));
+
+  }
+
+  /**
+   * Should measure the operations by collection, operation and outcome.
+   */
+  @Test
+  public void shouldMeasureOperations() {
+
+    final var registry = new SimpleMeterRegistry();
+    final var metrics = new PersistenceMetrics(registry);
+    metrics.start("tasks", "findOne").stop(Future.succeededFuture());
+    metrics.start("tasks", "findOne").stop(Future.failedFuture("Not found"));
+    metrics.start("tasks", "findOne").stop(Future.succeededFuture());
+    metrics.start("profiles", "insert").stop(Future.succeededFuture());
+
+    assertThat(registry.get(PersistenceMetrics.OPERATION_TIMER_NAME)
+        .tags(PersistenceMetrics.COLLECTION_TAG, "tasks", PersistenceMetrics.OPERATION_TAG, "findOne",
+            PersistenceMetrics.OUTCOME_TAG, PersistenceMetrics.SUCCESS_OUTCOME)
+        .timer().count()).isEqualTo(2);
+    assertThat(registry.get(PersistenceMetrics.OPERATION_TIMER_NAME)
+        .tags(PersistenceMetrics.COLLECTION_TAG, "tasks", PersistenceMetrics.OPERATION_TAG, "findOne",
+            PersistenceMetrics.OUTCOME_TAG, PersistenceMetrics.ERROR_OUTCOME)
+        .timer().count()).isEqualTo(1);
+    assertThat(registry.get(PersistenceMetrics.OPERATION_TIMER_NAME)
+        .tags(PersistenceMetrics.COLLECTION_TAG, "profiles", PersistenceMetrics.OPERATION_TAG, "insert").timer()
+        .count()).isEqualTo(1);
+
+  }
+
+  /**
+   * Should add the listeners of the driver commands and connections pool to the
+   * settings of a client.
+   */
+  @Test
+  public void shouldInstrumentMongoClientSettings() {
+
+    final var registry = new SimpleMeterRegistry();
+    final var settings = new PersistenceMetrics(registry).instrument(MongoClientSettings.builder().build());
+    assertThat(settings.getCommandListeners()).hasSize(1).hasOnlyElementsOfType(MongoMetricsCommandListener.class);
+    final var poolListeners = settings.getConnectionPoolSettings().getConnectionPoolListeners();
+    assertThat(poolListeners).hasSize(1).hasOnlyElementsOfType(MongoMetricsConnectionPoolListener.class);
+
+    poolListeners.get(0).connectionPoolCreated(new ConnectionPoolCreatedEvent(
+        new ServerId(new ClusterId(), new ServerAddress()), ConnectionPoolSettings.builder().build()));
+    assertThat(registry.get("mongodb.driver.pool.size").gauge().value()).isEqualTo(0);
+
+  }
+
+  /**
+   * Should count the progress of the migrations by collection.
+   */
+  @Test
+  public void shouldCountMigratedDocuments() {
+
+    final var registry = new SimpleMeterRegistry();
+    final var metrics = new PersistenceMetrics(registry);
+    metrics.migrated("tasks", 500);
+    metrics.migrated("tasks", 20);
+    metrics.migrated("profiles", 1);
+
+    assertThat(registry.get(PersistenceMetrics.MIGRATED_DOCUMENTS_COUNTER_NAME)
+        .tag(PersistenceMetrics.COLLECTION_TAG, "tasks").counter().count()).isEqualTo(520);
+    assertThat(registry.get(PersistenceMetrics.MIGRATED_BATCHES_COUNTER_NAME)
+        .tag(PersistenceMetrics.COLLECTION_TAG, "tasks").counter().count()).isEqualTo(2);
+    assertThat(registry.get(PersistenceMetrics.MIGRATED_DOCUMENTS_COUNTER_NAME)
+        .tag(PersistenceMetrics.COLLECTION_TAG, "profiles").counter().count()).isEqualTo(1);
+
+  }
+
+  /**
+   * Should not measure an operation until it finishes.
+   */
+  @Test
+  public void shouldNotMeasureUnfinishedOperations() {
+
+    final var registry = new SimpleMeterRegistry();
+    final var metrics = new PersistenceMetrics(registry);
+    metrics.start("tasks", "findOne").stop(Promise.promise().future());
+    assertThat(registry.find(PersistenceMetrics.OPERATION_TIMER_NAME).timers()).isEmpty();
+
+  }
+
+  /**
+   * Should not record the metrics when they are not enabled on Vert.x.
+   *
+   * @param vertx event bus to use.
+   */
+  @Test
+  public void shouldNotRecordWhenMetricsDisabled(final Vertx vertx) {
+
+    final var registry = PersistenceMetrics.registryOf(vertx);
+    new PersistenceMetrics(registry).start("tasks", "findOne").stop(Future.succeededFuture());
+    assertThat(registry.get(PersistenceMetrics.OPERATION_TIMER_NAME).timer().count()).isEqualTo(0);
+
+  }
+
+  /**
+   * Should export the metrics on the Prometheus registry enabled on the metrics
+   * options of the configuration.
+   */
+  @Test
+  public void shouldUsePrometheusRegistryOfConfiguration() {
+
+    final var conf = new JsonObject().put("metricsOptions",
+        new JsonObject().put("enabled", true).put("prometheusOptions", new JsonObject().put("enabled", true)));
+    final var vertx = Vertx.vertx(new VertxOptions(conf));
+    try {
+
+      final var registry = PersistenceMetrics.registryOf(vertx);
+      assertThat(registry).isInstanceOf(PrometheusMeterRegistry.class);
+      PersistenceMetrics.shared(vertx).start("tasks", "find").stop(Future.failedFuture("Error"));
+      final var labels = "collection=\"tasks\",operation=\"find\",outcome=\"error\",";
+      assertThat(((PrometheusMeterRegistry) registry).scrape()).contains(
+          "wenet_repository_operation_seconds_count{" + labels + "} 1.0",
+          "wenet_repository_operation_seconds_bucket{" + labels + "le=\"0.001\",}");
+
+    } finally {
+
+      vertx.close();
+    }
+
+  }
+
+}
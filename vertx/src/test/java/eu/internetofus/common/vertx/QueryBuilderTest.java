@@ -453,4 +453,114 @@ public class QueryBuilderTest {
 
   }
 
+  /**
+   * Should keep the case insensitive regular expressions by default.
+   *
+   * @see QueryBuilder#withEqOrRegex(String, String)
+   */
+  @Test
+  public void shouldUseRegexByDefault() {
+
+    final var builder = new QueryBuilder().withEqOrRegex("name", "/^Jo/");
+    assertThat(builder.build()).isEqualTo(
+        new JsonObject().put("name", new JsonObject().put("$regex", "^Jo").put("$options", "i")));
+    assertThat(builder.collation()).isNull();
+
+  }
+
+  /**
+   * Should convert an anchored prefix to a range.
+   *
+   * @see QueryBuilder#withEqOrRegex(String, String)
+   */
+  @Test
+  public void shouldConvertPrefixToRange() {
+
+    final var builder = new QueryBuilder(QueryBuilder.MatchMode.INDEXED).withEqOrRegex("name", "/^Jo\\.n.*/");
+    assertThat(builder.build()).isEqualTo(new JsonObject().put("name",
+        new JsonObject().put("$gte", "Jo.n").put("$lt", "Jo.n" + QueryBuilder.MAX_COLLATION_CHARACTER)));
+    assertThat(builder.collation().toJson()).isEqualTo(QueryBuilder.caseInsensitiveCollation().toJson());
+
+  }
+
+  /**
+   * Should convert an anchored value to a case insensitive equality.
+   *
+   * @see QueryBuilder#withEqOrRegex(String, Iterable)
+   */
+  @Test
+  public void shouldConvertAnchoredValueToEquality() {
+
+    final var builder = new QueryBuilder(QueryBuilder.MatchMode.INDEXED).withEqOrRegex("keywords",
+        Arrays.asList("/^Music$/", "/^sport$/"));
+    assertThat(builder.build()).isEqualTo(new JsonObject().put("keywords",
+        new JsonObject().put("$all",
+            new JsonArray().add(new JsonObject().put("$elemMatch", new JsonObject().put("$eq", "Music")))
+                .add(new JsonObject().put("$elemMatch", new JsonObject().put("$eq", "sport"))))));
+    assertThat(builder.collation()).isNotNull();
+
+  }
+
+  /**
+   * Should keep the regular expressions when the query compares other strings,
+   * because the collation would make them case insensitive.
+   *
+   * @see QueryBuilder#withEqOrRegex(String, Iterable)
+   */
+  @Test
+  public void shouldKeepRegexWhenQueryComparesOtherStrings() {
+
+    final var builder = new QueryBuilder(QueryBuilder.MatchMode.INDEXED).withEqOrRegex("keywords",
+        Arrays.asList("/^Music$/", "sport"));
+    assertThat(builder.build()).isEqualTo(new JsonObject().put("keywords",
+        new JsonObject().put("$all",
+            new JsonArray()
+                .add(new JsonObject().put("$elemMatch",
+                    new JsonObject().put("$regex", "^Music$").put("$options", "i")))
+                .add(new JsonObject().put("$elemMatch", new JsonObject().put("$eq", "sport"))))));
+    assertThat(builder.collation()).isNull();
+
+  }
+
+  /**
+   * Should not match case insensitive the application identifier of a query
+   * with an anchored pattern.
+   *
+   * @see QueryBuilder#with(String, Object)
+   */
+  @Test
+  public void shouldNotMatchAppIdThatDiffersOnlyInCase() {
+
+    final var builder = new QueryBuilder(QueryBuilder.MatchMode.INDEXED).with("appId", "App1")
+        .withEqOrRegex("name", "/^Jo/");
+    assertThat(builder.build()).isEqualTo(new JsonObject().put("appId", "App1").put("name",
+        new JsonObject().put("$regex", "^Jo").put("$options", "i")));
+    assertThat(builder.collation()).isNull();
+
+    final var withoutStrings = new QueryBuilder(QueryBuilder.MatchMode.INDEXED).withRange("index", 1, 2)
+        .withEqOrRegex("name", "/^Jo/");
+    assertThat(withoutStrings.build().getJsonObject("name")).isEqualTo(
+        new JsonObject().put("$gte", "Jo").put("$lt", "Jo" + QueryBuilder.MAX_COLLATION_CHARACTER));
+    assertThat(withoutStrings.collation()).isNotNull();
+
+  }
+
+  /**
+   * Should keep the regular expressions that can not use an index.
+   *
+   * @param pattern that can not be converted.
+   *
+   * @see QueryBuilder#withRegex(String, String)
+   */
+  @ParameterizedTest(name = "Should keep the pattern {0}")
+  @ValueSource(strings = { "Jo", "^", "^J.n", "^Jo|Ma", "^Jo\\d", "^Jo\\", "^(Jo)", "^Jo\\.*", "^Jo+" })
+  public void shouldKeepRegexThatCanNotUseIndex(final String pattern) {
+
+    final var builder = new QueryBuilder(QueryBuilder.MatchMode.INDEXED).withRegex("name", pattern);
+    assertThat(builder.build()).isEqualTo(
+        new JsonObject().put("name", new JsonObject().put("$regex", pattern).put("$options", "i")));
+    assertThat(builder.collation()).isNull();
+
+  }
+
 }
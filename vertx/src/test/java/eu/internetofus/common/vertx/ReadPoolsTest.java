@@ -0,0 +1,162 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+/**
+ * Test the {@link ReadPools}.
+ *
+ * @see ReadPools
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+@ExtendWith({ VertxExtension.class, MockitoExtension.class })
+public class ReadPoolsTest {
+
+  /**
+   * Create the configuration with the read preferences of some collections.
+   *
+   * @return the configuration of the read preferences.
+   */
+  public static JsonObject createConfiguration() {
+
+    return new JsonObject()
+        .put("interactions",
+            new JsonObject().put(ReadPreferenceOptions.MODE_KEY, "secondaryPreferred")
+                .put(ReadPreferenceOptions.MAX_STALENESS_KEY, 90))
+        .put("profiles", new JsonObject().put(ReadPreferenceOptions.MODE_KEY, "secondaryPreferred")
+            .put(ReadPreferenceOptions.MAX_STALENESS_KEY, 90))
+        .put("tasks", new JsonObject().put(ReadPreferenceOptions.MODE_KEY, "primary")).put("undefined", "secondary");
+
+  }
+
+  /**
+   * Should share the pools of a Vert.x instance.
+   *
+   * @param vertx event bus to use.
+   */
+  @Test
+  public void shouldSharePools(final Vertx vertx) {
+
+    assertThat(ReadPools.shared(vertx)).isSameAs(ReadPools.shared(vertx));
+
+  }
+
+  /**
+   * Should use the primary if the pools are not configured.
+   *
+   * @param primary mocked primary pool.
+   */
+  @Test
+  public void shouldUsePrimaryWhenNotConfigured(@Mock final RepositoryStorage primary) {
+
+    final var pools = new ReadPools();
+    final var preference = new ReadPreferenceOptions();
+    preference.mode = "secondary";
+    assertThat(pools.poolFor(preference, primary)).isSameAs(primary);
+    assertThat(pools.preferenceOf("interactions")).isNull();
+
+  }
+
+  /**
+   * Should create a pool for each read preference.
+   *
+   * @param primary   mocked primary pool.
+   * @param secondary mocked secondary pool.
+   */
+  @Test
+  public void shouldCreatePoolForEachPreference(@Mock final RepositoryStorage primary, @Mock final RepositoryStorage secondary) {
+
+    final var created = new AtomicInteger();
+    final var pools = new ReadPools().configure(preference -> {
+
+      created.incrementAndGet();
+      return secondary;
+
+    }, createConfiguration());
+    assertThat(pools.poolFor(pools.preferenceOf("interactions"), primary)).isSameAs(secondary);
+    assertThat(pools.poolFor(pools.preferenceOf("profiles"), primary)).isSameAs(secondary);
+    assertThat(pools.poolFor(pools.preferenceOf("tasks"), primary)).isSameAs(primary);
+    assertThat(pools.poolFor(pools.preferenceOf("undefined"), primary)).isSameAs(primary);
+    assertThat(pools.poolFor(null, primary)).isSameAs(primary);
+    assertThat(created).hasValue(1);
+
+  }
+
+  /**
+   * Should use the primary when the pool can not be created.
+   *
+   * @param primary mocked primary pool.
+   */
+  @Test
+  public void shouldUsePrimaryWhenCannotCreatePool(@Mock final RepositoryStorage primary) {
+
+    final var pools = new ReadPools().configure(preference -> {
+
+      throw new IllegalArgumentException("Bad read preference");
+
+    }, createConfiguration());
+    assertThat(pools.poolFor(pools.preferenceOf("interactions"), primary)).isSameAs(primary);
+    assertThat(pools.preferenceOf("interactions")).isNull();
+    assertThat(pools.preferenceOf("profiles")).isNull();
+
+  }
+
+  /**
+   * Should close the pools when the last user release them.
+   *
+   * @param primary   mocked primary pool.
+   * @param secondary mocked secondary pool.
+   */
+  @Test
+  public void shouldClosePoolsWhenReleasedByAllUsers(@Mock final RepositoryStorage primary,
+      @Mock final RepositoryStorage secondary) {
+
+    doReturn(Future.succeededFuture()).when(secondary).close();
+    final var pools = new ReadPools();
+    pools.configure(preference -> secondary, createConfiguration());
+    pools.configure(preference -> primary, null);
+    assertThat(pools.poolFor(pools.preferenceOf("interactions"), primary)).isSameAs(secondary);
+    pools.release();
+    verify(secondary, never()).close();
+    assertThat(pools.release().succeeded()).isTrue();
+    verify(secondary, times(1)).close();
+    assertThat(pools.preferenceOf("interactions")).isNull();
+
+  }
+
+}
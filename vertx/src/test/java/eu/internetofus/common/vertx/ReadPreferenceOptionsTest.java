@@ -0,0 +1,136 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.ReadPreference;
+import com.mongodb.TaggableReadPreference;
+import io.vertx.core.json.JsonObject;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the {@link ReadPreferenceOptions}.
+ *
+ * @see ReadPreferenceOptions
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class ReadPreferenceOptionsTest {
+
+  /**
+   * Check the default options.
+   */
+  @Test
+  public void shouldCreateDefaultOptions() {
+
+    final var options = new ReadPreferenceOptions(null);
+    assertThat(options.mode).isEqualTo(ReadPreferenceOptions.DEFAULT_MODE);
+    assertThat(options.maxStaleness).isEqualTo(ReadPreferenceOptions.DEFAULT_MAX_STALENESS);
+    assertThat(options.isPrimary()).isTrue();
+    assertThat(options.key()).isEqualTo(ReadPreferenceOptions.PRIMARY);
+    assertThat(options.toReadPreference()).isEqualTo(ReadPreference.primary());
+
+  }
+
+  /**
+   * Check the options defined on a configuration.
+   */
+  @Test
+  public void shouldCreateOptionsFromConfiguration() {
+
+    final var options = new ReadPreferenceOptions(new JsonObject().put(ReadPreferenceOptions.MODE_KEY,
+        "secondaryPreferred").put(ReadPreferenceOptions.MAX_STALENESS_KEY, 120));
+    assertThat(options.isPrimary()).isFalse();
+    assertThat(options.key()).isEqualTo("secondaryPreferred_120");
+    final var preference = (TaggableReadPreference) options.toReadPreference();
+    assertThat(preference.getName()).isEqualTo("secondaryPreferred");
+    assertThat(preference.getMaxStaleness(TimeUnit.SECONDS)).isEqualTo(120L);
+
+  }
+
+  /**
+   * Check the options without maximum staleness.
+   */
+  @Test
+  public void shouldCreateOptionsWithoutMaxStaleness() {
+
+    final var options = new ReadPreferenceOptions(new JsonObject().put(ReadPreferenceOptions.MODE_KEY, "nearest"));
+    assertThat(options.key()).isEqualTo("nearest");
+    assertThat(options.toReadPreference()).isEqualTo(ReadPreference.nearest());
+
+  }
+
+  /**
+   * Check that fails with an undefined mode.
+   */
+  @Test
+  public void shouldFailWithUndefinedMode() {
+
+    final var options = new ReadPreferenceOptions(new JsonObject().put(ReadPreferenceOptions.MODE_KEY, "undefined"));
+    assertThatThrownBy(options::toReadPreference).isInstanceOf(IllegalArgumentException.class);
+
+  }
+
+  /**
+   * Check the configuration of a client that reads with the options.
+   */
+  @Test
+  public void shouldApplyToConfiguration() {
+
+    final var conf = new JsonObject().put("db_name", "wenet");
+    assertThat(new ReadPreferenceOptions().applyTo(conf))
+        .isEqualTo(conf.copy().put(ReadPreferenceOptions.READ_PREFERENCE_KEY, ReadPreferenceOptions.PRIMARY));
+    assertThat(conf.containsKey(ReadPreferenceOptions.READ_PREFERENCE_KEY)).isFalse();
+
+    final var options = new ReadPreferenceOptions(new JsonObject().put(ReadPreferenceOptions.MODE_KEY,
+        "secondaryPreferred").put(ReadPreferenceOptions.MAX_STALENESS_KEY, 120));
+    assertThat(options.applyTo(conf).getString(ReadPreferenceOptions.READ_PREFERENCE_KEY))
+        .isEqualTo("secondaryPreferred");
+    assertThat(options.applyTo(new JsonObject().put(ReadPreferenceOptions.CONNECTION_STRING_KEY,
+        "mongodb://localhost:27017")).getString(ReadPreferenceOptions.CONNECTION_STRING_KEY))
+        .isEqualTo("mongodb://localhost:27017/?readPreference=secondaryPreferred&maxStalenessSeconds=120");
+    final var withConnection = options.applyTo(new JsonObject()
+        .put(ReadPreferenceOptions.CONNECTION_STRING_KEY, "mongodb://localhost/wenet?w=majority")
+        .put(ReadPreferenceOptions.READ_PREFERENCE_KEY, "primary"));
+    assertThat(withConnection).isEqualTo(new JsonObject().put(ReadPreferenceOptions.CONNECTION_STRING_KEY,
+        "mongodb://localhost/wenet?w=majority&readPreference=secondaryPreferred&maxStalenessSeconds=120"));
+    assertThat(new ConnectionString(withConnection.getString(ReadPreferenceOptions.CONNECTION_STRING_KEY))
+        .getReadPreference()).isEqualTo(options.toReadPreference());
+
+  }
+
+  /**
+   * Check that can not apply an undefined mode.
+   */
+  @Test
+  public void shouldNotApplyUndefinedMode() {
+
+    final var options = new ReadPreferenceOptions(new JsonObject().put(ReadPreferenceOptions.MODE_KEY, "undefined"));
+    assertThatThrownBy(() -> options.applyTo(new JsonObject())).isInstanceOf(IllegalArgumentException.class);
+
+  }
+
+}
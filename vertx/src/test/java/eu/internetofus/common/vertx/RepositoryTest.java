@@ -25,28 +25,51 @@ import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.assertj.core.api.Assertions.catchThrowableOfType;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
 import eu.internetofus.common.model.DummyModel;
 import eu.internetofus.common.model.ValidationErrorException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.AggregateOptions;
+import io.vertx.ext.mongo.BulkOperation;
+import io.vertx.ext.mongo.BulkWriteOptions;
+import io.vertx.ext.mongo.CountOptions;
 import io.vertx.ext.mongo.FindOptions;
 import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.mongo.MongoClientBulkWriteResult;
+import io.vertx.ext.mongo.MongoClientDeleteResult;
+import io.vertx.ext.mongo.MongoClientUpdateResult;
 import io.vertx.ext.mongo.UpdateOptions;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 import java.util.function.Function;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.NullAndEmptySource;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -61,6 +84,27 @@ import org.mockito.junit.jupiter.MockitoExtension;
 @ExtendWith(MockitoExtension.class)
 public class RepositoryTest {
 
+  /**
+   * Check that the repository keeps the pool of MongoDB that it stores the
+   * documents.
+   *
+   * @param pool  mocked MongoDB client.
+   * @param vertx event bus to use.
+   */
+  @Test
+  public void shouldKeepPoolOfStorage(@Mock final MongoClient pool, final Vertx vertx) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    assertThat(repository.pool).isSameAs(pool);
+    assertThat(repository.storage).isInstanceOf(MongoRepositoryStorage.class);
+    assertThat(((MongoRepositoryStorage) repository.storage).getPool()).isSameAs(pool);
+
+    final var memory = new Repository(vertx, MemoryRepositoryStorage.createShared(vertx), "version");
+    assertThat(memory.pool).isNull();
+    assertThat(memory.storage).isInstanceOf(MemoryRepositoryStorage.class);
+
+  }
+
   /**
    * Check search communities fail because can not find.
    *
@@ -221,4 +265,1168 @@ public class RepositoryTest {
 
   }
 
+  /**
+   * Create a document to migrate.
+   *
+   * @param index of the document.
+   *
+   * @return the document to migrate.
+   */
+  private JsonObject createDocumentToMigrate(final int index) {
+
+    return new JsonObject().put("_id", String.valueOf(index)).put("index", index).put("extra", "value");
+  }
+
+  /**
+   * Should convert a document with nested values to migrate to a model.
+   *
+   * @throws IOException if the document cannot be converted.
+   */
+  @Test
+  public void shouldConvertDocumentToMigrate() throws IOException {
+
+    final var document = this.createDocumentToMigrate(3).put("nested", new JsonObject().put("key", "value"))
+        .put("values", new JsonArray().add(1).add(new JsonObject()));
+    final var model = Repository.migrationValueOf(document, DummyModel.class);
+    assertThat(model).isEqualTo(new DummyModel(3));
+
+  }
+
+  /**
+   * Should migrate a collection in batches.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldMigrateCollectionInBatches(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "2");
+    final var registry = new SimpleMeterRegistry();
+    repository.metrics = new PersistenceMetrics(registry);
+    final var options = new MigrationOptions();
+    options.batchSize = 2;
+    options.concurrency = 1;
+    final var collection = "collectionName";
+    doReturn(Future.succeededFuture()).when(pool).findOne(eq(options.checkpointCollection), any(), isNull());
+    doReturn(new JsonObjectsReadStream(this.createDocumentToMigrate(1), this.createDocumentToMigrate(2),
+        this.createDocumentToMigrate(3), this.createDocumentToMigrate(4), this.createDocumentToMigrate(5))).when(pool)
+        .findBatchWithOptions(eq(collection), any(), any(FindOptions.class));
+    doReturn(Future.succeededFuture(new MongoClientBulkWriteResult())).when(pool).bulkWriteWithOptions(eq(collection),
+        any(), any(BulkWriteOptions.class));
+    doReturn(Future.succeededFuture(new MongoClientUpdateResult())).when(pool).updateCollectionWithOptions(
+        eq(options.checkpointCollection), any(JsonObject.class), any(JsonObject.class), any(UpdateOptions.class));
+    doReturn(Future.succeededFuture(new MongoClientDeleteResult())).when(pool)
+        .removeDocument(eq(options.checkpointCollection), any());
+
+    repository.migrateCollection(collection, DummyModel.class, "2", options)
+        .onComplete(testContext.succeeding(migrated -> testContext.verify(() -> {
+
+          final ArgumentCaptor<List<BulkOperation>> operations = ArgumentCaptor.forClass(List.class);
+          verify(pool, times(3)).bulkWriteWithOptions(eq(collection), operations.capture(),
+              any(BulkWriteOptions.class));
+          assertThat(operations.getAllValues()).extracting(List::size).containsExactly(2, 2, 1);
+          final var first = operations.getAllValues().get(0).get(0);
+          assertThat(first.getFilter()).isEqualTo(new JsonObject().put("_id", "1"));
+          final var expectedSet = new JsonObject().put(Repository.SCHEMA_VERSION, "2").put("index", 1);
+          final var expectedUnset = new JsonObject().put("extra", "");
+          assertThat(first.getDocument()).isEqualTo(new JsonObject().put("$set", expectedSet)
+              .put("$inc", new JsonObject().put(Repository.VERSION, 1)).put("$unset", expectedUnset));
+          verify(pool, times(3)).updateCollectionWithOptions(eq(options.checkpointCollection), any(JsonObject.class),
+              any(JsonObject.class), any(UpdateOptions.class));
+          verify(pool).removeDocument(eq(options.checkpointCollection), any());
+          assertThat(registry.get(PersistenceMetrics.MIGRATED_DOCUMENTS_COUNTER_NAME)
+              .tag(PersistenceMetrics.COLLECTION_TAG, collection).counter().count()).isEqualTo(5);
+          assertThat(registry.get(PersistenceMetrics.MIGRATED_BATCHES_COUNTER_NAME)
+              .tag(PersistenceMetrics.COLLECTION_TAG, collection).counter().count()).isEqualTo(3);
+          assertThat(registry.get(PersistenceMetrics.OPERATION_TIMER_NAME)
+              .tags(PersistenceMetrics.COLLECTION_TAG, collection, PersistenceMetrics.OPERATION_TAG, "migrate")
+              .timer().count()).isEqualTo(1);
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should resume the migration of a collection from the stored checkpoint.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldResumeMigrateCollectionFromCheckpoint(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "2");
+    final var collection = "collectionName";
+    final var checkpointCollection = MigrationOptions.DEFAULT_CHECKPOINT_COLLECTION;
+    doReturn(Future.succeededFuture(new JsonObject().put("lastId", "3"))).when(pool)
+        .findOne(eq(checkpointCollection), any(), isNull());
+    doReturn(new JsonObjectsReadStream()).when(pool).findBatchWithOptions(eq(collection), any(),
+        any(FindOptions.class));
+    doReturn(Future.succeededFuture(new MongoClientDeleteResult())).when(pool).removeDocument(eq(checkpointCollection),
+        any());
+
+    repository.migrateCollection(collection, DummyModel.class, "2")
+        .onComplete(testContext.succeeding(migrated -> testContext.verify(() -> {
+
+          final var query = ArgumentCaptor.forClass(JsonObject.class);
+          verify(pool).findBatchWithOptions(eq(collection), query.capture(), any(FindOptions.class));
+          assertThat(query.getValue().getJsonArray("$and").getJsonObject(1))
+              .isEqualTo(new JsonObject().put("_id", new JsonObject().put("$gt", "3")));
+          verify(pool, never()).bulkWriteWithOptions(any(), any(), any());
+          verify(pool).removeDocument(eq(checkpointCollection), any());
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should not migrate a collection because the bulk write fails.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldNotMigrateCollectionBecauseBulkWriteFails(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "2");
+    final var options = new MigrationOptions();
+    options.checkpointCollection = null;
+    final var collection = "collectionName";
+    doReturn(new JsonObjectsReadStream(this.createDocumentToMigrate(1))).when(pool).findBatchWithOptions(eq(collection),
+        any(), any(FindOptions.class));
+    doReturn(Future.failedFuture("Cannot write")).when(pool).bulkWriteWithOptions(eq(collection), any(),
+        any(BulkWriteOptions.class));
+
+    testContext.assertFailure(repository.migrateCollection(collection, DummyModel.class, "2", options))
+        .onFailure(error -> testContext.completeNow());
+
+  }
+
+  /**
+   * Should search a keyset page without total and with the token to the next
+   * page.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldSearchKeysetPageObject(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    final var context = new ModelsPageContext();
+    context.query = new JsonObject().put("key", "value");
+    context.sort = new JsonObject().put("name", 1);
+    context.limit = 2;
+    context.withTotal = false;
+    final var sort = new JsonObject().put("name", 1).put("_id", 1);
+    context.after = PageToken.encode(sort, new JsonObject().put("_id", "0").put("name", "a"));
+    final var found = Arrays.asList(new JsonObject().put("_id", "1").put("name", "b"),
+        new JsonObject().put("_id", "2").put("name", "c"), new JsonObject().put("_id", "3").put("name", "d"));
+    doReturn(Future.succeededFuture(found)).when(pool).findWithOptions(eq("collection"), any(),
+        any(FindOptions.class));
+
+    repository.searchPageObject("collection", context, "models", null)
+        .onComplete(testContext.succeeding(page -> testContext.verify(() -> {
+
+          assertThat(page.containsKey("total")).isFalse();
+          assertThat(page.getJsonArray("models")).isEqualTo(new JsonArray(found.subList(0, 2)));
+          final var next = page.getString(PageToken.NEXT_FIELD);
+          assertThat(next).isEqualTo(PageToken.encode(sort, found.get(1)));
+          final var query = ArgumentCaptor.forClass(JsonObject.class);
+          final var options = ArgumentCaptor.forClass(FindOptions.class);
+          verify(pool).findWithOptions(eq("collection"), query.capture(), options.capture());
+          assertThat(query.getValue().getJsonArray("$and").getJsonObject(0)).isEqualTo(context.query);
+          assertThat(options.getValue().getSort()).isEqualTo(sort);
+          assertThat(options.getValue().getSkip()).isEqualTo(0);
+          assertThat(options.getValue().getLimit()).isEqualTo(3);
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should not return the token to the next page when the keyset page is exactly
+   * full.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldNotReturnNextForExactlyFullKeysetPage(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    final var context = new ModelsPageContext();
+    context.limit = 2;
+    context.withTotal = false;
+    final var found = Arrays.asList(new JsonObject().put("_id", "1"), new JsonObject().put("_id", "2"));
+    doReturn(Future.succeededFuture(found)).when(pool).findWithOptions(eq("collection"), any(),
+        any(FindOptions.class));
+
+    repository.searchPageObject("collection", context, "models", null)
+        .onComplete(testContext.succeeding(page -> testContext.verify(() -> {
+
+          assertThat(page.getJsonArray("models")).hasSize(2);
+          assertThat(page.containsKey(PageToken.NEXT_FIELD)).isFalse();
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should not search a keyset page with a bad token.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldNotSearchKeysetPageObjectWithBadToken(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    final var context = new ModelsPageContext();
+    context.after = "undefined";
+    testContext.assertFailure(repository.searchPageObject("collection", context, "models", null))
+        .onFailure(error -> testContext.verify(() -> {
+
+          assertThat(error).isInstanceOf(ValidationErrorException.class);
+          testContext.completeNow();
+
+        }));
+
+  }
+
+  /**
+   * Should obtain an aggregated page with a single pipeline.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldAggregatePageObjectWithFacet(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    final var facet = new JsonObject()
+        .put(AggregationBuilder.FACET_TOTAL, new JsonArray().add(new JsonObject().put("total", 3)))
+        .put(AggregationBuilder.FACET_MODELS,
+            new JsonArray().add(new JsonObject().put("a", new JsonObject().put("b", new JsonObject().put("i", 1))))
+                .add(new JsonObject().put("a", new JsonObject().put("b", new JsonObject().put("i", 2)))));
+    doReturn(new JsonObjectsReadStream(facet)).when(pool).aggregate(eq("collection"), any());
+
+    repository.aggregatePageObject("collection", new JsonObject(), new JsonObject().put("a.b.i", 1), 1, 2, "a.b")
+        .onComplete(testContext.succeeding(page -> testContext.verify(() -> {
+
+          assertThat(page).isEqualTo(new JsonObject().put("offset", 1).put("total", 3L).put("b",
+              new JsonArray().add(new JsonObject().put("i", 1)).add(new JsonObject().put("i", 2))));
+          final var pipeline = ArgumentCaptor.forClass(JsonArray.class);
+          verify(pool, times(1)).aggregate(eq("collection"), pipeline.capture());
+          final var stages = pipeline.getValue();
+          assertThat(stages.getJsonObject(stages.size() - 1).containsKey("$facet")).isTrue();
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should obtain an empty aggregated page when any element match.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldAggregateEmptyPageObjectWithFacet(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    final var facet = new JsonObject().put(AggregationBuilder.FACET_TOTAL, new JsonArray())
+        .put(AggregationBuilder.FACET_MODELS, new JsonArray());
+    doReturn(new JsonObjectsReadStream(facet)).when(pool).aggregate(eq("collection"), any());
+
+    repository.aggregatePageObject("collection", new JsonObject(), new JsonObject(), 0, 10, "a.b")
+        .onComplete(testContext.succeeding(page -> testContext.verify(() -> {
+
+          assertThat(page).isEqualTo(new JsonObject().put("offset", 0).put("total", 0L));
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should obtain a keyset aggregated page without calculating the total.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldAggregateKeysetPageObjectWithoutFacet(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    final var context = new ModelsPageContext();
+    context.limit = 1;
+    context.withTotal = false;
+    final var document = new JsonObject().put("_id", "1").put("aIndex", 0).put("a", new JsonObject().put("i", 1));
+    final var nextDocument = new JsonObject().put("_id", "1").put("aIndex", 1).put("a", new JsonObject().put("i", 2));
+    doReturn(new JsonObjectsReadStream(document, nextDocument)).when(pool).aggregate(eq("collection"), any());
+
+    repository.aggregatePageObject("collection", context, "a")
+        .onComplete(testContext.succeeding(page -> testContext.verify(() -> {
+
+          assertThat(page.containsKey("total")).isFalse();
+          assertThat(page.getJsonArray("a")).isEqualTo(new JsonArray().add(new JsonObject().put("i", 1)));
+          assertThat(page.getString(PageToken.NEXT_FIELD)).isEqualTo(
+              PageToken.encode(new JsonObject().put("_id", 1).put("aIndex", 1), document));
+          final var pipeline = ArgumentCaptor.forClass(JsonArray.class);
+          verify(pool).aggregate(eq("collection"), pipeline.capture());
+          assertThat(pipeline.getValue().encode()).doesNotContain("$facet").contains("$project")
+              .contains("{\"$limit\":2}");
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should not return the token to the next page when the keyset aggregated page
+   * is exactly full.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldNotReturnNextForExactlyFullKeysetAggregatedPage(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    final var context = new ModelsPageContext();
+    context.limit = 1;
+    context.withTotal = false;
+    final var document = new JsonObject().put("_id", "1").put("aIndex", 0).put("a", new JsonObject().put("i", 1));
+    doReturn(new JsonObjectsReadStream(document)).when(pool).aggregate(eq("collection"), any());
+
+    repository.aggregatePageObject("collection", context, "a")
+        .onComplete(testContext.succeeding(page -> testContext.verify(() -> {
+
+          assertThat(page.getJsonArray("a")).isEqualTo(new JsonArray().add(new JsonObject().put("i", 1)));
+          assertThat(page.containsKey(PageToken.NEXT_FIELD)).isFalse();
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should exclude the schema version when all the fields are returned.
+   *
+   * @see Repository#fieldsWithoutSchema(JsonObject, Iterable)
+   */
+  @Test
+  public void shouldFieldsWithoutSchemaExcludeSchemaVersion() {
+
+    assertThat(Repository.fieldsWithoutSchema(null))
+        .isEqualTo(new JsonObject().put(Repository.SCHEMA_VERSION, false));
+    final var fields = new JsonObject().put("norms", 0);
+    assertThat(Repository.fieldsWithoutSchema(fields, Arrays.asList("name")))
+        .isEqualTo(new JsonObject().put("norms", 0).put(Repository.SCHEMA_VERSION, false));
+    assertThat(fields).isEqualTo(new JsonObject().put("norms", 0));
+
+  }
+
+  /**
+   * Should only include the fields and the required paths.
+   *
+   * @see Repository#fieldsWithoutSchema(JsonObject, Iterable)
+   */
+  @Test
+  public void shouldFieldsWithoutSchemaIncludeFieldsAndRequired() {
+
+    final var fields = new JsonObject().put("id", 1).put("name.first", true).put("norms", 0);
+    assertThat(Repository.fieldsWithoutSchema(fields, Arrays.asList("name", "_id")))
+        .isEqualTo(new JsonObject().put("_id", 1).put("name", 1));
+    assertThat(Repository.fieldsWithoutSchema(new JsonObject().put("name", 1).put("_id", 0)))
+        .isEqualTo(new JsonObject().put("name", 1).put("_id", 0));
+
+  }
+
+  /**
+   * Should search a keyset page with only some fields.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldSearchKeysetPageObjectWithFields(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    final var context = new ModelsPageContext();
+    context.sort = new JsonObject().put("updateTs", -1);
+    context.limit = 10;
+    context.withTotal = false;
+    context.fields = new JsonObject().put("id", 1).put("name", 1);
+    doReturn(Future.succeededFuture(new ArrayList<>())).when(pool).findWithOptions(eq("collection"), any(),
+        any(FindOptions.class));
+
+    repository.searchPageObject("collection", context, "models", null)
+        .onComplete(testContext.succeeding(page -> testContext.verify(() -> {
+
+          final var options = ArgumentCaptor.forClass(FindOptions.class);
+          verify(pool).findWithOptions(eq("collection"), any(), options.capture());
+          assertThat(options.getValue().getFields())
+              .isEqualTo(new JsonObject().put("_id", 1).put("name", 1).put("updateTs", 1));
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should add or update documents in batches.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldBulkUpsertDocumentsInBatches(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    final var models = Arrays.asList(new JsonObject().put("key", "1"), null, new JsonObject().put("key", "2"),
+        new JsonObject().put("key", "3").put("_creationTs", 1));
+    doReturn(
+        Future.succeededFuture(new MongoClientBulkWriteResult(0, 1, 0, 1,
+            Arrays.asList(new JsonObject().put(MongoClientBulkWriteResult.INDEX, 1)
+                .put(MongoClientBulkWriteResult.ID, "added")))),
+        Future.failedFuture("Connection closed")).when(pool)
+        .bulkWriteWithOptions(eq("collection"), any(), any(BulkWriteOptions.class));
+
+    final var options = new BulkUpsertOptions();
+    options.batchSize = 2;
+    repository.bulkUpsertDocuments("collection", models, model -> new JsonObject().put("key", model.getString("key")),
+        options).onComplete(testContext.succeeding(results -> testContext.verify(() -> {
+
+          assertThat(results).isEqualTo(new JsonArray().add(BulkUpsertResults.written(0, null))
+              .add(BulkUpsertResults.failed(1, "Not found document to update"))
+              .add(BulkUpsertResults.written(2, "added")).add(BulkUpsertResults.failed(3, "Connection closed")));
+          @SuppressWarnings("unchecked")
+          final ArgumentCaptor<List<BulkOperation>> operations = ArgumentCaptor.forClass(List.class);
+          verify(pool, times(2)).bulkWriteWithOptions(eq("collection"), operations.capture(),
+              any(BulkWriteOptions.class));
+          final var last = operations.getValue().get(0);
+          assertThat(last.isUpsert()).isTrue();
+          assertThat(last.getFilter()).isEqualTo(new JsonObject().put("key", "3"));
+          assertThat(last.getDocument().getJsonObject("$set").containsKey("_creationTs")).isFalse();
+          assertThat(models.get(3).containsKey("_creationTs")).isTrue();
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should stop an ordered bulk upsert on the first failure.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldStopOrderedBulkUpsertDocumentsOnFailure(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    final var models = Arrays.asList(new JsonObject().put("key", "1"), new JsonObject().put("key", "2"),
+        new JsonObject().put("key", "3"), new JsonObject().put("key", "4"));
+    final var cause = new MongoBulkWriteException(
+        BulkWriteResult.acknowledged(0, 0, 0, 0,
+            Arrays.asList(new BulkWriteUpsert(0, new BsonString("added")))),
+        Arrays.asList(new BulkWriteError(11000, "Duplicated key", new BsonDocument(), 1)), null,
+        new ServerAddress());
+    doReturn(Future.failedFuture(cause)).when(pool).bulkWriteWithOptions(eq("collection"), any(),
+        any(BulkWriteOptions.class));
+
+    final var options = new BulkUpsertOptions();
+    options.batchSize = 3;
+    options.ordered = true;
+    repository.bulkUpsertDocuments("collection", models, model -> model.copy(), options)
+        .onComplete(testContext.succeeding(results -> testContext.verify(() -> {
+
+          assertThat(results).isEqualTo(new JsonArray().add(BulkUpsertResults.written(0, "added"))
+              .add(BulkUpsertResults.failed(1, "Duplicated key")).add(BulkUpsertResults.notExecuted(2))
+              .add(BulkUpsertResults.notExecuted(3)));
+          final var writeOptions = ArgumentCaptor.forClass(BulkWriteOptions.class);
+          verify(pool, times(1)).bulkWriteWithOptions(eq("collection"), any(), writeOptions.capture());
+          assertThat(writeOptions.getValue().isOrdered()).isTrue();
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should stream the documents in batches.
+   *
+   * @param pool  mocked MongoDB client.
+   * @param vertx event bus to use.
+   */
+  @Test
+  public void shouldStreamDocuments(@Mock final MongoClient pool, final Vertx vertx) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    doReturn(new JsonObjectsReadStream(new JsonObject().put("_id", "1"))).when(pool)
+        .findBatchWithOptions(eq("collection"), any(), any(FindOptions.class));
+
+    final var found = new ArrayList<JsonObject>();
+    repository.streamDocuments("collection", null, new FindOptions(), document -> new JsonObject().put("id",
+        document.getString("_id"))).handler(found::add);
+    assertThat(found).containsExactly(new JsonObject().put("id", "1"));
+    final var options = ArgumentCaptor.forClass(FindOptions.class);
+    verify(pool).findBatchWithOptions(eq("collection"), eq(new JsonObject()), options.capture());
+    assertThat(options.getValue().getBatchSize()).isEqualTo(Repository.DEFAULT_STREAM_BATCH_SIZE);
+    assertThat(options.getValue().getFields()).isEqualTo(new JsonObject().put(Repository.SCHEMA_VERSION, false));
+
+  }
+
+  /**
+   * Should stream an aggregation in batches.
+   *
+   * @param pool  mocked MongoDB client.
+   * @param vertx event bus to use.
+   */
+  @Test
+  public void shouldStreamAggregation(@Mock final MongoClient pool, final Vertx vertx) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    final var stream = new JsonObjectsReadStream();
+    doReturn(stream).when(pool).aggregateWithOptions(eq("collection"), any(), any(AggregateOptions.class));
+
+    assertThat(repository.streamAggregation("collection", new JsonArray(), null)).isSameAs(stream);
+    final var options = ArgumentCaptor.forClass(AggregateOptions.class);
+    verify(pool).aggregateWithOptions(eq("collection"), eq(new JsonArray()), options.capture());
+    assertThat(options.getValue().getBatchSize()).isEqualTo(Repository.DEFAULT_STREAM_BATCH_SIZE);
+
+  }
+
+  /**
+   * Should declare the indexes and queries on the shared registry.
+   *
+   * @param pool  mocked MongoDB client.
+   * @param vertx event bus to use.
+   */
+  @Test
+  public void shouldDeclareIndexesOnSharedRegistry(@Mock final MongoClient pool, final Vertx vertx) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    repository.declareIndex("collection", new JsonObject().put("name", 1));
+    repository.declareQuery("collection", new JsonObject().put("name", "value"), null);
+    final var registry = IndexRegistry.shared(vertx);
+    assertThat(registry.indexesOf("collection")).hasSize(1);
+    assertThat(registry.queries).hasSize(1);
+
+  }
+
+  /**
+   * Should count and search a page with the collation of the context.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldSearchPageObjectWithCollation(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    final var builder = new QueryBuilder(QueryBuilder.MatchMode.INDEXED).withEqOrRegex("name", "/^jo/");
+    final var context = new ModelsPageContext();
+    context.query = builder.build();
+    context.collation = builder.collation();
+    context.limit = 10;
+    doReturn(Future.succeededFuture(1L)).when(pool).countWithOptions(eq("collection"), any(), any(CountOptions.class));
+    doReturn(Future.succeededFuture(Arrays.asList(new JsonObject()))).when(pool).findWithOptions(eq("collection"),
+        any(), any(FindOptions.class));
+
+    repository.searchPageObject("collection", context, "models", null)
+        .onComplete(testContext.succeeding(page -> testContext.verify(() -> {
+
+          assertThat(page.getLong("total")).isEqualTo(1L);
+          final var countOptions = ArgumentCaptor.forClass(CountOptions.class);
+          verify(pool).countWithOptions(eq("collection"), eq(context.query), countOptions.capture());
+          assertThat(countOptions.getValue().getCollation()).isSameAs(context.collation);
+          final var findOptions = ArgumentCaptor.forClass(FindOptions.class);
+          verify(pool).findWithOptions(eq("collection"), eq(context.query), findOptions.capture());
+          assertThat(findOptions.getValue().getCollation()).isSameAs(context.collation);
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Check that the query to update a document increases its version.
+   *
+   * @param pool  mocked MongoDB client.
+   * @param vertx event bus to use.
+   */
+  @Test
+  public void shouldCreateUpdateQueryThatIncreasesVersion(@Mock final MongoClient pool, final Vertx vertx) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    final var updated = new JsonObject().put("_id", "1").put("_creationTs", 3).put(Repository.VERSION, 7)
+        .put("name", "Jane").put("removed", null);
+
+    assertThat(repository.createUpdateQueryFor(updated)).isEqualTo(new JsonObject()
+        .put("$set", new JsonObject().put(Repository.SCHEMA_VERSION, "version").put("_id", "1").put("name", "Jane"))
+        .put("$inc", new JsonObject().put(Repository.VERSION, 1))
+        .put("$unset", new JsonObject().put("removed", "")));
+
+  }
+
+  /**
+   * Should create a delta update with only the changed fields.
+   *
+   * @param pool  mocked MongoDB client.
+   * @param vertx event bus to use.
+   */
+  @Test
+  public void shouldCreateDeltaUpdateQueryWithOnlyTheChanges(@Mock final MongoClient pool, final Vertx vertx) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    final var original = new JsonObject().put("_id", "1").put("_creationTs", 1).put("_lastUpdateTs", 2)
+        .put("name", "Jane").put("removed", "value").put("untouched", "value")
+        .put("tags", new JsonArray().add("a").add("b")).put("list", new JsonArray().add(1).add(2))
+        .put("attributes", new JsonObject().put("age", 30).put("city", "BCN").put("old", true))
+        .put("empty", new JsonObject());
+    final var updated = new JsonObject().put("_id", "1").put("_creationTs", 3).put("_lastUpdateTs", 4)
+        .put(Repository.VERSION, 7).put("name", "Jane").put("removed", null)
+        .put("tags", new JsonArray().add("a").add("b").add("c")).put("list", new JsonArray().add(2).add(1))
+        .put("attributes", new JsonObject().put("age", 31).put("city", "BCN").put("new", "x"))
+        .put("empty", new JsonObject().put("key", "value"));
+
+    assertThat(repository.createDeltaUpdateQueryFor(original, updated)).isEqualTo(new JsonObject()
+        .put("$set",
+            new JsonObject().put(Repository.SCHEMA_VERSION, "version").put("_lastUpdateTs", 4)
+                .put("list", new JsonArray().add(2).add(1)).put("attributes.age", 31).put("attributes.new", "x")
+                .put("empty", new JsonObject().put("key", "value")))
+        .put("$inc", new JsonObject().put(Repository.VERSION, 1))
+        .put("$unset", new JsonObject().put("removed", "").put("attributes.old", ""))
+        .put("$push", new JsonObject().put("tags", new JsonObject().put("$each", new JsonArray().add("c")))));
+
+  }
+
+  /**
+   * Should update a document with the delta when it has not been modified.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldUpdateOneDocumentWithDelta(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    final var query = new JsonObject().put("_id", "1");
+    final var original = new JsonObject().put("_lastUpdateTs", 2).put(Repository.VERSION, 5).put("name", "Jane");
+    final var updated = new JsonObject().put("_lastUpdateTs", 2).put(Repository.VERSION, 6).put("name", "Jane");
+    doReturn(Future.succeededFuture(new MongoClientUpdateResult(1, null, 1))).when(pool)
+        .updateCollectionWithOptions(eq("collection"), any(), any(JsonObject.class), any());
+
+    repository.updateOneDocumentIfNotModified("collection", query, original, updated)
+        .onComplete(testContext.succeeding(any -> testContext.verify(() -> {
+
+          verify(pool).updateCollectionWithOptions(eq("collection"),
+              eq(new JsonObject().put("_id", "1").put(Repository.VERSION, 5L)),
+              eq(new JsonObject().put("$set", new JsonObject().put(Repository.SCHEMA_VERSION, "version"))
+                  .put("$inc", new JsonObject().put(Repository.VERSION, 1))),
+              any());
+          assertThat(query).isEqualTo(new JsonObject().put("_id", "1"));
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should update a document with the delta when it has not been modified and
+   * it has not been updated with a delta before.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldUpdateOneDocumentWithDeltaWithoutVersion(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    final var query = new JsonObject().put("_id", "1");
+    doReturn(Future.succeededFuture(new MongoClientUpdateResult(1, null, 1))).when(pool)
+        .updateCollectionWithOptions(eq("collection"), any(), any(JsonObject.class), any());
+
+    repository.updateOneDocumentIfNotModified("collection", query, new JsonObject().put("name", "Jane"),
+        new JsonObject().put("name", "John")).onComplete(testContext.succeeding(any -> testContext.verify(() -> {
+
+          verify(pool).updateCollectionWithOptions(eq("collection"),
+              eq(new JsonObject().put("_id", "1").put(Repository.VERSION,
+                  new JsonObject().put("$exists", false))),
+              eq(new JsonObject()
+                  .put("$set", new JsonObject().put(Repository.SCHEMA_VERSION, "version").put("name", "John"))
+                  .put("$inc", new JsonObject().put(Repository.VERSION, 1))),
+              any());
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should fail the delta update when the document has been modified.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldFailUpdateOneDocumentWithDeltaWhenModified(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    final var query = new JsonObject().put("_id", "1");
+    doReturn(Future.succeededFuture(new MongoClientUpdateResult(0, null, 0))).when(pool)
+        .updateCollectionWithOptions(eq("collection"), any(), any(JsonObject.class), any());
+    doReturn(Future.succeededFuture(1L)).when(pool).count("collection", query);
+
+    repository.updateOneDocumentIfNotModified("collection", query, new JsonObject().put(Repository.VERSION, 2),
+        new JsonObject().put(Repository.VERSION, 3)).onComplete(testContext.failing(error -> testContext.verify(() -> {
+
+          assertThat(error).isInstanceOf(ConcurrentUpdateException.class);
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should fail the delta update when the document is not defined.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldFailUpdateOneDocumentWithDeltaWhenNotFound(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    final var query = new JsonObject().put("_id", "1");
+    doReturn(Future.succeededFuture(new MongoClientUpdateResult(0, null, 0))).when(pool)
+        .updateCollectionWithOptions(eq("collection"), any(), any(JsonObject.class), any());
+    doReturn(Future.succeededFuture(0L)).when(pool).count("collection", query);
+
+    repository.updateOneDocumentIfNotModified("collection", query, new JsonObject().put(Repository.VERSION, 2),
+        new JsonObject().put(Repository.VERSION, 3)).onComplete(testContext.failing(error -> testContext.verify(() -> {
+
+          assertThat(error).isNotInstanceOf(ConcurrentUpdateException.class);
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should reuse the cached total until the collection is modified.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldReuseCachedTotalUntilModified(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    final var query = new JsonObject().put("key", "value");
+    doReturn(Future.succeededFuture(0L)).when(pool).count("collection", query);
+    doReturn(Future.succeededFuture("1")).when(pool).insert(eq("collection"), any());
+
+    final var options = new FindOptions();
+    repository.searchPageObject("collection", query, options, "models", null)
+        .compose(first -> repository.searchPageObject("collection", query.copy(), options, "models", null))
+        .compose(second -> repository.storeOneDocument("collection", new JsonObject(), null))
+        .compose(stored -> repository.searchPageObject("collection", query, options, "models", null))
+        .onComplete(testContext.succeeding(page -> testContext.verify(() -> {
+
+          assertThat(page).isEqualTo(new JsonObject().put("offset", 0).put("total", 0L));
+          verify(pool, times(2)).count("collection", query);
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should count exactly the total of a query without filter when the
+   * estimation is not enabled.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldCountTotalOfQueryWithoutFilterByDefault(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "version");
+    doReturn(Future.succeededFuture(3L)).when(pool).count(eq("collection"), any());
+    doReturn(Future.succeededFuture(Arrays.asList(new JsonObject()))).when(pool).findWithOptions(eq("collection"),
+        any(), any(FindOptions.class));
+
+    final var context = new ModelsPageContext();
+    context.limit = 10;
+    repository.searchPageObject("collection", context, "models", null)
+        .onComplete(testContext.succeeding(page -> testContext.verify(() -> {
+
+          assertThat(page.getLong("total")).isEqualTo(3L);
+          assertThat(page.containsKey(Repository.ESTIMATED_TOTAL_FIELD)).isFalse();
+          verify(pool, never()).runCommand(any(), any());
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should estimate the total when the query does not filter the models and the
+   * estimation is enabled.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldEstimateTotalOfQueryWithoutFilter(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var options = new CountCacheOptions();
+    options.estimate = true;
+    CountCache.shared(vertx, options);
+    final var repository = new Repository(vertx, pool, "version");
+    doReturn(Future.succeededFuture(new JsonObject().put("n", 3).put("ok", 1))).when(pool).runCommand(eq("count"),
+        any());
+    doReturn(Future.succeededFuture(Arrays.asList(new JsonObject()))).when(pool).findWithOptions(eq("collection"),
+        any(), any(FindOptions.class));
+
+    final var context = new ModelsPageContext();
+    context.limit = 10;
+    repository.searchPageObject("collection", context, "models", null)
+        .onComplete(testContext.succeeding(page -> testContext.verify(() -> {
+
+          assertThat(page.getLong("total")).isEqualTo(3L);
+          assertThat(page.getBoolean(Repository.ESTIMATED_TOTAL_FIELD)).isTrue();
+          assertThat(page.getJsonArray("models")).hasSize(1);
+          verify(pool).runCommand("count", new JsonObject().put("count", "collection"));
+          verify(pool, never()).count(any(), any());
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should store a document behind with the schema version and return it with
+   * its identifier.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @SuppressWarnings("unchecked")
+  @Test
+  public void shouldStoreOneDocumentBehind(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    doReturn(Future.succeededFuture(new MongoClientBulkWriteResult())).when(pool).bulkWriteWithOptions(eq("behind"),
+        any(), any(BulkWriteOptions.class));
+    final var repository = new Repository(vertx, pool, "2");
+    final var options = new WriteBehindOptions();
+    options.batchSize = 1;
+    WriteBehindQueue.configure(vertx, repository.storage, options);
+    repository.storeOneDocumentBehind("behind", new JsonObject().put("key", "value"), null)
+        .onComplete(testContext.succeeding(stored -> testContext.verify(() -> {
+
+          assertThat(stored.getString("_id")).isNotEmpty();
+          assertThat(stored.getString("key")).isEqualTo("value");
+          assertThat(stored.containsKey(Repository.SCHEMA_VERSION)).isFalse();
+          @SuppressWarnings("rawtypes")
+          final ArgumentCaptor<List> operations = ArgumentCaptor.forClass(List.class);
+          verify(pool, times(1)).bulkWriteWithOptions(eq("behind"), operations.capture(),
+              any(BulkWriteOptions.class));
+          final var document = ((List<BulkOperation>) operations.getValue()).get(0).getDocument();
+          assertThat(document.getString(Repository.SCHEMA_VERSION)).isEqualTo("2");
+          assertThat(document.getString("_id")).isEqualTo(stored.getString("_id"));
+          WriteBehindQueue.closeAll(vertx, repository.storage).onComplete(testContext.succeedingThenComplete());
+
+        })));
+
+  }
+
+  /**
+   * Should search a page only on the buckets that overlap the range, visiting
+   * them from the newest to the oldest.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldSearchBucketsPageObject(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    doReturn(Future.succeededFuture(List.of("interactions_202304", "interactions_202305", "interactions_202306",
+        "interactions_202307"))).when(pool).getCollections();
+    doReturn(Future.succeededFuture(2L)).when(pool).count(eq("interactions_202305"), any());
+    doReturn(Future.succeededFuture(3L)).when(pool).count(eq("interactions_202306"), any());
+    doReturn(Future.succeededFuture(4L)).when(pool).count(eq("interactions_202307"), any());
+    doReturn(Future.succeededFuture(List.of(new JsonObject().put("id", "1"))))
+        .when(pool).findWithOptions(eq("interactions_202307"), any(), any(FindOptions.class));
+    doReturn(Future.succeededFuture(List.of(new JsonObject().put("id", "2"), new JsonObject().put("id", "3"))))
+        .when(pool).findWithOptions(eq("interactions_202306"), any(), any(FindOptions.class));
+    final var repository = new Repository(vertx, pool, "2");
+    final var buckets = TimeBucketsTest.createMonthlyBuckets(0);
+    final var options = new FindOptions().setSort(new JsonObject().put("timestamp", -1)).setSkip(3).setLimit(3);
+    repository.searchBucketsPageObject(buckets, TimeBucketsTest.secondsOf(2023, 5, 10), null,
+        new JsonObject().put("appId", "1"), options, "interactions", null)
+        .onComplete(testContext.succeeding(page -> testContext.verify(() -> {
+
+          assertThat(page).isEqualTo(new JsonObject().put("offset", 3).put("total", 9L).put("interactions",
+              new JsonArray().add(new JsonObject().put("id", "1")).add(new JsonObject().put("id", "2"))
+                  .add(new JsonObject().put("id", "3"))));
+          final var newest = ArgumentCaptor.forClass(FindOptions.class);
+          verify(pool, times(1)).findWithOptions(eq("interactions_202307"), any(), newest.capture());
+          assertThat(newest.getValue().getSkip()).isEqualTo(3);
+          assertThat(newest.getValue().getLimit()).isEqualTo(1);
+          final var older = ArgumentCaptor.forClass(FindOptions.class);
+          verify(pool, times(1)).findWithOptions(eq("interactions_202306"), any(), older.capture());
+          assertThat(older.getValue().getSkip()).isEqualTo(0);
+          assertThat(older.getValue().getLimit()).isEqualTo(2);
+          verify(pool, never()).findWithOptions(eq("interactions_202305"), any(), any(FindOptions.class));
+          verify(pool, never()).count(eq("interactions_202304"), any());
+          assertThat(options.getFields()).isEqualTo(new JsonObject());
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should not search the buckets when the documents are not sorted first by
+   * the timestamp.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldNotSearchBucketsSortedByOtherField(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    final var repository = new Repository(vertx, pool, "2");
+    final var options = new FindOptions().setSort(new JsonObject().put("appId", 1).put("timestamp", -1));
+    testContext.assertFailure(repository.searchBucketsPageObject(TimeBucketsTest.createMonthlyBuckets(0), null, null,
+        null, options, "interactions", null)).onFailure(error -> testContext.verify(() -> {
+
+          assertThat(error).isInstanceOf(ValidationErrorException.class);
+          assertThat(((ValidationErrorException) error).getCode()).isEqualTo("order");
+          verify(pool, never()).getCollections();
+          testContext.completeNow();
+
+        }));
+
+  }
+
+  /**
+   * Should store a document on the bucket of its timestamp.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldStoreOneDocumentInBucket(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    doReturn(Future.succeededFuture("1")).when(pool).insert(eq("interactions_202305"), any());
+    final var repository = new Repository(vertx, pool, "2");
+    final var buckets = TimeBucketsTest.createMonthlyBuckets(0);
+    final var timestamp = TimeBucketsTest.secondsOf(2023, 5, 10);
+    repository.storeOneDocumentInBucket(buckets, new JsonObject().put("timestamp", timestamp), null)
+        .onComplete(testContext.succeeding(stored -> testContext.verify(() -> {
+
+          assertThat(stored).isEqualTo(new JsonObject().put("timestamp", timestamp));
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should measure each call to MongoDB of the operations of the repository.
+   *
+   * @param pool        mocked MongoDB client.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldMeasureOperations(@Mock final MongoClient pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    doReturn(Future.succeededFuture(null)).when(pool).findOne(eq("measured"), any(), any());
+    doReturn(Future.succeededFuture(0L)).when(pool).count(eq("measured"), any());
+    final var repository = new Repository(vertx, pool, "2");
+    final var registry = new SimpleMeterRegistry();
+    repository.metrics = new PersistenceMetrics(registry);
+    repository.findOneDocument("measured", new JsonObject(), null, null).otherwiseEmpty()
+        .compose(any -> repository.searchPageObject("measured", new JsonObject().put("key", "value"),
+            new FindOptions(), "models", null))
+        .onComplete(testContext.succeeding(page -> testContext.verify(() -> {
+
+          assertThat(registry.get(PersistenceMetrics.OPERATION_TIMER_NAME)
+              .tags(PersistenceMetrics.COLLECTION_TAG, "measured", PersistenceMetrics.OPERATION_TAG, "findOne",
+                  PersistenceMetrics.OUTCOME_TAG, PersistenceMetrics.SUCCESS_OUTCOME)
+              .timer().count()).isEqualTo(1);
+          assertThat(registry.get(PersistenceMetrics.OPERATION_TIMER_NAME).timers()).hasSize(2);
+          assertThat(registry.get(PersistenceMetrics.OPERATION_TIMER_NAME)
+              .tags(PersistenceMetrics.COLLECTION_TAG, "measured", PersistenceMetrics.OPERATION_TAG, "count").timer()
+              .count()).isEqualTo(1);
+          testContext.completeNow();
+
+        })));
+
+  }
+
+  /**
+   * Should search the pages on the pool of the read preference of the
+   * collection and find the models to modify on the primary.
+   *
+   * @param pool        mocked primary MongoDB client.
+   * @param secondary   mocked MongoDB client to read from the secondaries.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldReadPagesWithReadPreference(@Mock final MongoClient pool, @Mock final MongoClient secondary,
+      final Vertx vertx, final VertxTestContext testContext) {
+
+    ReadPools.shared(vertx).configure(preference -> new MongoRepositoryStorage(secondary),
+        ReadPoolsTest.createConfiguration());
+    final var query = new JsonObject().put("appId", "1");
+    doReturn(Future.succeededFuture(1L)).when(secondary).count(eq("interactions"), eq(query));
+    doReturn(Future.succeededFuture(List.of(new JsonObject().put("id", "1")))).when(secondary)
+        .findWithOptions(eq("interactions"), eq(query), any(FindOptions.class));
+    doReturn(Future.succeededFuture(new JsonObject().put("id", "1"))).when(pool).findOne(eq("interactions"), any(),
+        any());
+    doReturn(Future.succeededFuture()).when(secondary).close();
+    final var repository = new Repository(vertx, pool, "2");
+    repository.searchPageObject("interactions", query, new FindOptions(), "interactions", null)
+        .compose(page -> repository.findOneDocument("interactions", query, null, null).map(page))
+        .onComplete(testContext.succeeding(page -> testContext.verify(() -> {
+
+          assertThat(page.getJsonArray("interactions")).hasSize(1);
+          verify(pool, never()).findWithOptions(any(), any(), any(FindOptions.class));
+          verify(secondary, never()).findOne(any(), any(), any());
+          ReadPools.shared(vertx).release().onComplete(testContext.succeedingThenComplete());
+
+        })));
+
+  }
+
+  /**
+   * Should count and search the buckets on the pool of the read preference of
+   * the collection.
+   *
+   * @param pool        mocked primary MongoDB client.
+   * @param secondary   mocked MongoDB client to read from the secondaries.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldSearchBucketsWithReadPreference(@Mock final MongoClient pool, @Mock final MongoClient secondary,
+      final Vertx vertx, final VertxTestContext testContext) {
+
+    ReadPools.shared(vertx).configure(preference -> new MongoRepositoryStorage(secondary),
+        ReadPoolsTest.createConfiguration());
+    doReturn(Future.succeededFuture(List.of("interactions_202305"))).when(pool).getCollections();
+    doReturn(Future.succeededFuture(1L)).when(secondary).count(eq("interactions_202305"), any());
+    doReturn(Future.succeededFuture(List.of(new JsonObject().put("id", "1")))).when(secondary)
+        .findWithOptions(eq("interactions_202305"), any(), any(FindOptions.class));
+    doReturn(Future.succeededFuture()).when(secondary).close();
+    final var repository = new Repository(vertx, pool, "2");
+    final var buckets = TimeBucketsTest.createMonthlyBuckets(0);
+    repository.searchBucketsPageObject(buckets, TimeBucketsTest.secondsOf(2023, 5, 10), null, new JsonObject(),
+        new FindOptions(), "interactions", null).onComplete(testContext.succeeding(page -> testContext.verify(() -> {
+
+          assertThat(page.getLong("total")).isEqualTo(1L);
+          assertThat(page.getJsonArray("interactions")).hasSize(1);
+          verify(pool, never()).count(any(), any());
+          verify(pool, never()).findWithOptions(any(), any(), any(FindOptions.class));
+          ReadPools.shared(vertx).release().onComplete(testContext.succeedingThenComplete());
+
+        })));
+
+  }
+
+  /**
+   * Should estimate the number of documents on the pool of the read preference
+   * of the collection.
+   *
+   * @param pool        mocked primary MongoDB client.
+   * @param secondary   mocked MongoDB client to read from the secondaries.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldEstimateCountWithReadPreference(@Mock final MongoClient pool, @Mock final MongoClient secondary,
+      final Vertx vertx, final VertxTestContext testContext) {
+
+    ReadPools.shared(vertx).configure(preference -> new MongoRepositoryStorage(secondary),
+        ReadPoolsTest.createConfiguration());
+    doReturn(Future.succeededFuture(new JsonObject().put("n", 3L))).when(secondary).runCommand(eq("count"), any());
+    doReturn(Future.succeededFuture()).when(secondary).close();
+    final var repository = new Repository(vertx, pool, "2");
+    repository.estimatedCount("interactions").onComplete(testContext.succeeding(total -> testContext.verify(() -> {
+
+      assertThat(total).isEqualTo(3L);
+      verify(pool, never()).runCommand(any(), any());
+      ReadPools.shared(vertx).release().onComplete(testContext.succeedingThenComplete());
+
+    })));
+
+  }
+
 }
@@ -21,6 +21,7 @@
 package eu.internetofus.common.vertx;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -177,4 +178,68 @@ public class ServiceRequestsTest {
 
   }
 
+  /**
+   * Check that not extract fields when the request does not define them.
+   *
+   * @see ServiceRequests#extractFieldsProjection(ServiceRequest)
+   */
+  @Test
+  public void shouldNotExtractFieldsProjectionWhenNotDefined() {
+
+    assertThat(ServiceRequests.extractFieldsProjection(null)).isNull();
+    assertThat(ServiceRequests.extractFieldsProjection(new ServiceRequest(new JsonObject()))).isNull();
+    final var request = new ServiceRequest(new JsonObject().put("params",
+        new JsonObject().put("query", new JsonObject().put(ServiceRequests.FIELDS_PARAMETER, " , "))));
+    assertThat(ServiceRequests.extractFieldsProjection(request)).isNull();
+
+  }
+
+  /**
+   * Check that extract the fields defined as a string.
+   *
+   * @see ServiceRequests#extractFieldsProjection(ServiceRequest)
+   */
+  @Test
+  public void shouldExtractFieldsProjectionFromString() {
+
+    final var request = new ServiceRequest(new JsonObject().put("params",
+        new JsonObject().put("query", new JsonObject().put(ServiceRequests.FIELDS_PARAMETER, "id, name.first"))));
+    assertThat(ServiceRequests.extractFieldsProjection(request))
+        .isEqualTo(new JsonObject().put("id", 1).put("name.first", 1));
+
+  }
+
+  /**
+   * Check that extract the fields defined as an array.
+   *
+   * @see ServiceRequests#extractFieldsProjection(ServiceRequest)
+   */
+  @Test
+  public void shouldExtractFieldsProjectionFromArray() {
+
+    final var request = new ServiceRequest(new JsonObject().put("params", new JsonObject().put("query",
+        new JsonObject().put(ServiceRequests.FIELDS_PARAMETER, new JsonArray().add("id,name").add("gender")))));
+    assertThat(ServiceRequests.extractFieldsProjection(request))
+        .isEqualTo(new JsonObject().put("id", 1).put("name", 1).put("gender", 1));
+
+  }
+
+  /**
+   * Check that not extract the fields that are empty or start with {@code $}.
+   *
+   * @param fields that are not valid.
+   *
+   * @see ServiceRequests#extractFieldsProjection(ServiceRequest)
+   */
+  @ParameterizedTest(name = "Should not extract the fields {0}")
+  @ValueSource(strings = { "$where", "id,name.$ne", "name..first", ".name", "name." })
+  public void shouldNotExtractFieldsProjectionWithBadFields(final String fields) {
+
+    final var request = new ServiceRequest(new JsonObject().put("params",
+        new JsonObject().put("query", new JsonObject().put(ServiceRequests.FIELDS_PARAMETER, fields))));
+    assertThatThrownBy(() -> ServiceRequests.extractFieldsProjection(request))
+        .isInstanceOf(IllegalArgumentException.class);
+
+  }
+
 }
@@ -0,0 +1,82 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the {@link TimeBucketOptions}.
+ *
+ * @see TimeBucketOptions
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class TimeBucketOptionsTest {
+
+  /**
+   * Check the default options.
+   */
+  @Test
+  public void shouldCreateDefaultOptions() {
+
+    final var options = new TimeBucketOptions(null);
+    assertThat(options.granularity).isEqualTo(TimeBucketOptions.DEFAULT_GRANULARITY);
+    assertThat(options.retention).isEqualTo(TimeBucketOptions.DEFAULT_RETENTION);
+    assertThat(options.retentionCheck).isEqualTo(TimeBucketOptions.DEFAULT_RETENTION_CHECK);
+    assertThat(options.timestampField).isEqualTo(TimeBucketOptions.DEFAULT_TIMESTAMP_FIELD);
+    assertThat(options.bucketsCacheTime).isEqualTo(TimeBucketOptions.DEFAULT_BUCKETS_CACHE_TIME);
+
+  }
+
+  /**
+   * Check the options defined on a configuration.
+   */
+  @Test
+  public void shouldCreateOptionsFromConfiguration() {
+
+    final var options = new TimeBucketOptions(new JsonObject().put(TimeBucketOptions.GRANULARITY_KEY, "day")
+        .put(TimeBucketOptions.RETENTION_KEY, -3).put(TimeBucketOptions.RETENTION_CHECK_KEY, 0)
+        .put(TimeBucketOptions.TIMESTAMP_FIELD_KEY, "_creationTs").put(TimeBucketOptions.BUCKETS_CACHE_TIME_KEY, -1));
+    assertThat(options.granularity).isEqualTo(TimeBucketOptions.Granularity.DAY);
+    assertThat(options.retention).isEqualTo(0);
+    assertThat(options.retentionCheck).isEqualTo(1);
+    assertThat(options.timestampField).isEqualTo("_creationTs");
+    assertThat(options.bucketsCacheTime).isEqualTo(0);
+    assertThat(new TimeBuckets("interactions", options).timestampField).isEqualTo("_creationTs");
+
+  }
+
+  /**
+   * Check that an undefined granularity uses the default one.
+   */
+  @Test
+  public void shouldUseDefaultGranularityWhenUndefined() {
+
+    final var options = new TimeBucketOptions(new JsonObject().put(TimeBucketOptions.GRANULARITY_KEY, "week"));
+    assertThat(options.granularity).isEqualTo(TimeBucketOptions.DEFAULT_GRANULARITY);
+
+  }
+
+}
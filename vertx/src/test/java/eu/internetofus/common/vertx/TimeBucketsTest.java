@@ -0,0 +1,300 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.IndexModel;
+import io.vertx.junit5.VertxExtension;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+/**
+ * Test the {@link TimeBuckets}.
+ *
+ * @see TimeBuckets
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+@ExtendWith({ VertxExtension.class, MockitoExtension.class })
+public class TimeBucketsTest {
+
+  /**
+   * Return the seconds since epoch of a date.
+   *
+   * @param year  of the date.
+   * @param month of the date.
+   * @param day   of the date.
+   *
+   * @return the seconds since epoch at the start of the day.
+   */
+  public static long secondsOf(final int year, final int month, final int day) {
+
+    return ZonedDateTime.of(year, month, day, 0, 0, 0, 0, ZoneOffset.UTC).toEpochSecond();
+
+  }
+
+  /**
+   * Create monthly buckets.
+   *
+   * @param retention number of buckets to retain.
+   *
+   * @return the monthly buckets of the interactions.
+   */
+  public static TimeBuckets createMonthlyBuckets(final int retention) {
+
+    final var options = new TimeBucketOptions();
+    options.retention = retention;
+    return new TimeBuckets("interactions", "timestamp", options);
+
+  }
+
+  /**
+   * Should name the buckets with the period of the timestamp.
+   */
+  @Test
+  public void shouldNameBucketsWithPeriod() {
+
+    final var buckets = createMonthlyBuckets(0);
+    assertThat(buckets.bucketFor(secondsOf(2023, 5, 17))).isEqualTo("interactions_202305");
+    assertThat(buckets.bucketFor(secondsOf(2023, 6, 1) - 1)).isEqualTo("interactions_202305");
+    final var options = new TimeBucketOptions();
+    options.granularity = TimeBucketOptions.Granularity.DAY;
+    assertThat(new TimeBuckets("interactions", "timestamp", options).bucketFor(secondsOf(2023, 5, 17) + 3600))
+        .isEqualTo("interactions_20230517");
+
+  }
+
+  /**
+   * Should obtain the start of the buckets.
+   */
+  @Test
+  public void shouldObtainStartOfBuckets() {
+
+    final var buckets = createMonthlyBuckets(0);
+    assertThat(buckets.startOf("interactions_202305")).isEqualTo(secondsOf(2023, 5, 1));
+    assertThat(buckets.startOf("interactions")).isNull();
+    assertThat(buckets.startOf("interactions_20230517")).isNull();
+    assertThat(buckets.startOf("interactions_202313")).isNull();
+    assertThat(buckets.startOf("tasks_202305")).isNull();
+    assertThat(buckets.startOf(null)).isNull();
+
+  }
+
+  /**
+   * Should check the buckets that overlap a range.
+   */
+  @Test
+  public void shouldCheckOverlaps() {
+
+    final var buckets = createMonthlyBuckets(0);
+    assertThat(buckets.overlaps("interactions_202305", null, null)).isTrue();
+    assertThat(buckets.overlaps("interactions_202305", secondsOf(2023, 5, 31), null)).isTrue();
+    assertThat(buckets.overlaps("interactions_202305", secondsOf(2023, 6, 1), null)).isFalse();
+    assertThat(buckets.overlaps("interactions_202305", null, secondsOf(2023, 5, 1))).isTrue();
+    assertThat(buckets.overlaps("interactions_202305", null, secondsOf(2023, 5, 1) - 1)).isFalse();
+    assertThat(buckets.overlaps("tasks_202305", null, null)).isFalse();
+
+  }
+
+  /**
+   * Should add the range to the queries.
+   */
+  @Test
+  public void shouldAddRangeToQuery() {
+
+    final var buckets = createMonthlyBuckets(0);
+    final var query = new JsonObject().put("appId", "1");
+    assertThat(buckets.rangeQuery(query, null, null)).isSameAs(query);
+    assertThat(buckets.rangeQuery(null, null, null)).isEqualTo(new JsonObject());
+    assertThat(buckets.rangeQuery(null, 1L, null))
+        .isEqualTo(new JsonObject().put("timestamp", new JsonObject().put("$gte", 1L)));
+    assertThat(buckets.rangeQuery(query, 1L, 2L)).isEqualTo(new JsonObject().put("$and", new JsonArray().add(query)
+        .add(new JsonObject().put("timestamp", new JsonObject().put("$gte", 1L).put("$lte", 2L)))));
+
+  }
+
+  /**
+   * Should obtain the sorted buckets that overlap a range.
+   *
+   * @param pool mocked storage.
+   */
+  @Test
+  public void shouldObtainBucketsBetween(@Mock final RepositoryStorage pool) {
+
+    doReturn(Future.succeededFuture(List.of("interactions_202307", "tasks", "interactions_202305", "interactions",
+        "interactions_202306", "interactions_202301"))).when(pool).getCollections();
+    final var buckets = createMonthlyBuckets(0);
+    assertThat(buckets.bucketsBetween(pool, secondsOf(2023, 5, 10), secondsOf(2023, 6, 10)).result())
+        .containsExactly("interactions_202305", "interactions_202306");
+    assertThat(buckets.bucketsBetween(pool, null, null).result()).containsExactly("interactions_202301",
+        "interactions_202305", "interactions_202306", "interactions_202307");
+
+  }
+
+  /**
+   * Should remove the buckets that are not retained.
+   *
+   * @param pool mocked storage.
+   */
+  @Test
+  public void shouldRetireOldBuckets(@Mock final RepositoryStorage pool) {
+
+    doReturn(Future.succeededFuture(List.of("interactions_202301", "interactions_202305", "interactions_202306",
+        "interactions_202307"))).when(pool).getCollections();
+    doReturn(Future.succeededFuture()).when(pool).dropCollection(any());
+    final var buckets = createMonthlyBuckets(2);
+    assertThat(buckets.retire(pool, secondsOf(2023, 7, 15)).result()).containsExactly("interactions_202301",
+        "interactions_202305");
+    verify(pool, times(1)).dropCollection("interactions_202301");
+    verify(pool, times(1)).dropCollection("interactions_202305");
+    verify(pool, never()).dropCollection("interactions_202306");
+
+  }
+
+  /**
+   * Should not remove any bucket if all are retained.
+   *
+   * @param pool mocked storage.
+   */
+  @Test
+  public void shouldNotRetireWhenAllAreRetained(@Mock final RepositoryStorage pool) {
+
+    assertThat(createMonthlyBuckets(0).retire(pool, secondsOf(2023, 7, 15)).result()).isEmpty();
+    verify(pool, never()).getCollections();
+
+  }
+
+  /**
+   * Should create the indexes only the first time a bucket is used.
+   *
+   * @param pool mocked storage.
+   */
+  @Test
+  public void shouldCreateIndexesOnFirstUseOfBucket(@Mock final RepositoryStorage pool) {
+
+    doReturn(Future.succeededFuture()).when(pool).createIndexes(eq("interactions_202305"), any());
+    final var buckets = createMonthlyBuckets(0);
+    final var indexes = List.of(new IndexModel(new JsonObject().put("timestamp", 1)));
+    assertThat(buckets.prepareBucketFor(pool, indexes, secondsOf(2023, 5, 2)).result())
+        .isEqualTo("interactions_202305");
+    assertThat(buckets.prepareBucketFor(pool, indexes, secondsOf(2023, 5, 3)).result())
+        .isEqualTo("interactions_202305");
+    verify(pool, times(1)).createIndexes(eq("interactions_202305"), any());
+
+  }
+
+  /**
+   * Should use the bucket when the indexes can not be created.
+   *
+   * @param pool mocked storage.
+   */
+  @Test
+  public void shouldUseBucketWhenCannotCreateIndexes(@Mock final RepositoryStorage pool) {
+
+    doReturn(Future.failedFuture("Cannot create")).when(pool).createIndexes(eq("interactions_202305"), any());
+    final var buckets = createMonthlyBuckets(0);
+    final var indexes = List.of(new IndexModel(new JsonObject().put("timestamp", 1)));
+    assertThat(buckets.prepareBucketFor(pool, indexes, secondsOf(2023, 5, 2)).result())
+        .isEqualTo("interactions_202305");
+    buckets.prepareBucketFor(pool, indexes, secondsOf(2023, 5, 3));
+    verify(pool, times(2)).createIndexes(eq("interactions_202305"), any());
+
+  }
+
+  /**
+   * Should cache the names of the buckets of the database.
+   *
+   * @param pool mocked storage.
+   */
+  @Test
+  public void shouldCacheBucketNames(@Mock final RepositoryStorage pool) {
+
+    doReturn(Future.succeededFuture(List.of("interactions_202305", "tasks"))).when(pool).getCollections();
+    doReturn(Future.succeededFuture()).when(pool).dropCollection(any());
+    final var buckets = createMonthlyBuckets(1);
+    assertThat(buckets.bucketsBetween(pool, null, null).result()).containsExactly("interactions_202305");
+    buckets.prepareBucketFor(pool, List.of(), secondsOf(2023, 6, 2));
+    assertThat(buckets.bucketsBetween(pool, null, null).result()).containsExactly("interactions_202305",
+        "interactions_202306");
+    assertThat(buckets.retire(pool, secondsOf(2023, 6, 15)).result()).containsExactly("interactions_202305");
+    assertThat(buckets.bucketsBetween(pool, null, null).result()).containsExactly("interactions_202306");
+    verify(pool, times(1)).getCollections();
+
+    buckets.options.bucketsCacheTime = 0;
+    assertThat(buckets.bucketsBetween(pool, null, null).result()).containsExactly("interactions_202305");
+    verify(pool, times(2)).getCollections();
+
+  }
+
+  /**
+   * Should obtain again the names of the buckets when they can not be obtained.
+   *
+   * @param pool mocked storage.
+   */
+  @Test
+  public void shouldNotCacheFailedBucketNames(@Mock final RepositoryStorage pool) {
+
+    doReturn(Future.failedFuture("Cannot list"), Future.succeededFuture(List.of("interactions_202305")))
+        .when(pool).getCollections();
+    final var buckets = createMonthlyBuckets(0);
+    assertThat(buckets.bucketsBetween(pool, null, null).failed()).isTrue();
+    assertThat(buckets.bucketsBetween(pool, null, null).result()).containsExactly("interactions_202305");
+
+  }
+
+  /**
+   * Should remove periodically the buckets that are not retained.
+   *
+   * @param pool  mocked storage.
+   * @param vertx event bus to use.
+   */
+  @Test
+  public void shouldRetainBuckets(@Mock final RepositoryStorage pool, final Vertx vertx) {
+
+    assertThat(createMonthlyBuckets(0).retain(vertx, pool)).isNegative();
+
+    doReturn(Future.succeededFuture(List.of("interactions_202001"))).when(pool).getCollections();
+    doReturn(Future.succeededFuture()).when(pool).dropCollection(any());
+    final var timerId = createMonthlyBuckets(1).retain(vertx, pool);
+    assertThat(timerId).isNotNegative();
+    assertThat(vertx.cancelTimer(timerId)).isTrue();
+    verify(pool, times(1)).dropCollection("interactions_202001");
+
+  }
+
+}
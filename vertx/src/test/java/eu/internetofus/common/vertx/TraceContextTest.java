@@ -0,0 +1,190 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Test the {@link TraceContext}.
+ *
+ * @see TraceContext
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+@ExtendWith(VertxExtension.class)
+public class TraceContextTest {
+
+  /**
+   * Should parse a valid {@code traceparent} header.
+   */
+  @Test
+  public void shouldParseTraceparent() {
+
+    final var trace = TraceContext.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+    assertThat(trace).isNotNull();
+    assertThat(trace.traceId).isEqualTo("4bf92f3577b34da6a3ce929d0e0e4736");
+    assertThat(trace.spanId).isEqualTo("00f067aa0ba902b7");
+    assertThat(trace.sampled).isTrue();
+    assertThat(trace.toTraceparent()).isEqualTo("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+    assertThat(TraceContext.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00").sampled).isFalse();
+    assertThat(TraceContext.parse("01-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01-extra"))
+        .isEqualTo(trace);
+
+  }
+
+  /**
+   * Should not parse an invalid {@code traceparent} header.
+   *
+   * @param traceparent value that is not valid.
+   */
+  @ParameterizedTest(name = "Should not parse {0}")
+  @NullSource
+  @ValueSource(strings = { "", "undefined", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7",
+      "00-4BF92F3577B34DA6A3CE929D0E0E4736-00f067aa0ba902b7-01",
+      "00-00000000000000000000000000000000-00f067aa0ba902b7-01",
+      "00-4bf92f3577b34da6a3ce929d0e0e4736-0000000000000000-01",
+      "ff-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01",
+      "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01-extra",
+      "00_4bf92f3577b34da6a3ce929d0e0e4736_00f067aa0ba902b7_01" })
+  public void shouldNotParseInvalidTraceparent(final String traceparent) {
+
+    assertThat(TraceContext.parse(traceparent)).isNull();
+
+  }
+
+  /**
+   * Should create the child of a context.
+   */
+  @Test
+  public void shouldCreateChild() {
+
+    final var root = TraceContext.root();
+    assertThat(root.traceId).hasSize(32).matches("[0-9a-f]+");
+    assertThat(root.spanId).hasSize(16).matches("[0-9a-f]+");
+    assertThat(root.sampled).isTrue();
+    final var child = root.child();
+    assertThat(child.traceId).isEqualTo(root.traceId);
+    assertThat(child.spanId).isNotEqualTo(root.spanId);
+    assertThat(TraceContext.parse(child.toTraceparent())).isEqualTo(child);
+
+  }
+
+  /**
+   * Should store the context on the Vert.x context.
+   *
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldAttachToVertxContext(final Vertx vertx, final VertxTestContext testContext) {
+
+    assertThat(TraceContext.attach(TraceContext.root())).isNull();
+    assertThat(TraceContext.current()).isNull();
+    vertx.getOrCreateContext().runOnContext(any -> testContext.verify(() -> {
+
+      final var trace = TraceContext.root();
+      assertThat(TraceContext.current()).isNull();
+      assertThat(TraceContext.attach(trace)).isNull();
+      assertThat(TraceContext.current()).isSameAs(trace);
+      assertThat(TraceContext.attach(null)).isSameAs(trace);
+      assertThat(TraceContext.current()).isNull();
+      testContext.completeNow();
+    }));
+
+  }
+
+  /**
+   * Should resume the context propagated to a service.
+   *
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldResumeContextOnService(final Vertx vertx, final VertxTestContext testContext) {
+
+    final var trace = TraceContext.root();
+    vertx.eventBus().<JsonObject>consumer("trace.test", message -> {
+
+      TraceContext.resume(message).onComplete(testContext.succeeding(resumed -> testContext.verify(() -> {
+
+        assertThat(resumed).isSameAs(message);
+        assertThat(TraceContext.current()).isEqualTo(trace);
+        testContext.completeNow();
+      })));
+
+    });
+    vertx.eventBus().send("trace.test", new JsonObject(),
+        new DeliveryOptions().addHeader(TraceContext.TRACEPARENT_HEADER, trace.toTraceparent()));
+
+  }
+
+  /**
+   * Should propagate on each message the context that is running when it is
+   * sent.
+   *
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldPropagateContextOnSentMessages(final Vertx vertx, final VertxTestContext testContext) {
+
+    TraceContext.propagate(vertx);
+    TraceContext.propagate(vertx);
+    final var first = TraceContext.root();
+    final var second = TraceContext.root();
+    final var received = new ArrayList<String>();
+    vertx.eventBus().<JsonObject>consumer("trace.test", message -> {
+
+      received.add(message.headers().get(TraceContext.TRACEPARENT_HEADER));
+      testContext.verify(() -> assertThat(message.headers().getAll(TraceContext.TRACEPARENT_HEADER)).hasSize(1));
+      if (received.size() == 3) {
+
+        testContext.verify(() -> assertThat(received).containsExactly(first.toTraceparent(),
+            second.toTraceparent(), first.toTraceparent()));
+        testContext.completeNow();
+      }
+
+    }).completionHandler(testContext.succeeding(registered -> vertx.getOrCreateContext().runOnContext(any -> {
+
+      TraceContext.attach(first);
+      vertx.eventBus().send("trace.test", new JsonObject());
+      TraceContext.attach(second);
+      vertx.eventBus().send("trace.test", new JsonObject());
+      vertx.eventBus().send("trace.test", new JsonObject(),
+          new DeliveryOptions().addHeader(TraceContext.TRACEPARENT_HEADER, first.toTraceparent()));
+
+    })));
+
+  }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.Future;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.api.service.ServiceRequest;
+import io.vertx.ext.web.api.service.ServiceResponse;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * Test the {@link TraceSpan}.
+ *
+ * @see TraceSpan
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+@ExtendWith(VertxExtension.class)
+public class TraceSpanTest {
+
+  /**
+   * The spans that have been exported.
+   */
+  protected List<TraceSpan> exported;
+
+  /**
+   * Capture the exported spans.
+   */
+  @BeforeEach
+  public void exportToList() {
+
+    this.exported = Collections.synchronizedList(new ArrayList<>());
+    TraceSpan.exportTo(this.exported::add);
+
+  }
+
+  /**
+   * Restore the default exporter.
+   */
+  @AfterEach
+  public void restoreExporter() {
+
+    TraceSpan.exportTo(null);
+
+  }
+
+  /**
+   * Should export a span only the first time that it finishes.
+   */
+  @Test
+  public void shouldExportFinishedSpan() {
+
+    final var error = new IllegalStateException("Undefined");
+    final var parent = TraceContext.root();
+    final var span = TraceSpan.start("operation", TraceSpan.INTERNAL, parent).attribute("key", "value")
+        .attribute("undefined", null);
+    span.end(error);
+    span.end();
+    assertThat(this.exported).containsExactly(span);
+    assertThat(span.recording).isTrue();
+    assertThat(span.parentSpanId).isEqualTo(parent.spanId);
+    assertThat(span.duration).isNotNegative();
+    assertThat(span.error).isSameAs(error);
+    final var json = span.toJson();
+    assertThat(json.getString("traceId")).isEqualTo(span.context.traceId);
+    assertThat(json.getString("spanId")).isEqualTo(span.context.spanId);
+    assertThat(json.getString("parentSpanId")).isEqualTo(parent.spanId);
+    assertThat(json.getString("name")).isEqualTo("operation");
+    assertThat(json.getString("kind")).isEqualTo(TraceSpan.INTERNAL);
+    assertThat(json.getLong("endTimeUnixNano")).isGreaterThanOrEqualTo(json.getLong("startTimeUnixNano"));
+    assertThat(json.getJsonObject("attributes").getMap()).containsOnlyKeys("key");
+    assertThat(json.getJsonObject("status").getString("code")).isEqualTo("STATUS_CODE_ERROR");
+    assertThat(json.getJsonObject("status").getString("message")).isEqualTo("Undefined");
+
+  }
+
+  /**
+   * Should not record the spans of a trace that is not sampled.
+   */
+  @Test
+  public void shouldNotExportNotSampledSpan() {
+
+    final var parent = TraceContext.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00");
+    final var span = TraceSpan.start("operation", TraceSpan.CLIENT, parent).attribute("key", "value");
+    span.end();
+    assertThat(span.recording).isFalse();
+    assertThat(span.context).isSameAs(parent);
+    assertThat(span.attributes.isEmpty()).isTrue();
+    assertThat(this.exported).isEmpty();
+
+  }
+
+  /**
+   * Should not record nor change the running context when the span does not
+   * have a parent.
+   *
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldNotRecordSpanWithoutParent(final Vertx vertx, final VertxTestContext testContext) {
+
+    vertx.getOrCreateContext().runOnContext(any -> testContext.verify(() -> {
+
+      final var span = TraceSpan.start("operation", TraceSpan.INTERNAL);
+      assertThat(span.recording).isFalse();
+      assertThat(span.attach()).isNull();
+      assertThat(TraceContext.current()).isNull();
+      span.end();
+      assertThat(this.exported).isEmpty();
+      assertThat(span.toJson().containsKey("traceId")).isFalse();
+      testContext.completeNow();
+
+    }));
+
+  }
+
+  /**
+   * Should not record the spans when the tracing is disabled.
+   */
+  @Test
+  public void shouldNotRecordWhenDisabled() {
+
+    try {
+
+      TraceSpan.configure(new JsonObject().put(TraceSpan.ENABLED_KEY, false));
+      final var span = TraceSpan.start("operation", TraceSpan.INTERNAL, TraceContext.root());
+      span.end();
+      assertThat(span.recording).isFalse();
+      assertThat(this.exported).isEmpty();
+
+    } finally {
+
+      TraceSpan.configure(null);
+    }
+    assertThat(TraceSpan.start("operation", TraceSpan.INTERNAL, TraceContext.root()).recording).isTrue();
+
+  }
+
+  /**
+   * Should call an operation as a child of the running one.
+   *
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldTraceAsChild(final Vertx vertx, final VertxTestContext testContext) {
+
+    vertx.getOrCreateContext().runOnContext(any -> {
+
+      final var parent = TraceContext.root();
+      TraceContext.attach(parent);
+      final var running = new ArrayList<TraceContext>();
+      TraceSpan.trace("child", () -> {
+
+        running.add(TraceContext.current());
+        return Future.succeededFuture("result");
+
+      }).onComplete(testContext.succeeding(result -> testContext.verify(() -> {
+
+        assertThat(result).isEqualTo("result");
+        assertThat(TraceContext.current()).isSameAs(parent);
+        assertThat(this.exported).hasSize(1);
+        final var span = this.exported.get(0);
+        assertThat(span.name).isEqualTo("child");
+        assertThat(span.parentSpanId).isEqualTo(parent.spanId);
+        assertThat(running).containsExactly(span.context);
+        testContext.completeNow();
+      })));
+    });
+
+  }
+
+  /**
+   * Should continue the trace of a service request and finish it when the
+   * response is informed.
+   *
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldTraceServiceContext(final Vertx vertx, final VertxTestContext testContext) {
+
+    vertx.getOrCreateContext().runOnContext(any -> testContext.verify(() -> {
+
+      final var parent = TraceContext.root();
+      final var request = new ServiceRequest();
+      request.setHeaders(MultiMap.caseInsensitiveMultiMap().add(TraceContext.TRACEPARENT_HEADER,
+          parent.toTraceparent()));
+      final var context = new ServiceContext(request, testContext.succeeding(response -> testContext.verify(() -> {
+
+        assertThat(this.exported).hasSize(1);
+        final var span = this.exported.get(0);
+        assertThat(span.kind).isEqualTo(TraceSpan.SERVER);
+        assertThat(span.parentSpanId).isEqualTo(parent.spanId);
+        assertThat(span.attributes.getInteger("http.status_code")).isEqualTo(204);
+        testContext.completeNow();
+      })));
+      assertThat(TraceContext.current()).isEqualTo(context.span.context);
+      context.resultHandler.handle(Future.succeededFuture(new ServiceResponse().setStatusCode(204)));
+      assertThat(TraceContext.current()).isNull();
+    }));
+
+  }
+
+}
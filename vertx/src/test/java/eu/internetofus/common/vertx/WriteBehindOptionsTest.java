@@ -0,0 +1,65 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the {@link WriteBehindOptions}.
+ *
+ * @see WriteBehindOptions
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+public class WriteBehindOptionsTest {
+
+  /**
+   * Check the default options.
+   */
+  @Test
+  public void shouldCreateDefaultOptions() {
+
+    final var options = new WriteBehindOptions(null);
+    assertThat(options.batchSize).isEqualTo(WriteBehindOptions.DEFAULT_BATCH_SIZE);
+    assertThat(options.maxDelay).isEqualTo(WriteBehindOptions.DEFAULT_MAX_DELAY);
+    assertThat(options.capacity).isEqualTo(WriteBehindOptions.DEFAULT_CAPACITY);
+
+  }
+
+  /**
+   * Check the options defined on a configuration.
+   */
+  @Test
+  public void shouldCreateOptionsFromConfiguration() {
+
+    final var options = new WriteBehindOptions(new JsonObject().put(WriteBehindOptions.BATCH_SIZE_KEY, 10)
+        .put(WriteBehindOptions.MAX_DELAY_KEY, 0).put(WriteBehindOptions.CAPACITY_KEY, 5));
+    assertThat(options.batchSize).isEqualTo(10);
+    assertThat(options.maxDelay).isEqualTo(1);
+    assertThat(options.capacity).isEqualTo(10);
+
+  }
+
+}
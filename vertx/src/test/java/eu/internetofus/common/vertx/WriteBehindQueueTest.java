@@ -0,0 +1,278 @@
+/*
+ * -----------------------------------------------------------------------------
+ *
+ * Copyright 2019 - 2022 UDT-IA, IIIA-CSIC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+
+package eu.internetofus.common.vertx;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.BulkWriteOptions;
+import io.vertx.ext.mongo.MongoClientBulkWriteResult;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+/**
+ * Test the {@link WriteBehindQueue}.
+ *
+ * @see WriteBehindQueue
+ *
+ * @author UDT-IA, IIIA-CSIC
+ */
+@ExtendWith({ VertxExtension.class, MockitoExtension.class })
+public class WriteBehindQueueTest {
+
+  /**
+   * Create the options of a queue.
+   *
+   * @param batchSize maximum number of documents on each bulk write.
+   * @param maxDelay  maximum milliseconds that a document waits.
+   * @param capacity  maximum number of waiting documents.
+   *
+   * @return the options of the queue.
+   */
+  public static WriteBehindOptions createOptions(final int batchSize, final long maxDelay, final int capacity) {
+
+    final var options = new WriteBehindOptions();
+    options.batchSize = batchSize;
+    options.maxDelay = maxDelay;
+    options.capacity = capacity;
+    return options;
+
+  }
+
+  /**
+   * Should store the documents when the batch is full.
+   *
+   * @param pool  mocked storage.
+   * @param vertx event bus to use.
+   */
+  @Test
+  public void shouldWriteWhenBatchIsFull(@Mock final RepositoryStorage pool, final Vertx vertx) {
+
+    doReturn(Future.succeededFuture(new MongoClientBulkWriteResult())).when(pool).bulkWrite(eq("tasks"),
+        any(), any(BulkWriteOptions.class));
+    final var queue = new WriteBehindQueue(vertx, pool, "tasks", createOptions(2, 100000, 10));
+    final var first = queue.insert(new JsonObject().put("_id", "1"));
+    assertThat(first.isComplete()).isFalse();
+    final var second = queue.insert(new JsonObject());
+    assertThat(first.result()).isEqualTo("1");
+    assertThat(second.result()).isNotEmpty();
+    verify(pool, times(1)).bulkWrite(eq("tasks"), any(), any(BulkWriteOptions.class));
+
+  }
+
+  /**
+   * Should store the documents when the maximum delay has passed.
+   *
+   * @param pool        mocked storage.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldWriteAfterMaxDelay(@Mock final RepositoryStorage pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    doReturn(Future.succeededFuture(new MongoClientBulkWriteResult())).when(pool).bulkWrite(eq("tasks"),
+        any(), any(BulkWriteOptions.class));
+    final var queue = new WriteBehindQueue(vertx, pool, "tasks", createOptions(100, 10, 1000));
+    queue.insert(new JsonObject().put("_id", "1"));
+    queue.insert(new JsonObject().put("_id", "2")).onComplete(testContext.succeeding(id -> testContext.verify(() -> {
+
+      assertThat(id).isEqualTo("2");
+      verify(pool, times(1)).bulkWrite(eq("tasks"), any(), any(BulkWriteOptions.class));
+      testContext.completeNow();
+
+    })));
+
+  }
+
+  /**
+   * Should reject the documents when the queue is full and call the drain
+   * handler when it has been drained.
+   *
+   * @param pool  mocked storage.
+   * @param vertx event bus to use.
+   */
+  @Test
+  public void shouldRejectWhenFullAndDrain(@Mock final RepositoryStorage pool, final Vertx vertx) {
+
+    final Promise<MongoClientBulkWriteResult> result = Promise.promise();
+    doReturn(result.future()).when(pool).bulkWrite(eq("tasks"), any(), any(BulkWriteOptions.class));
+    final var queue = new WriteBehindQueue(vertx, pool, "tasks", createOptions(2, 100000, 2));
+    queue.insert(new JsonObject());
+    queue.insert(new JsonObject());
+    assertThat(queue.writeQueueFull()).isTrue();
+    assertThat(queue.insert(new JsonObject()).cause()).isInstanceOf(RejectedExecutionException.class);
+    final var drained = new AtomicBoolean();
+    queue.drainHandler(any -> drained.set(true));
+    result.complete(new MongoClientBulkWriteResult());
+    assertThat(drained).isTrue();
+    assertThat(queue.writeQueueFull()).isFalse();
+
+  }
+
+  /**
+   * Should fail only the documents that can not be stored.
+   *
+   * @param pool  mocked storage.
+   * @param vertx event bus to use.
+   */
+  @Test
+  public void shouldFailOnlyTheDocumentsWithErrors(@Mock final RepositoryStorage pool, final Vertx vertx) {
+
+    final var error = new BulkWriteError(11000, "Duplicated key", new BsonDocument(), 1);
+    final var cause = new MongoBulkWriteException(BulkWriteResult.unacknowledged(), List.of(error), null,
+        new ServerAddress(), Collections.emptySet());
+    doReturn(Future.failedFuture(cause)).when(pool).bulkWrite(eq("tasks"), any(),
+        any(BulkWriteOptions.class));
+    final var queue = new WriteBehindQueue(vertx, pool, "tasks", createOptions(3, 100000, 10));
+    final var futures = new ArrayList<Future<String>>();
+    for (var i = 0; i < 3; i++) {
+
+      futures.add(queue.insert(new JsonObject().put("_id", String.valueOf(i))));
+    }
+    assertThat(futures.get(0).result()).isEqualTo("0");
+    assertThat(futures.get(1).cause()).hasMessage("Duplicated key");
+    assertThat(futures.get(2).result()).isEqualTo("2");
+
+  }
+
+  /**
+   * Should fail all the documents when the batch can not be stored.
+   *
+   * @param pool  mocked storage.
+   * @param vertx event bus to use.
+   */
+  @Test
+  public void shouldFailAllTheDocumentsWhenBatchFails(@Mock final RepositoryStorage pool, final Vertx vertx) {
+
+    doReturn(Future.failedFuture("Connection closed")).when(pool).bulkWrite(eq("tasks"), any(),
+        any(BulkWriteOptions.class));
+    final var queue = new WriteBehindQueue(vertx, pool, "tasks", createOptions(2, 100000, 10));
+    final var first = queue.insert(new JsonObject());
+    final var second = queue.insert(new JsonObject());
+    assertThat(first.failed()).isTrue();
+    assertThat(second.failed()).isTrue();
+    assertThat(queue.writeQueueFull()).isFalse();
+
+  }
+
+  /**
+   * Should store the pending documents when it is closed and reject the new
+   * ones.
+   *
+   * @param pool        mocked storage.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldWritePendingWhenClose(@Mock final RepositoryStorage pool, final Vertx vertx,
+      final VertxTestContext testContext) {
+
+    doReturn(Future.succeededFuture(new MongoClientBulkWriteResult())).when(pool).bulkWrite(eq("tasks"),
+        any(), any(BulkWriteOptions.class));
+    WriteBehindQueue.configure(vertx, pool, createOptions(100, 100000, 1000));
+    final var queue = WriteBehindQueue.shared(vertx, pool, "tasks");
+    assertThat(queue.options.batchSize).isEqualTo(100);
+    assertThat(WriteBehindQueue.shared(vertx, pool, "tasks")).isSameAs(queue);
+    final var stored = queue.insert(new JsonObject());
+    WriteBehindQueue.closeAll(vertx, pool).onComplete(testContext.succeeding(empty -> testContext.verify(() -> {
+
+      assertThat(stored.succeeded()).isTrue();
+      assertThat(queue.insert(new JsonObject()).cause()).isInstanceOf(RejectedExecutionException.class);
+      final var next = WriteBehindQueue.shared(vertx, pool, "tasks");
+      assertThat(next).isNotSameAs(queue);
+      assertThat(next.options.batchSize).isEqualTo(WriteBehindOptions.DEFAULT_BATCH_SIZE);
+      WriteBehindQueue.closeAll(vertx, pool).onComplete(testContext.succeedingThenComplete());
+
+    })));
+
+  }
+
+  /**
+   * Should share the queues by pool and close only the ones of a pool.
+   *
+   * @param pool        mocked storage.
+   * @param other       mocked storage of another verticle.
+   * @param vertx       event bus to use.
+   * @param testContext test context.
+   */
+  @Test
+  public void shouldShareQueuesByPool(@Mock final RepositoryStorage pool, @Mock final RepositoryStorage other,
+      final Vertx vertx, final VertxTestContext testContext) {
+
+    WriteBehindQueue.configure(vertx, other, createOptions(10, 100000, 100));
+    final var queue = WriteBehindQueue.shared(vertx, pool, "tasks");
+    final var otherQueue = WriteBehindQueue.shared(vertx, other, "tasks");
+    assertThat(otherQueue).isNotSameAs(queue);
+    assertThat(queue.pool).isSameAs(pool);
+    assertThat(otherQueue.pool).isSameAs(other);
+    assertThat(otherQueue.options.batchSize).isEqualTo(10);
+    WriteBehindQueue.closeAll(vertx, pool).onComplete(testContext.succeeding(empty -> testContext.verify(() -> {
+
+      assertThat(queue.closed).isTrue();
+      assertThat(otherQueue.closed).isFalse();
+      assertThat(WriteBehindQueue.shared(vertx, other, "tasks")).isSameAs(otherQueue);
+      WriteBehindQueue.closeAll(vertx, other).onComplete(testContext.succeedingThenComplete());
+
+    })));
+
+  }
+
+  /**
+   * Should not write when nothing is pending.
+   *
+   * @param pool  mocked storage.
+   * @param vertx event bus to use.
+   */
+  @Test
+  public void shouldNotWriteWhenNothingIsPending(@Mock final RepositoryStorage pool, final Vertx vertx) {
+
+    final var queue = new WriteBehindQueue(vertx, pool, "tasks", new WriteBehindOptions());
+    assertThat(queue.flush().succeeded()).isTrue();
+    verify(pool, never()).bulkWrite(any(), any(), any(BulkWriteOptions.class));
+
+  }
+
+}
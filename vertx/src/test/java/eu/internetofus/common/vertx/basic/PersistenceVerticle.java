@@ -35,7 +35,7 @@ public class PersistenceVerticle extends AbstractPersistenceVerticle {
   @Override
   protected Future<Void> registerRepositoriesFor(final String schemaVersion) {
 
-    return UsersRepository.register(this.vertx, this.pool, schemaVersion);
+    return UsersRepository.register(this.vertx, this.storage, schemaVersion);
   }
 
 }
@@ -20,6 +20,8 @@
 package eu.internetofus.common.vertx.basic;
 
 import eu.internetofus.common.model.Model;
+import eu.internetofus.common.vertx.MongoRepositoryStorage;
+import eu.internetofus.common.vertx.RepositoryStorage;
 import io.vertx.codegen.annotations.GenIgnore;
 import io.vertx.codegen.annotations.ProxyGen;
 import io.vertx.core.AsyncResult;
@@ -66,9 +68,26 @@ public interface UsersRepository {
    *
    * @return the future that inform when the repository will be registered or not.
    */
+  @GenIgnore
   static Future<Void> register(final Vertx vertx, final MongoClient pool, final String version) {
 
-    final var repository = new UsersRepositoryImpl(vertx, pool, version);
+    return register(vertx, new MongoRepositoryStorage(pool), version);
+
+  }
+
+  /**
+   * Register this service.
+   *
+   * @param vertx   that contains the event bus to use.
+   * @param storage of the documents.
+   * @param version of the schemas.
+   *
+   * @return the future that inform when the repository will be registered or not.
+   */
+  @GenIgnore
+  static Future<Void> register(final Vertx vertx, final RepositoryStorage storage, final String version) {
+
+    final var repository = new UsersRepositoryImpl(vertx, storage, version);
     new ServiceBinder(vertx).setAddress(UsersRepository.ADDRESS).register(UsersRepository.class, repository);
     return repository.migrateDocumentsToCurrentVersions();
 
@@ -20,6 +20,7 @@
 package eu.internetofus.common.vertx.basic;
 
 import eu.internetofus.common.vertx.Repository;
+import eu.internetofus.common.vertx.RepositoryStorage;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -53,6 +54,19 @@ public class UsersRepositoryImpl extends Repository implements UsersRepository {
 
   }
 
+  /**
+   * Create a new repository.
+   *
+   * @param vertx   event bus to use.
+   * @param storage of the documents.
+   * @param version of the schemas.
+   */
+  public UsersRepositoryImpl(final Vertx vertx, final RepositoryStorage storage, final String version) {
+
+    super(vertx, storage, version);
+
+  }
+
   /**
    * {@inheritDoc}
    */